@@ -0,0 +1,63 @@
+package com.iipom.mapwaypoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The arithmetic run for every frame and every click. The world map benchmarks read a fake client, once per
+ * call when uncached and once per frame otherwise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GeometryBenchmark
+{
+    private double bearing = Math.atan2(-12, 37);
+    private int mapAngle;
+
+    private int mouseX = 412;
+    private int mouseY = 199;
+
+    private WorldMapGeometry geometry;
+
+    @Setup
+    public void setUp()
+    {
+        final FakeClient client = new FakeClient();
+        client.setWorldMap(PluginFixture.WORLD_MAP_BOUNDS, PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y, 4.0f);
+        geometry = PluginFixture.construct(WorldMapGeometry.class, client.getClient());
+    }
+
+    @Benchmark
+    public int arrowBucket()
+    {
+        mapAngle = (mapAngle + 7) & 2047;
+        return WaypointArrowOverlay.calculateAngleBucket(WaypointArrowOverlay.calculateAngle(bearing, mapAngle));
+    }
+
+    @Benchmark
+    public int mapPoint()
+    {
+        return TileCoords.pack(geometry.toWorldX(mouseX), geometry.toWorldY(mouseY), 0);
+    }
+
+    @Benchmark
+    public int mapPointUncached()
+    {
+        geometry.invalidate();
+        return TileCoords.pack(geometry.toWorldX(mouseX), geometry.toWorldY(mouseY), 0);
+    }
+}
@@ -0,0 +1,86 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Point;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.MenuOpened;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding the waypoint entries to a right-click menu, once on the world map and once on a waypoint
+ * tile in the scene.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MenuBenchmark
+{
+    private static final MenuOpened MENU_OPENED = new MenuOpened();
+
+    @Param({"1", "100", "1000", "10000"})
+    public int waypoints;
+
+    // One over the middle of the world map, one over the scene outside of it
+    private final Point mapMouse = new Point((int) PluginFixture.WORLD_MAP_BOUNDS.getCenterX(), (int) PluginFixture.WORLD_MAP_BOUNDS.getCenterY());
+    private final Point sceneMouse = new Point(750, 480);
+
+    private PluginFixture fixture;
+    private MenuEntry[] baseEntries;
+
+    @Setup
+    public void setUp()
+    {
+        fixture = new PluginFixture();
+        fixture.addWaypoints(waypoints, 64, 0x5EED);
+
+        final WaypointStore store = fixture.plugin.getWaypoints();
+        final int id = store.last();
+        fixture.fakeClient.selectedTile = new WorldPoint(store.getX(id), store.getY(id), store.getPlane(id));
+
+        final MenuEntry cancel = new MenuEntry();
+        cancel.setOption("Cancel");
+        final MenuEntry walk = new MenuEntry();
+        walk.setOption("Walk here");
+        baseEntries = new MenuEntry[]{cancel, walk};
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        fixture.shutDown();
+    }
+
+    @Benchmark
+    public MenuEntry[] worldMapMenu()
+    {
+        fixture.fakeClient.mouseCanvasPosition = mapMouse;
+        fixture.fakeClient.menuEntries = baseEntries;
+        fixture.plugin.onMenuOpened(MENU_OPENED);
+        return fixture.fakeClient.menuEntries;
+    }
+
+    @Benchmark
+    public MenuEntry[] sceneMenu()
+    {
+        fixture.fakeClient.mouseCanvasPosition = sceneMouse;
+        fixture.fakeClient.menuEntries = baseEntries;
+        fixture.plugin.onMenuOpened(MENU_OPENED);
+        return fixture.fakeClient.menuEntries;
+    }
+}
@@ -0,0 +1,79 @@
+package com.iipom.mapwaypoint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame cost of the three overlays. Waypoints are scattered around the player so that only some of them
+ * fall inside the scene and the minimap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OverlayBenchmark
+{
+    @Param({"1", "100", "1000", "10000"})
+    public int waypoints;
+
+    @Param({"64"})
+    public int spread;
+
+    private PluginFixture fixture;
+    private BufferedImage canvas;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setUp()
+    {
+        fixture = new PluginFixture();
+        fixture.addWaypoints(waypoints, spread, 0x5EED);
+
+        canvas = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB);
+        graphics = canvas.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        graphics.dispose();
+        fixture.shutDown();
+    }
+
+    @Benchmark
+    public Dimension arrowOverlay()
+    {
+        // Turn the camera a little every frame so the arrow keeps changing rotation
+        fixture.fakeClient.mapAngle = (fixture.fakeClient.mapAngle + 7) & 2047;
+        return fixture.arrowOverlay.render(graphics);
+    }
+
+    @Benchmark
+    public Dimension tileOverlay()
+    {
+        return fixture.tileOverlay.render(graphics);
+    }
+
+    @Benchmark
+    public Dimension minimapOverlay()
+    {
+        return fixture.minimapOverlay.render(graphics);
+    }
+}
@@ -0,0 +1,69 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayLayer;
+import net.runelite.client.ui.overlay.OverlayPosition;
+
+import javax.inject.Inject;
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+/**
+ * Draws the breadcrumb trail on the world map as one line. The ground and minimap overlays draw it there.
+ */
+public class BreadcrumbOverlay extends Overlay implements OverlayLifecycle.NavigationOverlay
+{
+    // The trail is drawn in this colour on the ground, minimap and world map alike
+    static final Color TRAIL_COLOR = new Color(240, 180, 60);
+
+    private static final Stroke TRAIL_STROKE = new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    private final MapWaypointPlugin plugin;
+    private final NavigationTracker navigationTracker;
+    private final WorldMapGeometry worldMapGeometry;
+    private final Path2D.Float line = new Path2D.Float(Path2D.WIND_NON_ZERO, BreadcrumbTrail.CAPACITY);
+
+    @Inject
+    private BreadcrumbOverlay(MapWaypointPlugin plugin, NavigationTracker navigationTracker, WorldMapGeometry worldMapGeometry)
+    {
+        this.plugin = plugin;
+        this.navigationTracker = navigationTracker;
+        this.worldMapGeometry = worldMapGeometry;
+        setPosition(OverlayPosition.DYNAMIC);
+        setLayer(OverlayLayer.ABOVE_MAP);
+    }
+
+    @Override
+    public boolean isNeeded(NavigationState state)
+    {
+        return state.hasTarget() && state.isDrawTrail();
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        final NavigationState state = navigationTracker.getState();
+        final BreadcrumbTrail trail = plugin.getTrail();
+        if (!isNeeded(state) || trail.size() < 2 || !worldMapGeometry.isOpen())
+        {
+            return null;
+        }
+
+        line.reset();
+        line.moveTo(worldMapGeometry.toCanvasX(TileCoords.x(trail.getTile(0))), worldMapGeometry.toCanvasY(TileCoords.y(trail.getTile(0))));
+        for (int i = 1; i < trail.size(); i++)
+        {
+            final int tile = trail.getTile(i);
+            line.lineTo(worldMapGeometry.toCanvasX(TileCoords.x(tile)), worldMapGeometry.toCanvasY(TileCoords.y(tile)));
+        }
+
+        final Shape clip = graphics.getClip();
+        graphics.clip(worldMapGeometry.getBounds());
+        graphics.setColor(TRAIL_COLOR);
+        graphics.setStroke(TRAIL_STROKE);
+        graphics.draw(line);
+        graphics.setClip(clip);
+
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * The tiles the player has recently walked, one packed tile per tick they moved, in a ring buffer of fixed size
+ * so the oldest are overwritten once it is full. Ticks spent standing still add to the count of the last tile
+ * rather than taking up a sample. A teleport or a change of plane starts the trail over. Only used from the
+ * client thread.
+ */
+class BreadcrumbTrail
+{
+    static final int CAPACITY = 1024;
+
+    // Farther than this in one tick is not walking
+    private static final int MAX_STEP = 8;
+
+    private final int[] tiles = new int[CAPACITY];
+    private final int[] ticks = new int[CAPACITY];
+    private int head;
+    private int size;
+
+    // Changed whenever a tile is added or dropped, so copies of the trail can tell they are stale
+    private int version;
+
+    int size()
+    {
+        return size;
+    }
+
+    int getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * @param index from 0 for the oldest tile to {@code size() - 1} for the player's
+     */
+    int getTile(int index)
+    {
+        return tiles[slot(index)];
+    }
+
+    /**
+     * @return the number of ticks the player spent on the tile
+     */
+    int getTicks(int index)
+    {
+        return ticks[slot(index)];
+    }
+
+    /**
+     * Adds the player's packed tile for this tick.
+     *
+     * @return whether the player had moved
+     */
+    boolean record(int tile)
+    {
+        if (size > 0)
+        {
+            final int last = slot(size - 1);
+            if (tiles[last] == tile)
+            {
+                ticks[last]++;
+                return false;
+            }
+
+            if (TileCoords.plane(tiles[last]) != TileCoords.plane(tile) || TileCoords.distance(tiles[last], tile) > MAX_STEP)
+            {
+                size = 0;
+            }
+        }
+
+        final int next = (head + size) % CAPACITY;
+        tiles[next] = tile;
+        ticks[next] = 1;
+        if (size == CAPACITY)
+        {
+            head = (head + 1) % CAPACITY;
+        }
+        else
+        {
+            size++;
+        }
+
+        version++;
+        return true;
+    }
+
+    /**
+     * Copies the trail, oldest tile first, to the end of an array of at least {@link #CAPACITY} tiles.
+     *
+     * @return the index of the oldest tile in the array
+     */
+    int copyTo(int[] out)
+    {
+        final int offset = out.length - size;
+        final int firstRun = Math.min(size, CAPACITY - head);
+        System.arraycopy(tiles, head, out, offset, firstRun);
+        System.arraycopy(tiles, 0, out, offset + firstRun, size - firstRun);
+        return offset;
+    }
+
+    void clear()
+    {
+        head = 0;
+        size = 0;
+        version++;
+    }
+
+    private int slot(int index)
+    {
+        return (head + index) % CAPACITY;
+    }
+}
@@ -0,0 +1,45 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+
+/**
+ * Remembers everything a scene projection depends on: the camera's position, pitch, yaw and scale, the
+ * viewport, and the scene's base and plane. Projections can be reused for as long as none of these change.
+ */
+class CameraState
+{
+    private final int[] key = new int[11];
+
+    /**
+     * Reads the camera and scene state for this frame.
+     *
+     * @return whether any of it has changed since the last call
+     */
+    boolean update(Client client)
+    {
+        boolean changed = false;
+        changed |= set(0, client.getCameraX());
+        changed |= set(1, client.getCameraY());
+        changed |= set(2, client.getCameraZ());
+        changed |= set(3, client.getCameraPitch());
+        changed |= set(4, client.getCameraYaw());
+        changed |= set(5, client.getScale());
+        changed |= set(6, client.getViewportXOffset());
+        changed |= set(7, client.getViewportYOffset());
+        changed |= set(8, client.getViewportWidth());
+        changed |= set(9, client.getViewportHeight());
+        changed |= set(10, TileCoords.pack(client.getBaseX(), client.getBaseY(), client.getPlane()));
+        return changed;
+    }
+
+    private boolean set(int index, int value)
+    {
+        if (key[index] == value)
+        {
+            return false;
+        }
+
+        key[index] = value;
+        return true;
+    }
+}
@@ -0,0 +1,31 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * Walkability between neighbouring world tiles. Only the north and east edges of each tile are stored,
+ * the remaining directions are derived from the neighbouring tiles.
+ */
+interface CollisionMap
+{
+    boolean canMoveNorth(int x, int y, int plane);
+
+    boolean canMoveEast(int x, int y, int plane);
+
+    default boolean canMove(int x, int y, int plane, int dx, int dy)
+    {
+        if (dx == 0)
+        {
+            return dy > 0 ? canMoveNorth(x, y, plane) : canMoveNorth(x, y - 1, plane);
+        }
+
+        if (dy == 0)
+        {
+            return dx > 0 ? canMoveEast(x, y, plane) : canMoveEast(x - 1, y, plane);
+        }
+
+        // Diagonal steps need both orthogonal routes around the corner to be clear
+        return canMove(x, y, plane, dx, 0)
+                && canMove(x, y, plane, 0, dy)
+                && canMove(x + dx, y, plane, 0, dy)
+                && canMove(x, y + dy, plane, dx, 0);
+    }
+}
@@ -0,0 +1,338 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Client;
+import net.runelite.api.CollisionData;
+import net.runelite.api.CollisionDataFlag;
+import net.runelite.api.Constants;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collision data for every region the player has loaded, kept in a memory-mapped file so that it survives
+ * restarts and can be read in place without parsing.
+ * <p>
+ * Each 64x64 region is packed into a fixed size slot holding two bits per tile and plane: whether the tile's
+ * north edge and east edge can be walked through. The file holds a fixed number of slots, once full the slot
+ * written least recently is reused.
+ * <p>
+ * Only the client thread writes to the cache, while pathfinder workers read it. Rewriting a slot's tiles in
+ * place is harmless, as a reader sees either edge of the same region, but giving a slot to another region is
+ * not. Such changes are bracketed by a stamp that is odd while they are made, and a reader brackets its reads
+ * with {@link #readStamp()} and {@link #validate}, discarding what it read when the stamp has moved on.
+ */
+@Slf4j
+@Singleton
+public class CollisionMapCache implements CollisionMap
+{
+    private static final String FILE_NAME = "collision.dat";
+    private static final int MAGIC = 0x4D57434D;
+    private static final int VERSION = 1;
+
+    private static final int CAPACITY = 2048;
+    private static final int REGION_SIZE = Constants.REGION_SIZE;
+    private static final int PLANES = Constants.MAX_Z;
+    private static final int SLOT_BYTES = PLANES * REGION_SIZE * REGION_SIZE * 2 / 8;
+
+    private static final int HEADER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 8;
+    private static final int DATA_OFFSET = HEADER_BYTES + CAPACITY * INDEX_ENTRY_BYTES;
+    private static final long FILE_BYTES = DATA_OFFSET + (long) CAPACITY * SLOT_BYTES;
+
+    private static final int NORTH = 1;
+    private static final int EAST = 2;
+
+    private static final int EMPTY_REGION = -1;
+
+    private final Client client;
+    private final File directory;
+
+    // Region id to slot + 1, zero when the region is not cached. Read without synchronization by the
+    // pathfinder workers, which validate the stamp afterwards
+    private final short[] slots = new short[1 << 16];
+
+    private volatile MappedByteBuffer buffer;
+    private int clock;
+
+    // Odd while a slot is handed to another region, bumped on both sides of it
+    private final AtomicInteger stamp = new AtomicInteger();
+
+    @Inject
+    private CollisionMapCache(Client client)
+    {
+        this(client, MapWaypointPlugin.WAYPOINT_DIR);
+    }
+
+    CollisionMapCache(Client client, File directory)
+    {
+        this.client = client;
+        this.directory = directory;
+    }
+
+    boolean isLoaded()
+    {
+        return buffer != null;
+    }
+
+    /**
+     * Maps the cache file, resetting it if it was written by an incompatible version. Performs file IO and
+     * should not be called on the client thread.
+     */
+    synchronized void load()
+    {
+        if (buffer != null)
+        {
+            return;
+        }
+
+        directory.mkdirs();
+        final File file = new File(directory, FILE_NAME);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+        {
+            final boolean fresh = raf.length() != FILE_BYTES;
+            raf.setLength(FILE_BYTES);
+
+            final MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (fresh || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION || mapped.getInt(8) != CAPACITY)
+            {
+                reset(mapped);
+            }
+
+            clock = mapped.getInt(12);
+            for (int slot = 0; slot < CAPACITY; slot++)
+            {
+                final int region = mapped.getInt(HEADER_BYTES + slot * INDEX_ENTRY_BYTES);
+                if (region != EMPTY_REGION)
+                {
+                    slots[region & 0xFFFF] = (short) (slot + 1);
+                }
+            }
+
+            buffer = mapped;
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to map collision cache {}", file, e);
+        }
+    }
+
+    synchronized void flush()
+    {
+        if (buffer != null)
+        {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Copies the walkable edges of the loaded scene into the cache. Must be called on the client thread.
+     */
+    void capture()
+    {
+        final MappedByteBuffer mapped = buffer;
+        final CollisionData[] collisionMaps = client.getCollisionMaps();
+        if (mapped == null || collisionMaps == null || client.isInInstancedRegion())
+        {
+            return;
+        }
+
+        final int baseX = client.getBaseX();
+        final int baseY = client.getBaseY();
+        final int sceneSize = Constants.SCENE_SIZE;
+
+        int cachedRegion = EMPTY_REGION;
+        int slotOffset = 0;
+
+        for (int plane = 0; plane < collisionMaps.length && plane < PLANES; plane++)
+        {
+            if (collisionMaps[plane] == null)
+            {
+                continue;
+            }
+
+            final int[][] flags = collisionMaps[plane].getFlags();
+
+            // The outermost tiles of the scene have no neighbours loaded, so only their inner edges are known
+            for (int sceneX = 0; sceneX < sceneSize - 1; sceneX++)
+            {
+                for (int sceneY = 0; sceneY < sceneSize - 1; sceneY++)
+                {
+                    final int x = baseX + sceneX;
+                    final int y = baseY + sceneY;
+                    final int region = regionId(x, y);
+                    if (region != cachedRegion)
+                    {
+                        cachedRegion = region;
+                        slotOffset = DATA_OFFSET + allocateSlot(mapped, region) * SLOT_BYTES;
+                    }
+
+                    final int tile = flags[sceneX][sceneY];
+                    int bits = 0;
+                    if ((tile & (CollisionDataFlag.BLOCK_MOVEMENT_NORTH | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0
+                            && (flags[sceneX][sceneY + 1] & (CollisionDataFlag.BLOCK_MOVEMENT_SOUTH | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0)
+                    {
+                        bits |= NORTH;
+                    }
+
+                    if ((tile & (CollisionDataFlag.BLOCK_MOVEMENT_EAST | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0
+                            && (flags[sceneX + 1][sceneY] & (CollisionDataFlag.BLOCK_MOVEMENT_WEST | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0)
+                    {
+                        bits |= EAST;
+                    }
+
+                    writeBits(mapped, slotOffset, tileBit(x, y, plane), bits);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a stamp to pass to {@link #validate} once done reading
+     */
+    int readStamp()
+    {
+        return stamp.get();
+    }
+
+    /**
+     * @return whether no slot was handed to another region since the stamp was read, so the reads made in
+     * between saw the edges of the regions they asked for
+     */
+    boolean validate(int readStamp)
+    {
+        // An update rather than a read, so the plain reads of the buffer before it cannot be moved past it
+        return (readStamp & 1) == 0 && stamp.getAndAdd(0) == readStamp;
+    }
+
+    boolean isCached(int x, int y)
+    {
+        return buffer != null && slots[regionId(x, y)] != 0;
+    }
+
+    @Override
+    public boolean canMoveNorth(int x, int y, int plane)
+    {
+        return (readBits(x, y, plane) & NORTH) != 0;
+    }
+
+    @Override
+    public boolean canMoveEast(int x, int y, int plane)
+    {
+        return (readBits(x, y, plane) & EAST) != 0;
+    }
+
+    private int readBits(int x, int y, int plane)
+    {
+        final MappedByteBuffer mapped = buffer;
+        if (mapped == null || x < 0 || y < 0 || plane < 0 || plane >= PLANES)
+        {
+            return 0;
+        }
+
+        final int slot = slots[regionId(x, y)];
+        if (slot == 0)
+        {
+            return 0;
+        }
+
+        final int bit = tileBit(x, y, plane);
+        final int offset = DATA_OFFSET + (slot - 1) * SLOT_BYTES + (bit >> 3);
+        return (mapped.get(offset) >> (bit & 7)) & 3;
+    }
+
+    private static void writeBits(MappedByteBuffer mapped, int slotOffset, int bit, int bits)
+    {
+        final int offset = slotOffset + (bit >> 3);
+        final int shift = bit & 7;
+        final int current = mapped.get(offset);
+        mapped.put(offset, (byte) ((current & ~(3 << shift)) | (bits << shift)));
+    }
+
+    private int allocateSlot(MappedByteBuffer mapped, int region)
+    {
+        int slot = slots[region] - 1;
+        if (slot == -1)
+        {
+            stamp.incrementAndGet();
+            slot = findFreeOrOldestSlot(mapped);
+
+            final int evicted = mapped.getInt(HEADER_BYTES + slot * INDEX_ENTRY_BYTES);
+            if (evicted != EMPTY_REGION)
+            {
+                slots[evicted & 0xFFFF] = 0;
+            }
+
+            for (int i = 0; i < SLOT_BYTES; i += 8)
+            {
+                mapped.putLong(DATA_OFFSET + slot * SLOT_BYTES + i, 0L);
+            }
+
+            mapped.putInt(HEADER_BYTES + slot * INDEX_ENTRY_BYTES, region);
+            slots[region] = (short) (slot + 1);
+            stamp.incrementAndGet();
+        }
+
+        mapped.putInt(HEADER_BYTES + slot * INDEX_ENTRY_BYTES + 4, ++clock);
+        mapped.putInt(12, clock);
+        return slot;
+    }
+
+    private static int findFreeOrOldestSlot(MappedByteBuffer mapped)
+    {
+        int oldest = 0;
+        int oldestStamp = Integer.MAX_VALUE;
+
+        for (int slot = 0; slot < CAPACITY; slot++)
+        {
+            final int entry = HEADER_BYTES + slot * INDEX_ENTRY_BYTES;
+            if (mapped.getInt(entry) == EMPTY_REGION)
+            {
+                return slot;
+            }
+
+            final int stamp = mapped.getInt(entry + 4);
+            if (stamp < oldestStamp)
+            {
+                oldest = slot;
+                oldestStamp = stamp;
+            }
+        }
+
+        return oldest;
+    }
+
+    private static void reset(MappedByteBuffer mapped)
+    {
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, VERSION);
+        mapped.putInt(8, CAPACITY);
+        mapped.putInt(12, 0);
+
+        for (int slot = 0; slot < CAPACITY; slot++)
+        {
+            mapped.putInt(HEADER_BYTES + slot * INDEX_ENTRY_BYTES, EMPTY_REGION);
+            mapped.putInt(HEADER_BYTES + slot * INDEX_ENTRY_BYTES + 4, 0);
+        }
+    }
+
+    private static int regionId(int x, int y)
+    {
+        return ((x >> 6) & 0xFF) << 8 | ((y >> 6) & 0xFF);
+    }
+
+    private static int tileBit(int x, int y, int plane)
+    {
+        return ((plane * REGION_SIZE + (y & (REGION_SIZE - 1))) * REGION_SIZE + (x & (REGION_SIZE - 1))) * 2;
+    }
+}
@@ -0,0 +1,469 @@
+package com.iipom.mapwaypoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contraction hierarchy over a small weighted directed graph. Nodes are contracted once in order of edge
+ * difference, adding shortcuts where no witness path exists, after which shortest path queries only relax
+ * edges leading to higher ranked nodes from both ends.
+ * <p>
+ * Building is done once, queries reuse internal buffers and must not run concurrently.
+ */
+class ContractionHierarchy
+{
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int WITNESS_SETTLE_LIMIT = 256;
+    private static final int NO_MIDDLE = -1;
+
+    private final int nodeCount;
+    private final List<List<Edge>> outEdges = new ArrayList<>();
+    private final List<List<Edge>> inEdges = new ArrayList<>();
+
+    // Middle node of every edge, used to unpack shortcuts back into original edges
+    private final Map<Long, Integer> middles = new HashMap<>();
+
+    private int[] rank;
+
+    // Upward graphs in compressed sparse row form
+    private int[] forwardStart;
+    private int[] forwardTo;
+    private int[] forwardCost;
+    private int[] backwardStart;
+    private int[] backwardTo;
+    private int[] backwardCost;
+
+    private final int[] forwardDistance;
+    private final int[] forwardParent;
+    private final int[] backwardDistance;
+    private final int[] backwardParent;
+    private final int[] forwardSeen;
+    private final int[] backwardSeen;
+    private int stamp;
+    private final IntHeap heap = new IntHeap(64);
+
+    private int lastDistance = INFINITY;
+
+    ContractionHierarchy(int nodeCount)
+    {
+        this.nodeCount = nodeCount;
+        for (int i = 0; i < nodeCount; i++)
+        {
+            outEdges.add(new ArrayList<>());
+            inEdges.add(new ArrayList<>());
+        }
+
+        forwardDistance = new int[nodeCount];
+        forwardParent = new int[nodeCount];
+        backwardDistance = new int[nodeCount];
+        backwardParent = new int[nodeCount];
+        forwardSeen = new int[nodeCount];
+        backwardSeen = new int[nodeCount];
+    }
+
+    void addEdge(int from, int to, int cost)
+    {
+        addEdge(from, to, cost, NO_MIDDLE);
+    }
+
+    /**
+     * @return the total cost of the last successful query
+     */
+    int getLastDistance()
+    {
+        return lastDistance;
+    }
+
+    void build()
+    {
+        rank = new int[nodeCount];
+        final boolean[] contracted = new boolean[nodeCount];
+        final int[] contractedNeighbours = new int[nodeCount];
+        final int[] witnessDistance = new int[nodeCount];
+        Arrays.fill(witnessDistance, INFINITY);
+
+        final IntHeap order = new IntHeap(nodeCount);
+        for (int node = 0; node < nodeCount; node++)
+        {
+            order.push(node, priority(node, contracted, contractedNeighbours, witnessDistance));
+        }
+
+        int nextRank = 0;
+        while (!order.isEmpty())
+        {
+            final int node = order.poll();
+            if (contracted[node])
+            {
+                continue;
+            }
+
+            // Lazy update, the priority may have changed since neighbours were contracted
+            final int priority = priority(node, contracted, contractedNeighbours, witnessDistance);
+            if (!order.isEmpty() && priority > order.peekKey())
+            {
+                order.push(node, priority);
+                continue;
+            }
+
+            contract(node, contracted, witnessDistance, true);
+            contracted[node] = true;
+            rank[node] = nextRank++;
+
+            for (Edge edge : outEdges.get(node))
+            {
+                contractedNeighbours[edge.to]++;
+            }
+            for (Edge edge : inEdges.get(node))
+            {
+                contractedNeighbours[edge.from]++;
+            }
+        }
+
+        buildUpwardGraphs();
+    }
+
+    /**
+     * Multi-source, multi-target shortest path. Each source and target carries an initial cost, which lets
+     * callers attach arbitrary start and end points to nearby graph nodes.
+     *
+     * @return the nodes of the shortest path, from one of the sources to one of the targets, or null if
+     * no target is reachable
+     */
+    int[] query(int[] sources, int[] sourceCosts, int sourceCount, int[] targets, int[] targetCosts, int targetCount)
+    {
+        if (++stamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(forwardSeen, 0);
+            Arrays.fill(backwardSeen, 0);
+            stamp = 1;
+        }
+
+        search(sources, sourceCosts, sourceCount, forwardStart, forwardTo, forwardCost, forwardDistance, forwardParent, forwardSeen);
+        search(targets, targetCosts, targetCount, backwardStart, backwardTo, backwardCost, backwardDistance, backwardParent, backwardSeen);
+
+        int meeting = -1;
+        int best = INFINITY;
+        for (int node = 0; node < nodeCount; node++)
+        {
+            if (forwardSeen[node] == stamp && backwardSeen[node] == stamp)
+            {
+                final long total = (long) forwardDistance[node] + backwardDistance[node];
+                if (total < best)
+                {
+                    best = (int) total;
+                    meeting = node;
+                }
+            }
+        }
+
+        if (meeting == -1)
+        {
+            lastDistance = INFINITY;
+            return null;
+        }
+
+        lastDistance = best;
+
+        final List<Integer> chain = new ArrayList<>();
+        for (int node = meeting; node != -1; node = forwardParent[node])
+        {
+            chain.add(node);
+        }
+        Collections.reverse(chain);
+
+        final List<Integer> path = new ArrayList<>();
+        path.add(chain.get(0));
+        for (int i = 1; i < chain.size(); i++)
+        {
+            unpack(chain.get(i - 1), chain.get(i), path);
+        }
+
+        for (int node = meeting; backwardParent[node] != -1; node = backwardParent[node])
+        {
+            unpack(node, backwardParent[node], path);
+        }
+
+        final int[] nodes = new int[path.size()];
+        for (int i = 0; i < nodes.length; i++)
+        {
+            nodes[i] = path.get(i);
+        }
+        return nodes;
+    }
+
+    private void search(int[] starts, int[] startCosts, int startCount, int[] edgeStart, int[] edgeTo, int[] edgeCost,
+                        int[] distance, int[] parent, int[] seen)
+    {
+        heap.clear();
+        for (int i = 0; i < startCount; i++)
+        {
+            final int node = starts[i];
+            if (seen[node] != stamp || startCosts[i] < distance[node])
+            {
+                seen[node] = stamp;
+                distance[node] = startCosts[i];
+                parent[node] = -1;
+                heap.push(node, startCosts[i]);
+            }
+        }
+
+        while (!heap.isEmpty())
+        {
+            final int key = heap.peekKey();
+            final int node = heap.poll();
+            if (key != distance[node])
+            {
+                continue;
+            }
+
+            for (int e = edgeStart[node]; e < edgeStart[node + 1]; e++)
+            {
+                final int next = edgeTo[e];
+                final int nextDistance = key + edgeCost[e];
+                if (seen[next] != stamp || nextDistance < distance[next])
+                {
+                    seen[next] = stamp;
+                    distance[next] = nextDistance;
+                    parent[next] = node;
+                    heap.push(next, nextDistance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the original nodes between {@code from} (exclusive) and {@code to} (inclusive).
+     */
+    private void unpack(int from, int to, List<Integer> out)
+    {
+        final Integer middle = middles.get(edgeKey(from, to));
+        if (middle == null || middle == NO_MIDDLE)
+        {
+            out.add(to);
+            return;
+        }
+
+        unpack(from, middle, out);
+        unpack(middle, to, out);
+    }
+
+    private int priority(int node, boolean[] contracted, int[] contractedNeighbours, int[] witnessDistance)
+    {
+        final int shortcuts = contract(node, contracted, witnessDistance, false);
+        return shortcuts - outEdges.get(node).size() - inEdges.get(node).size() + contractedNeighbours[node];
+    }
+
+    /**
+     * Finds the shortcuts needed to remove {@code node} from the remaining graph, adding them when
+     * {@code apply} is set.
+     *
+     * @return the number of shortcuts needed
+     */
+    private int contract(int node, boolean[] contracted, int[] witnessDistance, boolean apply)
+    {
+        final List<Edge> shortcuts = new ArrayList<>();
+
+        for (Edge in : inEdges.get(node))
+        {
+            if (contracted[in.from])
+            {
+                continue;
+            }
+
+            int maxCost = 0;
+            for (Edge out : outEdges.get(node))
+            {
+                if (!contracted[out.to] && out.to != in.from)
+                {
+                    maxCost = Math.max(maxCost, in.cost + out.cost);
+                }
+            }
+
+            if (maxCost == 0)
+            {
+                continue;
+            }
+
+            final List<Integer> touched = witnessSearch(in.from, node, maxCost, contracted, witnessDistance);
+
+            for (Edge out : outEdges.get(node))
+            {
+                if (contracted[out.to] || out.to == in.from)
+                {
+                    continue;
+                }
+
+                final int viaNode = in.cost + out.cost;
+                if (witnessDistance[out.to] > viaNode)
+                {
+                    shortcuts.add(new Edge(in.from, out.to, viaNode, node));
+                }
+            }
+
+            for (int touchedNode : touched)
+            {
+                witnessDistance[touchedNode] = INFINITY;
+            }
+        }
+
+        if (apply)
+        {
+            for (Edge shortcut : shortcuts)
+            {
+                addEdge(shortcut.from, shortcut.to, shortcut.cost, shortcut.middle);
+            }
+        }
+
+        return shortcuts.size();
+    }
+
+    private List<Integer> witnessSearch(int source, int excluded, int maxCost, boolean[] contracted, int[] distance)
+    {
+        final List<Integer> touched = new ArrayList<>();
+        final IntHeap queue = new IntHeap(16);
+
+        distance[source] = 0;
+        touched.add(source);
+        queue.push(source, 0);
+
+        int settled = 0;
+        while (!queue.isEmpty() && settled++ < WITNESS_SETTLE_LIMIT)
+        {
+            final int key = queue.peekKey();
+            final int node = queue.poll();
+            if (key != distance[node])
+            {
+                continue;
+            }
+
+            if (key > maxCost)
+            {
+                break;
+            }
+
+            for (Edge edge : outEdges.get(node))
+            {
+                if (edge.to == excluded || contracted[edge.to])
+                {
+                    continue;
+                }
+
+                final int next = key + edge.cost;
+                if (next < distance[edge.to])
+                {
+                    if (distance[edge.to] == INFINITY)
+                    {
+                        touched.add(edge.to);
+                    }
+
+                    distance[edge.to] = next;
+                    queue.push(edge.to, next);
+                }
+            }
+        }
+
+        return touched;
+    }
+
+    private void addEdge(int from, int to, int cost, int middle)
+    {
+        for (Edge existing : outEdges.get(from))
+        {
+            if (existing.to == to)
+            {
+                if (existing.cost <= cost)
+                {
+                    return;
+                }
+
+                outEdges.get(from).remove(existing);
+                inEdges.get(to).remove(existing);
+                break;
+            }
+        }
+
+        final Edge edge = new Edge(from, to, cost, middle);
+        outEdges.get(from).add(edge);
+        inEdges.get(to).add(edge);
+        middles.put(edgeKey(from, to), middle);
+    }
+
+    private void buildUpwardGraphs()
+    {
+        forwardStart = new int[nodeCount + 1];
+        backwardStart = new int[nodeCount + 1];
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            for (Edge edge : outEdges.get(node))
+            {
+                if (rank[edge.to] > rank[edge.from])
+                {
+                    forwardStart[edge.from + 1]++;
+                }
+                else
+                {
+                    backwardStart[edge.to + 1]++;
+                }
+            }
+        }
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            forwardStart[node + 1] += forwardStart[node];
+            backwardStart[node + 1] += backwardStart[node];
+        }
+
+        forwardTo = new int[forwardStart[nodeCount]];
+        forwardCost = new int[forwardStart[nodeCount]];
+        backwardTo = new int[backwardStart[nodeCount]];
+        backwardCost = new int[backwardStart[nodeCount]];
+
+        final int[] forwardFill = Arrays.copyOf(forwardStart, nodeCount);
+        final int[] backwardFill = Arrays.copyOf(backwardStart, nodeCount);
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            for (Edge edge : outEdges.get(node))
+            {
+                if (rank[edge.to] > rank[edge.from])
+                {
+                    final int slot = forwardFill[edge.from]++;
+                    forwardTo[slot] = edge.to;
+                    forwardCost[slot] = edge.cost;
+                }
+                else
+                {
+                    final int slot = backwardFill[edge.to]++;
+                    backwardTo[slot] = edge.from;
+                    backwardCost[slot] = edge.cost;
+                }
+            }
+        }
+    }
+
+    private static long edgeKey(int from, int to)
+    {
+        return (long) from << 32 | (to & 0xFFFFFFFFL);
+    }
+
+    private static class Edge
+    {
+        private final int from;
+        private final int to;
+        private final int cost;
+        private final int middle;
+
+        Edge(int from, int to, int cost, int middle)
+        {
+            this.from = from;
+            this.to = to;
+            this.cost = cost;
+            this.middle = middle;
+        }
+    }
+}
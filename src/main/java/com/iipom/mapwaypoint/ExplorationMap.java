@@ -0,0 +1,287 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Remembers every tile the player has stood on, in a {@link TileBitmap} per map region. Like the world map it
+ * has no planes. The tiles are saved to a file every few minutes of walking and on shutdown, written out on the
+ * executor from a copy taken on the client thread. Clients on the same machine share the file, so each write
+ * holds a lock on a separate lock file and adds the tiles already in the file to its own before replacing it.
+ * {@link #load} reads them back on the executor, and the next tick merges them with any tiles walked in the
+ * meantime. Apart from loading and writing, all access is expected on the client thread.
+ */
+@Slf4j
+@Singleton
+public class ExplorationMap
+{
+    private static final String FILE_NAME = "exploration.dat";
+    private static final String LOCK_FILE = "exploration.lock";
+    private static final int MAGIC = 0x4D574558;
+    private static final int VERSION = 1;
+    private static final int SAVE_INTERVAL_TICKS = 200;
+
+    private final ScheduledExecutorService executor;
+    private final File directory;
+    private final Map<Integer, TileBitmap> regions = new HashMap<>();
+    private final AtomicReference<Map<Integer, TileBitmap>> loaded = new AtomicReference<>();
+
+    // Nothing is saved before the file has been read, which would lose what it holds
+    private boolean merged;
+    private boolean dirty;
+    private int ticksSinceSave;
+
+    // The region of the last tile recorded, which the player usually is still in
+    private int lastKey = -1;
+    private TileBitmap lastRegion;
+
+    @Inject
+    private ExplorationMap(ScheduledExecutorService executor)
+    {
+        this(executor, MapWaypointPlugin.WAYPOINT_DIR);
+    }
+
+    ExplorationMap(ScheduledExecutorService executor, File directory)
+    {
+        this.executor = executor;
+        this.directory = directory;
+    }
+
+    static int regionKey(int regionX, int regionY)
+    {
+        return regionX << 8 | regionY;
+    }
+
+    /**
+     * @return the region's walked tiles, or null if none of them have been walked
+     */
+    TileBitmap getRegion(int regionX, int regionY)
+    {
+        return regions.get(regionKey(regionX, regionY));
+    }
+
+    int getRegionCount()
+    {
+        return regions.size();
+    }
+
+    /**
+     * Records the player's tile, and saves every so often. Called on the client thread once per tick.
+     */
+    void update(int x, int y)
+    {
+        final Map<Integer, TileBitmap> read = loaded.getAndSet(null);
+        if (read != null)
+        {
+            merge(read);
+        }
+
+        record(x, y);
+
+        if (dirty && ++ticksSinceSave >= SAVE_INTERVAL_TICKS)
+        {
+            save();
+        }
+    }
+
+    /**
+     * @return whether the tile had not been walked before
+     */
+    boolean record(int x, int y)
+    {
+        final int key = regionKey(x >> 6, y >> 6);
+        if (key != lastKey)
+        {
+            lastRegion = regions.computeIfAbsent(key, k -> new TileBitmap());
+            lastKey = key;
+        }
+
+        if (lastRegion.add(x & 63, y & 63))
+        {
+            dirty = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hands a copy of the walked tiles to the executor to be written, if there are any new ones since the last
+     * save. Called on the client thread.
+     */
+    void save()
+    {
+        if (!merged || !dirty)
+        {
+            return;
+        }
+
+        final byte[] data;
+        try
+        {
+            data = serialize(regions);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+
+        dirty = false;
+        ticksSinceSave = 0;
+        executor.execute(() -> write(data));
+    }
+
+    void clear()
+    {
+        regions.clear();
+        loaded.set(null);
+        merged = false;
+        dirty = false;
+        ticksSinceSave = 0;
+        lastKey = -1;
+        lastRegion = null;
+    }
+
+    /**
+     * Reads the saved tiles. Performs file IO and should not be called on the client thread.
+     */
+    void load()
+    {
+        final File file = new File(directory, FILE_NAME);
+        final Map<Integer, TileBitmap> read = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            readRegions(in, read);
+        }
+        catch (FileNotFoundException e)
+        {
+            // Nothing walked yet
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to read explored tiles from {}, starting over", file, e);
+            read.clear();
+        }
+
+        loaded.set(read);
+    }
+
+    private void merge(Map<Integer, TileBitmap> read)
+    {
+        for (Map.Entry<Integer, TileBitmap> entry : read.entrySet())
+        {
+            final TileBitmap walked = regions.get(entry.getKey());
+            if (walked == null)
+            {
+                regions.put(entry.getKey(), entry.getValue());
+            }
+            else
+            {
+                walked.addAll(entry.getValue());
+            }
+        }
+
+        // The region of the last tile may have been replaced
+        lastKey = -1;
+        merged = true;
+    }
+
+    /**
+     * Reads the regions written by {@link #serialize}, adding their tiles to any already in the map.
+     */
+    private static void readRegions(DataInputStream in, Map<Integer, TileBitmap> regions) throws IOException
+    {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        {
+            throw new IOException("Not an exploration file");
+        }
+
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++)
+        {
+            final int key = in.readInt();
+            final TileBitmap region = TileBitmap.read(in);
+            final TileBitmap existing = regions.putIfAbsent(key, region);
+            if (existing != null)
+            {
+                existing.addAll(region);
+            }
+        }
+    }
+
+    private static byte[] serialize(Map<Integer, TileBitmap> regions) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(regions.size());
+        for (Map.Entry<Integer, TileBitmap> entry : regions.entrySet())
+        {
+            out.writeInt(entry.getKey());
+            entry.getValue().write(out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void write(byte[] data)
+    {
+        directory.mkdirs();
+        final File file = new File(directory, FILE_NAME);
+        try (FileChannel lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lockChannel.lock())
+        {
+            // Another client may have saved tiles since this one read the file
+            final Map<Integer, TileBitmap> merged = new HashMap<>();
+            if (file.exists())
+            {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+                {
+                    readRegions(in, merged);
+                }
+                catch (IOException e)
+                {
+                    log.warn("Replacing unreadable explored tiles in {}", file, e);
+                    merged.clear();
+                }
+            }
+            readRegions(new DataInputStream(new ByteArrayInputStream(data)), merged);
+
+            final Path temp = Files.createTempFile(directory.toPath(), FILE_NAME, ".tmp");
+            try
+            {
+                Files.write(temp, serialize(merged));
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally
+            {
+                Files.deleteIfExists(temp);
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to save explored tiles to {}", file, e);
+        }
+    }
+}
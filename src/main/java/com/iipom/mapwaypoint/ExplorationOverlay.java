@@ -0,0 +1,146 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayLayer;
+import net.runelite.client.ui.overlay.OverlayPosition;
+
+import javax.inject.Inject;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shades the walked tiles on the world map. Each region in view is drawn from an image of its walked tiles at
+ * the current zoom, kept in a least recently used cache until the region has been walked further, so a frame
+ * usually just copies a few images.
+ */
+public class ExplorationOverlay extends Overlay
+{
+    private static final int MAX_CACHED_IMAGES = 256;
+
+    // Index 0 is clear, index 1 the walked tile shade
+    private static final IndexColorModel COLORS = new IndexColorModel(1, 2,
+            new byte[]{0, 0}, new byte[]{0, (byte) 200}, new byte[]{0, 60}, new byte[]{0, 90});
+    private static final Color WALKED_COLOR = new Color(COLORS.getRGB(1), true);
+
+    private final ExplorationMap explorationMap;
+    private final WorldMapGeometry worldMapGeometry;
+    private final long[] rows = new long[TileBitmap.SIZE];
+
+    private final Map<Long, RegionImage> images = new LinkedHashMap<Long, RegionImage>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RegionImage> eldest)
+        {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    @Inject
+    private ExplorationOverlay(ExplorationMap explorationMap, WorldMapGeometry worldMapGeometry)
+    {
+        this.explorationMap = explorationMap;
+        this.worldMapGeometry = worldMapGeometry;
+        setPosition(OverlayPosition.DYNAMIC);
+        setLayer(OverlayLayer.ABOVE_MAP);
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        if (explorationMap.getRegionCount() == 0 || !worldMapGeometry.isOpen())
+        {
+            return null;
+        }
+
+        final Rectangle bounds = worldMapGeometry.getBounds();
+        final float zoom = worldMapGeometry.getZoom();
+        final int minRegionX = worldMapGeometry.toWorldX(bounds.x) >> 6;
+        final int maxRegionX = worldMapGeometry.toWorldX(bounds.x + bounds.width) >> 6;
+        final int minRegionY = worldMapGeometry.toWorldY(bounds.y + bounds.height) >> 6;
+        final int maxRegionY = worldMapGeometry.toWorldY(bounds.y) >> 6;
+
+        final Shape clip = graphics.getClip();
+        graphics.clip(bounds);
+        for (int regionX = Math.max(0, minRegionX); regionX <= Math.min(255, maxRegionX); regionX++)
+        {
+            for (int regionY = Math.max(0, minRegionY); regionY <= Math.min(255, maxRegionY); regionY++)
+            {
+                final TileBitmap walked = explorationMap.getRegion(regionX, regionY);
+                if (walked == null)
+                {
+                    continue;
+                }
+
+                final int left = worldMapGeometry.toCanvasLeft(regionX << 6);
+                final int top = worldMapGeometry.toCanvasTop((regionY << 6) + TileBitmap.SIZE - 1);
+                graphics.drawImage(getImage(ExplorationMap.regionKey(regionX, regionY), walked, zoom), left, top, null);
+            }
+        }
+        graphics.setClip(clip);
+
+        return null;
+    }
+
+    private BufferedImage getImage(int regionKey, TileBitmap walked, float zoom)
+    {
+        final long key = (long) regionKey << 32 | (Float.floatToIntBits(zoom) & 0xFFFFFFFFL);
+        final RegionImage cached = images.get(key);
+        if (cached != null && cached.walked == walked && cached.version == walked.getVersion())
+        {
+            return cached.image;
+        }
+
+        final BufferedImage image = rasterize(walked, zoom);
+        images.put(key, new RegionImage(image, walked, walked.getVersion()));
+        return image;
+    }
+
+    /**
+     * Draws the walked tiles a row at a time, each run of them along the row as one rectangle. Rows go from the
+     * top of the image down, which is north to south.
+     */
+    private BufferedImage rasterize(TileBitmap walked, float zoom)
+    {
+        final int size = (int) Math.ceil(TileBitmap.SIZE * zoom);
+        final BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_BYTE_BINARY, COLORS);
+        final Graphics2D graphics = image.createGraphics();
+        graphics.setComposite(AlphaComposite.Src);
+        graphics.setColor(WALKED_COLOR);
+
+        walked.getRows(rows);
+        for (int y = 0; y < TileBitmap.SIZE; y++)
+        {
+            final int top = (int) ((TileBitmap.SIZE - 1 - y) * zoom);
+            final int bottom = (int) ((TileBitmap.SIZE - y) * zoom);
+            long row = rows[y];
+            while (row != 0)
+            {
+                final int start = Long.numberOfTrailingZeros(row);
+                final int end = start + Long.numberOfTrailingZeros(~(row >>> start));
+                final int left = (int) (start * zoom);
+                graphics.fillRect(left, top, (int) (end * zoom) - left, bottom - top);
+                row = end < TileBitmap.SIZE ? row & (-1L << end) : 0;
+            }
+        }
+
+        graphics.dispose();
+        return image;
+    }
+
+    private static final class RegionImage
+    {
+        private final BufferedImage image;
+        private final TileBitmap walked;
+        private final int version;
+
+        RegionImage(BufferedImage image, TileBitmap walked, int version)
+        {
+            this.image = image;
+            this.walked = walked;
+            this.version = version;
+        }
+    }
+}
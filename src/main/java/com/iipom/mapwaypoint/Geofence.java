@@ -0,0 +1,170 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * An area of the world map outlined by a polygon through tile positions, including the tiles its edges pass
+ * over. Like the world map it has no plane: a tile is inside on every plane or none.
+ */
+final class Geofence
+{
+    private final int[] xs;
+    private final int[] ys;
+    private final int minX;
+    private final int minY;
+    private final int maxX;
+    private final int maxY;
+
+    private Geofence(int[] xs, int[] ys)
+    {
+        if (xs.length != ys.length || xs.length < 3)
+        {
+            throw new IllegalArgumentException("A geofence needs at least three corners");
+        }
+
+        this.xs = xs;
+        this.ys = ys;
+
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < xs.length; i++)
+        {
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    static Geofence polygon(int[] xs, int[] ys)
+    {
+        return new Geofence(xs.clone(), ys.clone());
+    }
+
+    /**
+     * Reads a geofence written by {@link #encode}.
+     *
+     * @throws IllegalArgumentException if the text is not a geofence
+     */
+    static Geofence decode(String text)
+    {
+        final String[] corners = text.trim().split(" ");
+        final int[] xs = new int[corners.length];
+        final int[] ys = new int[corners.length];
+        for (int i = 0; i < corners.length; i++)
+        {
+            final int comma = corners[i].indexOf(',');
+            if (comma == -1)
+            {
+                throw new IllegalArgumentException("Not a geofence corner: " + corners[i]);
+            }
+
+            xs[i] = Integer.parseInt(corners[i].substring(0, comma));
+            ys[i] = Integer.parseInt(corners[i].substring(comma + 1));
+        }
+
+        return new Geofence(xs, ys);
+    }
+
+    /**
+     * @return the corners as space separated {@code x,y} pairs
+     */
+    String encode()
+    {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < xs.length; i++)
+        {
+            if (i > 0)
+            {
+                text.append(' ');
+            }
+            text.append(xs[i]).append(',').append(ys[i]);
+        }
+        return text.toString();
+    }
+
+    int getCornerCount()
+    {
+        return xs.length;
+    }
+
+    int getX(int corner)
+    {
+        return xs[corner];
+    }
+
+    int getY(int corner)
+    {
+        return ys[corner];
+    }
+
+    int getMinX()
+    {
+        return minX;
+    }
+
+    int getMinY()
+    {
+        return minY;
+    }
+
+    int getMaxX()
+    {
+        return maxX;
+    }
+
+    int getMaxY()
+    {
+        return maxY;
+    }
+
+    /**
+     * Tests a tile against the polygon itself. {@link GeofenceIndex} answers this from a bitmap instead.
+     */
+    boolean contains(int x, int y)
+    {
+        if (x < minX || x > maxX || y < minY || y > maxY)
+        {
+            return false;
+        }
+
+        boolean inside = false;
+        for (int i = 0, j = xs.length - 1; i < xs.length; j = i++)
+        {
+            if (isOnEdge(x, y, xs[j], ys[j], xs[i], ys[i]))
+            {
+                return true;
+            }
+
+            // Even-odd rule, counting the crossings of a ray to the east
+            if ((ys[i] > y) != (ys[j] > y)
+                    && x < (double) (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i])
+            {
+                inside = !inside;
+            }
+        }
+
+        return inside;
+    }
+
+    /**
+     * @return whether the edge passes within half a tile of the tile's centre, along either axis
+     */
+    private static boolean isOnEdge(int x, int y, int x1, int y1, int x2, int y2)
+    {
+        if (x < Math.min(x1, x2) || x > Math.max(x1, x2) || y < Math.min(y1, y2) || y > Math.max(y1, y2))
+        {
+            return false;
+        }
+
+        final long dx = x2 - x1;
+        final long dy = y2 - y1;
+        final long cross = dx * (y - y1) - dy * (x - x1);
+        return 2 * Math.abs(cross) <= Math.max(Math.abs(dx), Math.abs(dy));
+    }
+}
@@ -0,0 +1,429 @@
+package com.iipom.mapwaypoint;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Holds the geofences by a stable id, bucketed by the 64x64 map regions they overlap. Each bucket keeps, per
+ * fence, a bitmap of the region's tiles inside it with a row of 64 bits per y, worked out the first time a tile
+ * of the region is looked up, so adding a fence only costs a bucket entry per region. Whether a tile is inside a
+ * fence is then one bit test, and a check of the player's tile only visits the fences of their region. Not
+ * thread-safe, all access is expected on the client thread.
+ */
+public class GeofenceIndex
+{
+    private static final int REGION_SHIFT = 6;
+    private static final int REGION_SIZE = 1 << REGION_SHIFT;
+    private static final int REGION_MASK = REGION_SIZE - 1;
+
+    // Shared by every fence that covers a whole region, or none of it
+    private static final long[] FULL_REGION = full();
+    private static final long[] EMPTY_REGION = new long[REGION_SIZE];
+
+    private Geofence[] fences = new Geofence[16];
+    private int size;
+
+    // Slots freed by remove, reused before the array grows
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int highestId;
+
+    private final RegionIndex regions = new RegionIndex();
+
+    // The region of the last check and its bucket, which stays the same while the player is in it
+    private int checkedRegion = -1;
+    private Bucket checkedBucket;
+
+    // Fences the player was in at the last check, and the scratch for the next one
+    private int[] inside = new int[8];
+    private int insideCount;
+    private int[] next = new int[8];
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public boolean contains(int id)
+    {
+        return id >= 0 && id < highestId && fences[id] != null;
+    }
+
+    public Geofence get(int id)
+    {
+        return fences[id];
+    }
+
+    /**
+     * @return the highest id handed out so far plus one, to iterate ids below it with {@link #contains}
+     */
+    public int idLimit()
+    {
+        return highestId;
+    }
+
+    public int add(Geofence fence)
+    {
+        final int id = allocateId();
+        fences[id] = fence;
+        size++;
+
+        for (int regionX = fence.getMinX() >> REGION_SHIFT; regionX <= fence.getMaxX() >> REGION_SHIFT; regionX++)
+        {
+            for (int regionY = fence.getMinY() >> REGION_SHIFT; regionY <= fence.getMaxY() >> REGION_SHIFT; regionY++)
+            {
+                regions.add(regionX << 8 | regionY, id);
+            }
+        }
+
+        checkedRegion = -1;
+        return id;
+    }
+
+    /**
+     * Removes a fence. The player is not told they left it.
+     */
+    public boolean remove(int id)
+    {
+        if (!contains(id))
+        {
+            return false;
+        }
+
+        final Geofence fence = fences[id];
+        for (int regionX = fence.getMinX() >> REGION_SHIFT; regionX <= fence.getMaxX() >> REGION_SHIFT; regionX++)
+        {
+            for (int regionY = fence.getMinY() >> REGION_SHIFT; regionY <= fence.getMaxY() >> REGION_SHIFT; regionY++)
+            {
+                regions.remove(regionX << 8 | regionY, id);
+            }
+        }
+
+        for (int i = 0; i < insideCount; i++)
+        {
+            if (inside[i] == id)
+            {
+                inside[i] = inside[--insideCount];
+                break;
+            }
+        }
+
+        fences[id] = null;
+        size--;
+        checkedRegion = -1;
+
+        if (freeCount == freeIds.length)
+        {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        return true;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(fences, null);
+        regions.clear();
+        size = 0;
+        freeCount = 0;
+        highestId = 0;
+        insideCount = 0;
+        checkedRegion = -1;
+        checkedBucket = null;
+    }
+
+    /**
+     * @return the id of a fence the tile is inside, or -1 if there is none
+     */
+    public int find(int x, int y)
+    {
+        final Bucket bucket = rasterized(regionKey(x, y));
+        if (bucket == null)
+        {
+            return -1;
+        }
+
+        for (int i = 0; i < bucket.count; i++)
+        {
+            if (isSet(bucket.rows[i], x, y))
+            {
+                return bucket.ids[i];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Moves the player to a tile, handing the ids of the fences they have entered and left since the last check
+     * to the given consumers.
+     */
+    public void check(int x, int y, IntConsumer entered, IntConsumer left)
+    {
+        final int region = regionKey(x, y);
+        if (region != checkedRegion)
+        {
+            checkedRegion = region;
+            checkedBucket = rasterized(region);
+        }
+
+        int nextCount = 0;
+        final Bucket bucket = checkedBucket;
+        if (bucket != null)
+        {
+            if (next.length < bucket.count)
+            {
+                next = new int[bucket.count];
+            }
+
+            for (int i = 0; i < bucket.count; i++)
+            {
+                if (isSet(bucket.rows[i], x, y))
+                {
+                    next[nextCount++] = bucket.ids[i];
+                }
+            }
+        }
+
+        for (int i = 0; i < insideCount; i++)
+        {
+            if (indexOf(next, nextCount, inside[i]) == -1)
+            {
+                left.accept(inside[i]);
+            }
+        }
+
+        for (int i = 0; i < nextCount; i++)
+        {
+            if (indexOf(inside, insideCount, next[i]) == -1)
+            {
+                entered.accept(next[i]);
+            }
+        }
+
+        final int[] previous = inside;
+        inside = next;
+        insideCount = nextCount;
+        next = previous;
+    }
+
+    /**
+     * @return the region's bucket with the bitmaps of any fences added since it was last looked up worked out,
+     * or null if no fence overlaps the region
+     */
+    private Bucket rasterized(int region)
+    {
+        final Bucket bucket = regions.get(region);
+        if (bucket != null)
+        {
+            final int baseX = (region >> 8) << REGION_SHIFT;
+            final int baseY = (region & 0xFF) << REGION_SHIFT;
+            for (int i = 0; i < bucket.count; i++)
+            {
+                if (bucket.rows[i] == null)
+                {
+                    bucket.rows[i] = rasterize(fences[bucket.ids[i]], baseX, baseY);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    /**
+     * @return a row per y of the region's tiles inside the fence
+     */
+    private static long[] rasterize(Geofence fence, int baseX, int baseY)
+    {
+        final int minX = Math.max(fence.getMinX(), baseX);
+        final int maxX = Math.min(fence.getMaxX(), baseX + REGION_MASK);
+        final int minY = Math.max(fence.getMinY(), baseY);
+        final int maxY = Math.min(fence.getMaxY(), baseY + REGION_MASK);
+
+        final long[] rows = new long[REGION_SIZE];
+        boolean any = false;
+        boolean full = minX == baseX && maxX == baseX + REGION_MASK && minY == baseY && maxY == baseY + REGION_MASK;
+
+        for (int y = minY; y <= maxY; y++)
+        {
+            long row = 0;
+            for (int x = minX; x <= maxX; x++)
+            {
+                if (fence.contains(x, y))
+                {
+                    row |= 1L << (x - baseX);
+                }
+            }
+
+            rows[y - baseY] = row;
+            any |= row != 0;
+            full &= row == -1L;
+        }
+
+        return full ? FULL_REGION : any ? rows : EMPTY_REGION;
+    }
+
+    private static boolean isSet(long[] rows, int x, int y)
+    {
+        return (rows[y & REGION_MASK] >>> (x & REGION_MASK) & 1) != 0;
+    }
+
+    private static int indexOf(int[] ids, int count, int id)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (ids[i] == id)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int allocateId()
+    {
+        if (freeCount > 0)
+        {
+            return freeIds[--freeCount];
+        }
+
+        if (highestId == fences.length)
+        {
+            fences = Arrays.copyOf(fences, highestId * 2);
+        }
+
+        return highestId++;
+    }
+
+    private static int regionKey(int x, int y)
+    {
+        return (x >> REGION_SHIFT) << 8 | (y >> REGION_SHIFT);
+    }
+
+    private static long[] full()
+    {
+        final long[] rows = new long[REGION_SIZE];
+        Arrays.fill(rows, -1L);
+        return rows;
+    }
+
+    private static class Bucket
+    {
+        private int[] ids = new int[4];
+        // Null for a fence until a tile of the region is looked up
+        private long[][] rows = new long[4][];
+        private int count;
+    }
+
+    /**
+     * Open-addressing map from region id to the bucket of fences overlapping that region.
+     */
+    private static class RegionIndex
+    {
+        private int[] keys = new int[64];
+        private Bucket[] buckets = new Bucket[64];
+        private int used;
+
+        Bucket get(int key)
+        {
+            final int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; buckets[slot] != null; slot = (slot + 1) & mask)
+            {
+                if (keys[slot] == key)
+                {
+                    return buckets[slot];
+                }
+            }
+
+            return null;
+        }
+
+        void add(int key, int id)
+        {
+            Bucket bucket = get(key);
+            if (bucket == null)
+            {
+                bucket = new Bucket();
+                insert(key, bucket);
+            }
+
+            if (bucket.count == bucket.ids.length)
+            {
+                bucket.ids = Arrays.copyOf(bucket.ids, bucket.count * 2);
+                bucket.rows = Arrays.copyOf(bucket.rows, bucket.count * 2);
+            }
+            bucket.ids[bucket.count] = id;
+            bucket.rows[bucket.count] = null;
+            bucket.count++;
+        }
+
+        void remove(int key, int id)
+        {
+            final Bucket bucket = get(key);
+            if (bucket == null)
+            {
+                return;
+            }
+
+            for (int i = 0; i < bucket.count; i++)
+            {
+                if (bucket.ids[i] == id)
+                {
+                    bucket.count--;
+                    bucket.ids[i] = bucket.ids[bucket.count];
+                    bucket.rows[i] = bucket.rows[bucket.count];
+                    bucket.rows[bucket.count] = null;
+                    return;
+                }
+            }
+        }
+
+        void clear()
+        {
+            Arrays.fill(buckets, null);
+            used = 0;
+        }
+
+        private void insert(int key, Bucket bucket)
+        {
+            if ((used + 1) * 2 > keys.length)
+            {
+                final int[] oldKeys = keys;
+                final Bucket[] oldBuckets = buckets;
+                keys = new int[oldKeys.length * 2];
+                buckets = new Bucket[oldBuckets.length * 2];
+                used = 0;
+
+                for (int i = 0; i < oldKeys.length; i++)
+                {
+                    if (oldBuckets[i] != null)
+                    {
+                        insert(oldKeys[i], oldBuckets[i]);
+                    }
+                }
+            }
+
+            final int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (buckets[slot] != null)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            buckets[slot] = bucket;
+            used++;
+        }
+
+        private static int mix(int key)
+        {
+            final int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
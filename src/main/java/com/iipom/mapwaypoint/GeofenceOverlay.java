@@ -0,0 +1,78 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayLayer;
+import net.runelite.client.ui.overlay.OverlayPosition;
+
+import javax.inject.Inject;
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+/**
+ * Outlines the marked areas in view on the world map, all in one shape.
+ */
+public class GeofenceOverlay extends Overlay
+{
+    private static final Color OUTLINE_COLOR = new Color(255, 200, 0);
+    private static final Stroke OUTLINE_STROKE = new BasicStroke(2);
+
+    private final MapWaypointPlugin plugin;
+    private final WorldMapGeometry worldMapGeometry;
+    private final Path2D.Float outlines = new Path2D.Float();
+
+    @Inject
+    private GeofenceOverlay(MapWaypointPlugin plugin, WorldMapGeometry worldMapGeometry)
+    {
+        this.plugin = plugin;
+        this.worldMapGeometry = worldMapGeometry;
+        setPosition(OverlayPosition.DYNAMIC);
+        setLayer(OverlayLayer.ABOVE_MAP);
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        final GeofenceIndex geofences = plugin.getGeofences();
+        if (geofences.isEmpty() || !worldMapGeometry.isOpen())
+        {
+            return null;
+        }
+
+        final Rectangle bounds = worldMapGeometry.getBounds();
+        final int minX = worldMapGeometry.toWorldX(bounds.x);
+        final int maxX = worldMapGeometry.toWorldX(bounds.x + bounds.width);
+        final int minY = worldMapGeometry.toWorldY(bounds.y + bounds.height);
+        final int maxY = worldMapGeometry.toWorldY(bounds.y);
+
+        outlines.reset();
+        for (int id = 0; id < geofences.idLimit(); id++)
+        {
+            if (!geofences.contains(id))
+            {
+                continue;
+            }
+
+            final Geofence fence = geofences.get(id);
+            if (fence.getMaxX() < minX || fence.getMinX() > maxX || fence.getMaxY() < minY || fence.getMinY() > maxY)
+            {
+                continue;
+            }
+
+            outlines.moveTo(worldMapGeometry.toCanvasX(fence.getX(0)), worldMapGeometry.toCanvasY(fence.getY(0)));
+            for (int i = 1; i < fence.getCornerCount(); i++)
+            {
+                outlines.lineTo(worldMapGeometry.toCanvasX(fence.getX(i)), worldMapGeometry.toCanvasY(fence.getY(i)));
+            }
+            outlines.closePath();
+        }
+
+        final Shape clip = graphics.getClip();
+        graphics.clip(bounds);
+        graphics.setColor(OUTLINE_COLOR);
+        graphics.setStroke(OUTLINE_STROKE);
+        graphics.draw(outlines);
+        graphics.setClip(clip);
+
+        return null;
+    }
+}
@@ -0,0 +1,131 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves the geofences to a file, a line of {@link Geofence#encode} corners per fence. {@link #load} reads them on
+ * the executor and publishes them for the client thread to take with {@link #takeLoaded()}. {@link #save} takes
+ * the fences on the client thread and writes them on the executor; fences are immutable, so the list is all
+ * that is copied.
+ */
+@Slf4j
+@Singleton
+public class GeofenceStore
+{
+    private static final String FILE_NAME = "geofences.txt";
+
+    private final ScheduledExecutorService executor;
+    private final File directory;
+    private final AtomicReference<List<Geofence>> loaded = new AtomicReference<>();
+
+    @Inject
+    private GeofenceStore(ScheduledExecutorService executor)
+    {
+        this(executor, MapWaypointPlugin.WAYPOINT_DIR);
+    }
+
+    GeofenceStore(ScheduledExecutorService executor, File directory)
+    {
+        this.executor = executor;
+        this.directory = directory;
+    }
+
+    /**
+     * @return the fences read by the last {@link #load}, or null if they have already been taken or are not
+     * read yet
+     */
+    List<Geofence> takeLoaded()
+    {
+        return loaded.getAndSet(null);
+    }
+
+    void clear()
+    {
+        loaded.set(null);
+    }
+
+    /**
+     * Reads the saved fences. Performs file IO and should not be called on the client thread.
+     */
+    void load()
+    {
+        final File file = new File(directory, FILE_NAME);
+        final List<Geofence> read = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                if (line.isEmpty())
+                {
+                    continue;
+                }
+
+                try
+                {
+                    read.add(Geofence.decode(line));
+                }
+                catch (IllegalArgumentException e)
+                {
+                    log.warn("Skipping unreadable geofence {}", line, e);
+                }
+            }
+        }
+        catch (NoSuchFileException e)
+        {
+            // No fences marked yet
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to read geofences from {}", file, e);
+        }
+
+        loaded.set(read);
+    }
+
+    /**
+     * Hands the fences to the executor to be written. Called on the client thread.
+     */
+    void save(List<Geofence> fences)
+    {
+        executor.execute(() -> write(fences));
+    }
+
+    private void write(List<Geofence> fences)
+    {
+        directory.mkdirs();
+        final File file = new File(directory, FILE_NAME);
+        final File temp = new File(directory, FILE_NAME + ".tmp");
+        try
+        {
+            try (Writer out = Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))
+            {
+                for (Geofence fence : fences)
+                {
+                    out.write(fence.encode());
+                    out.write('\n');
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to save geofences to {}", file, e);
+        }
+    }
+}
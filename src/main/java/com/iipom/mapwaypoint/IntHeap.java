@@ -0,0 +1,96 @@
+package com.iipom.mapwaypoint;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of int values ordered by int keys, without boxing. Decrease-key is not supported,
+ * callers push duplicates and skip stale entries when they are polled.
+ */
+class IntHeap
+{
+    private int[] values;
+    private int[] keys;
+    private int size;
+
+    IntHeap(int capacity)
+    {
+        values = new int[capacity];
+        keys = new int[capacity];
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    void clear()
+    {
+        size = 0;
+    }
+
+    int peekKey()
+    {
+        return keys[0];
+    }
+
+    void push(int value, int key)
+    {
+        if (size == values.length)
+        {
+            values = Arrays.copyOf(values, size * 2);
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+
+        int i = size++;
+        while (i > 0)
+        {
+            final int parent = (i - 1) >> 1;
+            if (keys[parent] <= key)
+            {
+                break;
+            }
+
+            values[i] = values[parent];
+            keys[i] = keys[parent];
+            i = parent;
+        }
+
+        values[i] = value;
+        keys[i] = key;
+    }
+
+    int poll()
+    {
+        final int top = values[0];
+        final int lastValue = values[--size];
+        final int lastKey = keys[size];
+
+        int i = 0;
+        while (true)
+        {
+            int child = 2 * i + 1;
+            if (child >= size)
+            {
+                break;
+            }
+
+            if (child + 1 < size && keys[child + 1] < keys[child])
+            {
+                child++;
+            }
+
+            if (keys[child] >= lastKey)
+            {
+                break;
+            }
+
+            values[i] = values[child];
+            keys[i] = keys[child];
+            i = child;
+        }
+
+        values[i] = lastValue;
+        keys[i] = lastKey;
+        return top;
+    }
+}
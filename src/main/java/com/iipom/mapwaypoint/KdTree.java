@@ -0,0 +1,298 @@
+package com.iipom.mapwaypoint;
+
+import java.util.Arrays;
+
+/**
+ * Two-dimensional k-d tree over int ids, answering nearest-neighbour queries by Chebyshev distance.
+ * Points are inserted as new leaves and removed by marking their node dead. The tree is rebuilt balanced
+ * once half of its nodes are dead or an insertion lands too deep, which keeps queries logarithmic.
+ */
+class KdTree
+{
+    private static final int NONE = -1;
+
+    private int[] ids = new int[16];
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private boolean[] dead = new boolean[16];
+    private int root = NONE;
+    private int nodeCount;
+    private int live;
+
+    // Node of each id, or NONE
+    private int[] nodeOf = new int[16];
+
+    // Scratch for queries and rebuilds
+    private int best;
+    private int bestDistance;
+    private int[] order = new int[16];
+
+    KdTree()
+    {
+        Arrays.fill(nodeOf, NONE);
+    }
+
+    int size()
+    {
+        return live;
+    }
+
+    boolean contains(int id)
+    {
+        return id < nodeOf.length && nodeOf[id] != NONE;
+    }
+
+    void insert(int id, int x, int y)
+    {
+        if (contains(id))
+        {
+            remove(id);
+        }
+
+        final int node = allocate(id, x, y);
+        live++;
+
+        if (root == NONE)
+        {
+            root = node;
+            return;
+        }
+
+        int parent = root;
+        int depth = 0;
+        while (true)
+        {
+            final boolean goLeft = (depth & 1) == 0 ? x < xs[parent] : y < ys[parent];
+            final int child = goLeft ? left[parent] : right[parent];
+            depth++;
+
+            if (child == NONE)
+            {
+                if (goLeft)
+                {
+                    left[parent] = node;
+                }
+                else
+                {
+                    right[parent] = node;
+                }
+                break;
+            }
+            parent = child;
+        }
+
+        if (depth > 2 * (32 - Integer.numberOfLeadingZeros(live)) + 4)
+        {
+            rebuild();
+        }
+    }
+
+    boolean remove(int id)
+    {
+        if (!contains(id))
+        {
+            return false;
+        }
+
+        dead[nodeOf[id]] = true;
+        nodeOf[id] = NONE;
+        live--;
+
+        if (live == 0)
+        {
+            clear();
+        }
+        else if (live * 2 < nodeCount)
+        {
+            rebuild();
+        }
+        return true;
+    }
+
+    void clear()
+    {
+        for (int i = 0; i < nodeCount; i++)
+        {
+            if (!dead[i])
+            {
+                nodeOf[ids[i]] = NONE;
+            }
+        }
+
+        root = NONE;
+        nodeCount = 0;
+        live = 0;
+    }
+
+    /**
+     * @return the id nearest to the given tile, or -1 if the tree is empty
+     */
+    int nearest(int x, int y)
+    {
+        best = NONE;
+        bestDistance = Integer.MAX_VALUE;
+        nearest(root, 0, x, y);
+        return best;
+    }
+
+    /**
+     * @return the Chebyshev distance of the point found by the last call to {@link #nearest}
+     */
+    int nearestDistance()
+    {
+        return bestDistance;
+    }
+
+    private void nearest(int node, int depth, int x, int y)
+    {
+        if (node == NONE)
+        {
+            return;
+        }
+
+        if (!dead[node])
+        {
+            final int distance = Math.max(Math.abs(xs[node] - x), Math.abs(ys[node] - y));
+            if (distance < bestDistance)
+            {
+                bestDistance = distance;
+                best = ids[node];
+            }
+        }
+
+        // Everything on the far side of the split is at least as far away as the split itself
+        final int diff = (depth & 1) == 0 ? x - xs[node] : y - ys[node];
+        final int near = diff < 0 ? left[node] : right[node];
+        final int far = diff < 0 ? right[node] : left[node];
+
+        nearest(near, depth + 1, x, y);
+        if (Math.abs(diff) < bestDistance)
+        {
+            nearest(far, depth + 1, x, y);
+        }
+    }
+
+    private int allocate(int id, int x, int y)
+    {
+        if (nodeCount == ids.length)
+        {
+            final int capacity = nodeCount * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            left = Arrays.copyOf(left, capacity);
+            right = Arrays.copyOf(right, capacity);
+            dead = Arrays.copyOf(dead, capacity);
+        }
+
+        if (id >= nodeOf.length)
+        {
+            final int oldLength = nodeOf.length;
+            nodeOf = Arrays.copyOf(nodeOf, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(nodeOf, oldLength, nodeOf.length, NONE);
+        }
+
+        final int node = nodeCount++;
+        ids[node] = id;
+        xs[node] = x;
+        ys[node] = y;
+        left[node] = NONE;
+        right[node] = NONE;
+        dead[node] = false;
+        nodeOf[id] = node;
+        return node;
+    }
+
+    /**
+     * Compacts the live nodes to the front of the arrays and links them into a balanced tree.
+     */
+    private void rebuild()
+    {
+        int count = 0;
+        for (int i = 0; i < nodeCount; i++)
+        {
+            if (!dead[i])
+            {
+                ids[count] = ids[i];
+                xs[count] = xs[i];
+                ys[count] = ys[i];
+                dead[count] = false;
+                nodeOf[ids[count]] = count;
+                count++;
+            }
+        }
+        nodeCount = count;
+
+        if (order.length < count)
+        {
+            order = new int[ids.length];
+        }
+        for (int i = 0; i < count; i++)
+        {
+            order[i] = i;
+        }
+
+        root = build(0, count, 0);
+    }
+
+    private int build(int from, int to, int depth)
+    {
+        if (from >= to)
+        {
+            return NONE;
+        }
+
+        final int middle = (from + to) >>> 1;
+        select(from, to - 1, middle, (depth & 1) == 0 ? xs : ys);
+
+        final int node = order[middle];
+        left[node] = build(from, middle, depth + 1);
+        right[node] = build(middle + 1, to, depth + 1);
+        return node;
+    }
+
+    /**
+     * Quickselect on {@link #order}, leaving the node with the k-th smallest coordinate at index k.
+     */
+    private void select(int lo, int hi, int k, int[] coords)
+    {
+        while (lo < hi)
+        {
+            final int pivot = coords[order[(lo + hi) >>> 1]];
+            int i = lo;
+            int j = hi;
+            while (i <= j)
+            {
+                while (coords[order[i]] < pivot)
+                {
+                    i++;
+                }
+                while (coords[order[j]] > pivot)
+                {
+                    j--;
+                }
+                if (i <= j)
+                {
+                    final int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+
+            if (k <= j)
+            {
+                hi = j;
+            }
+            else if (k >= i)
+            {
+                lo = i;
+            }
+            else
+            {
+                return;
+            }
+        }
+    }
+}
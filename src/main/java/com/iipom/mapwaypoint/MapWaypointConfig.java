@@ -3,6 +3,9 @@ package com.iipom.mapwaypoint;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.Range;
+
+import java.awt.Color;
 
 @ConfigGroup("mapwaypoint")
 public interface MapWaypointConfig extends Config {
@@ -17,6 +20,26 @@ public interface MapWaypointConfig extends Config {
         return true;
     }
 
+    @ConfigItem(
+            keyName = "drawRoutes",
+            name = "Shift-drag routes",
+            description = "Draw a route on the world map with shift-drag, setting waypoints along it"
+    )
+    default boolean drawRoutes()
+    {
+        return true;
+    }
+
+    @ConfigItem(
+            keyName = "notifyGeofences",
+            name = "Notify on marked areas",
+            description = "Send a notification when you enter or leave an area marked by drawing a loop on the world map"
+    )
+    default boolean notifyGeofences()
+    {
+        return false;
+    }
+
     @ConfigItem(
             keyName = "playSoundEffect",
             name = "Play sound effect",
@@ -27,6 +50,40 @@ public interface MapWaypointConfig extends Config {
         return true;
     }
 
+    @ConfigItem(
+            keyName = "waypointColor",
+            name = "Waypoint colour",
+            description = "Colour of new waypoints on the world map, ground and minimap"
+    )
+    default Color waypointColor()
+    {
+        return new Color(0, 201, 198);
+    }
+
+    @ConfigItem(
+            keyName = "waypointIcon",
+            name = "Waypoint icon",
+            description = "Icon of new waypoints on the world map"
+    )
+    default WaypointIcon waypointIcon()
+    {
+        return WaypointIcon.CROSS;
+    }
+
+    @ConfigItem(
+            keyName = "iconSize",
+            name = "Icon size",
+            description = "Size of new waypoints' icons on the world map, in percent"
+    )
+    @Range(
+            min = 50,
+            max = 300
+    )
+    default int iconSize()
+    {
+        return 100;
+    }
+
     @ConfigItem(
             keyName = "drawTile",
             name = "Draw waypoint on ground",
@@ -47,6 +104,36 @@ public interface MapWaypointConfig extends Config {
         return true;
     }
 
+    @ConfigItem(
+            keyName = "drawRoute",
+            name = "Draw route on ground",
+            description = "Draw the walking route to your waypoint on the ground"
+    )
+    default boolean drawRoute()
+    {
+        return true;
+    }
+
+    @ConfigItem(
+            keyName = "drawTrail",
+            name = "Draw breadcrumb trail",
+            description = "Draw the tiles you have recently walked on the ground, minimap and world map while you have a waypoint"
+    )
+    default boolean drawTrail()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+            keyName = "showExploration",
+            name = "Show explored tiles",
+            description = "Remember the tiles you walk while this is on, and shade them on the world map"
+    )
+    default boolean showExploration()
+    {
+        return false;
+    }
+
     @ConfigItem(
             keyName = "menuEntriesOnTop",
             name = "Show menu entries on top",
@@ -56,4 +143,57 @@ public interface MapWaypointConfig extends Config {
     {
         return true;
     }
+
+    @ConfigItem(
+            keyName = "useTeleports",
+            name = "Route with teleports",
+            description = "Consider the standard spellbook teleports your Magic level allows when routing to your waypoint, while on the standard spellbook"
+    )
+    default boolean useTeleports()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+            keyName = "syncClients",
+            name = "Share between clients",
+            description = "Share waypoints with other clients running on this computer"
+    )
+    default boolean syncClients()
+    {
+        return false;
+    }
+
+    @ConfigItem(
+            keyName = "targetMode",
+            name = "Arrow target",
+            description = "Which waypoint the arrow leads to: the last one set, the nearest one not yet visited, each in the order they were set, or each along the shortest route through them"
+    )
+    default WaypointTarget targetMode()
+    {
+        return WaypointTarget.LAST_SET;
+    }
+
+    @ConfigItem(
+            keyName = "arrivalDistance",
+            name = "Arrival distance",
+            description = "How close you need to get to a waypoint before the arrow moves on to the next one"
+    )
+    @Range(
+            max = 20
+    )
+    default int arrivalDistance()
+    {
+        return 2;
+    }
+
+    @ConfigItem(
+            keyName = "showMetrics",
+            name = "Show performance metrics",
+            description = "Time the plugin's overlays and event handlers, show the results in an overlay and write them to metrics.jsonl every minute"
+    )
+    default boolean showMetrics()
+    {
+        return false;
+    }
 }
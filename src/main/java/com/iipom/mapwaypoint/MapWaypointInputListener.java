@@ -1,5 +1,6 @@
 package com.iipom.mapwaypoint;
 
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.input.MouseListener;
 import javax.inject.Inject;
 import java.awt.event.MouseEvent;
@@ -9,12 +10,19 @@ public class MapWaypointInputListener implements MouseListener
 
     private final MapWaypointPlugin plugin;
     private final MapWaypointConfig config;
+    private final ClientThread clientThread;
+    private final WorldMapGeometry worldMapGeometry;
+
+    // Whether a shift-drag on the world map is drawing a route, only touched on the event thread
+    private boolean drawingRoute;
 
     @Inject
-    private MapWaypointInputListener(MapWaypointPlugin plugin, MapWaypointConfig config)
+    private MapWaypointInputListener(MapWaypointPlugin plugin, MapWaypointConfig config, ClientThread clientThread, WorldMapGeometry worldMapGeometry)
     {
         this.plugin = plugin;
         this.config = config;
+        this.clientThread = clientThread;
+        this.worldMapGeometry = worldMapGeometry;
     }
 
     @Override
@@ -22,17 +30,44 @@ public class MapWaypointInputListener implements MouseListener
     {
         if (mouseEvent.getButton() == 1 && (mouseEvent.getClickCount() == 2 || (config.shiftClick() && mouseEvent.isShiftDown())))
         {
-            plugin.mouseClicked();
+            clientThread.invoke(plugin::mouseClicked);
         }
 
         return mouseEvent;
     }
 
     @Override
-    public MouseEvent mousePressed(MouseEvent mouseEvent) { return mouseEvent; }
+    public MouseEvent mousePressed(MouseEvent mouseEvent)
+    {
+        if (mouseEvent.getButton() == 1 && mouseEvent.isShiftDown() && config.drawRoutes()
+                && worldMapGeometry.wasShownAt(mouseEvent.getX(), mouseEvent.getY()))
+        {
+            drawingRoute = true;
+            final int x = mouseEvent.getX();
+            final int y = mouseEvent.getY();
+            clientThread.invoke(() -> plugin.beginRoute(x, y));
+
+            // Keeps the map from panning under the route
+            mouseEvent.consume();
+        }
+
+        return mouseEvent;
+    }
 
     @Override
-    public MouseEvent mouseReleased(MouseEvent mouseEvent) { return mouseEvent; }
+    public MouseEvent mouseReleased(MouseEvent mouseEvent)
+    {
+        if (drawingRoute && mouseEvent.getButton() == 1)
+        {
+            drawingRoute = false;
+            final int x = mouseEvent.getX();
+            final int y = mouseEvent.getY();
+            clientThread.invoke(() -> plugin.finishRoute(x, y));
+            mouseEvent.consume();
+        }
+
+        return mouseEvent;
+    }
 
     @Override
     public MouseEvent mouseEntered(MouseEvent mouseEvent) { return mouseEvent; }
@@ -41,7 +76,18 @@ public class MapWaypointInputListener implements MouseListener
     public MouseEvent mouseExited(MouseEvent mouseEvent) { return mouseEvent; }
 
     @Override
-    public MouseEvent mouseDragged(MouseEvent mouseEvent) { return mouseEvent; }
+    public MouseEvent mouseDragged(MouseEvent mouseEvent)
+    {
+        if (drawingRoute)
+        {
+            final int x = mouseEvent.getX();
+            final int y = mouseEvent.getY();
+            clientThread.invoke(() -> plugin.extendRoute(x, y));
+            mouseEvent.consume();
+        }
+
+        return mouseEvent;
+    }
 
     @Override
     public MouseEvent mouseMoved(MouseEvent mouseEvent) { return mouseEvent; }
@@ -7,27 +7,36 @@ import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
 import net.runelite.api.Point;
 import net.runelite.api.coords.WorldPoint;
-import net.runelite.api.events.MenuEntryAdded;
+import net.runelite.api.events.BeforeRender;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
 import net.runelite.api.events.MenuOpened;
 import net.runelite.api.events.MenuOptionClicked;
-import net.runelite.api.widgets.Widget;
-import net.runelite.api.widgets.WidgetInfo;
+import net.runelite.api.events.WidgetLoaded;
+import net.runelite.api.widgets.WidgetID;
+import net.runelite.client.Notifier;
+import net.runelite.client.RuneLite;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
+import net.runelite.client.game.SpriteManager;
 import net.runelite.client.input.MouseManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
-import net.runelite.client.ui.overlay.OverlayManager;
-import net.runelite.client.ui.overlay.worldmap.WorldMapOverlay;
 import net.runelite.client.ui.overlay.worldmap.WorldMapPoint;
-import net.runelite.client.ui.overlay.worldmap.WorldMapPointManager;
-import net.runelite.client.util.ImageUtil;
-import org.apache.commons.lang3.ArrayUtils;
 
 import javax.inject.Inject;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.Arrays;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.IntConsumer;
+
+import static net.runelite.api.SpriteID.MINIMAP_GUIDE_ARROW_YELLOW;
 
 @Slf4j
 @PluginDescriptor(
@@ -37,27 +46,87 @@ import java.util.Arrays;
 )
 public class MapWaypointPlugin extends Plugin
 {
+    static final File WAYPOINT_DIR = new File(RuneLite.RUNELITE_DIR, "mapwaypoint");
+
+    private static final String CONFIG_GROUP = "mapwaypoint";
+    private static final String SYNC_CLIENTS_KEY = "syncClients";
+    private static final String SHOW_METRICS_KEY = "showMetrics";
+    private static final String SHOW_EXPLORATION_KEY = "showExploration";
+    private static final String GEOFENCES_KEY = "geofences";
+    private static final String TARGET_MODE_KEY = "targetMode";
     private static final String WALK_HERE = "Walk here";
-    private static final String CLOSE = "Close";
-    private static final String CANCEL = "Cancel";
     private static final String SET = "Set";
     private static final String FOCUS = "Focus";
     private static final String REMOVE = "Remove";
+    private static final String REMOVE_AREA = "Remove area";
+    private static final String RESTYLE = "Restyle";
     private static final String WAYPOINT = "<col=ffff>Waypoint</col>";
+    private static final int MAX_CLICK_CANDIDATES = 64;
+
+    // The bundled teleports are all on the standard spellbook, which is 0 in the spellbook varbit
+    private static final int STANDARD_SPELLBOOK = 0;
+
+    // A drawn route keeps to within this many tiles, or pixels at low zoom, of where the mouse went
+    private static final double ROUTE_TOLERANCE_TILES = 1;
+    private static final double ROUTE_TOLERANCE_PIXELS = 4;
 
-    private static final BufferedImage WAYPOINT_ICON;
+    // A drawn route that ends this many tolerances from where it started marks the area inside it instead
+    private static final double ROUTE_LOOP_TOLERANCES = 3;
 
-    static
+    @Getter(AccessLevel.PACKAGE)
+    private final Map<Integer, WorldMapPoint> mapPoints = new HashMap<>();
+    private final int[] clickCandidates = new int[MAX_CLICK_CANDIDATES];
+    private final WaypointSync.Listener syncListener = new WaypointSync.Listener()
     {
-        WAYPOINT_ICON = new BufferedImage(37, 37, BufferedImage.TYPE_INT_ARGB);
-        final BufferedImage waypointIcon = ImageUtil.loadImageResource(MapWaypointPlugin.class, "waypoint.png");
-        WAYPOINT_ICON.getGraphics().drawImage(waypointIcon, 0, 0, null);
-    }
+        @Override
+        public void added(int tile, int style)
+        {
+            addSyncedWaypoint(tile, style);
+        }
+
+        @Override
+        public void removed(int tile)
+        {
+            removeSyncedWaypoint(tile);
+        }
+
+        @Override
+        public void restyled(int tile, int style)
+        {
+            restyleSyncedWaypoint(tile, style);
+        }
+    };
+    private final IntConsumer geofenceEntered = id -> alertGeofence("You have entered a marked area");
+    private final IntConsumer geofenceLeft = id -> alertGeofence("You have left a marked area");
+
+    private WorldPoint lastMenuOpenedTile;
 
-    private Point lastMenuOpenedPoint;
+    // Whether the waypoints have changed since the route through them was last ordered
+    private boolean waypointsChanged = true;
+    private RouteOrder routeOrder;
+
+
+    // Width of the widest waypoint icon, which bounds how far from the cursor a clicked icon's tile can be
+    private int widestIcon;
 
     @Getter(AccessLevel.PACKAGE)
-    private WorldMapPoint waypoint;
+    private final PolylineSimplifier routeSketch = new PolylineSimplifier();
+    private boolean drawingRoute;
+    private double routeTolerance;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final WaypointStore waypoints = new WaypointStore();
+    private final WaypointSelector waypointSelector = new WaypointSelector(waypoints);
+
+    @Getter(AccessLevel.PACKAGE)
+    private final GeofenceIndex geofences = new GeofenceIndex();
+
+    // Fences are only saved once the saved ones have been read, which saving before would lose
+    private boolean geofencesLoaded;
+    private boolean geofencesChanged;
+
+    @Getter(AccessLevel.PACKAGE)
+    private final BreadcrumbTrail trail = new BreadcrumbTrail();
 
     @Inject
     private Client client;
@@ -68,17 +137,32 @@ public class MapWaypointPlugin extends Plugin
     @Inject
     private MapWaypointInputListener inputListener;
 
+    @Inject
+    private ConfigManager configManager;
+
+    @Inject
+    private Notifier notifier;
+
     @Inject
     private MouseManager mouseManager;
 
     @Inject
-    private WorldMapPointManager worldMapPointManager;
+    private WorldMapGeometry worldMapGeometry;
+
+    @Inject
+    private WaypointIconCache iconCache;
+
+    @Inject
+    private WaypointClusterer waypointClusterer;
+
+    @Inject
+    private TilePolygonCache tilePolygonCache;
 
     @Inject
-    private WorldMapOverlay worldMapOverlay;
+    private OverlayLifecycle overlayLifecycle;
 
     @Inject
-    private OverlayManager overlayManager;
+    private SpriteManager spriteManager;
 
     @Inject
     private WaypointArrowOverlay waypointArrowOverlay;
@@ -89,86 +173,330 @@ public class MapWaypointPlugin extends Plugin
     @Inject
     private WaypointTileOverlay waypointTileOverlay;
 
+    @Inject
+    private Pathfinder pathfinder;
+
+    @Inject
+    private NavigationTracker navigationTracker;
+
+    @Inject
+    private RouteOptimizer routeOptimizer;
+
+    @Inject
+    private TaskScheduler taskScheduler;
+
+    @Inject
+    private CollisionMapCache collisionMapCache;
+
+    @Inject
+    private TransportGraph transportGraph;
+
+    @Inject
+    private WaypointJournal waypointJournal;
+
+    @Inject
+    private WaypointSync waypointSync;
+
+    @Inject
+    private PluginMetrics metrics;
+
+    @Inject
+    private MetricsOverlay metricsOverlay;
+
+    @Inject
+    private RouteSketchOverlay routeSketchOverlay;
+
+    @Inject
+    private GeofenceOverlay geofenceOverlay;
+
+    @Inject
+    private BreadcrumbOverlay breadcrumbOverlay;
+
+    @Inject
+    private GeofenceStore geofenceStore;
+
+    @Inject
+    private ExplorationMap explorationMap;
+
+    @Inject
+    private ExplorationOverlay explorationOverlay;
+
+    @Inject
+    private ScheduledExecutorService executor;
+
     public void mouseClicked()
     {
-        if (isMouseInWorldMap())
+        final long start = metrics.start(PluginMetrics.Probe.MOUSE_CLICKED);
+        try
+        {
+            handleMouseClick();
+        }
+        finally
         {
-            final Point mousePos = client.getMouseCanvasPosition();
+            metrics.stop(PluginMetrics.Probe.MOUSE_CLICKED, start);
+        }
+    }
 
-            if (waypoint != null && waypoint.getClickbox().contains(mousePos.getX(), mousePos.getY()))
+    private void handleMouseClick()
+    {
+        final Point mousePos = client.getMouseCanvasPosition();
+        if (worldMapGeometry.contains(mousePos))
+        {
+            // Clicking a cluster moves the map to it, placing a waypoint under it would be unexpected
+            if (waypointClusterer.isClusterAt(mousePos.getX(), mousePos.getY()))
             {
-                removeWaypoint();
+                return;
+            }
+
+            final int hovered = findWaypointAt(mousePos);
+
+            if (hovered != -1)
+            {
+                removeWaypoint(hovered);
             }
             else
             {
-                setWaypoint(mousePos);
+                setWaypoint(toMapTile(mousePos));
+            }
+        }
+    }
+
+    /**
+     * Starts a route drawn by dragging over the world map from the given canvas position.
+     */
+    void beginRoute(int canvasX, int canvasY)
+    {
+        if (!worldMapGeometry.isOpen())
+        {
+            return;
+        }
+
+        drawingRoute = true;
+        overlayLifecycle.setShown(routeSketchOverlay, true);
+        routeTolerance = Math.max(ROUTE_TOLERANCE_TILES, ROUTE_TOLERANCE_PIXELS / worldMapGeometry.getZoom());
+        routeSketch.reset(routeTolerance);
+        extendRoute(canvasX, canvasY);
+    }
+
+    void extendRoute(int canvasX, int canvasY)
+    {
+        if (drawingRoute)
+        {
+            routeSketch.add(worldMapGeometry.toWorldX(canvasX), worldMapGeometry.toWorldY(canvasY));
+        }
+    }
+
+    /**
+     * Sets a waypoint on each point of the drawn route, in order, or marks the area inside it if it ends where it
+     * started. A press and release without a drag between is left to {@link #mouseClicked}.
+     */
+    void finishRoute(int canvasX, int canvasY)
+    {
+        if (!drawingRoute)
+        {
+            return;
+        }
+
+        extendRoute(canvasX, canvasY);
+        drawingRoute = false;
+        routeSketch.finish();
+
+        if (isRouteLoop())
+        {
+            addGeofence();
+        }
+        else if (routeSketch.size() >= 2)
+        {
+            for (int i = 0; i < routeSketch.size(); i++)
+            {
+                storeWaypoint(new WorldPoint(routeSketch.getX(i), routeSketch.getY(i), 0));
             }
+
+            updateNavigation();
+            playSoundEffect();
+        }
+
+        routeSketch.clear();
+        overlayLifecycle.setShown(routeSketchOverlay, false);
+    }
+
+    private boolean isRouteLoop()
+    {
+        final int last = routeSketch.size() - 1;
+        return last >= 3 && Math.hypot(routeSketch.getX(last) - routeSketch.getX(0), routeSketch.getY(last) - routeSketch.getY(0))
+                <= routeTolerance * ROUTE_LOOP_TOLERANCES;
+    }
+
+    private void addGeofence()
+    {
+        // The end of the loop stands in for its start
+        final int corners = routeSketch.size() - 1;
+        final int[] xs = new int[corners];
+        final int[] ys = new int[corners];
+        for (int i = 0; i < corners; i++)
+        {
+            xs[i] = routeSketch.getX(i + 1);
+            ys[i] = routeSketch.getY(i + 1);
+        }
+
+        geofences.add(Geofence.polygon(xs, ys));
+        saveGeofences();
+        overlayLifecycle.setShown(geofenceOverlay, true);
+        playSoundEffect();
+    }
+
+    private void removeGeofence(int id)
+    {
+        if (geofences.remove(id))
+        {
+            saveGeofences();
+            overlayLifecycle.setShown(geofenceOverlay, !geofences.isEmpty());
+            playSoundEffect();
+        }
+    }
+
+    private void alertGeofence(String message)
+    {
+        playSoundEffect();
+        if (config.notifyGeofences())
+        {
+            notifier.notify(message);
         }
     }
 
     @Subscribe
-    public void onMenuOpened(MenuOpened event)
+    public void onBeforeRender(BeforeRender event)
     {
-        if (isMouseInWorldMap())
+        worldMapGeometry.invalidate();
+
+        final WaypointJournal.Loaded loaded = waypointJournal.takeLoaded();
+        if (loaded != null)
+        {
+            restoreWaypoints(loaded);
+        }
+
+        final List<Geofence> loadedFences = geofenceStore.takeLoaded();
+        if (loadedFences != null)
         {
-            lastMenuOpenedPoint = client.getMouseCanvasPosition();
+            restoreGeofences(loadedFences);
         }
+
+        waypointClusterer.update();
     }
 
     @Subscribe
-    public void onMenuEntryAdded(MenuEntryAdded event)
+    public void onWidgetLoaded(WidgetLoaded event)
     {
-        if (isMouseInWorldMap() && event.getOption().equals(CANCEL))
+        if (event.getGroupId() == WidgetID.WORLD_MAP_GROUP_ID)
         {
-            try
+            worldMapGeometry.invalidate();
+        }
+    }
+
+    @Subscribe
+    public void onGameStateChanged(GameStateChanged event)
+    {
+        if (event.getGameState() == GameState.LOGGED_IN)
+        {
+            tilePolygonCache.invalidate();
+            waypointTileOverlay.invalidate();
+            collisionMapCache.capture();
+        }
+    }
+
+    @Subscribe
+    public void onGameTick(GameTick event)
+    {
+        taskScheduler.drain();
+        waypointSync.poll(syncListener);
+
+        final Player player = client.getLocalPlayer();
+        if (player != null)
+        {
+            final WorldPoint location = player.getWorldLocation();
+            trail.record(TileCoords.pack(location.getX(), location.getY(), location.getPlane()));
+            if (config.showExploration())
             {
-                final Point mousePos = client.getMouseCanvasPosition();
+                explorationMap.update(location.getX(), location.getY());
+            }
+            if (!geofences.isEmpty())
+            {
+                geofences.check(location.getX(), location.getY(), geofenceEntered, geofenceLeft);
+            }
+        }
 
-                final boolean insideClickbox = waypoint != null && waypoint.getClickbox().contains(mousePos.getX(), mousePos.getY());
+        updateNavigation();
+    }
+
+    @Subscribe
+    public void onConfigChanged(ConfigChanged event)
+    {
+        if (event.getGroup().equals(CONFIG_GROUP))
+        {
+            navigationTracker.updateConfig();
+            overlayLifecycle.update(navigationTracker.getState());
+
+            if (event.getKey().equals(TARGET_MODE_KEY))
+            {
+                waypointsChanged = true;
+            }
+            else if (event.getKey().equals(SYNC_CLIENTS_KEY))
+            {
+                executor.execute(config.syncClients() ? waypointSync::open : waypointSync::close);
+            }
+            else if (event.getKey().equals(SHOW_METRICS_KEY))
+            {
+                setMetricsEnabled(config.showMetrics());
+            }
+            else if (event.getKey().equals(SHOW_EXPLORATION_KEY))
+            {
+                setExplorationShown(config.showExploration());
+            }
+        }
+    }
+
+    @Subscribe
+    public void onMenuOpened(MenuOpened event)
+    {
+        final long start = metrics.start(PluginMetrics.Probe.MENU_OPENED);
+        try
+        {
+            addWaypointMenuEntries();
+        }
+        finally
+        {
+            metrics.stop(PluginMetrics.Probe.MENU_OPENED, start);
+        }
+    }
 
-                MenuEntry[] menuEntries = client.getMenuEntries();
-                final MenuEntry point = new MenuEntry();
+    private void addWaypointMenuEntries()
+    {
+        final MenuEntry[] menuEntries = client.getMenuEntries();
+        final Point mousePos = client.getMouseCanvasPosition();
 
-                point.setOption(insideClickbox ? REMOVE : SET);
-                point.setTarget(WAYPOINT);
-                point.setType(MenuAction.RUNELITE.getId());
+        if (worldMapGeometry.contains(mousePos))
+        {
+            lastMenuOpenedTile = toMapTile(mousePos);
 
-                if (insideClickbox)
+            final int hovered = findWaypointAt(mousePos);
+            if (hovered != -1)
+            {
+                addMenuEntries(menuEntries, config.menuEntriesOnTop(), menuEntry(REMOVE, hovered), menuEntry(RESTYLE, hovered), menuEntry(FOCUS, hovered));
+            }
+            else
+            {
+                final int geofence = geofences.find(lastMenuOpenedTile.getX(), lastMenuOpenedTile.getY());
+                if (geofence != -1)
                 {
-                    MenuEntry focus = new MenuEntry();
-                    focus.setOption(FOCUS);
-                    focus.setTarget(WAYPOINT);
-                    focus.setType(MenuAction.RUNELITE.getId());
-
-                    if (config.menuEntriesOnTop())
-                    {
-                        menuEntries = ArrayUtils.addAll(menuEntries, point, focus);
-                    }
-                    else
-                    {
-                        menuEntries = ArrayUtils.insert(0, menuEntries, point, focus);
-                    }
+                    addMenuEntries(menuEntries, config.menuEntriesOnTop(), menuEntry(REMOVE_AREA, geofence), menuEntry(SET, -1));
                 }
                 else
                 {
-                    if (config.menuEntriesOnTop())
-                    {
-                        menuEntries = ArrayUtils.add(menuEntries, point);
-                    }
-                    else
-                    {
-                        menuEntries = ArrayUtils.insert(0, menuEntries, point);
-                    }
+                    addMenuEntries(menuEntries, config.menuEntriesOnTop(), menuEntry(SET, -1));
                 }
-
-                client.setMenuEntries(menuEntries);
-            }
-            catch (NullPointerException e)
-            {
-                // I'll figure out how to fix this someday
             }
         }
-        else if (config.drawTile() && waypoint != null && event.getOption().equals(WALK_HERE))
+        else if (config.drawTile() && !waypoints.isEmpty() && hasOption(menuEntries, WALK_HERE))
         {
             final Tile selectedSceneTile = client.getSelectedSceneTile();
             if (selectedSceneTile == null)
@@ -176,23 +504,30 @@ public class MapWaypointPlugin extends Plugin
                 return;
             }
 
-            if (selectedSceneTile.getWorldLocation().equals(waypoint.getWorldPoint()))
+            final WorldPoint tile = selectedSceneTile.getWorldLocation();
+            final int selected = waypoints.find(tile.getX(), tile.getY(), tile.getPlane());
+            if (selected != -1)
             {
-                MenuEntry[] menuEntries = client.getMenuEntries();
-                menuEntries = Arrays.copyOf(menuEntries, menuEntries.length + 1);
-                final MenuEntry point = menuEntries[menuEntries.length - 1] = new MenuEntry();
-
-                point.setOption(REMOVE);
-                point.setTarget(WAYPOINT);
-                point.setType(MenuAction.RUNELITE.getId());
-
-                client.setMenuEntries(menuEntries);
+                addMenuEntries(menuEntries, true, menuEntry(REMOVE, selected));
             }
         }
     }
 
     @Subscribe
     public void onMenuOptionClicked(MenuOptionClicked event)
+    {
+        final long start = metrics.start(PluginMetrics.Probe.MENU_OPTION_CLICKED);
+        try
+        {
+            handleMenuOption(event);
+        }
+        finally
+        {
+            metrics.stop(PluginMetrics.Probe.MENU_OPTION_CLICKED, start);
+        }
+    }
+
+    private void handleMenuOption(MenuOptionClicked event)
     {
         if (event.getMenuAction().getId() != MenuAction.RUNELITE.getId() || !event.getMenuTarget().equals(WAYPOINT) || !client.isMenuOpen())
         {
@@ -202,13 +537,22 @@ public class MapWaypointPlugin extends Plugin
         switch (event.getMenuOption())
         {
             case SET:
-                setWaypoint(lastMenuOpenedPoint);
+                if (lastMenuOpenedTile != null)
+                {
+                    setWaypoint(lastMenuOpenedTile);
+                }
                 break;
             case REMOVE:
-                removeWaypoint();
+                removeWaypoint(event.getId());
                 break;
             case FOCUS:
-                focusWaypoint();
+                focusWaypoint(event.getId());
+                break;
+            case RESTYLE:
+                restyleWaypoint(event.getId());
+                break;
+            case REMOVE_AREA:
+                removeGeofence(event.getId());
                 break;
         }
     }
@@ -218,11 +562,32 @@ public class MapWaypointPlugin extends Plugin
     {
         mouseManager.registerMouseListener(inputListener);
 
-        overlayManager.add(waypointArrowOverlay);
-        overlayManager.add(waypointMinimapOverlay);
-        overlayManager.add(waypointTileOverlay);
-
-        waypoint = null;
+        spriteManager.getSpriteAsync(MINIMAP_GUIDE_ARROW_YELLOW, 1, waypointArrowOverlay::buildArrowAtlas);
+
+        overlayLifecycle.manage(waypointArrowOverlay);
+        overlayLifecycle.manage(waypointMinimapOverlay);
+        overlayLifecycle.manage(waypointTileOverlay);
+        overlayLifecycle.manage(breadcrumbOverlay);
+        overlayLifecycle.update(navigationTracker.getState());
+        setMetricsEnabled(config.showMetrics());
+        setExplorationShown(config.showExploration());
+
+        waypoints.clear();
+        waypointSelector.clear();
+        geofences.clear();
+        geofencesLoaded = false;
+        geofencesChanged = false;
+        overlayLifecycle.setShown(geofenceOverlay, !geofences.isEmpty());
+
+        executor.execute(waypointJournal::load);
+        executor.execute(geofenceStore::load);
+        if (config.syncClients())
+        {
+            executor.execute(waypointSync::open);
+        }
+        executor.execute(collisionMapCache::load);
+        executor.execute(transportGraph::load);
+        executor.execute(explorationMap::load);
     }
 
     @Override
@@ -230,73 +595,400 @@ public class MapWaypointPlugin extends Plugin
     {
         mouseManager.unregisterMouseListener(inputListener);
 
-        overlayManager.remove(waypointArrowOverlay);
-        overlayManager.remove(waypointMinimapOverlay);
-        overlayManager.remove(waypointTileOverlay);
+        overlayLifecycle.clear();
+        metrics.setEnabled(false);
+
+        drawingRoute = false;
+        routeSketch.clear();
+        waypointClusterer.clear();
+        mapPoints.clear();
+
+        waypoints.clear();
+        waypointSelector.clear();
+        geofences.clear();
+        geofenceStore.clear();
+        trail.clear();
+        widestIcon = 0;
+        taskScheduler.cancelAll();
+        routeOptimizer.close();
+        routeOrder = null;
+        waypointsChanged = true;
+        pathfinder.reset();
+        navigationTracker.reset();
+        explorationMap.save();
+        explorationMap.clear();
+
+        executor.execute(waypointJournal::close);
+        executor.execute(waypointSync::close);
+        executor.execute(collisionMapCache::flush);
+    }
 
-        worldMapPointManager.removeIf(x -> x == waypoint);
+    private void setMetricsEnabled(boolean enabled)
+    {
+        metrics.setEnabled(enabled);
+        overlayLifecycle.setShown(metricsOverlay, enabled);
+    }
 
-        waypoint = null;
+    private void setExplorationShown(boolean shown)
+    {
+        overlayLifecycle.setShown(explorationOverlay, shown);
     }
 
-    private void setWaypoint(final Point mousePos)
+    private void setWaypoint(WorldPoint destination)
     {
-        final RenderOverview renderOverview = client.getRenderOverview();
+        storeWaypoint(destination);
+        updateNavigation();
+        playSoundEffect();
+    }
 
-        final float zoom = renderOverview.getWorldMapZoom();
-        final WorldPoint destination = calculateMapPoint(renderOverview, mousePos, zoom);
+    /**
+     * Adds a waypoint set in this client, saving it and sharing it with the other clients.
+     */
+    private void storeWaypoint(WorldPoint destination)
+    {
+        final int id = addWaypoint(destination);
+        waypointJournal.add(id, pack(destination), waypoints.getStyle(id));
+        waypointSync.publish(WaypointSync.ADD, pack(destination), waypoints.getStyle(id));
+    }
 
-        worldMapPointManager.removeIf(x -> x == waypoint);
-        waypoint = new WorldMapPoint(destination, WAYPOINT_ICON);
-        waypoint.setTarget(waypoint.getWorldPoint());
-        waypoint.setJumpOnClick(true);
-        worldMapPointManager.add(waypoint);
+    int addWaypoint(WorldPoint destination)
+    {
+        return addWaypoint(destination, configuredStyle());
+    }
 
-        playSoundEffect();
+    private int addWaypoint(WorldPoint destination, int style)
+    {
+        final int id = waypoints.add(destination.getX(), destination.getY(), destination.getPlane(), style);
+
+        final WorldMapPoint mapPoint = new WorldMapPoint(destination, icon(style));
+        mapPoint.setTarget(destination);
+        mapPoint.setJumpOnClick(true);
+        mapPoints.put(id, mapPoint);
+        waypointClusterer.add(id, mapPoint);
+        waypointSelector.add(id);
+        waypointsChanged = true;
+        return id;
     }
 
-    private void removeWaypoint()
+    private void removeWaypoint(int id)
     {
-        if (waypoint != null)
+        if (waypoints.contains(id))
         {
-            worldMapPointManager.remove(waypoint);
-            waypoint = null;
+            final int tile = TileCoords.pack(waypoints.getX(id), waypoints.getY(id), waypoints.getPlane(id));
+            deleteWaypoint(id);
+            waypointSync.publish(WaypointSync.REMOVE, tile, WaypointStyle.DEFAULT);
 
+            updateNavigation();
             playSoundEffect();
         }
     }
 
-    private void focusWaypoint()
+    private void deleteWaypoint(int id)
+    {
+        waypoints.remove(id);
+        waypointJournal.remove(id);
+        mapPoints.remove(id);
+        waypointClusterer.remove(id);
+        waypointSelector.remove(id);
+        waypointsChanged = true;
+    }
+
+    /**
+     * Adds a waypoint another client has set with its style, unless there already is one on its tile.
+     */
+    private void addSyncedWaypoint(int tile, int style)
+    {
+        if (waypoints.find(TileCoords.x(tile), TileCoords.y(tile), TileCoords.plane(tile)) == -1)
+        {
+            final int id = addWaypoint(new WorldPoint(TileCoords.x(tile), TileCoords.y(tile), TileCoords.plane(tile)), style);
+            waypointJournal.add(id, tile, style);
+        }
+    }
+
+    private void removeSyncedWaypoint(int tile)
+    {
+        final int id = waypoints.find(TileCoords.x(tile), TileCoords.y(tile), TileCoords.plane(tile));
+        if (id != -1)
+        {
+            deleteWaypoint(id);
+        }
+    }
+
+    private void restyleSyncedWaypoint(int tile, int style)
+    {
+        final int id = waypoints.find(TileCoords.x(tile), TileCoords.y(tile), TileCoords.plane(tile));
+        if (id != -1)
+        {
+            setStyle(id, style);
+        }
+    }
+
+    /**
+     * Adds the waypoints saved in an earlier session, after any set since this one started.
+     */
+    private void restoreWaypoints(WaypointJournal.Loaded loaded)
+    {
+        for (int i = 0; i < loaded.tiles.length; i++)
+        {
+            final int tile = loaded.tiles[i];
+            final int id = addWaypoint(new WorldPoint(TileCoords.x(tile), TileCoords.y(tile), TileCoords.plane(tile)), loaded.styles[i]);
+            waypointJournal.bind(id, i);
+        }
+
+        updateNavigation();
+    }
+
+    /**
+     * Adds the geofences saved in an earlier session, after any marked since this one started.
+     */
+    private void restoreGeofences(List<Geofence> loaded)
+    {
+        for (Geofence fence : loaded)
+        {
+            geofences.add(fence);
+        }
+        migrateGeofences();
+
+        geofencesLoaded = true;
+        if (geofencesChanged)
+        {
+            saveGeofences();
+        }
+        overlayLifecycle.setShown(geofenceOverlay, !geofences.isEmpty());
+    }
+
+    /**
+     * Adds the geofences earlier versions saved in the config, to be saved to the geofence file with the others.
+     */
+    private void migrateGeofences()
+    {
+        final String saved = configManager.getConfiguration(CONFIG_GROUP, GEOFENCES_KEY);
+        if (saved == null)
+        {
+            return;
+        }
+
+        for (String text : saved.split(";"))
+        {
+            try
+            {
+                geofences.add(Geofence.decode(text));
+                geofencesChanged = true;
+            }
+            catch (IllegalArgumentException e)
+            {
+                log.warn("Skipping unreadable geofence {}", text, e);
+            }
+        }
+
+        configManager.unsetConfiguration(CONFIG_GROUP, GEOFENCES_KEY);
+    }
+
+    private void saveGeofences()
+    {
+        if (!geofencesLoaded)
+        {
+            geofencesChanged = true;
+            return;
+        }
+
+        final List<Geofence> saved = new ArrayList<>(geofences.size());
+        for (int id = 0; id < geofences.idLimit(); id++)
+        {
+            if (geofences.contains(id))
+            {
+                saved.add(geofences.get(id));
+            }
+        }
+
+        geofencesChanged = false;
+        geofenceStore.save(saved);
+    }
+
+    /**
+     * Gives a waypoint the style new waypoints get.
+     */
+    private void restyleWaypoint(int id)
     {
-        if (waypoint != null)
+        if (mapPoints.containsKey(id))
         {
-            client.getRenderOverview().setWorldMapPositionTarget(waypoint.getWorldPoint());
+            final int style = configuredStyle();
+            setStyle(id, style);
+            waypointSync.publish(WaypointSync.RESTYLE, TileCoords.pack(waypoints.getX(id), waypoints.getY(id), waypoints.getPlane(id)), style);
+        }
+    }
+
+    private void setStyle(int id, int style)
+    {
+        final WorldMapPoint mapPoint = mapPoints.get(id);
+        if (mapPoint != null && waypoints.getStyle(id) != style)
+        {
+            waypoints.setStyle(id, style);
+            waypointJournal.restyle(id, style);
+            mapPoint.setImage(icon(style));
+        }
+    }
+
+    private int configuredStyle()
+    {
+        return WaypointStyle.pack(config.waypointIcon(), config.waypointColor().getRGB(), config.iconSize());
+    }
+
+    private BufferedImage icon(int style)
+    {
+        final BufferedImage icon = iconCache.getIcon(style);
+        widestIcon = Math.max(widestIcon, icon.getWidth());
+        return icon;
+    }
+
+    private void focusWaypoint(int id)
+    {
+        if (waypoints.contains(id))
+        {
+            client.getRenderOverview().setWorldMapPositionTarget(waypoints.getWorldPoint(id));
             playSoundEffect();
         }
     }
 
-    private WorldPoint calculateMapPoint(RenderOverview renderOverview, Point mousePos, float zoom)
+    private void updateNavigation()
     {
-        final WorldPoint mapPoint = new WorldPoint(renderOverview.getWorldMapPosition().getX(), renderOverview.getWorldMapPosition().getY(), 0);
-        final Point middle = worldMapOverlay.mapWorldPointToGraphicsPoint(mapPoint);
+        final Player player = client.getLocalPlayer();
+        final int start = player != null ? pack(player.getWorldLocation()) : TileCoords.NONE;
+        if (config.targetMode() == WaypointTarget.SHORTEST_ROUTE && start != TileCoords.NONE)
+        {
+            updateRouteOrder(start);
+        }
+
+        final int target = player != null ? waypointSelector.select(config.targetMode(), start, config.arrivalDistance()) : -1;
+        if (target == -1)
+        {
+            pathfinder.reset();
+            navigationTracker.update(start, TileCoords.NONE, null);
+            overlayLifecycle.update(navigationTracker.getState());
+            return;
+        }
 
-        final int dx = (int) ((mousePos.getX() - middle.getX()) / zoom);
-        final int dy = (int) ((-(mousePos.getY() - middle.getY())) / zoom);
+        final int destination = TileCoords.pack(waypoints.getX(target), waypoints.getY(target), waypoints.getPlane(target));
 
-        return mapPoint.dx(dx).dy(dy);
+        // Walk towards the next transport on the route, if there is one, instead of the waypoint itself
+        final TransportRoute route = transportGraph.route(start, destination, teleportMagicLevel(), client.getRealSkillLevel(Skill.AGILITY));
+        pathfinder.update(start, route != null && route.getNextHop() != TileCoords.NONE ? route.getNextHop() : destination);
+        navigationTracker.update(start, destination, route);
+        overlayLifecycle.update(navigationTracker.getState());
     }
 
-    private boolean isMouseInWorldMap()
+    /**
+     * @return the player's Magic level if they can cast the bundled teleports, otherwise
+     * {@link TransportGraph#NO_TELEPORTS}. Runes are not checked, as they may be carried in a pouch or staff.
+     */
+    private int teleportMagicLevel()
     {
-        final Point mousePos = client.getMouseCanvasPosition();
-        final Widget view = client.getWidget(WidgetInfo.WORLD_MAP_VIEW);
-        if (view == null)
+        if (!config.useTeleports() || client.getVar(Varbits.SPELLBOOK) != STANDARD_SPELLBOOK)
+        {
+            return TransportGraph.NO_TELEPORTS;
+        }
+        return client.getRealSkillLevel(Skill.MAGIC);
+    }
+
+    /**
+     * Orders the waypoints again when they have changed, and picks up any shorter order found since the last call.
+     */
+    private void updateRouteOrder(int player)
+    {
+        if (waypointsChanged)
+        {
+            waypointsChanged = false;
+            routeOrder = null;
+            waypointSelector.setRoute(null);
+            routeOptimizer.optimize(player, waypoints);
+        }
+
+        final RouteOrder latest = routeOptimizer.getResult();
+        if (latest != null && latest != routeOrder)
+        {
+            routeOrder = latest;
+            waypointSelector.setRoute(latest);
+        }
+    }
+
+    private int findWaypointAt(Point mousePos)
+    {
+        if (waypoints.isEmpty())
         {
-            return false;
+            return -1;
+        }
+
+        final int x = worldMapGeometry.toWorldX(mousePos.getX());
+        final int y = worldMapGeometry.toWorldY(mousePos.getY());
+
+        // Only waypoints whose icon could overlap the cursor need their clickbox checked
+        final int radius = (int) Math.ceil(widestIcon / worldMapGeometry.getZoom()) + 1;
+        final int count = waypoints.query(x, y, -1, radius, clickCandidates);
+
+        for (int i = 0; i < count; i++)
+        {
+            final WorldMapPoint candidate = mapPoints.get(clickCandidates[i]);
+            if (candidate != null && candidate.getClickbox() != null
+                    && candidate.getClickbox().contains(mousePos.getX(), mousePos.getY()))
+            {
+                return clickCandidates[i];
+            }
+        }
+
+        return -1;
+    }
+
+    private WorldPoint toMapTile(Point mousePos)
+    {
+        return new WorldPoint(worldMapGeometry.toWorldX(mousePos.getX()), worldMapGeometry.toWorldY(mousePos.getY()), 0);
+    }
+
+    /**
+     * Replaces the menu with a copy that has the given entries added, either at the top or the bottom.
+     */
+    private void addMenuEntries(MenuEntry[] menuEntries, boolean onTop, MenuEntry... additions)
+    {
+        final MenuEntry[] merged = new MenuEntry[menuEntries.length + additions.length];
+        if (onTop)
+        {
+            System.arraycopy(menuEntries, 0, merged, 0, menuEntries.length);
+            System.arraycopy(additions, 0, merged, menuEntries.length, additions.length);
+        }
+        else
+        {
+            System.arraycopy(additions, 0, merged, 0, additions.length);
+            System.arraycopy(menuEntries, 0, merged, additions.length, menuEntries.length);
+        }
+
+        client.setMenuEntries(merged);
+    }
+
+    private static int pack(WorldPoint point)
+    {
+        return TileCoords.pack(point.getX(), point.getY(), point.getPlane());
+    }
+
+    private static MenuEntry menuEntry(String option, int identifier)
+    {
+        final MenuEntry entry = new MenuEntry();
+        entry.setOption(option);
+        entry.setTarget(WAYPOINT);
+        entry.setType(MenuAction.RUNELITE.getId());
+        entry.setIdentifier(identifier);
+        return entry;
+    }
+
+    private static boolean hasOption(MenuEntry[] menuEntries, String option)
+    {
+        for (MenuEntry entry : menuEntries)
+        {
+            if (option.equals(entry.getOption()))
+            {
+                return true;
+            }
         }
 
-        final Rectangle worldMapBounds = view.getBounds();
-        return worldMapBounds.contains(mousePos.getX(), mousePos.getY());
+        return false;
     }
 
     private void playSoundEffect()
@@ -0,0 +1,71 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.PanelComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+import javax.inject.Inject;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.util.Locale;
+
+/**
+ * Lists the median and 99th percentile time and the allocations per call of each {@link PluginMetrics} probe
+ * since the last dump, and how many background tasks are waiting for a worker. The text is only rebuilt once a second so the overlay does not skew what it shows.
+ */
+public class MetricsOverlay extends Overlay
+{
+    private static final long REFRESH_NANOS = 1_000_000_000L;
+
+    private final PluginMetrics metrics;
+    private final TaskScheduler taskScheduler;
+    private final PanelComponent panelComponent = new PanelComponent();
+    private long lastRefresh;
+
+    @Inject
+    private MetricsOverlay(PluginMetrics metrics, TaskScheduler taskScheduler)
+    {
+        this.metrics = metrics;
+        this.taskScheduler = taskScheduler;
+        setPosition(OverlayPosition.TOP_LEFT);
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        final long now = System.nanoTime();
+        if (lastRefresh == 0 || now - lastRefresh >= REFRESH_NANOS)
+        {
+            refresh();
+            lastRefresh = now;
+        }
+
+        return panelComponent.render(graphics);
+    }
+
+    private void refresh()
+    {
+        panelComponent.getChildren().clear();
+        panelComponent.getChildren().add(TitleComponent.builder().text("Map Waypoints").build());
+
+        for (PluginMetrics.Probe probe : PluginMetrics.Probe.values())
+        {
+            final TimingHistogram histogram = metrics.getHistogram(probe);
+            final long bytes = metrics.getBytesPerCall(probe);
+            final String timing = String.format(Locale.ROOT, "%.0f / %.0f us", histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0);
+
+            panelComponent.getChildren().add(LineComponent.builder()
+                    .left(probe.getLabel())
+                    .right(bytes >= 0 ? timing + ", " + bytes + " B" : timing)
+                    .build());
+        }
+
+        panelComponent.getChildren().add(LineComponent.builder()
+                .left("Tasks waiting")
+                .right(Integer.toString(taskScheduler.getQueueDepth()))
+                .build());
+    }
+}
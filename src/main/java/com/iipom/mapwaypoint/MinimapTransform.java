@@ -0,0 +1,126 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+import net.runelite.api.Perspective;
+import net.runelite.api.Player;
+import net.runelite.api.Point;
+import net.runelite.api.Varbits;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+
+/**
+ * Maps world tiles to offsets from the middle of the minimap, with the same arithmetic as
+ * {@link Perspective#localToMinimap} but with the widget, the rotation and the player's position read once
+ * per frame rather than once per point.
+ */
+class MinimapTransform
+{
+    private int sin;
+    private int cos;
+    private double angle;
+    private int baseX;
+    private int baseY;
+    private int playerX;
+    private int playerY;
+    private int centerX;
+    private int centerY;
+    private int radius;
+
+    /**
+     * Reads the minimap's position and rotation for this frame.
+     *
+     * @return false if the minimap is not shown or there is no player
+     */
+    boolean update(Client client)
+    {
+        final Widget minimap = getMinimapWidget(client);
+        final Player player = client.getLocalPlayer();
+        if (minimap == null || minimap.isHidden() || player == null)
+        {
+            return false;
+        }
+
+        final int mapAngle = client.getMapAngle() & 0x7FF;
+        sin = Perspective.SINE[mapAngle];
+        cos = Perspective.COSINE[mapAngle];
+        angle = mapAngle * Math.PI / 1024;
+
+        final LocalPoint location = player.getLocalLocation();
+        baseX = client.getBaseX();
+        baseY = client.getBaseY();
+        playerX = location.getX() / 32;
+        playerY = location.getY() / 32;
+
+        final Point canvas = minimap.getCanvasLocation();
+        centerX = canvas.getX() + minimap.getWidth() / 2;
+        centerY = canvas.getY() + minimap.getHeight() / 2;
+        radius = Math.min(minimap.getWidth(), minimap.getHeight()) / 2;
+        return true;
+    }
+
+    /**
+     * @return the horizontal canvas offset of a tile from the middle of the minimap
+     */
+    int offsetX(int x, int y)
+    {
+        final int dx = localX(x) - playerX;
+        final int dy = localY(y) - playerY;
+        return dy * sin + cos * dx >> 16;
+    }
+
+    /**
+     * @return the vertical canvas offset of a tile from the middle of the minimap
+     */
+    int offsetY(int x, int y)
+    {
+        final int dx = localX(x) - playerX;
+        final int dy = localY(y) - playerY;
+        return sin * dx - dy * cos >> 16;
+    }
+
+    int getCenterX()
+    {
+        return centerX;
+    }
+
+    int getCenterY()
+    {
+        return centerY;
+    }
+
+    int getRadius()
+    {
+        return radius;
+    }
+
+    /**
+     * @return the minimap's rotation in radians, as used by {@link java.awt.Graphics2D#rotate}
+     */
+    double getAngle()
+    {
+        return angle;
+    }
+
+    private int localX(int x)
+    {
+        return (((x - baseX) << 7) + 64) / 32;
+    }
+
+    private int localY(int y)
+    {
+        return (((y - baseY) << 7) + 64) / 32;
+    }
+
+    private static Widget getMinimapWidget(Client client)
+    {
+        if (!client.isResized())
+        {
+            return client.getWidget(WidgetInfo.FIXED_VIEWPORT_MINIMAP_DRAW_AREA);
+        }
+
+        return client.getVar(Varbits.SIDE_PANELS) == 1
+                ? client.getWidget(WidgetInfo.RESIZABLE_MINIMAP_DRAW_AREA)
+                : client.getWidget(WidgetInfo.RESIZABLE_MINIMAP_STONES_DRAW_AREA);
+    }
+}
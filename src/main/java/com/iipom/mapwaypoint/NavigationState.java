@@ -0,0 +1,114 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * Where the player is heading and the config values the overlays draw with, as of the last game tick or
+ * config change. Instances are never modified once published by the {@link NavigationTracker}.
+ */
+class NavigationState
+{
+    static final NavigationState NONE = new NavigationState(TileCoords.NONE, TileCoords.NONE, TileCoords.NONE, -1, 0, null, false, false, false, false);
+
+    private final int player;
+    private final int target;
+    private final int heading;
+    private final int distance;
+    private final double bearing;
+    private final Transport transport;
+    private final boolean drawTile;
+    private final boolean drawMinimap;
+    private final boolean drawRoute;
+    private final boolean drawTrail;
+
+    NavigationState(int player, int target, int heading, int distance, double bearing, Transport transport,
+                    boolean drawTile, boolean drawMinimap, boolean drawRoute, boolean drawTrail)
+    {
+        this.player = player;
+        this.target = target;
+        this.heading = heading;
+        this.distance = distance;
+        this.bearing = bearing;
+        this.transport = transport;
+        this.drawTile = drawTile;
+        this.drawMinimap = drawMinimap;
+        this.drawRoute = drawRoute;
+        this.drawTrail = drawTrail;
+    }
+
+    /**
+     * @return the player's packed tile, or {@link TileCoords#NONE} if there is no player
+     */
+    int getPlayer()
+    {
+        return player;
+    }
+
+    /**
+     * @return the current waypoint's packed tile, or {@link TileCoords#NONE} if there are no waypoints
+     */
+    int getTarget()
+    {
+        return target;
+    }
+
+    boolean hasTarget()
+    {
+        return player != TileCoords.NONE && target != TileCoords.NONE;
+    }
+
+    boolean isSamePlane()
+    {
+        return hasTarget() && TileCoords.plane(player) == TileCoords.plane(target);
+    }
+
+    /**
+     * @return the tile the arrow points at: the next transport on the route, or the waypoint itself
+     */
+    int getHeading()
+    {
+        return heading;
+    }
+
+    /**
+     * @return the steps left to the waypoint, or -1 if it is on another plane and there is no route to it
+     */
+    int getDistance()
+    {
+        return distance;
+    }
+
+    /**
+     * @return the direction from the player to the heading in radians, counter-clockwise from east
+     */
+    double getBearing()
+    {
+        return bearing;
+    }
+
+    /**
+     * @return the next transport on the route, or null when walking straight to the waypoint
+     */
+    Transport getTransport()
+    {
+        return transport;
+    }
+
+    boolean isDrawTile()
+    {
+        return drawTile;
+    }
+
+    boolean isDrawMinimap()
+    {
+        return drawMinimap;
+    }
+
+    boolean isDrawRoute()
+    {
+        return drawRoute;
+    }
+
+    boolean isDrawTrail()
+    {
+        return drawTrail;
+    }
+}
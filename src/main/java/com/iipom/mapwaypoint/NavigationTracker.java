@@ -0,0 +1,106 @@
+package com.iipom.mapwaypoint;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Works out the distance and direction to the current waypoint once per game tick, along with the config
+ * values the overlays need, and publishes them as a {@link NavigationState}. Overlays read the latest state
+ * every frame instead of computing the same values each.
+ */
+@Singleton
+public class NavigationTracker
+{
+    private final MapWaypointConfig config;
+    private final Pathfinder pathfinder;
+
+    private boolean drawTile;
+    private boolean drawMinimap;
+    private boolean drawRoute;
+    private boolean drawTrail;
+
+    private int lastPlayer = TileCoords.NONE;
+    private int lastTarget = TileCoords.NONE;
+    private TransportRoute lastRoute;
+
+    private volatile NavigationState state = NavigationState.NONE;
+
+    @Inject
+    private NavigationTracker(MapWaypointConfig config, Pathfinder pathfinder)
+    {
+        this.config = config;
+        this.pathfinder = pathfinder;
+        updateConfig();
+    }
+
+    NavigationState getState()
+    {
+        return state;
+    }
+
+    /**
+     * Publishes a new state for the player's and the waypoint's packed tiles, either of which may be
+     * {@link TileCoords#NONE}, and the transport route between them if there is one.
+     */
+    void update(int player, int target, TransportRoute route)
+    {
+        lastPlayer = player;
+        lastTarget = target;
+        lastRoute = route;
+
+        if (player == TileCoords.NONE || target == TileCoords.NONE)
+        {
+            state = new NavigationState(player, target, TileCoords.NONE, -1, 0, null, drawTile, drawMinimap, drawRoute, drawTrail);
+            return;
+        }
+
+        // With a transport route the player heads to the next transport rather than the waypoint itself
+        final int heading;
+        final int distance;
+
+        if (route == null)
+        {
+            heading = target;
+            distance = TileCoords.plane(player) == TileCoords.plane(target) ? calculateDistance(player, target) : -1;
+        }
+        else if (route.getNextHop() != TileCoords.NONE)
+        {
+            heading = route.getNextHop();
+            distance = calculateDistance(player, heading) + route.getRemaining();
+        }
+        else
+        {
+            heading = target;
+            distance = route.getRemaining();
+        }
+
+        final double bearing = Math.atan2(TileCoords.y(heading) - TileCoords.y(player), TileCoords.x(heading) - TileCoords.x(player));
+        final Transport transport = route != null ? route.getTransport() : null;
+
+        state = new NavigationState(player, target, heading, distance, bearing, transport, drawTile, drawMinimap, drawRoute, drawTrail);
+    }
+
+    /**
+     * Reads the config values again and publishes them with the last known positions.
+     */
+    void updateConfig()
+    {
+        drawTile = config.drawTile();
+        drawMinimap = config.drawMinimap();
+        drawRoute = config.drawRoute();
+        drawTrail = config.drawTrail();
+        update(lastPlayer, lastTarget, lastRoute);
+    }
+
+    void reset()
+    {
+        update(TileCoords.NONE, TileCoords.NONE, null);
+    }
+
+    private int calculateDistance(int player, int target)
+    {
+        // Walking distance once a route has been found, straight-line distance until then
+        final PathResult path = pathfinder.getResult(target);
+        return path != null ? path.getDistance() : TileCoords.distance(player, target);
+    }
+}
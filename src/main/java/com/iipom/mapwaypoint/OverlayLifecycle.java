@@ -0,0 +1,106 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the plugin's overlays registered with the overlay manager only while they have something to draw, so
+ * an overlay with nothing to do costs nothing per frame. Overlays that draw the way to the current waypoint say
+ * from a {@link NavigationState} whether they are needed, and are updated whenever a new one is published; the
+ * others are shown and hidden directly. Only used from the client thread.
+ */
+@Singleton
+public class OverlayLifecycle
+{
+    /**
+     * An overlay whose need to be drawn follows from the navigation state alone.
+     */
+    interface NavigationOverlay
+    {
+        /**
+         * @return whether the overlay would draw anything with the state
+         */
+        boolean isNeeded(NavigationState state);
+    }
+
+    private final Consumer<Overlay> register;
+    private final Consumer<Overlay> unregister;
+    private final Set<Overlay> shown = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Overlay> navigationOverlays = new ArrayList<>();
+
+    @Inject
+    private OverlayLifecycle(OverlayManager overlayManager)
+    {
+        this(overlayManager::add, overlayManager::remove);
+    }
+
+    OverlayLifecycle(Consumer<Overlay> register, Consumer<Overlay> unregister)
+    {
+        this.register = register;
+        this.unregister = unregister;
+    }
+
+    /**
+     * Starts showing the overlay whenever a navigation state needs it.
+     */
+    <T extends Overlay & NavigationOverlay> void manage(T overlay)
+    {
+        if (!navigationOverlays.contains(overlay))
+        {
+            navigationOverlays.add(overlay);
+        }
+    }
+
+    /**
+     * Shows or hides each overlay managed by {@link #manage} for a newly published state.
+     */
+    void update(NavigationState state)
+    {
+        for (Overlay overlay : navigationOverlays)
+        {
+            setShown(overlay, ((NavigationOverlay) overlay).isNeeded(state));
+        }
+    }
+
+    void setShown(Overlay overlay, boolean needed)
+    {
+        if (needed)
+        {
+            if (shown.add(overlay))
+            {
+                register.accept(overlay);
+            }
+        }
+        else if (shown.remove(overlay))
+        {
+            unregister.accept(overlay);
+        }
+    }
+
+    boolean isShown(Overlay overlay)
+    {
+        return shown.contains(overlay);
+    }
+
+    /**
+     * Hides every overlay and stops managing them.
+     */
+    void clear()
+    {
+        for (Overlay overlay : shown)
+        {
+            unregister.accept(overlay);
+        }
+        shown.clear();
+        navigationOverlays.clear();
+    }
+}
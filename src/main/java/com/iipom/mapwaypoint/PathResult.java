@@ -0,0 +1,77 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * Immutable walking route published by the {@link Pathfinder}. The route is shared between results, as
+ * the player walks along it only the offset of their current tile changes.
+ */
+class PathResult
+{
+    private final int[] tiles;
+    private final int offset;
+    private final int target;
+
+    PathResult(int[] tiles, int offset, int target)
+    {
+        this.tiles = tiles;
+        this.offset = offset;
+        this.target = target;
+    }
+
+    int getTarget()
+    {
+        return target;
+    }
+
+    int getOffset()
+    {
+        return offset;
+    }
+
+    int[] getTiles()
+    {
+        return tiles;
+    }
+
+    int getEnd()
+    {
+        return tiles[tiles.length - 1];
+    }
+
+    /**
+     * @return true if the route ends at the target rather than the closest reachable tile to it
+     */
+    boolean isComplete()
+    {
+        return getEnd() == target;
+    }
+
+    /**
+     * @return the number of steps left along the route, plus the straight-line remainder if it is incomplete
+     */
+    int getDistance()
+    {
+        return tiles.length - 1 - offset + TileCoords.distance(getEnd(), target);
+    }
+
+    /**
+     * @return the index of the given tile on the remaining route, or -1 if the player has left it
+     */
+    int indexOf(int tile, int lookahead)
+    {
+        final int limit = Math.min(tiles.length, offset + lookahead + 1);
+        for (int i = offset; i < limit; i++)
+        {
+            if (tiles[i] == tile)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    PathResult advance(int newOffset)
+    {
+        return new PathResult(tiles, newOffset, target);
+    }
+}
@@ -0,0 +1,221 @@
+package com.iipom.mapwaypoint;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A* over a rectangular window of a {@link CollisionMap}. Every step, including diagonals, costs one tile,
+ * so the Chebyshev distance is an exact lower bound. Buffers are reused between searches and the class is
+ * not thread-safe; each worker should own its own instance. A search polls whether it has been cancelled every
+ * {@value #CANCEL_CHECK_INTERVAL} expansions, and gives up without a path if it has.
+ */
+class PathSearch
+{
+    private static final int[] DX = {0, 1, 0, -1, 1, 1, -1, -1};
+    private static final int[] DY = {1, 0, -1, 0, 1, -1, -1, 1};
+
+    // A power of two
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    private int minX;
+    private int minY;
+    private int width;
+    private int height;
+
+    private int[] cost = new int[0];
+    private int[] parent = new int[0];
+    private int[] seen = new int[0];
+    private int[] goals = new int[0];
+    private int stamp;
+
+    private final IntHeap open = new IntHeap(256);
+
+    private int expansions;
+
+    int getExpansions()
+    {
+        return expansions;
+    }
+
+    /**
+     * Finds a path between two tiles on the same plane. If the goal cannot be reached the path ends at the
+     * explored tile closest to it instead.
+     *
+     * @return packed tiles from start to end, or null if the start lies outside the window or the search was cancelled
+     */
+    int[] findPath(CollisionMap map, int plane, int start, int goal, int minX, int minY, int width, int height, int maxExpansions,
+                   BooleanSupplier cancelled)
+    {
+        if (!prepare(minX, minY, width, height) || !contains(TileCoords.x(start), TileCoords.y(start)))
+        {
+            return null;
+        }
+
+        final int end = run(map, plane, start, goal, maxExpansions, false, cancelled);
+        return end == -1 ? null : buildPath(end, plane);
+    }
+
+    /**
+     * Finds the shortest path from {@code start} to any of the given tiles, used to rejoin an existing route.
+     *
+     * @return packed tiles from start to the first route tile reached, or null if none was reached
+     */
+    int[] findPathToAny(CollisionMap map, int plane, int start, int[] targets, int from, int to,
+                        int minX, int minY, int width, int height, int maxExpansions, BooleanSupplier cancelled)
+    {
+        if (!prepare(minX, minY, width, height) || !contains(TileCoords.x(start), TileCoords.y(start)))
+        {
+            return null;
+        }
+
+        for (int i = from; i < to; i++)
+        {
+            final int x = TileCoords.x(targets[i]);
+            final int y = TileCoords.y(targets[i]);
+            if (contains(x, y) && TileCoords.plane(targets[i]) == plane)
+            {
+                goals[index(x, y)] = stamp;
+            }
+        }
+
+        final int end = run(map, plane, start, TileCoords.NONE, maxExpansions, true, cancelled);
+        return end == -1 ? null : buildPath(end, plane);
+    }
+
+    private boolean prepare(int minX, int minY, int width, int height)
+    {
+        if (width <= 0 || height <= 0)
+        {
+            return false;
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.width = width;
+        this.height = height;
+
+        final int cells = width * height;
+        if (cost.length < cells)
+        {
+            cost = new int[cells];
+            parent = new int[cells];
+            seen = new int[cells];
+            goals = new int[cells];
+            stamp = 0;
+        }
+
+        if (++stamp == Integer.MAX_VALUE)
+        {
+            Arrays.fill(seen, 0);
+            Arrays.fill(goals, 0);
+            stamp = 1;
+        }
+
+        open.clear();
+        expansions = 0;
+        return true;
+    }
+
+    private int run(CollisionMap map, int plane, int start, int goal, int maxExpansions, boolean multiGoal, BooleanSupplier cancelled)
+    {
+        final int goalX = TileCoords.x(goal);
+        final int goalY = TileCoords.y(goal);
+
+        final int startNode = index(TileCoords.x(start), TileCoords.y(start));
+        seen[startNode] = stamp;
+        cost[startNode] = 0;
+        parent[startNode] = -1;
+        open.push(startNode, multiGoal ? 0 : heuristic(startNode, goalX, goalY));
+
+        int best = startNode;
+        int bestHeuristic = multiGoal ? Integer.MAX_VALUE : heuristic(startNode, goalX, goalY);
+
+        while (!open.isEmpty())
+        {
+            final int key = open.peekKey();
+            final int node = open.poll();
+            final int nodeCost = cost[node];
+            final int h = multiGoal ? 0 : heuristic(node, goalX, goalY);
+
+            // Stale heap entry, a cheaper route to this node was found after it was queued
+            if (nodeCost + h != key)
+            {
+                continue;
+            }
+
+            if (multiGoal ? goals[node] == stamp : h == 0)
+            {
+                return node;
+            }
+
+            if (!multiGoal && h < bestHeuristic)
+            {
+                best = node;
+                bestHeuristic = h;
+            }
+
+            if ((expansions & (CANCEL_CHECK_INTERVAL - 1)) == 0 && cancelled.getAsBoolean())
+            {
+                return -1;
+            }
+
+            if (++expansions > maxExpansions)
+            {
+                break;
+            }
+
+            final int x = minX + node % width;
+            final int y = minY + node / width;
+
+            for (int dir = 0; dir < DX.length; dir++)
+            {
+                final int nx = x + DX[dir];
+                final int ny = y + DY[dir];
+                if (!contains(nx, ny) || !map.canMove(x, y, plane, DX[dir], DY[dir]))
+                {
+                    continue;
+                }
+
+                final int next = index(nx, ny);
+                final int nextCost = nodeCost + 1;
+                if (seen[next] == stamp && cost[next] <= nextCost)
+                {
+                    continue;
+                }
+
+                seen[next] = stamp;
+                cost[next] = nextCost;
+                parent[next] = node;
+                open.push(next, nextCost + (multiGoal ? 0 : heuristic(next, goalX, goalY)));
+            }
+        }
+
+        return multiGoal ? -1 : best;
+    }
+
+    private int[] buildPath(int end, int plane)
+    {
+        final int[] path = new int[cost[end] + 1];
+        for (int node = end, i = path.length - 1; node != -1; node = parent[node], i--)
+        {
+            path[i] = TileCoords.pack(minX + node % width, minY + node / width, plane);
+        }
+
+        return path;
+    }
+
+    private boolean contains(int x, int y)
+    {
+        return x >= minX && y >= minY && x < minX + width && y < minY + height;
+    }
+
+    private int index(int x, int y)
+    {
+        return (y - minY) * width + (x - minX);
+    }
+
+    private int heuristic(int node, int goalX, int goalY)
+    {
+        return Math.max(Math.abs(minX + node % width - goalX), Math.abs(minY + node / width - goalY));
+    }
+}
@@ -0,0 +1,257 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Client;
+import net.runelite.api.Constants;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps a walking route from the player to the current waypoint up to date. Searches run on the
+ * {@link TaskScheduler} against a snapshot of the scene's collision flags, falling back to the
+ * {@link CollisionMapCache} outside the scene, and their routes are handed back on the client thread on the
+ * tick after they finish. A search for another target supersedes the one in flight, which stops at its next
+ * cancellation check. When the player strays from the route it is repaired by a small search back onto the
+ * remaining route rather than searched again from scratch.
+ */
+@Slf4j
+@Singleton
+public class Pathfinder
+{
+    private static final int MAX_EXPANSIONS = 200_000;
+    private static final int MAX_WINDOW_SIZE = 512;
+    private static final int WINDOW_PADDING = 32;
+    private static final int MAX_REPAIR_EXPANSIONS = 512;
+    private static final int MAX_STEPS_PER_TICK = 4;
+
+    // Searches that overlapped the cache giving a slot to another region are run again, up to this many times
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Client client;
+    private final CollisionMapCache collisionMapCache;
+    private final TaskScheduler taskScheduler;
+
+    // One per worker, a superseded search may still be running next to the one replacing it
+    private final ThreadLocal<PathSearch> searches = ThreadLocal.withInitial(PathSearch::new);
+
+    // Reused between searches, only written while no search is in flight
+    private SceneCollisionMap snapshot;
+
+    // The rest is only touched on the client thread
+    private PathResult result;
+    private int searchTarget = TileCoords.NONE;
+
+    @Inject
+    private Pathfinder(Client client, CollisionMapCache collisionMapCache, TaskScheduler taskScheduler)
+    {
+        this.client = client;
+        this.collisionMapCache = collisionMapCache;
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * @return the latest route towards the given target, or null if none has been found yet
+     */
+    PathResult getResult(int target)
+    {
+        final PathResult current = result;
+        return current != null && current.getTarget() == target ? current : null;
+    }
+
+    /**
+     * Called on the client thread once per tick with the player's and the waypoint's packed tiles.
+     */
+    void update(int player, int target)
+    {
+        if (target == TileCoords.NONE || player == TileCoords.NONE || TileCoords.plane(target) != TileCoords.plane(player))
+        {
+            result = null;
+            return;
+        }
+
+        final PathResult current = getResult(target);
+        if (current != null)
+        {
+            final int index = current.indexOf(player, MAX_STEPS_PER_TICK);
+            if (index == current.getOffset())
+            {
+                return;
+            }
+
+            if (index != -1)
+            {
+                result = current.advance(index);
+                return;
+            }
+        }
+
+        if (searchTarget == target)
+        {
+            // A search is already on its way, the tick after it finishes re-checks against its result
+            return;
+        }
+
+        // A superseded search may still be reading the snapshot
+        final boolean inFlight = searchTarget != TileCoords.NONE;
+        final SceneCollisionMap scene = SceneCollisionMap.capture(client, inFlight ? null : snapshot);
+        if (scene == null)
+        {
+            return;
+        }
+
+        if (!inFlight)
+        {
+            snapshot = scene;
+        }
+
+        searchTarget = target;
+        try
+        {
+            taskScheduler.submit(Pathfinder.class, cancelled ->
+            {
+                try
+                {
+                    return search(scene, player, target, current, cancelled);
+                }
+                catch (RuntimeException e)
+                {
+                    log.warn("Waypoint path search failed", e);
+                    return null;
+                }
+            }, found ->
+            {
+                result = found;
+                searchTarget = TileCoords.NONE;
+            });
+        }
+        catch (RuntimeException e)
+        {
+            // Nothing will hand a result back, so the next tick has to be free to submit again
+            searchTarget = TileCoords.NONE;
+            log.warn("Unable to queue waypoint path search", e);
+        }
+    }
+
+    void reset()
+    {
+        result = null;
+        searchTarget = TileCoords.NONE;
+    }
+
+    private PathResult search(SceneCollisionMap scene, int player, int target, PathResult previous, BooleanSupplier cancelled)
+    {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !cancelled.getAsBoolean(); attempt++)
+        {
+            final int stamp = collisionMapCache.readStamp();
+            final PathResult found = searchOnce(scene, player, target, previous, cancelled);
+            if (collisionMapCache.validate(stamp))
+            {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    private PathResult searchOnce(SceneCollisionMap scene, int player, int target, PathResult previous, BooleanSupplier cancelled)
+    {
+        final PathSearch search = searches.get();
+        final int plane = TileCoords.plane(player);
+
+        CollisionMap map = scene;
+        int minX = scene.getBaseX();
+        int minY = scene.getBaseY();
+        int width = Constants.SCENE_SIZE;
+        int height = Constants.SCENE_SIZE;
+
+        if (collisionMapCache.isLoaded())
+        {
+            map = new LayeredCollisionMap(scene, collisionMapCache);
+            minX = windowStart(TileCoords.x(player), TileCoords.x(target));
+            minY = windowStart(TileCoords.y(player), TileCoords.y(target));
+            width = windowSize(TileCoords.x(player), TileCoords.x(target));
+            height = windowSize(TileCoords.y(player), TileCoords.y(target));
+        }
+
+        // Routes that stop short of the target are searched again, the scene may have moved closer to it
+        if (previous != null && previous.isComplete())
+        {
+            final int[] route = previous.getTiles();
+            final int[] detour = search.findPathToAny(map, plane, player, route, previous.getOffset(), route.length,
+                    minX, minY, width, height, MAX_REPAIR_EXPANSIONS, cancelled);
+
+            if (detour != null)
+            {
+                return splice(detour, route, target);
+            }
+        }
+
+        final int[] path = search.findPath(map, plane, player, target, minX, minY, width, height, MAX_EXPANSIONS, cancelled);
+        return path == null ? null : new PathResult(path, 0, target);
+    }
+
+    /**
+     * Start of the search window along one axis: the span between player and target plus some padding,
+     * trimmed on the target's side when it would exceed the maximum window size.
+     */
+    private static int windowStart(int player, int target)
+    {
+        if (Math.abs(target - player) + 2 * WINDOW_PADDING < MAX_WINDOW_SIZE || target >= player)
+        {
+            return Math.min(player, target) - WINDOW_PADDING;
+        }
+
+        return player + WINDOW_PADDING - MAX_WINDOW_SIZE + 1;
+    }
+
+    private static int windowSize(int player, int target)
+    {
+        return Math.min(Math.abs(target - player) + 2 * WINDOW_PADDING + 1, MAX_WINDOW_SIZE);
+    }
+
+    private static PathResult splice(int[] detour, int[] route, int target)
+    {
+        final int joined = detour[detour.length - 1];
+
+        int joinIndex = 0;
+        while (route[joinIndex] != joined)
+        {
+            joinIndex++;
+        }
+
+        final int[] tiles = new int[detour.length + route.length - joinIndex - 1];
+        System.arraycopy(detour, 0, tiles, 0, detour.length);
+        System.arraycopy(route, joinIndex + 1, tiles, detour.length, route.length - joinIndex - 1);
+        return new PathResult(tiles, 0, target);
+    }
+
+    /**
+     * Prefers the live scene snapshot, which reflects the current state of doors and gates, and falls back to
+     * the cache for edges outside of it.
+     */
+    private static class LayeredCollisionMap implements CollisionMap
+    {
+        private final SceneCollisionMap scene;
+        private final CollisionMapCache cache;
+
+        LayeredCollisionMap(SceneCollisionMap scene, CollisionMapCache cache)
+        {
+            this.scene = scene;
+            this.cache = cache;
+        }
+
+        @Override
+        public boolean canMoveNorth(int x, int y, int plane)
+        {
+            return scene.contains(x, y) && scene.contains(x, y + 1) ? scene.canMoveNorth(x, y, plane) : cache.canMoveNorth(x, y, plane);
+        }
+
+        @Override
+        public boolean canMoveEast(int x, int y, int plane)
+        {
+            return scene.contains(x, y) && scene.contains(x + 1, y) ? scene.canMoveEast(x, y, plane) : cache.canMoveEast(x, y, plane);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.iipom.mapwaypoint;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times the overlays and event handlers and counts the bytes they allocate, for the debug overlay and a
+ * JSONL file written once a minute. While disabled, {@link #start} and {@link #stop} only read a volatile flag.
+ * <p>
+ * Each probe may only be entered by one thread at a time, which holds for the overlays and event handlers
+ * as the client calls them all on its own thread. Work on other threads is only timed, through {@link #record}.
+ */
+@Slf4j
+@Singleton
+public class PluginMetrics
+{
+    private static final String FILE_NAME = "metrics.jsonl";
+    private static final long DUMP_INTERVAL_SECONDS = 60;
+    private static final int OVERHEAD_SAMPLES = 16;
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    @Getter(AccessLevel.PACKAGE)
+    @RequiredArgsConstructor
+    enum Probe
+    {
+        ARROW_OVERLAY("arrowOverlay", "Arrow overlay", true),
+        TILE_OVERLAY("tileOverlay", "Tile overlay", true),
+        MINIMAP_OVERLAY("minimapOverlay", "Minimap overlay", true),
+        MENU_OPENED("menuOpened", "Menu opened", true),
+        MENU_OPTION_CLICKED("menuOptionClicked", "Menu clicked", true),
+        MOUSE_CLICKED("mouseClicked", "Mouse clicked", true),
+        TASK_WAIT("taskWait", "Task queued", false),
+        TASK_RUN("taskRun", "Task run", false);
+
+        private final String key;
+        private final String label;
+
+        // Whether the probe is entered and left through start and stop, which count allocations
+        private final boolean onClientThread;
+    }
+
+    private static final Probe[] PROBES = Probe.values();
+
+    private final ScheduledExecutorService executor;
+    private final File directory;
+    private final TimingHistogram[] histograms = new TimingHistogram[PROBES.length];
+    private final AtomicLong[] allocatedBytes = new AtomicLong[PROBES.length];
+
+    // Allocation counter of the thread inside each probe when it was entered
+    private final long[] startBytes = new long[PROBES.length];
+
+    // Bytes the allocation counter allocates itself between two reads, taken off every probe's count
+    private long counterOverhead;
+
+    // Whether allocation counting was already on when recording started, so stopping leaves it as it was
+    private boolean allocationCountingWasEnabled;
+
+    private volatile boolean enabled;
+    private ScheduledFuture<?> dumpTask;
+
+    @Inject
+    private PluginMetrics(ScheduledExecutorService executor)
+    {
+        this(executor, MapWaypointPlugin.WAYPOINT_DIR);
+    }
+
+    PluginMetrics(ScheduledExecutorService executor, File directory)
+    {
+        this.executor = executor;
+        this.directory = directory;
+        for (int i = 0; i < PROBES.length; i++)
+        {
+            histograms[i] = new TimingHistogram();
+            allocatedBytes[i] = new AtomicLong();
+        }
+    }
+
+    boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops recording, and the periodic dump with it. Called on the client thread.
+     */
+    synchronized void setEnabled(boolean enabled)
+    {
+        if (enabled == this.enabled)
+        {
+            return;
+        }
+
+        if (enabled)
+        {
+            reset();
+            startCountingAllocations();
+            dumpTask = executor.scheduleAtFixedRate(this::dump, DUMP_INTERVAL_SECONDS, DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        else if (dumpTask != null)
+        {
+            dumpTask.cancel(false);
+            dumpTask = null;
+        }
+
+        if (!enabled)
+        {
+            stopCountingAllocations();
+        }
+
+        this.enabled = enabled;
+    }
+
+    private void startCountingAllocations()
+    {
+        if (THREADS == null)
+        {
+            return;
+        }
+
+        allocationCountingWasEnabled = THREADS.isThreadAllocatedMemoryEnabled();
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        // Some JDKs allocate inside getThreadAllocatedBytes, so the least seen between two reads is subtracted
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < OVERHEAD_SAMPLES; i++)
+        {
+            final long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+        counterOverhead = Math.max(0, overhead);
+    }
+
+    private void stopCountingAllocations()
+    {
+        if (THREADS != null && !allocationCountingWasEnabled)
+        {
+            THREADS.setThreadAllocatedMemoryEnabled(false);
+        }
+    }
+
+    /**
+     * @return the start time to hand to {@link #stop}, or 0 if metrics are disabled
+     */
+    long start(Probe probe)
+    {
+        if (!enabled)
+        {
+            return 0;
+        }
+
+        startBytes[probe.ordinal()] = allocatedBytes();
+        return System.nanoTime();
+    }
+
+    void stop(Probe probe, long start)
+    {
+        if (start == 0)
+        {
+            return;
+        }
+
+        final long nanos = System.nanoTime() - start;
+        final int index = probe.ordinal();
+        histograms[index].record(nanos);
+        allocatedBytes[index].addAndGet(Math.max(0, allocatedBytes() - startBytes[index] - counterOverhead));
+    }
+
+    /**
+     * Records a duration measured on any thread, without counting allocations.
+     */
+    void record(Probe probe, long nanos)
+    {
+        if (enabled)
+        {
+            histograms[probe.ordinal()].record(nanos);
+        }
+    }
+
+    TimingHistogram getHistogram(Probe probe)
+    {
+        return histograms[probe.ordinal()];
+    }
+
+    /**
+     * @return the average bytes allocated per call since the last dump, or -1 if they are not counted
+     */
+    long getBytesPerCall(Probe probe)
+    {
+        if (THREADS == null || !probe.isOnClientThread())
+        {
+            return -1;
+        }
+
+        final long count = histograms[probe.ordinal()].getCount();
+        return count == 0 ? 0 : allocatedBytes[probe.ordinal()].get() / count;
+    }
+
+    /**
+     * Appends a line per probe to the metrics file and starts the next interval. Performs file IO and should
+     * not be called on the client thread.
+     */
+    void dump()
+    {
+        final long time = System.currentTimeMillis();
+        final StringBuilder lines = new StringBuilder();
+        for (Probe probe : PROBES)
+        {
+            final TimingHistogram histogram = getHistogram(probe);
+            lines.append(String.format(Locale.ROOT,
+                    "{\"time\":%d,\"probe\":\"%s\",\"count\":%d,\"p50Nanos\":%d,\"p99Nanos\":%d,\"maxNanos\":%d,\"bytesPerCall\":%d}%n",
+                    time, probe.getKey(), histogram.getCount(), histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(99), histogram.getMax(), getBytesPerCall(probe)));
+        }
+        reset();
+
+        directory.mkdirs();
+        final File file = new File(directory, FILE_NAME);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8))
+        {
+            out.write(lines.toString());
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to write metrics to {}", file, e);
+        }
+    }
+
+    private void reset()
+    {
+        for (int i = 0; i < PROBES.length; i++)
+        {
+            histograms[i].reset();
+            allocatedBytes[i].set(0);
+        }
+    }
+
+    private static long allocatedBytes()
+    {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean()
+    {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            return (com.sun.management.ThreadMXBean) bean;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+package com.iipom.mapwaypoint;
+
+import java.util.Arrays;
+
+/**
+ * Reduces a line of tile samples to the points it needs to stay within a tolerance of every sample, while the
+ * samples are still coming in. After each kept point follows the longest run of samples whose chord, checked
+ * like a Douglas-Peucker segment, passes within the tolerance of all samples in between; the sample before the
+ * first one that breaks this is kept next. Only the samples since the last kept point are held, at most
+ * {@value #MAX_WINDOW} of them.
+ */
+class PolylineSimplifier
+{
+    private static final int MAX_WINDOW = 1024;
+
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int size;
+
+    // Samples since the last kept point, the newest one ending the line for now
+    private final int[] windowX = new int[MAX_WINDOW];
+    private final int[] windowY = new int[MAX_WINDOW];
+    private int window;
+
+    private double toleranceSquared;
+
+    /**
+     * Starts a new line, keeping points within the given number of tiles of the samples.
+     */
+    void reset(double tolerance)
+    {
+        size = 0;
+        window = 0;
+        toleranceSquared = tolerance * tolerance;
+    }
+
+    void clear()
+    {
+        size = 0;
+        window = 0;
+    }
+
+    boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of points of the line, counting the newest sample
+     */
+    int size()
+    {
+        return window > 0 ? size + 1 : size;
+    }
+
+    int getX(int index)
+    {
+        return index < size ? xs[index] : windowX[window - 1];
+    }
+
+    int getY(int index)
+    {
+        return index < size ? ys[index] : windowY[window - 1];
+    }
+
+    void add(int x, int y)
+    {
+        if (size == 0)
+        {
+            keep(x, y);
+            return;
+        }
+
+        final int lastX = window > 0 ? windowX[window - 1] : xs[size - 1];
+        final int lastY = window > 0 ? windowY[window - 1] : ys[size - 1];
+        if (x == lastX && y == lastY)
+        {
+            return;
+        }
+
+        if (window == MAX_WINDOW || !chordFits(x, y))
+        {
+            keep(lastX, lastY);
+            window = 0;
+        }
+
+        windowX[window] = x;
+        windowY[window] = y;
+        window++;
+    }
+
+    /**
+     * Keeps the newest sample, ending the line.
+     */
+    void finish()
+    {
+        if (window > 0)
+        {
+            keep(windowX[window - 1], windowY[window - 1]);
+            window = 0;
+        }
+    }
+
+    /**
+     * @return whether the chord from the last kept point to the given one passes close enough to every sample since
+     */
+    private boolean chordFits(int x, int y)
+    {
+        final int ax = xs[size - 1];
+        final int ay = ys[size - 1];
+        final double dx = x - ax;
+        final double dy = y - ay;
+        final double lengthSquared = dx * dx + dy * dy;
+
+        for (int i = 0; i < window; i++)
+        {
+            final double px = windowX[i] - ax;
+            final double py = windowY[i] - ay;
+
+            // Distance to the segment rather than the line, so doubling back is not simplified away
+            final double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, (px * dx + py * dy) / lengthSquared));
+            final double ex = px - t * dx;
+            final double ey = py - t * dy;
+            if (ex * ex + ey * ey > toleranceSquared)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void keep(int x, int y)
+    {
+        if (size == xs.length)
+        {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+    }
+}
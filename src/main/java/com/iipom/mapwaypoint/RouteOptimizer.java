@@ -0,0 +1,428 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Orders a set of waypoints into a short route from the player through all of them. Each worker of a fork-join
+ * pool builds a route by going to the nearest waypoint not yet on it, the first strictly and the others with the
+ * odd second nearest for variety, then improves it with 2-opt and Or-opt moves until neither helps or the time
+ * budget runs out. Distances are in tiles as the player walks, diagonals included, with a fixed cost for each
+ * plane changed. Every route shorter than the best so far is published through a volatile field, so the
+ * client thread can follow better orders as they are found. Starting another search cancels the running one.
+ * <p>
+ * The searches run on a pool of the optimizer's own with a few low priority threads, so they never compete with
+ * other users of the common pool. It is created by the first search and shut down by {@link #close()}.
+ */
+@Slf4j
+@Singleton
+public class RouteOptimizer
+{
+    private static final long TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int PLANE_CHANGE_TILES = 64;
+    private static final int MAX_MOVED_SEGMENT = 3;
+    private static final int MAX_WORKERS = 4;
+
+    private final Supplier<ForkJoinPool> pools;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // Only touched on the client thread, null until the first search and after closing
+    private ForkJoinPool pool;
+
+    private volatile RouteOrder result;
+
+    @Inject
+    private RouteOptimizer()
+    {
+        this(RouteOptimizer::createPool);
+    }
+
+    RouteOptimizer(Supplier<ForkJoinPool> pools)
+    {
+        this.pools = pools;
+    }
+
+    /**
+     * @return the shortest order found so far for the latest search, or null if there is none yet
+     */
+    RouteOrder getResult()
+    {
+        final RouteOrder current = result;
+        return current != null && current.getGeneration() == generation.get() ? current : null;
+    }
+
+    /**
+     * Starts ordering the waypoints from the player's packed tile, in place of any search still running. Called on
+     * the client thread, which the waypoints are read on before returning.
+     */
+    void optimize(int player, WaypointStore waypoints)
+    {
+        final Problem problem = new Problem(player, waypoints, generation.incrementAndGet(), System.nanoTime() + TIME_BUDGET_NANOS);
+        result = null;
+        if (waypoints.isEmpty())
+        {
+            return;
+        }
+
+        if (pool == null)
+        {
+            pool = pools.get();
+        }
+
+        final List<Search> searches = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, pool.getParallelism()); i++)
+        {
+            searches.add(new Search(problem, i));
+        }
+
+        pool.execute(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(searches)));
+    }
+
+    /**
+     * Stops the running search and drops its result.
+     */
+    void cancel()
+    {
+        generation.incrementAndGet();
+        result = null;
+    }
+
+    /**
+     * Stops the running search and shuts the pool down. Called on the client thread; a later search starts a new pool.
+     */
+    void close()
+    {
+        cancel();
+        if (pool != null)
+        {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    static ForkJoinPool createPool()
+    {
+        final ForkJoinPool.ForkJoinWorkerThreadFactory threads = owner ->
+        {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(owner);
+            thread.setName("map-waypoints-route-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+
+        final int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+        return new ForkJoinPool(workers, threads, null, false);
+    }
+
+    private synchronized void publish(Problem problem, int[] route, long length)
+    {
+        final RouteOrder current = result;
+        if (problem.generation != generation.get() || (current != null && current.getGeneration() == problem.generation && current.getLength() <= length))
+        {
+            return;
+        }
+
+        // The route starts with the player, which is not a waypoint
+        final int[] ids = new int[route.length - 1];
+        for (int i = 1; i < route.length; i++)
+        {
+            ids[i - 1] = problem.ids[route[i] - 1];
+        }
+
+        result = new RouteOrder(ids, length, problem.generation);
+    }
+
+    /**
+     * The waypoints of one search as nodes numbered from 1, with the player's tile as node 0.
+     */
+    private final class Problem
+    {
+        private final int[] ids;
+        private final int[] xs;
+        private final int[] ys;
+        private final int[] planes;
+        private final int generation;
+        private final long deadline;
+
+        Problem(int player, WaypointStore waypoints, int generation, long deadline)
+        {
+            final int count = waypoints.size();
+            this.ids = new int[count];
+            this.xs = new int[count + 1];
+            this.ys = new int[count + 1];
+            this.planes = new int[count + 1];
+            this.generation = generation;
+            this.deadline = deadline;
+
+            xs[0] = TileCoords.x(player);
+            ys[0] = TileCoords.y(player);
+            planes[0] = TileCoords.plane(player);
+            for (int i = 0; i < count; i++)
+            {
+                final int id = waypoints.idAt(i);
+                ids[i] = id;
+                xs[i + 1] = waypoints.getX(id);
+                ys[i + 1] = waypoints.getY(id);
+                planes[i + 1] = waypoints.getPlane(id);
+            }
+        }
+
+        int nodes()
+        {
+            return xs.length;
+        }
+
+        int distance(int a, int b)
+        {
+            return Math.max(Math.abs(xs[a] - xs[b]), Math.abs(ys[a] - ys[b])) + Math.abs(planes[a] - planes[b]) * PLANE_CHANGE_TILES;
+        }
+
+        boolean isStopped()
+        {
+            return generation != RouteOptimizer.this.generation.get() || System.nanoTime() - deadline > 0;
+        }
+    }
+
+    private final class Search extends RecursiveAction
+    {
+        private final Problem problem;
+        private final Random random;
+
+        Search(Problem problem, int index)
+        {
+            this.problem = problem;
+            this.random = index == 0 ? null : new Random(index);
+        }
+
+        @Override
+        protected void compute()
+        {
+            try
+            {
+                final int[] route = construct();
+                if (route == null)
+                {
+                    return;
+                }
+
+                publish(problem, route, length(route));
+                while (!problem.isStopped() && (twoOpt(route) | orOpt(route)))
+                {
+                    publish(problem, route, length(route));
+                }
+            }
+            catch (RuntimeException e)
+            {
+                log.warn("Waypoint route optimization failed", e);
+            }
+        }
+
+        /**
+         * @return a route that always goes on to the nearest waypoint, or now and then to the second nearest when
+         * randomized, or null if the search was stopped
+         */
+        private int[] construct()
+        {
+            final int nodes = problem.nodes();
+            final int[] route = new int[nodes];
+            final boolean[] added = new boolean[nodes];
+            added[0] = true;
+
+            for (int i = 1; i < nodes; i++)
+            {
+                if (problem.isStopped())
+                {
+                    return null;
+                }
+
+                final int from = route[i - 1];
+                int nearest = -1;
+                int second = -1;
+                for (int node = 1; node < nodes; node++)
+                {
+                    if (added[node])
+                    {
+                        continue;
+                    }
+
+                    if (nearest == -1 || problem.distance(from, node) < problem.distance(from, nearest))
+                    {
+                        second = nearest;
+                        nearest = node;
+                    }
+                    else if (second == -1 || problem.distance(from, node) < problem.distance(from, second))
+                    {
+                        second = node;
+                    }
+                }
+
+                final int next = random != null && second != -1 && random.nextInt(4) == 0 ? second : nearest;
+                route[i] = next;
+                added[next] = true;
+            }
+
+            return route;
+        }
+
+        /**
+         * Reverses parts of the route wherever that makes it shorter, ending the last one anywhere.
+         *
+         * @return whether the route was changed
+         */
+        private boolean twoOpt(int[] route)
+        {
+            final int last = route.length - 1;
+            boolean improved = false;
+            for (int i = 1; i < last; i++)
+            {
+                if (problem.isStopped())
+                {
+                    return improved;
+                }
+
+                for (int j = i + 1; j <= last; j++)
+                {
+                    final int before = route[i - 1];
+                    final int after = j < last ? route[j + 1] : -1;
+                    long delta = problem.distance(before, route[j]) - problem.distance(before, route[i]);
+                    if (after != -1)
+                    {
+                        delta += problem.distance(route[i], after) - problem.distance(route[j], after);
+                    }
+
+                    if (delta < 0)
+                    {
+                        reverse(route, i, j);
+                        improved = true;
+                    }
+                }
+            }
+
+            return improved;
+        }
+
+        /**
+         * Moves runs of up to {@value #MAX_MOVED_SEGMENT} waypoints, either way round, to wherever else on the
+         * route they fit in shorter.
+         *
+         * @return whether the route was changed
+         */
+        private boolean orOpt(int[] route)
+        {
+            final int last = route.length - 1;
+            boolean improved = false;
+            for (int length = 1; length <= MAX_MOVED_SEGMENT; length++)
+            {
+                for (int start = 1; start + length - 1 <= last; start++)
+                {
+                    if (problem.isStopped())
+                    {
+                        return improved;
+                    }
+
+                    final int end = start + length - 1;
+                    final int first = route[start];
+                    final int lastOfRun = route[end];
+                    final int before = route[start - 1];
+                    final int after = end < last ? route[end + 1] : -1;
+                    final long saved = after != -1
+                            ? problem.distance(before, first) + problem.distance(lastOfRun, after) - problem.distance(before, after)
+                            : problem.distance(before, first);
+
+                    for (int k = 0; k <= last; k++)
+                    {
+                        if (k >= start - 1 && k <= end)
+                        {
+                            continue;
+                        }
+
+                        final int from = route[k];
+                        final int to = k < last ? route[k + 1] : -1;
+                        final long forward;
+                        final long backward;
+                        if (to != -1)
+                        {
+                            final int bridged = problem.distance(from, to);
+                            forward = problem.distance(from, first) + problem.distance(lastOfRun, to) - bridged;
+                            backward = problem.distance(from, lastOfRun) + problem.distance(first, to) - bridged;
+                        }
+                        else
+                        {
+                            forward = problem.distance(from, first);
+                            backward = problem.distance(from, lastOfRun);
+                        }
+
+                        if (Math.min(forward, backward) < saved)
+                        {
+                            move(route, start, end, k, backward < forward);
+                            improved = true;
+                            break;
+                        }
+                    }
+                }
+            }
+
+            return improved;
+        }
+
+        private long length(int[] route)
+        {
+            long length = 0;
+            for (int i = 1; i < route.length; i++)
+            {
+                length += problem.distance(route[i - 1], route[i]);
+            }
+            return length;
+        }
+    }
+
+    private static void reverse(int[] route, int from, int to)
+    {
+        for (; from < to; from++, to--)
+        {
+            final int node = route[from];
+            route[from] = route[to];
+            route[to] = node;
+        }
+    }
+
+    /**
+     * Moves the run from {@code start} to {@code end} to between the nodes at {@code k} and {@code k + 1}.
+     */
+    private static void move(int[] route, int start, int end, int k, boolean reversed)
+    {
+        final int length = end - start + 1;
+        final int[] run = new int[length];
+        System.arraycopy(route, start, run, 0, length);
+
+        final int to;
+        if (k < start)
+        {
+            System.arraycopy(route, k + 1, route, k + 1 + length, start - k - 1);
+            to = k + 1;
+        }
+        else
+        {
+            System.arraycopy(route, end + 1, route, start, k - end);
+            to = k - length + 1;
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            route[to + i] = run[reversed ? length - 1 - i : i];
+        }
+    }
+}
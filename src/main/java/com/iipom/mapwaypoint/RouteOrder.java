@@ -0,0 +1,42 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * Immutable order to visit a set of waypoints in, published by the {@link RouteOptimizer}. Each one found for the
+ * same set is shorter than the one before.
+ */
+class RouteOrder
+{
+    private final int[] ids;
+    private final long length;
+    private final int generation;
+
+    RouteOrder(int[] ids, long length, int generation)
+    {
+        this.ids = ids;
+        this.length = length;
+        this.generation = generation;
+    }
+
+    int size()
+    {
+        return ids.length;
+    }
+
+    int getId(int index)
+    {
+        return ids[index];
+    }
+
+    /**
+     * @return the length of the route from the player through every waypoint in tiles
+     */
+    long getLength()
+    {
+        return length;
+    }
+
+    int getGeneration()
+    {
+        return generation;
+    }
+}
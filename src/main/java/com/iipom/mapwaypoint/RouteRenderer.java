@@ -0,0 +1,233 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+import net.runelite.api.Constants;
+import net.runelite.api.Perspective;
+
+import javax.inject.Inject;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.GeneralPath;
+
+/**
+ * Draws the remaining walking route on the ground as a single line. Only the segments with an end inside the
+ * scene and the viewport are projected, and they are joined into one path. The path is stroked once and the
+ * outline reused until the camera moves or the player moves along the route, so a still frame costs one fill.
+ * Tiles are projected with the same arithmetic as {@link Perspective#localToCanvas}, with the camera read once
+ * per path and the canvas points kept in reused arrays. Not a singleton, the tile overlay has one for the route
+ * and one for the breadcrumb trail. Only used from the client thread.
+ */
+public class RouteRenderer
+{
+    private static final int VIEWPORT_MARGIN = 32;
+    private static final int TILE_FLAG_BRIDGE = 2;
+    private static final int HALF_TILE = Perspective.LOCAL_HALF_TILE_SIZE;
+    private static final int MIN_DEPTH = 50;
+    // Points nearer the scene's edge than a tile are not projected, as with Perspective#localToCanvas
+    private static final int MIN_LOCAL = Perspective.LOCAL_TILE_SIZE;
+    private static final int MAX_LOCAL = (Constants.SCENE_SIZE - 2) * Perspective.LOCAL_TILE_SIZE;
+    // Marks a tile that could not be projected in the canvas arrays
+    private static final int NOT_PROJECTED = Integer.MIN_VALUE;
+    private static final Stroke ROUTE_STROKE = new BasicStroke(2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    private final Client client;
+    private final CameraState camera = new CameraState();
+    private final GeneralPath path = new GeneralPath();
+
+    private Shape outline;
+    private int[] lastTiles;
+    private int lastOffset;
+
+    private int[] canvasX = new int[0];
+    private int[] canvasY = new int[0];
+
+    // The camera and scene, read once per path
+    private int baseX;
+    private int baseY;
+    private int plane;
+    private int cameraX;
+    private int cameraY;
+    private int cameraZ;
+    private int pitchSin;
+    private int pitchCos;
+    private int yawSin;
+    private int yawCos;
+    private int scale;
+    private int centerX;
+    private int centerY;
+    private int[][][] tileHeights;
+    private byte[][][] tileSettings;
+
+    @Inject
+    private RouteRenderer(Client client)
+    {
+        this.client = client;
+    }
+
+    void render(Graphics2D graphics, PathResult route, Color color)
+    {
+        render(graphics, route.getTiles(), route.getOffset(), color);
+    }
+
+    /**
+     * Draws the line through the packed tiles from {@code offset} on. The outline is kept as long as the same
+     * array and offset are passed, so changes made to the array in place need an {@link #invalidate} first.
+     */
+    void render(Graphics2D graphics, int[] tiles, int offset, Color color)
+    {
+        final boolean cameraChanged = camera.update(client);
+        if (cameraChanged || outline == null || tiles != lastTiles || offset != lastOffset)
+        {
+            lastTiles = tiles;
+            lastOffset = offset;
+            outline = ROUTE_STROKE.createStrokedShape(buildPath(lastTiles, lastOffset));
+        }
+
+        graphics.setColor(color);
+        graphics.fill(outline);
+    }
+
+    /**
+     * @return the outline filled by the last call to {@link #render}, or null if there has been none
+     */
+    Shape getOutline()
+    {
+        return outline;
+    }
+
+    /**
+     * Drops the cached outline, e.g. when the scene has been loaded again.
+     */
+    void invalidate()
+    {
+        outline = null;
+        lastTiles = null;
+    }
+
+    private GeneralPath buildPath(int[] tiles, int offset)
+    {
+        path.reset();
+        readCamera();
+
+        final int count = tiles.length - offset;
+        if (canvasX.length < count)
+        {
+            canvasX = new int[count];
+            canvasY = new int[count];
+        }
+        for (int i = 0; i < count; i++)
+        {
+            project(tiles[offset + i], i);
+        }
+
+        final int minX = client.getViewportXOffset() - VIEWPORT_MARGIN;
+        final int minY = client.getViewportYOffset() - VIEWPORT_MARGIN;
+        final int maxX = client.getViewportXOffset() + client.getViewportWidth() + VIEWPORT_MARGIN;
+        final int maxY = client.getViewportYOffset() + client.getViewportHeight() + VIEWPORT_MARGIN;
+
+        boolean previousProjected = false;
+        boolean previousVisible = false;
+        boolean penDown = false;
+
+        for (int i = 0; i < count; i++)
+        {
+            final int x = canvasX[i];
+            final int y = canvasY[i];
+            final boolean projected = x != NOT_PROJECTED;
+            final boolean visible = projected && x >= minX && x <= maxX && y >= minY && y <= maxY;
+
+            // A segment is kept if either of its ends is in view, and dropped if either is outside the scene
+            if (projected && previousProjected && (visible || previousVisible))
+            {
+                if (!penDown)
+                {
+                    path.moveTo(canvasX[i - 1], canvasY[i - 1]);
+                    penDown = true;
+                }
+                path.lineTo(x, y);
+            }
+            else
+            {
+                penDown = false;
+            }
+
+            previousProjected = projected;
+            previousVisible = visible;
+        }
+
+        return path;
+    }
+
+    private void readCamera()
+    {
+        baseX = client.getBaseX();
+        baseY = client.getBaseY();
+        plane = client.getPlane();
+        cameraX = client.getCameraX();
+        cameraY = client.getCameraY();
+        cameraZ = client.getCameraZ();
+        pitchSin = Perspective.SINE[client.getCameraPitch()];
+        pitchCos = Perspective.COSINE[client.getCameraPitch()];
+        yawSin = Perspective.SINE[client.getCameraYaw()];
+        yawCos = Perspective.COSINE[client.getCameraYaw()];
+        scale = client.getScale();
+        centerX = client.getViewportXOffset() + client.getViewportWidth() / 2;
+        centerY = client.getViewportYOffset() + client.getViewportHeight() / 2;
+        tileHeights = client.getTileHeights();
+        tileSettings = client.getTileSettings();
+    }
+
+    /**
+     * Stores the canvas point in the middle of a packed tile at {@code index}, or {@link #NOT_PROJECTED} if the
+     * tile is outside the scene or behind the camera.
+     */
+    private void project(int tile, int index)
+    {
+        canvasX[index] = NOT_PROJECTED;
+
+        final int sceneX = TileCoords.x(tile) - baseX;
+        final int sceneY = TileCoords.y(tile) - baseY;
+        final int localX = (sceneX << Perspective.LOCAL_COORD_BITS) + HALF_TILE;
+        final int localY = (sceneY << Perspective.LOCAL_COORD_BITS) + HALF_TILE;
+        if (TileCoords.plane(tile) != plane || localX < MIN_LOCAL || localY < MIN_LOCAL || localX > MAX_LOCAL || localY > MAX_LOCAL)
+        {
+            return;
+        }
+
+        final int x = localX - cameraX;
+        final int y = localY - cameraY;
+        final int z = tileHeight(sceneX, sceneY) - cameraZ;
+
+        final int x1 = x * yawCos + y * yawSin >> 16;
+        final int y1 = y * yawCos - x * yawSin >> 16;
+        final int y2 = z * pitchCos - y1 * pitchSin >> 16;
+        final int z1 = y1 * pitchCos + z * pitchSin >> 16;
+        if (z1 < MIN_DEPTH)
+        {
+            return;
+        }
+
+        canvasX[index] = centerX + x1 * scale / z1;
+        canvasY[index] = centerY + y2 * scale / z1;
+    }
+
+    /**
+     * @return the height of the middle of a scene tile, the average of its corners, raised a plane under bridges
+     */
+    private int tileHeight(int sceneX, int sceneY)
+    {
+        int z = plane;
+        if (plane < Constants.MAX_Z - 1 && (tileSettings[1][sceneX][sceneY] & TILE_FLAG_BRIDGE) == TILE_FLAG_BRIDGE)
+        {
+            z = plane + 1;
+        }
+
+        final int[][] heights = tileHeights[z];
+        final int south = HALF_TILE * heights[sceneX + 1][sceneY] + HALF_TILE * heights[sceneX][sceneY] >> Perspective.LOCAL_COORD_BITS;
+        final int north = HALF_TILE * heights[sceneX][sceneY + 1] + HALF_TILE * heights[sceneX + 1][sceneY + 1] >> Perspective.LOCAL_COORD_BITS;
+        return HALF_TILE * south + HALF_TILE * north >> Perspective.LOCAL_COORD_BITS;
+    }
+}
@@ -0,0 +1,57 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayLayer;
+import net.runelite.client.ui.overlay.OverlayPosition;
+
+import javax.inject.Inject;
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+/**
+ * Shows the simplified line of a route being drawn on the world map, which is what will become its waypoints.
+ */
+public class RouteSketchOverlay extends Overlay
+{
+    private static final Color LINE_COLOR = new Color(0, 201, 198);
+    private static final Stroke LINE_STROKE = new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    private final MapWaypointPlugin plugin;
+    private final WorldMapGeometry worldMapGeometry;
+    private final Path2D.Float line = new Path2D.Float();
+
+    @Inject
+    private RouteSketchOverlay(MapWaypointPlugin plugin, WorldMapGeometry worldMapGeometry)
+    {
+        this.plugin = plugin;
+        this.worldMapGeometry = worldMapGeometry;
+        setPosition(OverlayPosition.DYNAMIC);
+        setLayer(OverlayLayer.ABOVE_MAP);
+    }
+
+    @Override
+    public Dimension render(Graphics2D graphics)
+    {
+        final PolylineSimplifier sketch = plugin.getRouteSketch();
+        if (sketch.size() < 2 || !worldMapGeometry.isOpen())
+        {
+            return null;
+        }
+
+        line.reset();
+        line.moveTo(worldMapGeometry.toCanvasX(sketch.getX(0)), worldMapGeometry.toCanvasY(sketch.getY(0)));
+        for (int i = 1; i < sketch.size(); i++)
+        {
+            line.lineTo(worldMapGeometry.toCanvasX(sketch.getX(i)), worldMapGeometry.toCanvasY(sketch.getY(i)));
+        }
+
+        final Shape clip = graphics.getClip();
+        graphics.clip(worldMapGeometry.getBounds());
+        graphics.setColor(LINE_COLOR);
+        graphics.setStroke(LINE_STROKE);
+        graphics.draw(line);
+        graphics.setClip(clip);
+
+        return null;
+    }
+}
@@ -0,0 +1,143 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+import net.runelite.api.CollisionData;
+import net.runelite.api.CollisionDataFlag;
+import net.runelite.api.Constants;
+
+/**
+ * Copy of the loaded scene's collision flags, safe to read from a background thread.
+ */
+class SceneCollisionMap implements CollisionMap
+{
+    private static final int SIZE = Constants.SCENE_SIZE;
+
+    private int baseX;
+    private int baseY;
+    private final int[][][] flags;
+
+    private SceneCollisionMap(int[][][] flags)
+    {
+        this.flags = flags;
+    }
+
+    static SceneCollisionMap capture(Client client)
+    {
+        return capture(client, null);
+    }
+
+    /**
+     * Copies the scene's collision flags, reusing the arrays of {@code reuse} when they have the same shape.
+     * The previous contents of {@code reuse} are overwritten, so it must no longer be read by anyone else.
+     */
+    static SceneCollisionMap capture(Client client, SceneCollisionMap reuse)
+    {
+        final CollisionData[] collisionMaps = client.getCollisionMaps();
+        if (collisionMaps == null)
+        {
+            return null;
+        }
+
+        final SceneCollisionMap map = reuse != null && reuse.fits(collisionMaps) ? reuse : new SceneCollisionMap(new int[collisionMaps.length][][]);
+        for (int plane = 0; plane < collisionMaps.length; plane++)
+        {
+            if (collisionMaps[plane] == null)
+            {
+                map.flags[plane] = null;
+                continue;
+            }
+
+            final int[][] planeFlags = collisionMaps[plane].getFlags();
+            if (map.flags[plane] == null)
+            {
+                map.flags[plane] = new int[planeFlags.length][];
+            }
+
+            for (int x = 0; x < planeFlags.length; x++)
+            {
+                if (map.flags[plane][x] == null)
+                {
+                    map.flags[plane][x] = planeFlags[x].clone();
+                }
+                else
+                {
+                    System.arraycopy(planeFlags[x], 0, map.flags[plane][x], 0, planeFlags[x].length);
+                }
+            }
+        }
+
+        map.baseX = client.getBaseX();
+        map.baseY = client.getBaseY();
+        return map;
+    }
+
+    private boolean fits(CollisionData[] collisionMaps)
+    {
+        if (flags.length != collisionMaps.length)
+        {
+            return false;
+        }
+
+        for (int plane = 0; plane < flags.length; plane++)
+        {
+            if (flags[plane] == null || collisionMaps[plane] == null)
+            {
+                continue;
+            }
+
+            final int[][] planeFlags = collisionMaps[plane].getFlags();
+            if (flags[plane].length != planeFlags.length || (planeFlags.length > 0 && flags[plane][0].length != planeFlags[0].length))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    int getBaseX()
+    {
+        return baseX;
+    }
+
+    int getBaseY()
+    {
+        return baseY;
+    }
+
+    boolean contains(int x, int y)
+    {
+        final int sceneX = x - baseX;
+        final int sceneY = y - baseY;
+        return sceneX >= 0 && sceneY >= 0 && sceneX < SIZE && sceneY < SIZE;
+    }
+
+    int getFlags(int x, int y, int plane)
+    {
+        return flags[plane][x - baseX][y - baseY];
+    }
+
+    @Override
+    public boolean canMoveNorth(int x, int y, int plane)
+    {
+        if (!contains(x, y) || !contains(x, y + 1) || plane >= flags.length || flags[plane] == null)
+        {
+            return false;
+        }
+
+        return (getFlags(x, y, plane) & (CollisionDataFlag.BLOCK_MOVEMENT_NORTH | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0
+                && (getFlags(x, y + 1, plane) & (CollisionDataFlag.BLOCK_MOVEMENT_SOUTH | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0;
+    }
+
+    @Override
+    public boolean canMoveEast(int x, int y, int plane)
+    {
+        if (!contains(x, y) || !contains(x + 1, y) || plane >= flags.length || flags[plane] == null)
+        {
+            return false;
+        }
+
+        return (getFlags(x, y, plane) & (CollisionDataFlag.BLOCK_MOVEMENT_EAST | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0
+                && (getFlags(x + 1, y, plane) & (CollisionDataFlag.BLOCK_MOVEMENT_WEST | CollisionDataFlag.BLOCK_MOVEMENT_FULL)) == 0;
+    }
+}
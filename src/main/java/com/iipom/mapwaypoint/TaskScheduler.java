@@ -0,0 +1,191 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs the plugin's heavier computations on a small pool of its own, off the client thread and the executor
+ * the client shares between plugins. Work is submitted under a key, and submitting again under the same key
+ * supersedes the earlier task: it is skipped if it has not started, and told to stop if it has. Results are
+ * handed back on the client thread once per tick by {@link #drain}, and only those of tasks that were not
+ * superseded or cancelled in the meantime.
+ */
+@Slf4j
+@Singleton
+public class TaskScheduler
+{
+    private static final int WORKERS = 2;
+    private static final long IDLE_SECONDS = 30;
+
+    /**
+     * Work to run on a worker, which should check now and then whether it has been cancelled and return early.
+     */
+    interface Job<T>
+    {
+        T run(BooleanSupplier cancelled);
+    }
+
+    private final Executor workers;
+    private final PluginMetrics metrics;
+    private final ConcurrentHashMap<Object, Task<?>> latest = new ConcurrentHashMap<>();
+    private final Queue<Task<?>> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    @Inject
+    private TaskScheduler(PluginMetrics metrics)
+    {
+        this(createWorkers(), metrics);
+    }
+
+    TaskScheduler(Executor workers, PluginMetrics metrics)
+    {
+        this.workers = workers;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queues a job, superseding any task submitted under the same key before. Called on the client thread.
+     *
+     * @param handoff receives the job's result on the client thread, or null if the result is not needed
+     */
+    <T> void submit(Object key, Job<T> job, Consumer<T> handoff)
+    {
+        final Task<T> task = new Task<>(key, job, handoff);
+        final Task<?> previous = latest.put(key, task);
+        if (previous != null)
+        {
+            previous.cancelled = true;
+        }
+
+        queued.incrementAndGet();
+        workers.execute(task);
+    }
+
+    /**
+     * Hands the results of the tasks completed since the last call to their consumers. Called on the client
+     * thread once per tick.
+     *
+     * @return the number of results handed over
+     */
+    int drain()
+    {
+        int count = 0;
+        Task<?> task;
+        while ((task = completed.poll()) != null)
+        {
+            if (!task.cancelled && latest.remove(task.key, task))
+            {
+                task.handOff();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Cancels every task and drops the results not yet handed over.
+     */
+    void cancelAll()
+    {
+        for (Task<?> task : latest.values())
+        {
+            task.cancelled = true;
+        }
+        latest.clear();
+        completed.clear();
+    }
+
+    /**
+     * @return the number of tasks waiting for a worker
+     */
+    int getQueueDepth()
+    {
+        return queued.get();
+    }
+
+    private static Executor createWorkers()
+    {
+        final AtomicInteger count = new AtomicInteger();
+        final ThreadFactory threads = runnable ->
+        {
+            final Thread thread = new Thread(runnable, "map-waypoints-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(WORKERS, WORKERS, IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), threads);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private final class Task<T> implements Runnable
+    {
+        private final Object key;
+        private final Job<T> job;
+        private final Consumer<T> handoff;
+        private final long submitted = System.nanoTime();
+
+        private volatile boolean cancelled;
+        private T result;
+
+        Task(Object key, Job<T> job, Consumer<T> handoff)
+        {
+            this.key = key;
+            this.job = job;
+            this.handoff = handoff;
+        }
+
+        @Override
+        public void run()
+        {
+            queued.decrementAndGet();
+            if (cancelled)
+            {
+                return;
+            }
+
+            final long start = System.nanoTime();
+            metrics.record(PluginMetrics.Probe.TASK_WAIT, start - submitted);
+            try
+            {
+                result = job.run(() -> cancelled);
+            }
+            catch (RuntimeException e)
+            {
+                log.warn("Background task {} failed", key, e);
+                latest.remove(key, this);
+                return;
+            }
+            finally
+            {
+                metrics.record(PluginMetrics.Probe.TASK_RUN, System.nanoTime() - start);
+            }
+
+            // Queued even when not needed, so drain can tell the key is free again
+            completed.add(this);
+        }
+
+        void handOff()
+        {
+            if (handoff != null)
+            {
+                handoff.accept(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.iipom.mapwaypoint;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The set tiles of one 64x64 map region, stored like a Roaring bitmap container: a sorted array of tile indices
+ * while there are few, switching to a plain bitmap of a long per row once the array would outgrow it. Tile
+ * indices are {@code y * 64 + x} within the region.
+ */
+class TileBitmap
+{
+    static final int SIZE = 64;
+    private static final int TILES = SIZE * SIZE;
+
+    // An array of more shorts than this takes more room than the bitmap
+    private static final int MAX_ARRAY_SIZE = TILES / 16;
+
+    private short[] array = new short[4];
+    private long[] rows;
+    private int cardinality;
+
+    // Changed with every tile added, so copies made from the bitmap can tell they are stale
+    private int version;
+
+    int getCardinality()
+    {
+        return cardinality;
+    }
+
+    int getVersion()
+    {
+        return version;
+    }
+
+    boolean isArray()
+    {
+        return rows == null;
+    }
+
+    boolean contains(int x, int y)
+    {
+        final int index = y * SIZE + x;
+        return rows != null ? (rows[y] >>> x & 1) != 0 : Arrays.binarySearch(array, 0, cardinality, (short) index) >= 0;
+    }
+
+    /**
+     * @return whether the tile was not set before
+     */
+    boolean add(int x, int y)
+    {
+        if (rows != null)
+        {
+            final long bit = 1L << x;
+            if ((rows[y] & bit) != 0)
+            {
+                return false;
+            }
+
+            rows[y] |= bit;
+        }
+        else
+        {
+            final int index = y * SIZE + x;
+            final int position = Arrays.binarySearch(array, 0, cardinality, (short) index);
+            if (position >= 0)
+            {
+                return false;
+            }
+
+            if (cardinality == MAX_ARRAY_SIZE)
+            {
+                toBitmap();
+                return add(x, y);
+            }
+
+            insert(-position - 1, (short) index);
+        }
+
+        cardinality++;
+        version++;
+        return true;
+    }
+
+    /**
+     * Sets every tile set in the other bitmap.
+     */
+    void addAll(TileBitmap other)
+    {
+        if (other.rows != null)
+        {
+            for (int y = 0; y < SIZE; y++)
+            {
+                for (long row = other.rows[y]; row != 0; row &= row - 1)
+                {
+                    add(Long.numberOfTrailingZeros(row), y);
+                }
+            }
+        }
+        else
+        {
+            for (int i = 0; i < other.cardinality; i++)
+            {
+                add(other.array[i] % SIZE, other.array[i] / SIZE);
+            }
+        }
+    }
+
+    /**
+     * Fills in a long per row, bit x of row y set for each set tile.
+     */
+    void getRows(long[] out)
+    {
+        if (rows != null)
+        {
+            System.arraycopy(rows, 0, out, 0, SIZE);
+            return;
+        }
+
+        Arrays.fill(out, 0, SIZE, 0L);
+        for (int i = 0; i < cardinality; i++)
+        {
+            out[array[i] / SIZE] |= 1L << (array[i] % SIZE);
+        }
+    }
+
+    void write(DataOutput out) throws IOException
+    {
+        out.writeShort(cardinality);
+        if (rows != null)
+        {
+            for (long row : rows)
+            {
+                out.writeLong(row);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < cardinality; i++)
+            {
+                out.writeShort(array[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a bitmap written by {@link #write}.
+     */
+    static TileBitmap read(DataInput in) throws IOException
+    {
+        final TileBitmap bitmap = new TileBitmap();
+        final int cardinality = in.readUnsignedShort();
+        if (cardinality > TILES)
+        {
+            throw new IOException("Region has " + cardinality + " tiles");
+        }
+
+        if (cardinality > MAX_ARRAY_SIZE)
+        {
+            bitmap.rows = new long[SIZE];
+            int counted = 0;
+            for (int y = 0; y < SIZE; y++)
+            {
+                bitmap.rows[y] = in.readLong();
+                counted += Long.bitCount(bitmap.rows[y]);
+            }
+
+            if (counted != cardinality)
+            {
+                throw new IOException("Region has " + counted + " tiles set rather than " + cardinality);
+            }
+        }
+        else
+        {
+            bitmap.array = new short[Math.max(4, cardinality)];
+            for (int i = 0; i < cardinality; i++)
+            {
+                bitmap.array[i] = in.readShort();
+                if (bitmap.array[i] < 0 || bitmap.array[i] >= TILES || (i > 0 && bitmap.array[i] <= bitmap.array[i - 1]))
+                {
+                    throw new IOException("Region tiles are out of order");
+                }
+            }
+        }
+
+        bitmap.cardinality = cardinality;
+        return bitmap;
+    }
+
+    private void insert(int position, short index)
+    {
+        if (cardinality == array.length)
+        {
+            array = Arrays.copyOf(array, Math.min(cardinality * 2, MAX_ARRAY_SIZE));
+        }
+
+        System.arraycopy(array, position, array, position + 1, cardinality - position);
+        array[position] = index;
+    }
+
+    private void toBitmap()
+    {
+        final long[] bits = new long[SIZE];
+        getRows(bits);
+        rows = bits;
+        array = null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * Packs a world tile into a single int: 14 bits x, 14 bits y and 2 bits plane.
+ */
+final class TileCoords
+{
+    private static final int COORD_BITS = 14;
+    private static final int COORD_MASK = (1 << COORD_BITS) - 1;
+
+    static final int NONE = -1;
+
+    private TileCoords()
+    {
+    }
+
+    static int pack(int x, int y, int plane)
+    {
+        return (plane & 3) << (COORD_BITS * 2) | (x & COORD_MASK) << COORD_BITS | (y & COORD_MASK);
+    }
+
+    static int x(int packed)
+    {
+        return (packed >>> COORD_BITS) & COORD_MASK;
+    }
+
+    static int y(int packed)
+    {
+        return packed & COORD_MASK;
+    }
+
+    static int plane(int packed)
+    {
+        return (packed >>> (COORD_BITS * 2)) & 3;
+    }
+
+    static int distance(int a, int b)
+    {
+        return Math.max(Math.abs(x(a) - x(b)), Math.abs(y(a) - y(b)));
+    }
+}
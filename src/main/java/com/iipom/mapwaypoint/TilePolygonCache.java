@@ -0,0 +1,165 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+import net.runelite.api.Perspective;
+import net.runelite.api.coords.LocalPoint;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.awt.Polygon;
+import java.util.Arrays;
+
+/**
+ * Canvas polygons of scene tiles, projected once and reused for as long as the camera, the viewport and the
+ * scene stay the same. Tiles that were not drawn in the previous frame are dropped when the table fills up,
+ * so it never holds much more than the tiles currently on screen. Must only be used on the client thread.
+ */
+@Singleton
+public class TilePolygonCache
+{
+    private static final int CAPACITY = 1024;
+    private static final int MAX_SIZE = CAPACITY / 2;
+
+    // Marks tiles that project off screen, so they are not projected again either
+    private static final Polygon OFF_SCREEN = new Polygon();
+
+    private final Client client;
+    private final CameraState camera = new CameraState();
+
+    private int[] tiles = new int[CAPACITY];
+    private Polygon[] polygons = new Polygon[CAPACITY];
+    private int[] frames = new int[CAPACITY];
+    private int[] spareTiles = new int[CAPACITY];
+    private Polygon[] sparePolygons = new Polygon[CAPACITY];
+    private int[] spareFrames = new int[CAPACITY];
+
+    private int size;
+    private int frame;
+
+    @Inject
+    private TilePolygonCache(Client client)
+    {
+        this.client = client;
+        Arrays.fill(tiles, TileCoords.NONE);
+        Arrays.fill(spareTiles, TileCoords.NONE);
+    }
+
+    /**
+     * Starts a frame, dropping every polygon if the camera, the viewport or the scene has changed since the last one.
+     */
+    void beginFrame()
+    {
+        frame++;
+
+        if (camera.update(client))
+        {
+            clear();
+        }
+    }
+
+    /**
+     * @return the canvas polygon of a tile, or null if it is outside of the scene or off screen
+     */
+    Polygon getTilePoly(int x, int y)
+    {
+        final int tile = TileCoords.pack(x, y, 0);
+        int slot = slot(tile);
+        while (tiles[slot] != TileCoords.NONE)
+        {
+            if (tiles[slot] == tile)
+            {
+                frames[slot] = frame;
+                return polygons[slot] == OFF_SCREEN ? null : polygons[slot];
+            }
+            slot = (slot + 1) & (CAPACITY - 1);
+        }
+
+        final Polygon polygon = project(x, y);
+        if (size >= MAX_SIZE)
+        {
+            evict();
+            slot = slot(tile);
+            while (tiles[slot] != TileCoords.NONE)
+            {
+                slot = (slot + 1) & (CAPACITY - 1);
+            }
+        }
+
+        tiles[slot] = tile;
+        polygons[slot] = polygon == null ? OFF_SCREEN : polygon;
+        frames[slot] = frame;
+        size++;
+        return polygon;
+    }
+
+    /**
+     * Drops every polygon, for when the scene's tile heights may have changed without its base moving.
+     */
+    void invalidate()
+    {
+        clear();
+    }
+
+    private Polygon project(int x, int y)
+    {
+        final LocalPoint lp = LocalPoint.fromWorld(client, x, y);
+        return lp == null ? null : Perspective.getCanvasTilePoly(client, lp);
+    }
+
+    /**
+     * Keeps only the tiles drawn in this frame or the previous one, rehashing them into the spare table.
+     */
+    private void evict()
+    {
+        Arrays.fill(spareTiles, TileCoords.NONE);
+        Arrays.fill(sparePolygons, null);
+        size = 0;
+
+        for (int i = 0; i < CAPACITY; i++)
+        {
+            if (tiles[i] == TileCoords.NONE || frames[i] < frame - 1)
+            {
+                continue;
+            }
+
+            int slot = slot(tiles[i]);
+            while (spareTiles[slot] != TileCoords.NONE)
+            {
+                slot = (slot + 1) & (CAPACITY - 1);
+            }
+
+            spareTiles[slot] = tiles[i];
+            sparePolygons[slot] = polygons[i];
+            spareFrames[slot] = frames[i];
+            size++;
+        }
+
+        final int[] swapTiles = tiles;
+        final Polygon[] swapPolygons = polygons;
+        final int[] swapFrames = frames;
+        tiles = spareTiles;
+        polygons = sparePolygons;
+        frames = spareFrames;
+        spareTiles = swapTiles;
+        sparePolygons = swapPolygons;
+        spareFrames = swapFrames;
+
+        // More tiles than fit are drawn every frame, start over rather than evicting on every miss
+        if (size >= MAX_SIZE)
+        {
+            clear();
+        }
+    }
+
+    private void clear()
+    {
+        Arrays.fill(tiles, TileCoords.NONE);
+        Arrays.fill(polygons, null);
+        size = 0;
+    }
+
+    private static int slot(int tile)
+    {
+        return (tile * 0x9E3779B9 >>> 22) & (CAPACITY - 1);
+    }
+}
@@ -0,0 +1,105 @@
+package com.iipom.mapwaypoint;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Like HdrHistogram, values are counted in buckets that
+ * double in width with each power of two and are split into eight sub-buckets, so any recorded value is
+ * known to within an eighth. Recording is a couple of atomic increments and never allocates.
+ */
+class TimingHistogram
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos)
+    {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+        {
+            current = max.get();
+        }
+    }
+
+    long getCount()
+    {
+        return count.get();
+    }
+
+    long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the highest value of the bucket holding the given percentile, or 0 if nothing has been recorded
+     */
+    long getValueAtPercentile(double percentile)
+    {
+        final long total = count.get();
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            seen += counts.get(bucket);
+            if (seen >= target)
+            {
+                return Math.min(highestValueOf(bucket), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Clears the histogram. Values recorded while it is being reset may be partly lost.
+     */
+    void reset()
+    {
+        for (int bucket = 0; bucket < BUCKETS; bucket++)
+        {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        max.set(0);
+    }
+
+    static int bucketOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValueOf(int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,81 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * A single directed transport such as a staircase, ladder, door, shortcut or teleport, between two packed tiles.
+ */
+class Transport
+{
+    private final TransportKind kind;
+    private final int source;
+    private final int destination;
+    private final int cost;
+    private final int level;
+    private final String name;
+
+    Transport(TransportKind kind, int source, int destination, int cost, int level, String name)
+    {
+        this.kind = kind;
+        this.source = source;
+        this.destination = destination;
+        this.cost = cost;
+        this.level = level;
+        this.name = name;
+    }
+
+    static Transport parse(String line)
+    {
+        final String[] parts = line.trim().split("\\s+", 10);
+        if (parts.length < 10)
+        {
+            throw new IllegalArgumentException("Malformed transport: " + line);
+        }
+
+        // A teleport has no source tile
+        final TransportKind kind = TransportKind.parse(parts[0]);
+        final int source = kind == TransportKind.TELEPORT
+                ? TileCoords.NONE
+                : TileCoords.pack(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+        final int destination = TileCoords.pack(Integer.parseInt(parts[4]), Integer.parseInt(parts[5]), Integer.parseInt(parts[6]));
+
+        return new Transport(kind, source, destination, Integer.parseInt(parts[7]), Integer.parseInt(parts[8]), parts[9]);
+    }
+
+    TransportKind getKind()
+    {
+        return kind;
+    }
+
+    int getSource()
+    {
+        return source;
+    }
+
+    int getDestination()
+    {
+        return destination;
+    }
+
+    int getCost()
+    {
+        return cost;
+    }
+
+    /**
+     * @return the Magic level needed to cast a teleport or the Agility level needed to take a shortcut, 0 for
+     * other transports
+     */
+    int getLevel()
+    {
+        return level;
+    }
+
+    String getName()
+    {
+        return name;
+    }
+
+    boolean isTeleport()
+    {
+        return kind == TransportKind.TELEPORT;
+    }
+}
@@ -0,0 +1,331 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Routes between planes and across the map using the transports bundled in {@code transports.txt}.
+ * <p>
+ * Every transport endpoint becomes a node, connected by its transport and by walking links to nearby
+ * endpoints on the same plane. The graph is contracted into a {@link ContractionHierarchy} once when loaded,
+ * after which a query only attaches the player and the destination to the endpoints around them.
+ * <p>
+ * Walking is costed by the straight-line distance in tiles, not by a search through the collision map, as most
+ * of the map is never loaded into the client. This is a heuristic: it never overestimates the walk, but between
+ * endpoints that a wall or river separates the real walk can be a lot longer than it is costed.
+ * <p>
+ * Teleports and shortcuts need a skill level. Teleports are left out of the hierarchy and offered as a way to
+ * start the route, so only those the player can cast are considered. Shortcuts are part of the graph, so it is
+ * contracted once for each Agility level a shortcut needs, each hierarchy holding the shortcuts up to its level,
+ * and a query uses the one for the player's level.
+ */
+@Slf4j
+@Singleton
+public class TransportGraph
+{
+    private static final String RESOURCE = "transports.txt";
+    private static final int WALK_LINK_RADIUS = 192;
+    private static final int ACCESS_RADIUS = 192;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * The Magic level to route with when no teleports should be considered.
+     */
+    static final int NO_TELEPORTS = -1;
+
+    private volatile Graph graph;
+
+    @Inject
+    TransportGraph()
+    {
+    }
+
+    TransportGraph(List<Transport> transports)
+    {
+        graph = new Graph(transports);
+    }
+
+    /**
+     * Loads and contracts the bundled transports. Should not be called on the client thread.
+     */
+    void load()
+    {
+        if (graph != null)
+        {
+            return;
+        }
+
+        final List<Transport> transports = new ArrayList<>();
+
+        try (InputStream in = TransportGraph.class.getResourceAsStream(RESOURCE))
+        {
+            if (in == null)
+            {
+                log.warn("Missing transport resource {}", RESOURCE);
+                return;
+            }
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                {
+                    transports.add(Transport.parse(line));
+                }
+            }
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            log.warn("Unable to load transports", e);
+            return;
+        }
+
+        graph = new Graph(transports);
+        log.debug("Loaded {} transports", transports.size());
+    }
+
+    /**
+     * Finds the cheapest route between two tiles that uses at least one transport. Must be called on the
+     * client thread.
+     *
+     * @param magicLevel   the player's Magic level, to consider only the teleports they can cast, or
+     *                     {@link #NO_TELEPORTS}
+     * @param agilityLevel the player's Agility level, to only take the shortcuts they can use
+     * @return the first transport to take, or null if walking directly is at least as cheap
+     */
+    TransportRoute route(int start, int goal, int magicLevel, int agilityLevel)
+    {
+        final Graph current = graph;
+        return current == null ? null : current.route(start, goal, magicLevel, agilityLevel);
+    }
+
+    private static class Graph
+    {
+        private final int[] nodeTiles;
+        private final Map<Long, List<Transport>> transportEdges = new HashMap<>();
+
+        // The Agility levels shortcuts need in ascending order, after 0 for none, and the hierarchy for each
+        private final int[] agilityLevels;
+        private final ContractionHierarchy[] hierarchies;
+        private final List<Transport> teleports = new ArrayList<>();
+        private final int[] teleportNodes;
+
+        private final int[] sources;
+        private final int[] sourceCosts;
+        private final int[] targets;
+        private final int[] targetCosts;
+
+        Graph(List<Transport> transports)
+        {
+            final Map<Integer, Integer> nodeIds = new HashMap<>();
+            for (Transport transport : transports)
+            {
+                if (!transport.isTeleport())
+                {
+                    nodeIds.putIfAbsent(transport.getSource(), nodeIds.size());
+                }
+                nodeIds.putIfAbsent(transport.getDestination(), nodeIds.size());
+            }
+
+            nodeTiles = new int[nodeIds.size()];
+            nodeIds.forEach((tile, node) -> nodeTiles[node] = tile);
+
+            final TreeSet<Integer> levels = new TreeSet<>();
+            levels.add(0);
+            for (Transport transport : transports)
+            {
+                if (transport.isTeleport())
+                {
+                    teleports.add(transport);
+                    continue;
+                }
+
+                if (transport.getKind() == TransportKind.SHORTCUT)
+                {
+                    levels.add(transport.getLevel());
+                }
+
+                final int from = nodeIds.get(transport.getSource());
+                final int to = nodeIds.get(transport.getDestination());
+                transportEdges.computeIfAbsent(edgeKey(from, to), key -> new ArrayList<>()).add(transport);
+            }
+
+            agilityLevels = new int[levels.size()];
+            hierarchies = new ContractionHierarchy[levels.size()];
+            int index = 0;
+            for (int level : levels)
+            {
+                agilityLevels[index] = level;
+                hierarchies[index++] = contract(level);
+            }
+
+            teleportNodes = new int[teleports.size()];
+            for (int i = 0; i < teleports.size(); i++)
+            {
+                teleportNodes[i] = nodeIds.get(teleports.get(i).getDestination());
+            }
+
+            sources = new int[nodeTiles.length + teleports.size()];
+            sourceCosts = new int[sources.length];
+            targets = new int[nodeTiles.length];
+            targetCosts = new int[targets.length];
+        }
+
+        /**
+         * @return a hierarchy of the transports, leaving out the shortcuts that need more than the Agility level
+         */
+        private ContractionHierarchy contract(int agilityLevel)
+        {
+            final ContractionHierarchy hierarchy = new ContractionHierarchy(nodeTiles.length);
+            for (Map.Entry<Long, List<Transport>> edge : transportEdges.entrySet())
+            {
+                final Transport transport = cheapestTransport(edge.getValue(), agilityLevel);
+                if (transport != null)
+                {
+                    hierarchy.addEdge((int) (edge.getKey() >>> 32), (int) (long) edge.getKey(), transport.getCost());
+                }
+            }
+
+            for (int a = 0; a < nodeTiles.length; a++)
+            {
+                for (int b = 0; b < nodeTiles.length; b++)
+                {
+                    final int walk = walkCost(nodeTiles[a], nodeTiles[b]);
+                    if (a != b && walk <= WALK_LINK_RADIUS)
+                    {
+                        hierarchy.addEdge(a, b, walk);
+                    }
+                }
+            }
+
+            hierarchy.build();
+            return hierarchy;
+        }
+
+        TransportRoute route(int start, int goal, int magicLevel, int agilityLevel)
+        {
+            int sourceCount = 0;
+            int targetCount = 0;
+
+            for (int node = 0; node < nodeTiles.length; node++)
+            {
+                final int fromStart = walkCost(start, nodeTiles[node]);
+                if (fromStart <= ACCESS_RADIUS)
+                {
+                    sources[sourceCount] = node;
+                    sourceCosts[sourceCount++] = fromStart;
+                }
+
+                final int toGoal = walkCost(nodeTiles[node], goal);
+                if (toGoal <= ACCESS_RADIUS)
+                {
+                    targets[targetCount] = node;
+                    targetCosts[targetCount++] = toGoal;
+                }
+            }
+
+            for (int i = 0; i < teleportNodes.length; i++)
+            {
+                if (teleports.get(i).getLevel() <= magicLevel)
+                {
+                    sources[sourceCount] = teleportNodes[i];
+                    sourceCosts[sourceCount++] = teleports.get(i).getCost();
+                }
+            }
+
+            if (sourceCount == 0 || targetCount == 0)
+            {
+                return null;
+            }
+
+            int usable = 0;
+            while (usable + 1 < agilityLevels.length && agilityLevels[usable + 1] <= agilityLevel)
+            {
+                usable++;
+            }
+
+            final ContractionHierarchy hierarchy = hierarchies[usable];
+            final int[] path = hierarchy.query(sources, sourceCosts, sourceCount, targets, targetCosts, targetCount);
+            final int total = hierarchy.getLastDistance();
+            if (path == null || total >= walkCost(start, goal))
+            {
+                return null;
+            }
+
+            final int entry = path[0];
+            final Transport teleport = cheapestTeleport(entry, magicLevel);
+            if (teleport != null && teleport.getCost() < walkCost(start, nodeTiles[entry]))
+            {
+                return new TransportRoute(teleport, total);
+            }
+
+            for (int i = 0; i + 1 < path.length; i++)
+            {
+                final Transport transport = cheapestTransport(transportEdges.get(edgeKey(path[i], path[i + 1])), agilityLevel);
+                if (transport != null && transport.getCost() < walkCost(nodeTiles[path[i]], nodeTiles[path[i + 1]]))
+                {
+                    return new TransportRoute(transport, total - walkCost(start, transport.getSource()));
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * @return the cheapest of the transports between two nodes the Agility level allows, or null if there is none
+         */
+        private static Transport cheapestTransport(List<Transport> transports, int agilityLevel)
+        {
+            Transport cheapest = null;
+            if (transports != null)
+            {
+                for (Transport transport : transports)
+                {
+                    final boolean usable = transport.getKind() != TransportKind.SHORTCUT || transport.getLevel() <= agilityLevel;
+                    if (usable && (cheapest == null || transport.getCost() < cheapest.getCost()))
+                    {
+                        cheapest = transport;
+                    }
+                }
+            }
+            return cheapest;
+        }
+
+        private Transport cheapestTeleport(int node, int magicLevel)
+        {
+            Transport cheapest = null;
+            for (int i = 0; i < teleportNodes.length; i++)
+            {
+                if (teleportNodes[i] == node && teleports.get(i).getLevel() <= magicLevel && (cheapest == null || teleports.get(i).getCost() < cheapest.getCost()))
+                {
+                    cheapest = teleports.get(i);
+                }
+            }
+            return cheapest;
+        }
+
+        private static int walkCost(int from, int to)
+        {
+            return TileCoords.plane(from) == TileCoords.plane(to) ? TileCoords.distance(from, to) : UNREACHABLE;
+        }
+
+        private static long edgeKey(int from, int to)
+        {
+            return (long) from << 32 | (to & 0xFFFFFFFFL);
+        }
+    }
+}
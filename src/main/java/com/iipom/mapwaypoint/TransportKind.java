@@ -0,0 +1,25 @@
+package com.iipom.mapwaypoint;
+
+import java.util.Locale;
+
+/**
+ * What a {@link Transport} is, as named in the first column of {@code transports.txt}.
+ */
+enum TransportKind
+{
+    STAIRS,
+    LADDER,
+    DOOR,
+    // Needs the Agility level given with it
+    SHORTCUT,
+    // Cast from anywhere, needs the Magic level given with it
+    TELEPORT;
+
+    /**
+     * @throws IllegalArgumentException if the text does not name a kind
+     */
+    static TransportKind parse(String text)
+    {
+        return valueOf(text.toUpperCase(Locale.ROOT));
+    }
+}
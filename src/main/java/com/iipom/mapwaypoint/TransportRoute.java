@@ -0,0 +1,38 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * The first leg of a route through the transport graph: the tile to walk to next and the remaining cost
+ * once it has been reached.
+ */
+class TransportRoute
+{
+    private final Transport transport;
+    private final int remaining;
+
+    TransportRoute(Transport transport, int remaining)
+    {
+        this.transport = transport;
+        this.remaining = remaining;
+    }
+
+    Transport getTransport()
+    {
+        return transport;
+    }
+
+    /**
+     * @return the tile to walk to, or {@link TileCoords#NONE} if the route starts with a teleport
+     */
+    int getNextHop()
+    {
+        return transport.getSource();
+    }
+
+    /**
+     * @return the estimated cost from the next hop, or from casting the teleport, to the destination
+     */
+    int getRemaining()
+    {
+        return remaining;
+    }
+}
@@ -1,9 +1,6 @@
 package com.iipom.mapwaypoint;
 
 import net.runelite.api.Client;
-import net.runelite.api.Player;
-import net.runelite.api.coords.WorldPoint;
-import net.runelite.client.game.SpriteManager;
 import net.runelite.client.ui.overlay.Overlay;
 import net.runelite.client.ui.overlay.OverlayPosition;
 import net.runelite.client.ui.overlay.components.*;
@@ -13,87 +10,182 @@ import javax.inject.Inject;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 
-import static net.runelite.api.SpriteID.MINIMAP_GUIDE_ARROW_YELLOW;
-
-public class WaypointArrowOverlay extends Overlay
+public class WaypointArrowOverlay extends Overlay implements OverlayLifecycle.NavigationOverlay
 {
-    private BufferedImage ARROW_ICON;
+    private static final int ANGLE_BUCKETS = 64;
+    private static final double BUCKET_ANGLE = 2.0 * Math.PI / ANGLE_BUCKETS;
+    private static final String DIFFERENT_PLANE = "Different plane!";
 
     private final Client client;
-    private final MapWaypointPlugin plugin;
+    private final NavigationTracker navigationTracker;
+    private final PluginMetrics metrics;
     private final PanelComponent panelComponent = new PanelComponent();
+    private final ArrowComponent arrowComponent = new ArrowComponent();
     private final TitleComponent stepsComponent = TitleComponent.builder().build();
+    private final TitleComponent routeComponent = TitleComponent.builder().build();
+
+    // Pre-rotated copies of the arrow sprite, one per angle bucket, built once when the sprite arrives
+    private volatile BufferedImage[] arrowAtlas;
+
+    private int lastDistance = -1;
+    private int lastBucket = -1;
+    private Transport lastTransport;
+    private Font lastFont;
 
     @Inject
-    private WaypointArrowOverlay(Client client, MapWaypointPlugin plugin, SpriteManager spriteManager)
+    private WaypointArrowOverlay(Client client, NavigationTracker navigationTracker, PluginMetrics metrics)
     {
         setPosition(OverlayPosition.TOP_CENTER);
         this.client = client;
-        this.plugin = plugin;
+        this.navigationTracker = navigationTracker;
+        this.metrics = metrics;
+
+        panelComponent.getChildren().add(arrowComponent);
+        panelComponent.getChildren().add(stepsComponent);
+    }
 
-        spriteManager.getSpriteAsync(MINIMAP_GUIDE_ARROW_YELLOW, 1, sprite -> ARROW_ICON = ImageUtil.rotateImage(sprite, 3 * Math.PI / 2));
+    @Override
+    public boolean isNeeded(NavigationState state)
+    {
+        return state.hasTarget();
     }
 
     @Override
     public Dimension render(Graphics2D graphics)
     {
-        if (plugin.getWaypoint() == null)
+        final long start = metrics.start(PluginMetrics.Probe.ARROW_OVERLAY);
+        try
         {
-            return null;
+            return renderArrow(graphics);
         }
+        finally
+        {
+            metrics.stop(PluginMetrics.Probe.ARROW_OVERLAY, start);
+        }
+    }
 
-        final Player player = client.getLocalPlayer();
-        if (player == null)
+    private Dimension renderArrow(Graphics2D graphics)
+    {
+        final BufferedImage[] atlas = arrowAtlas;
+        final NavigationState state = navigationTracker.getState();
+        if (!state.hasTarget() || atlas == null)
         {
             return null;
         }
 
-        final WorldPoint currentLocation = player.getWorldLocation();
-        final WorldPoint destination = plugin.getWaypoint().getWorldPoint();
-
-        String steps;
-
-        if (currentLocation.getPlane() == destination.getPlane())
+        final int distance = state.getDistance();
+        final Transport transport = state.getTransport();
+        if (distance != lastDistance || transport != lastTransport || graphics.getFont() != lastFont)
         {
-            final int distance = currentLocation.distanceTo(destination);
-            steps = "Steps: " + distance;
+            updateLayout(graphics, distance != -1 ? "Steps: " + distance : DIFFERENT_PLANE, transport);
+            lastDistance = distance;
+            lastTransport = transport;
+            lastFont = graphics.getFont();
         }
-        else
+
+        // The bearing only changes per tick, the camera can turn on every frame
+        final int bucket = calculateAngleBucket(calculateAngle(state.getBearing(), client.getMapAngle()));
+        if (bucket != lastBucket)
         {
-            steps = "Different plane!";
+            arrowComponent.setImage(atlas[bucket]);
+            lastBucket = bucket;
         }
 
-        final BufferedImage arrow = calculateImageRotation(currentLocation, destination, graphics.getFontMetrics().stringWidth(steps));
+        return panelComponent.render(graphics);
+    }
+
+    private void updateLayout(Graphics2D graphics, String steps, Transport transport)
+    {
+        final FontMetrics metrics = graphics.getFontMetrics();
+        int width = metrics.stringWidth(steps);
 
         stepsComponent.setText(steps);
-        panelComponent.getChildren().clear();
-        panelComponent.getChildren().add(new ImageComponent(arrow));
-        panelComponent.getChildren().add(stepsComponent);
-        panelComponent.setPreferredSize(new Dimension(graphics.getFontMetrics().stringWidth(steps) + 10, 0));
+        panelComponent.getChildren().remove(routeComponent);
 
-        return panelComponent.render(graphics);
+        if (transport != null)
+        {
+            final String via = "via " + transport.getName();
+            routeComponent.setText(via);
+            panelComponent.getChildren().add(routeComponent);
+            width = Math.max(width, metrics.stringWidth(via));
+        }
+
+        panelComponent.setPreferredSize(new Dimension(width + 10, 0));
+    }
+
+    void buildArrowAtlas(BufferedImage sprite)
+    {
+        final BufferedImage arrow = ImageUtil.rotateImage(sprite, 3 * Math.PI / 2);
+        final BufferedImage[] atlas = new BufferedImage[ANGLE_BUCKETS];
+
+        for (int bucket = 0; bucket < ANGLE_BUCKETS; bucket++)
+        {
+            atlas[bucket] = ImageUtil.rotateImage(arrow, 2.0 * Math.PI - bucket * BUCKET_ANGLE);
+        }
+
+        lastBucket = -1;
+        arrowAtlas = atlas;
     }
 
-    private BufferedImage calculateImageRotation(WorldPoint currentLocation, WorldPoint destination, int textLen)
+    static int calculateAngleBucket(double angle)
     {
-        double angle = calculateAngle(currentLocation, destination);
-        final int dx = (textLen - ARROW_ICON.getWidth()) / 2;
+        return Math.floorMod((int) Math.round(angle / BUCKET_ANGLE), ANGLE_BUCKETS);
+    }
 
-        final BufferedImage rotatedImage = ImageUtil.rotateImage(ARROW_ICON, 2.0 * Math.PI - angle);
-        final BufferedImage finalImage = new BufferedImage(rotatedImage.getWidth() + dx, ARROW_ICON.getHeight() + 2, BufferedImage.TYPE_INT_ARGB);
-        finalImage.getGraphics().drawImage(rotatedImage, dx, 0, null);
+    static double calculateAngle(double bearing, int mapAngle)
+    {
+        final double clientAngle = (mapAngle / 2048.0) * 2.0 * Math.PI;
 
-        return finalImage;
+        return bearing - clientAngle;
     }
 
-    private double calculateAngle(WorldPoint currentLocation, WorldPoint destination)
+    private static class ArrowComponent implements LayoutableRenderableEntity
     {
-        final int dx = destination.getX() - currentLocation.getX();
-        final int dy = destination.getY() - currentLocation.getY();
+        private final Rectangle bounds = new Rectangle();
+        private final Dimension size = new Dimension();
+        private final Point preferredLocation = new Point();
+        private int preferredWidth;
+        private BufferedImage image;
 
-        final double angle = Math.atan2(dy, dx);
-        final double clientAngle = (client.getMapAngle() / 2048.0) * 2.0 * Math.PI;
+        void setImage(BufferedImage image)
+        {
+            this.image = image;
+        }
 
-        return angle - clientAngle;
+        @Override
+        public Dimension render(Graphics2D graphics)
+        {
+            if (image == null)
+            {
+                size.setSize(0, 0);
+                return size;
+            }
+
+            final int width = Math.max(preferredWidth, image.getWidth());
+            final int height = image.getHeight() + 2;
+            graphics.drawImage(image, preferredLocation.x + (width - image.getWidth()) / 2, preferredLocation.y, null);
+
+            bounds.setBounds(preferredLocation.x, preferredLocation.y, width, height);
+            size.setSize(width, height);
+            return size;
+        }
+
+        @Override
+        public Rectangle getBounds()
+        {
+            return bounds;
+        }
+
+        @Override
+        public void setPreferredLocation(Point position)
+        {
+            preferredLocation.setLocation(position);
+        }
+
+        @Override
+        public void setPreferredSize(Dimension dimension)
+        {
+            preferredWidth = dimension.width;
+        }
     }
 }
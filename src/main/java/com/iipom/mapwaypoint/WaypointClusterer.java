@@ -0,0 +1,410 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.client.ui.overlay.worldmap.WorldMapPoint;
+import net.runelite.client.ui.overlay.worldmap.WorldMapPointManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides which waypoint markers are registered with the world map. Waypoints are counted in a grid of
+ * cells that double in size from one level to the next, kept up to date as waypoints are added and removed.
+ * Only the part of the map around the view is registered: single waypoints when zoomed in far or when few
+ * of them are in view, otherwise one marker per cell of the level that suits the zoom. Must only be used on
+ * the client thread.
+ */
+@Singleton
+public class WaypointClusterer
+{
+    private static final int LEVELS = 8;
+    private static final int BASE_SHIFT = 3;
+    private static final int CLUSTER_PIXELS = 48;
+    private static final int MAX_SINGLE_POINTS = 256;
+    private static final int MAX_CACHED_ICONS = 256;
+    private static final int ICON_SIZE = 30;
+    private static final Color ICON_COLOR = new Color(0, 201, 198);
+
+    private final WorldMapPointManager worldMapPointManager;
+    private final WorldMapGeometry worldMapGeometry;
+
+    private final Map<Integer, WorldMapPoint> points = new HashMap<>();
+    private final List<Map<Integer, Cell>> grid = new ArrayList<>(LEVELS);
+
+    private final Set<Integer> registeredPoints = new HashSet<>();
+    private final Map<Long, WorldMapPoint> registeredClusters = new HashMap<>();
+    private final Map<String, BufferedImage> icons = new HashMap<>();
+
+    // The tiles covered by the registered markers and the zoom they were picked for
+    private final Rectangle covered = new Rectangle();
+    private final Rectangle visible = new Rectangle();
+    private float coveredZoom;
+    private boolean dirty;
+
+    @Inject
+    private WaypointClusterer(WorldMapPointManager worldMapPointManager, WorldMapGeometry worldMapGeometry)
+    {
+        this.worldMapPointManager = worldMapPointManager;
+        this.worldMapGeometry = worldMapGeometry;
+
+        for (int level = 0; level < LEVELS; level++)
+        {
+            grid.add(new HashMap<>());
+        }
+    }
+
+    void add(int id, WorldMapPoint point)
+    {
+        points.put(id, point);
+
+        final WorldPoint location = point.getWorldPoint();
+        for (int level = 0; level < LEVELS; level++)
+        {
+            final Cell cell = grid.get(level).computeIfAbsent(cellKey(location.getX(), location.getY(), level), k -> new Cell());
+            cell.count++;
+            cell.sumX += location.getX();
+            cell.sumY += location.getY();
+            if (level == 0)
+            {
+                cell.addId(id);
+            }
+        }
+
+        dirty = true;
+    }
+
+    void remove(int id)
+    {
+        final WorldMapPoint point = points.remove(id);
+        if (point == null)
+        {
+            return;
+        }
+
+        final WorldPoint location = point.getWorldPoint();
+        for (int level = 0; level < LEVELS; level++)
+        {
+            final int key = cellKey(location.getX(), location.getY(), level);
+            final Cell cell = grid.get(level).get(key);
+            cell.count--;
+            cell.sumX -= location.getX();
+            cell.sumY -= location.getY();
+            if (level == 0)
+            {
+                cell.removeId(id);
+            }
+            if (cell.count == 0)
+            {
+                grid.get(level).remove(key);
+            }
+        }
+
+        if (registeredPoints.remove(id))
+        {
+            unregister(point);
+        }
+
+        dirty = true;
+    }
+
+    /**
+     * Unregisters every marker and forgets all waypoints.
+     */
+    void clear()
+    {
+        for (int id : registeredPoints)
+        {
+            unregister(points.get(id));
+        }
+        registeredClusters.values().forEach(this::unregister);
+
+        registeredPoints.clear();
+        registeredClusters.clear();
+        points.clear();
+        grid.forEach(Map::clear);
+        covered.setBounds(0, 0, 0, 0);
+    }
+
+    /**
+     * Called once per frame. Picks the markers again when the waypoints or the zoom have changed, or the view
+     * has moved past the area they were picked for.
+     */
+    void update()
+    {
+        if (!worldMapGeometry.isOpen())
+        {
+            return;
+        }
+
+        final Rectangle bounds = worldMapGeometry.getBounds();
+        final int minX = worldMapGeometry.toWorldX(bounds.x);
+        final int maxX = worldMapGeometry.toWorldX(bounds.x + bounds.width);
+        final int minY = worldMapGeometry.toWorldY(bounds.y + bounds.height);
+        final int maxY = worldMapGeometry.toWorldY(bounds.y);
+        visible.setBounds(minX, minY, maxX - minX + 1, maxY - minY + 1);
+
+        final float zoom = worldMapGeometry.getZoom();
+        if (!dirty && zoom == coveredZoom && covered.contains(visible))
+        {
+            return;
+        }
+
+        // Pick for an area twice the size of the view so that panning does not do this on every frame
+        covered.setBounds(visible.x - visible.width / 2, visible.y - visible.height / 2, visible.width * 2, visible.height * 2);
+        coveredZoom = zoom;
+        dirty = false;
+
+        rebuild(levelFor(zoom));
+    }
+
+    /**
+     * @return whether a cluster marker was drawn at a canvas position
+     */
+    boolean isClusterAt(int canvasX, int canvasY)
+    {
+        for (WorldMapPoint cluster : registeredClusters.values())
+        {
+            if (cluster.getClickbox() != null && cluster.getClickbox().contains(canvasX, canvasY))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void rebuild(int level)
+    {
+        final int shift = BASE_SHIFT + level;
+        final int minCellX = covered.x >> shift;
+        final int minCellY = covered.y >> shift;
+        final int maxCellX = (covered.x + covered.width) >> shift;
+        final int maxCellY = (covered.y + covered.height) >> shift;
+
+        final Set<Integer> singles = new HashSet<>();
+        final Map<Long, WorldMapPoint> clusters = new HashMap<>();
+        final boolean expand = level == 0 || countVisible(level) <= MAX_SINGLE_POINTS;
+
+        for (int cx = minCellX; cx <= maxCellX; cx++)
+        {
+            for (int cy = minCellY; cy <= maxCellY; cy++)
+            {
+                final Cell cell = grid.get(level).get(cellKey(cx, cy));
+                if (cell == null)
+                {
+                    continue;
+                }
+
+                if (expand || cell.count == 1)
+                {
+                    collectPoints(level, cx, cy, singles);
+                }
+                else
+                {
+                    final long key = (long) level << 32 | cellKey(cx, cy);
+                    clusters.put(key, clusterMarker(registeredClusters.remove(key), cell));
+                }
+            }
+        }
+
+        for (Iterator<Integer> it = registeredPoints.iterator(); it.hasNext(); )
+        {
+            final int id = it.next();
+            if (!singles.contains(id))
+            {
+                unregister(points.get(id));
+                it.remove();
+            }
+        }
+
+        for (int id : singles)
+        {
+            if (registeredPoints.add(id))
+            {
+                worldMapPointManager.add(points.get(id));
+            }
+        }
+
+        // Markers still left over are for cells that are no longer shown
+        registeredClusters.values().forEach(this::unregister);
+        registeredClusters.clear();
+        registeredClusters.putAll(clusters);
+    }
+
+    private int countVisible(int level)
+    {
+        final int shift = BASE_SHIFT + level;
+        int total = 0;
+        for (int cx = visible.x >> shift; cx <= (visible.x + visible.width) >> shift; cx++)
+        {
+            for (int cy = visible.y >> shift; cy <= (visible.y + visible.height) >> shift; cy++)
+            {
+                final Cell cell = grid.get(level).get(cellKey(cx, cy));
+                total += cell != null ? cell.count : 0;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Descends from a cell to the waypoints in it, visiting only cells that contain any.
+     */
+    private void collectPoints(int level, int cx, int cy, Set<Integer> out)
+    {
+        final Cell cell = grid.get(level).get(cellKey(cx, cy));
+        if (cell == null)
+        {
+            return;
+        }
+
+        if (level == 0)
+        {
+            for (int i = 0; i < cell.idCount; i++)
+            {
+                out.add(cell.ids[i]);
+            }
+            return;
+        }
+
+        for (int dx = 0; dx < 2; dx++)
+        {
+            for (int dy = 0; dy < 2; dy++)
+            {
+                collectPoints(level - 1, cx * 2 + dx, cy * 2 + dy, out);
+            }
+        }
+    }
+
+    private WorldMapPoint clusterMarker(WorldMapPoint existing, Cell cell)
+    {
+        final WorldPoint center = new WorldPoint((int) (cell.sumX / cell.count), (int) (cell.sumY / cell.count), 0);
+        final WorldMapPoint marker = existing != null ? existing : new WorldMapPoint(center, null);
+
+        marker.setWorldPoint(center);
+        marker.setTarget(center);
+        marker.setJumpOnClick(true);
+        marker.setImage(icon(cell.count));
+        marker.setTooltip(cell.count + " waypoints");
+
+        if (existing == null)
+        {
+            worldMapPointManager.add(marker);
+        }
+        return marker;
+    }
+
+    private void unregister(WorldMapPoint point)
+    {
+        worldMapPointManager.remove(point);
+
+        // The clickbox stays where the point was last drawn, which would otherwise still be hit-tested
+        point.setClickbox(null);
+    }
+
+    private BufferedImage icon(int count)
+    {
+        final String label = count < 1000 ? Integer.toString(count) : count / 1000 + "k";
+        final BufferedImage cached = icons.get(label);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        if (icons.size() >= MAX_CACHED_ICONS)
+        {
+            icons.clear();
+        }
+
+        final BufferedImage icon = new BufferedImage(ICON_SIZE, ICON_SIZE, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = icon.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setColor(ICON_COLOR);
+        graphics.fillOval(1, 1, ICON_SIZE - 2, ICON_SIZE - 2);
+        graphics.setColor(Color.BLACK);
+        graphics.setStroke(new BasicStroke(1.5f));
+        graphics.drawOval(1, 1, ICON_SIZE - 3, ICON_SIZE - 3);
+
+        graphics.setFont(graphics.getFont().deriveFont(Font.BOLD, 11f));
+        final FontMetrics metrics = graphics.getFontMetrics();
+        graphics.drawString(label, (ICON_SIZE - metrics.stringWidth(label)) / 2, (ICON_SIZE + metrics.getAscent() - metrics.getDescent()) / 2);
+        graphics.dispose();
+
+        icons.put(label, icon);
+        return icon;
+    }
+
+    /**
+     * @return the smallest level whose cells are at least {@link #CLUSTER_PIXELS} wide at the given zoom
+     */
+    private static int levelFor(float zoom)
+    {
+        int level = 0;
+        while (level < LEVELS - 1 && (1 << (BASE_SHIFT + level)) * zoom < CLUSTER_PIXELS)
+        {
+            level++;
+        }
+        return level;
+    }
+
+    private static int cellKey(int x, int y, int level)
+    {
+        return cellKey(x >> (BASE_SHIFT + level), y >> (BASE_SHIFT + level));
+    }
+
+    private static int cellKey(int cellX, int cellY)
+    {
+        return (cellX & 0xFFFF) << 16 | (cellY & 0xFFFF);
+    }
+
+    private static class Cell
+    {
+        private int count;
+        private long sumX;
+        private long sumY;
+
+        // Only kept on the finest level
+        private int[] ids;
+        private int idCount;
+
+        void addId(int id)
+        {
+            if (ids == null)
+            {
+                ids = new int[4];
+            }
+            else if (idCount == ids.length)
+            {
+                ids = Arrays.copyOf(ids, idCount * 2);
+            }
+            ids[idCount++] = id;
+        }
+
+        void removeId(int id)
+        {
+            for (int i = 0; i < idCount; i++)
+            {
+                if (ids[i] == id)
+                {
+                    ids[i] = ids[--idCount];
+                    return;
+                }
+            }
+        }
+    }
+}
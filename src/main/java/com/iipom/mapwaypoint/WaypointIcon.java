@@ -0,0 +1,22 @@
+package com.iipom.mapwaypoint;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum WaypointIcon
+{
+    CROSS("Cross", "waypoint.png"),
+    DIAMOND("Diamond", "diamond.png"),
+    CIRCLE("Circle", "circle.png");
+
+    private final String name;
+    private final String resource;
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
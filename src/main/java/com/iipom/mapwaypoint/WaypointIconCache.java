@@ -0,0 +1,119 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.util.ImageUtil;
+
+import javax.inject.Singleton;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hands out the icon and colour of each {@link WaypointStyle}. Icon images are only loaded once a waypoint uses
+ * them, and each style's tinted and scaled copy is made the first time it is asked for and kept in a least
+ * recently used cache, so the number of styles ever used does not add to memory. Only used from the client
+ * thread.
+ */
+@Singleton
+public class WaypointIconCache
+{
+    private static final int MAX_CACHED_STYLES = 64;
+
+    private final BufferedImage[] images = new BufferedImage[WaypointIcon.values().length];
+
+    private final Map<Integer, Style> styles = new LinkedHashMap<Integer, Style>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Style> eldest)
+        {
+            return size() > MAX_CACHED_STYLES;
+        }
+    };
+
+    BufferedImage getIcon(int style)
+    {
+        final Style cached = get(style);
+        if (cached.icon == null)
+        {
+            // The default style is how the image is drawn, so it is used as it is
+            final BufferedImage image = getImage(WaypointStyle.icon(style));
+            cached.icon = style == WaypointStyle.DEFAULT ? image : tint(image, WaypointStyle.rgb(style), WaypointStyle.scale(style));
+        }
+        return cached.icon;
+    }
+
+    Color getColor(int style)
+    {
+        return get(style).color;
+    }
+
+    int size()
+    {
+        return styles.size();
+    }
+
+    private Style get(int style)
+    {
+        Style cached = styles.get(style);
+        if (cached == null)
+        {
+            cached = new Style(new Color(WaypointStyle.rgb(style)));
+            styles.put(style, cached);
+        }
+        return cached;
+    }
+
+    private BufferedImage getImage(WaypointIcon icon)
+    {
+        BufferedImage image = images[icon.ordinal()];
+        if (image == null)
+        {
+            image = ImageUtil.loadImageResource(WaypointIconCache.class, icon.getResource());
+            images[icon.ordinal()] = image;
+        }
+        return image;
+    }
+
+    /**
+     * Scales the image, then recolours it keeping each pixel's brightness and alpha, so white becomes the
+     * colour and black stays black.
+     */
+    private static BufferedImage tint(BufferedImage image, int rgb, float scale)
+    {
+        final int width = Math.max(1, Math.round(image.getWidth() * scale));
+        final int height = Math.max(1, Math.round(image.getHeight() * scale));
+        final BufferedImage icon = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = icon.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+
+        final int red = rgb >> 16 & 0xFF;
+        final int green = rgb >> 8 & 0xFF;
+        final int blue = rgb & 0xFF;
+        final int[] pixels = ((DataBufferInt) icon.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++)
+        {
+            final int pixel = pixels[i];
+            final int brightness = Math.max(pixel >> 16 & 0xFF, Math.max(pixel >> 8 & 0xFF, pixel & 0xFF));
+            pixels[i] = pixel & 0xFF000000
+                    | red * brightness / 255 << 16
+                    | green * brightness / 255 << 8
+                    | blue * brightness / 255;
+        }
+
+        return icon;
+    }
+
+    private static final class Style
+    {
+        private final Color color;
+        private BufferedImage icon;
+
+        Style(Color color)
+        {
+            this.color = color;
+        }
+    }
+}
@@ -0,0 +1,863 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persists waypoints between sessions as a snapshot plus an append-only journal of the edits made since.
+ * <p>
+ * Edits are queued on the client thread by {@link WaypointStore} id, which costs a few array writes, and
+ * written out in batches on the executor. There every waypoint is known by a key, handed out in the order
+ * the waypoints were added, and the journal records adds, removes, moves and restyles by key, each add carrying
+ * the waypoint's {@link WaypointStyle} along with its tile. Once the journal holds
+ * more records than twice the live waypoints it is folded into a new snapshot, renumbering the keys densely.
+ * The snapshot and journal carry a generation so a journal left over from before the last snapshot is
+ * ignored rather than applied twice.
+ * <p>
+ * Only one client on the machine writes the files, the one holding the lock on a separate lock file; locking
+ * the journal itself would stop the others from reading it on systems that enforce locks. The others restore
+ * the waypoints from the files and keep track of their edits in memory, trying for the lock again whenever they
+ * flush. A client that gets the lock first reads the files again to pick up what the previous owner changed since
+ * they were loaded, then writes the result as a new snapshot, so its own edits are saved from then on.
+ * <p>
+ * {@link #load()} reads both files on the executor and publishes the waypoints, which the plugin picks up
+ * with {@link #takeLoaded()} and then reports the ids it gave them with {@link #bind}. Edits are written in the
+ * order they were made as long as the executor runs tasks in the order they are submitted, as the client's does.
+ */
+@Slf4j
+@Singleton
+public class WaypointJournal
+{
+    private static final String JOURNAL_FILE = "waypoints.journal";
+    private static final String SNAPSHOT_FILE = "waypoints.snapshot";
+    private static final String LOCK_FILE = "waypoints.lock";
+    private static final int JOURNAL_MAGIC = 0x4D574A4E;
+    private static final int SNAPSHOT_MAGIC = 0x4D57534E;
+    private static final int VERSION = 2;
+
+    // Files written before styles were saved with the waypoints, read as if every waypoint had the default style
+    private static final int UNSTYLED_VERSION = 1;
+    private static final int JOURNAL_HEADER_BYTES = 12;
+    private static final int MIN_COMPACT_RECORDS = 1024;
+
+    private static final int ADD = 1;
+    private static final int REMOVE = 2;
+    private static final int MOVE = 3;
+    private static final int RESTYLE = 4;
+
+    // Only queued, never written: ties a loaded waypoint to the id the plugin gave it
+    private static final int BIND = 5;
+
+    private static final int NONE = -1;
+
+    private final ScheduledExecutorService executor;
+    private final File directory;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicReference<Loaded> loaded = new AtomicReference<>();
+
+    // Edits queued by the client thread as (operation, id, value, style) entries, guarded by itself
+    private final Object queueLock = new Object();
+    private int[] queue = new int[64];
+    private int queueLength;
+
+    // Everything below is only touched on the executor. The lock file is open from loading until closed, the
+    // journal only while this client holds the lock
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private FileChannel channel;
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(1024);
+    private int[] drained = new int[64];
+    private int generation;
+    private int journalRecords;
+
+    // Whether the files were written by an older version and should be rewritten once this client owns them
+    private boolean outdated;
+
+    // Tile and style of each key, the tile TileCoords.NONE once removed
+    private int[] tiles = new int[64];
+    private int[] styles = new int[64];
+    private int keyCount;
+    private int liveCount;
+
+    private int[] keyToId = new int[64];
+    private int[] idToKey = new int[64];
+
+    // Keys of the published waypoints not yet bound to an id, in the order they were published
+    private int[] loadedKeys;
+    private int unbound;
+
+    // The waypoints as loaded while another client owned the files, to tell what it changed since
+    private Loaded baseline;
+
+    @Inject
+    private WaypointJournal(ScheduledExecutorService executor)
+    {
+        this(executor, MapWaypointPlugin.WAYPOINT_DIR);
+    }
+
+    WaypointJournal(ScheduledExecutorService executor, File directory)
+    {
+        this.executor = executor;
+        this.directory = directory;
+        Arrays.fill(idToKey, NONE);
+    }
+
+    /**
+     * Records a new waypoint. Called on the client thread.
+     */
+    void add(int id, int tile, int style)
+    {
+        enqueue(ADD, id, tile, style);
+    }
+
+    /**
+     * Records a waypoint's removal. Called on the client thread.
+     */
+    void remove(int id)
+    {
+        enqueue(REMOVE, id, 0, 0);
+    }
+
+    /**
+     * Records that a waypoint now stands on another tile. Called on the client thread.
+     */
+    void move(int id, int tile)
+    {
+        enqueue(MOVE, id, tile, 0);
+    }
+
+    /**
+     * Records that a waypoint now has another style. Called on the client thread.
+     */
+    void restyle(int id, int style)
+    {
+        enqueue(RESTYLE, id, 0, style);
+    }
+
+    /**
+     * Ties the loaded waypoint at the given index of {@link #takeLoaded()} to its id. Called on the client thread.
+     */
+    void bind(int id, int index)
+    {
+        enqueue(BIND, id, index, 0);
+    }
+
+    /**
+     * @return the waypoints found by the last {@link #load()}, in the order they were added, or null if they have
+     * already been taken or are not loaded yet
+     */
+    Loaded takeLoaded()
+    {
+        return loaded.getAndSet(null);
+    }
+
+    /**
+     * Reads the snapshot and replays the journal on top of it, then publishes the waypoints. Performs file IO
+     * and should not be called on the client thread.
+     */
+    synchronized void load()
+    {
+        if (lockChannel != null)
+        {
+            return;
+        }
+
+        directory.mkdirs();
+        final File journal = new File(directory, JOURNAL_FILE);
+        Arrays.fill(idToKey, NONE);
+
+        try
+        {
+            lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = tryLock(lockChannel);
+            readSnapshot(new File(directory, SNAPSHOT_FILE));
+            if (lock != null)
+            {
+                channel = FileChannel.open(journal.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                replayJournal(channel, true);
+                if (outdated)
+                {
+                    compact();
+                }
+            }
+            else if (journal.exists())
+            {
+                try (FileChannel reader = FileChannel.open(journal.toPath(), StandardOpenOption.READ))
+                {
+                    replayJournal(reader, false);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to load waypoints from {}", directory, e);
+            closeChannel();
+            close();
+            return;
+        }
+
+        final int[] publishedTiles = new int[liveCount];
+        final int[] publishedStyles = new int[liveCount];
+        loadedKeys = new int[liveCount];
+        unbound = liveCount;
+
+        int index = 0;
+        for (int key = 0; key < keyCount; key++)
+        {
+            if (tiles[key] != TileCoords.NONE)
+            {
+                publishedTiles[index] = tiles[key];
+                publishedStyles[index] = styles[key];
+                loadedKeys[index++] = key;
+            }
+        }
+
+        if (unbound == 0)
+        {
+            loadedKeys = null;
+        }
+
+        final Loaded published = new Loaded(publishedTiles, publishedStyles);
+        loaded.set(published);
+        log.debug("Loaded {} waypoints, {} journal records", liveCount, journalRecords);
+
+        // Another client on this machine is already saving to the same directory, leave the files to it for now
+        if (lock == null)
+        {
+            baseline = published;
+            log.info("Waypoint journal is in use by another client, waypoints will be saved once it closes");
+        }
+    }
+
+    /**
+     * Writes the queued edits to the journal, compacting it if it has grown large enough.
+     */
+    synchronized void flush()
+    {
+        flushScheduled.set(false);
+
+        final int length;
+        synchronized (queueLock)
+        {
+            final int[] swap = drained;
+            drained = queue;
+            queue = swap;
+            length = queueLength;
+            queueLength = 0;
+        }
+
+        // Nothing to write to when loading failed or the journal has been closed, the edits only live in memory
+        if (lockChannel == null)
+        {
+            return;
+        }
+
+        writeBuffer.clear();
+        int records = 0;
+        for (int i = 0; i < length; i += 4)
+        {
+            records += apply(drained[i], drained[i + 1], drained[i + 2], drained[i + 3]);
+        }
+
+        try
+        {
+            // The snapshot written on taking over already holds these edits. Keys are renumbered by it, so wait
+            // until every loaded waypoint has been bound
+            if (channel == null)
+            {
+                if (loadedKeys == null)
+                {
+                    takeOver();
+                }
+                return;
+            }
+
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining())
+            {
+                channel.write(writeBuffer);
+            }
+            journalRecords += records;
+
+            if (loadedKeys == null && journalRecords >= MIN_COMPACT_RECORDS && journalRecords > liveCount * 2)
+            {
+                compact();
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to write waypoint journal", e);
+        }
+    }
+
+    /**
+     * Writes any queued edits and closes the journal. Performs file IO and should not be called on the client thread.
+     */
+    synchronized void close()
+    {
+        flush();
+        closeChannel();
+
+        loaded.set(null);
+        loadedKeys = null;
+        unbound = 0;
+        baseline = null;
+        generation = 0;
+        journalRecords = 0;
+        outdated = false;
+        keyCount = 0;
+        liveCount = 0;
+        Arrays.fill(idToKey, NONE);
+    }
+
+    private void closeChannel()
+    {
+        try
+        {
+            if (channel != null)
+            {
+                channel.force(false);
+                channel.close();
+            }
+
+            // Closing the lock file's channel releases the lock
+            if (lockChannel != null)
+            {
+                lockChannel.close();
+            }
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to close waypoint journal", e);
+        }
+
+        channel = null;
+        lockChannel = null;
+        lock = null;
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException
+    {
+        try
+        {
+            return channel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Tries for the lock the client that writes the files holds, and once it has it, merges in what the previous
+     * owner saved and writes the result as a snapshot of a later generation than any the previous owner wrote.
+     */
+    private void takeOver() throws IOException
+    {
+        lock = tryLock(lockChannel);
+        if (lock == null)
+        {
+            return;
+        }
+
+        try
+        {
+            mergeOwnerEdits();
+        }
+        catch (IOException e)
+        {
+            // Let the next flush try again rather than hold the lock without writing
+            lock.release();
+            lock = null;
+            throw e;
+        }
+
+        channel = FileChannel.open(new File(directory, JOURNAL_FILE).toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        compact();
+        baseline = null;
+        log.info("Took over the waypoint journal from another client");
+    }
+
+    /**
+     * Reads the previous owner's snapshot and journal and applies what it changed since this client loaded them:
+     * the waypoints it added and removed, and the styles it gave waypoints this client left in their loaded style.
+     */
+    private void mergeOwnerEdits() throws IOException
+    {
+        final int[] ownTiles = tiles;
+        final int[] ownStyles = styles;
+        final int[] ownKeyToId = keyToId;
+        final int ownKeyCount = keyCount;
+        final int ownLiveCount = liveCount;
+        final int ownGeneration = generation;
+
+        final Map<Integer, Integer> saved = new LinkedHashMap<>();
+        tiles = new int[64];
+        styles = new int[64];
+        keyToId = new int[64];
+        try
+        {
+            readSnapshot(new File(directory, SNAPSHOT_FILE));
+            final File journal = new File(directory, JOURNAL_FILE);
+            if (journal.exists())
+            {
+                try (FileChannel reader = FileChannel.open(journal.toPath(), StandardOpenOption.READ))
+                {
+                    replayJournal(reader, false);
+                }
+            }
+
+            for (int key = 0; key < keyCount; key++)
+            {
+                if (tiles[key] != TileCoords.NONE)
+                {
+                    saved.put(tiles[key], styles[key]);
+                }
+            }
+        }
+        finally
+        {
+            tiles = ownTiles;
+            styles = ownStyles;
+            keyToId = ownKeyToId;
+            keyCount = ownKeyCount;
+            liveCount = ownLiveCount;
+            generation = Math.max(ownGeneration, generation);
+        }
+
+        final Map<Integer, Integer> ownKeys = new HashMap<>();
+        for (int key = 0; key < keyCount; key++)
+        {
+            if (tiles[key] != TileCoords.NONE)
+            {
+                ownKeys.put(tiles[key], key);
+            }
+        }
+
+        final Map<Integer, Integer> loadedStyles = new HashMap<>();
+        for (int i = 0; i < baseline.tiles.length; i++)
+        {
+            loadedStyles.put(baseline.tiles[i], baseline.styles[i]);
+            if (!saved.containsKey(baseline.tiles[i]))
+            {
+                final Integer key = ownKeys.get(baseline.tiles[i]);
+                if (key != null)
+                {
+                    unbindKey(key);
+                    applyRecord(REMOVE, key, 0, 0);
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, Integer> waypoint : saved.entrySet())
+        {
+            final Integer loadedStyle = loadedStyles.get(waypoint.getKey());
+            final Integer key = ownKeys.get(waypoint.getKey());
+            if (loadedStyle == null && key == null)
+            {
+                applyRecord(ADD, keyCount, waypoint.getKey(), waypoint.getValue());
+            }
+            else if (loadedStyle != null && key != null && styles[key] == loadedStyle)
+            {
+                applyRecord(RESTYLE, key, 0, waypoint.getValue());
+            }
+        }
+    }
+
+    private void enqueue(int operation, int id, int value, int style)
+    {
+        synchronized (queueLock)
+        {
+            if (queueLength + 4 > queue.length)
+            {
+                queue = Arrays.copyOf(queue, queue.length * 2);
+            }
+
+            queue[queueLength++] = operation;
+            queue[queueLength++] = id;
+            queue[queueLength++] = value;
+            queue[queueLength++] = style;
+        }
+
+        if (flushScheduled.compareAndSet(false, true))
+        {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Applies one queued edit to the keys and appends its record to the write buffer.
+     *
+     * @return the number of records written
+     */
+    private int apply(int operation, int id, int value, int style)
+    {
+        switch (operation)
+        {
+            case ADD:
+            {
+                final int key = keyCount;
+                applyRecord(ADD, key, value, style);
+                bindKey(id, key);
+                writeRecord(ADD, key, value, style);
+                return 1;
+            }
+            case REMOVE:
+            {
+                final int key = keyOf(id);
+                if (key == NONE)
+                {
+                    return 0;
+                }
+
+                applyRecord(REMOVE, key, 0, 0);
+                unbindKey(key);
+                writeRecord(REMOVE, key, 0, 0);
+                return 1;
+            }
+            case MOVE:
+            case RESTYLE:
+            {
+                final int key = keyOf(id);
+                if (key == NONE)
+                {
+                    return 0;
+                }
+
+                applyRecord(operation, key, value, style);
+                writeRecord(operation, key, value, style);
+                return 1;
+            }
+            case BIND:
+                if (loadedKeys != null && value < loadedKeys.length)
+                {
+                    bindKey(id, loadedKeys[value]);
+                    if (--unbound == 0)
+                    {
+                        loadedKeys = null;
+                    }
+                }
+                return 0;
+            default:
+                return 0;
+        }
+    }
+
+    private void applyRecord(int operation, int key, int tile, int style)
+    {
+        if (operation == ADD)
+        {
+            if (key >= tiles.length)
+            {
+                final int capacity = Math.max(key + 1, tiles.length * 2);
+                tiles = Arrays.copyOf(tiles, capacity);
+                styles = Arrays.copyOf(styles, capacity);
+                keyToId = Arrays.copyOf(keyToId, capacity);
+            }
+
+            for (int i = keyCount; i < key; i++)
+            {
+                tiles[i] = TileCoords.NONE;
+            }
+
+            tiles[key] = tile;
+            styles[key] = style;
+            keyToId[key] = NONE;
+            keyCount = Math.max(keyCount, key + 1);
+            liveCount++;
+        }
+        else if (key < keyCount && tiles[key] != TileCoords.NONE)
+        {
+            if (operation == REMOVE)
+            {
+                tiles[key] = TileCoords.NONE;
+                liveCount--;
+            }
+            else if (operation == RESTYLE)
+            {
+                styles[key] = style;
+            }
+            else
+            {
+                tiles[key] = tile;
+            }
+        }
+    }
+
+    private void writeRecord(int operation, int key, int tile, int style)
+    {
+        if (writeBuffer.remaining() < 13)
+        {
+            final ByteBuffer grown = ByteBuffer.allocate(writeBuffer.capacity() * 2);
+            writeBuffer.flip();
+            grown.put(writeBuffer);
+            writeBuffer = grown;
+        }
+
+        writeBuffer.put((byte) operation);
+        writeBuffer.putInt(key);
+        if (operation == ADD || operation == MOVE)
+        {
+            writeBuffer.putInt(tile);
+        }
+        if (operation == ADD || operation == RESTYLE)
+        {
+            writeBuffer.putInt(style);
+        }
+    }
+
+    /**
+     * @return the bytes following the operation in a record of the given version, or -1 if it is not a record
+     */
+    private static int recordLength(int operation, int version)
+    {
+        switch (operation)
+        {
+            case ADD:
+                return version == UNSTYLED_VERSION ? 8 : 12;
+            case REMOVE:
+                return 4;
+            case MOVE:
+                return 8;
+            case RESTYLE:
+                return version == UNSTYLED_VERSION ? -1 : 8;
+            default:
+                return -1;
+        }
+    }
+
+    private static boolean readable(int version)
+    {
+        return version == VERSION || version == UNSTYLED_VERSION;
+    }
+
+    /**
+     * @return the style read from a file, or the default style if it is not one this version knows
+     */
+    private static int readStyle(int style)
+    {
+        return WaypointStyle.isValid(style) ? style : WaypointStyle.DEFAULT;
+    }
+
+    private int keyOf(int id)
+    {
+        return id >= 0 && id < idToKey.length ? idToKey[id] : NONE;
+    }
+
+    private void bindKey(int id, int key)
+    {
+        if (id >= idToKey.length)
+        {
+            final int oldLength = idToKey.length;
+            idToKey = Arrays.copyOf(idToKey, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(idToKey, oldLength, idToKey.length, NONE);
+        }
+
+        idToKey[id] = key;
+        keyToId[key] = id;
+    }
+
+    private void unbindKey(int key)
+    {
+        final int id = keyToId[key];
+        if (id != NONE)
+        {
+            idToKey[id] = NONE;
+            keyToId[key] = NONE;
+        }
+    }
+
+    private void readSnapshot(File file) throws IOException
+    {
+        generation = 0;
+        outdated = false;
+        keyCount = 0;
+        liveCount = 0;
+
+        if (!file.exists())
+        {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            final int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : NONE;
+            if (!readable(version))
+            {
+                log.warn("Ignoring waypoint snapshot {} written by an incompatible version", file);
+                return;
+            }
+
+            outdated = version != VERSION;
+            generation = in.readInt();
+            final int count = in.readInt();
+            for (int key = 0; key < count; key++)
+            {
+                final int tile = in.readInt();
+                applyRecord(ADD, key, tile, outdated ? WaypointStyle.DEFAULT : readStyle(in.readInt()));
+            }
+        }
+    }
+
+    /**
+     * Applies the journal's records on top of the snapshot. When this client owns the journal, a record cut
+     * short by a crash is dropped and a journal from another generation than the snapshot is started over.
+     */
+    private void replayJournal(FileChannel journal, boolean owner) throws IOException
+    {
+        final ByteBuffer data = ByteBuffer.allocate((int) journal.size());
+        while (data.hasRemaining() && journal.read(data, data.position()) != -1)
+        {
+            continue;
+        }
+        data.flip();
+
+        journalRecords = 0;
+        final int version = data.remaining() >= JOURNAL_HEADER_BYTES && data.getInt() == JOURNAL_MAGIC ? data.getInt() : NONE;
+        if (!readable(version) || data.getInt() != generation)
+        {
+            if (owner)
+            {
+                resetJournal();
+            }
+            return;
+        }
+
+        outdated |= version != VERSION;
+        int valid = data.position();
+        while (data.hasRemaining())
+        {
+            final int operation = data.get();
+            final int length = recordLength(operation, version);
+            if (length < 0 || data.remaining() < length)
+            {
+                break;
+            }
+
+            final int key = data.getInt();
+            final int tile = operation == ADD || operation == MOVE ? data.getInt() : 0;
+            final int style = version == UNSTYLED_VERSION ? WaypointStyle.DEFAULT
+                    : operation == ADD || operation == RESTYLE ? readStyle(data.getInt()) : 0;
+            applyRecord(operation, key, tile, style);
+            journalRecords++;
+            valid = data.position();
+        }
+
+        if (owner)
+        {
+            journal.truncate(valid);
+            journal.position(valid);
+        }
+    }
+
+    /**
+     * Writes the live waypoints as the next generation's snapshot, renumbers their keys and starts a new journal.
+     */
+    private void compact() throws IOException
+    {
+        final File snapshot = new File(directory, SNAPSHOT_FILE);
+        final File temp = new File(directory, SNAPSHOT_FILE + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file)))
+        {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(generation + 1);
+            out.writeInt(liveCount);
+            for (int key = 0; key < keyCount; key++)
+            {
+                if (tiles[key] != TileCoords.NONE)
+                {
+                    out.writeInt(tiles[key]);
+                    out.writeInt(styles[key]);
+                }
+            }
+
+            out.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        int next = 0;
+        for (int key = 0; key < keyCount; key++)
+        {
+            if (tiles[key] != TileCoords.NONE)
+            {
+                final int id = keyToId[key];
+                tiles[next] = tiles[key];
+                styles[next] = styles[key];
+                keyToId[next] = id;
+                if (id != NONE)
+                {
+                    idToKey[id] = next;
+                }
+                next++;
+            }
+        }
+        keyCount = next;
+
+        generation++;
+        outdated = false;
+        resetJournal();
+        log.debug("Compacted waypoint journal into {} waypoints", liveCount);
+    }
+
+    private void resetJournal() throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES);
+        header.putInt(JOURNAL_MAGIC);
+        header.putInt(VERSION);
+        header.putInt(generation);
+        header.flip();
+
+        channel.truncate(0);
+        channel.position(0);
+        while (header.hasRemaining())
+        {
+            channel.write(header);
+        }
+        channel.force(false);
+        journalRecords = 0;
+    }
+
+    /**
+     * The waypoints read by {@link #load()}, as the packed tile and style of each.
+     */
+    static final class Loaded
+    {
+        final int[] tiles;
+        final int[] styles;
+
+        private Loaded(int[] tiles, int[] styles)
+        {
+            this.tiles = tiles;
+            this.styles = styles;
+        }
+    }
+}
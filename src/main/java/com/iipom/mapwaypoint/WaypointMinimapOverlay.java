@@ -1,78 +1,229 @@
 package com.iipom.mapwaypoint;
 
 import net.runelite.api.Client;
-import net.runelite.api.Perspective;
-import net.runelite.api.Player;
-import net.runelite.api.Point;
-import net.runelite.api.coords.LocalPoint;
-import net.runelite.api.coords.WorldPoint;
 import net.runelite.client.ui.overlay.*;
-import net.runelite.client.ui.overlay.worldmap.WorldMapPoint;
 
 import javax.inject.Inject;
 import java.awt.*;
+import java.awt.geom.Path2D;
 
-public class WaypointMinimapOverlay extends Overlay
+public class WaypointMinimapOverlay extends Overlay implements OverlayLifecycle.NavigationOverlay
 {
-    private static final int MAX_DRAW_DISTANCE = 16;
-    private static final int TILE_WIDTH = 4;
-    private static final int TILE_HEIGHT = 4;
-    private static final Color TILE_COLOR = new Color(0, 201, 198);
+    private static final int MAX_EDGE_DISTANCE = 64;
+    private static final int MAX_DRAWN_POINTS = 256;
+    private static final int MAX_EDGE_MARKERS = 32;
+    private static final int EDGE_MARGIN = 4;
+    private static final int MARKER_LENGTH = 8;
+    private static final int MARKER_WIDTH = 4;
+    private static final double TILE_HALF_SIZE = 2;
+    private static final Stroke TRAIL_STROKE = new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
 
     private final Client client;
     private final MapWaypointPlugin plugin;
-    private final MapWaypointConfig config;
+    private final NavigationTracker navigationTracker;
+    private final WaypointIconCache iconCache;
+    private final PluginMetrics metrics;
+    private final MinimapTransform transform = new MinimapTransform();
+    private final int[] visible = new int[MAX_DRAWN_POINTS];
+
+    // The tiles and edge markers of one colour, filled in one go
+    private final Path2D.Float shapes = new Path2D.Float(Path2D.WIND_NON_ZERO, MAX_DRAWN_POINTS * 5);
+    private final Path2D.Float trailLine = new Path2D.Float(Path2D.WIND_NON_ZERO, BreadcrumbTrail.CAPACITY);
 
     @Inject
-    private WaypointMinimapOverlay(Client client, MapWaypointPlugin plugin, MapWaypointConfig config) {
+    private WaypointMinimapOverlay(Client client, MapWaypointPlugin plugin, NavigationTracker navigationTracker, WaypointIconCache iconCache,
+                                   PluginMetrics metrics) {
         this.client = client;
         this.plugin = plugin;
-        this.config = config;
+        this.navigationTracker = navigationTracker;
+        this.iconCache = iconCache;
+        this.metrics = metrics;
         setPosition(OverlayPosition.DYNAMIC);
         setPriority(OverlayPriority.LOW);
         setLayer(OverlayLayer.ABOVE_WIDGETS);
     }
 
+    @Override
+    public boolean isNeeded(NavigationState state)
+    {
+        return state.hasTarget() && (state.isDrawMinimap() || state.isDrawTrail());
+    }
+
     @Override
     public Dimension render(Graphics2D graphics)
     {
-        if (config.drawMinimap())
+        final long start = metrics.start(PluginMetrics.Probe.MINIMAP_OVERLAY);
+        try
+        {
+            return renderMinimap(graphics);
+        }
+        finally
+        {
+            metrics.stop(PluginMetrics.Probe.MINIMAP_OVERLAY, start);
+        }
+    }
+
+    private Dimension renderMinimap(Graphics2D graphics)
+    {
+        final NavigationState state = navigationTracker.getState();
+        if ((state.isDrawMinimap() || state.isDrawTrail()) && state.hasTarget() && transform.update(client))
         {
-            WorldMapPoint waypoint = plugin.getWaypoint();
-            if (waypoint != null)
+            if (state.isDrawTrail())
             {
-                drawOnMinimap(graphics, waypoint.getWorldPoint());
+                drawTrail(graphics);
+            }
+
+            if (state.isDrawMinimap())
+            {
+                drawOnMinimap(graphics, state);
             }
         }
 
         return null;
     }
 
-    private void drawOnMinimap(Graphics2D graphics, WorldPoint point)
+    /**
+     * Draws the trail as one line, leaving out the parts that are off the minimap.
+     */
+    private void drawTrail(Graphics2D graphics)
     {
-        Player player = client.getLocalPlayer();
-        if (player == null)
+        final BreadcrumbTrail trail = plugin.getTrail();
+        final int radius = transform.getRadius();
+        boolean penDown = false;
+
+        trailLine.reset();
+        for (int i = 0; i < trail.size(); i++)
         {
-            return;
+            final int tile = trail.getTile(i);
+            final int x = TileCoords.x(tile);
+            final int y = TileCoords.y(tile);
+            final int dx = transform.offsetX(x, y);
+            final int dy = transform.offsetY(x, y);
+
+            if (dx * dx + dy * dy > radius * radius)
+            {
+                penDown = false;
+            }
+            else if (penDown)
+            {
+                trailLine.lineTo(transform.getCenterX() + dx, transform.getCenterY() + dy);
+            }
+            else
+            {
+                trailLine.moveTo(transform.getCenterX() + dx, transform.getCenterY() + dy);
+                penDown = true;
+            }
         }
 
-        if (point.distanceTo(player.getWorldLocation()) >= MAX_DRAW_DISTANCE)
+        graphics.setColor(BreadcrumbOverlay.TRAIL_COLOR);
+        graphics.setStroke(TRAIL_STROKE);
+        graphics.draw(trailLine);
+    }
+
+    private void drawOnMinimap(Graphics2D graphics, NavigationState state)
+    {
+        final int player = state.getPlayer();
+        final int target = state.getTarget();
+        final WaypointStore waypoints = plugin.getWaypoints();
+        final int count = waypoints.query(TileCoords.x(player), TileCoords.y(player), TileCoords.plane(player), MAX_EDGE_DISTANCE, visible);
+
+        final int edge = transform.getRadius() - EDGE_MARGIN;
+        final double cos = Math.cos(transform.getAngle()) * TILE_HALF_SIZE;
+        final double sin = Math.sin(transform.getAngle()) * TILE_HALF_SIZE;
+        int edgeMarkers = 0;
+        boolean targetDrawn = false;
+
+        // One pass per colour, each leaving the waypoints of other colours at the front for the next
+        int pending = count;
+        while (pending > 0)
         {
-            return;
+            final int style = waypoints.getStyle(visible[0]);
+            int kept = 0;
+
+            shapes.reset();
+            for (int i = 0; i < pending; i++)
+            {
+                final int id = visible[i];
+                if (WaypointStyle.rgb(waypoints.getStyle(id)) != WaypointStyle.rgb(style))
+                {
+                    visible[kept++] = id;
+                    continue;
+                }
+
+                final int x = waypoints.getX(id);
+                final int y = waypoints.getY(id);
+                final int dx = transform.offsetX(x, y);
+                final int dy = transform.offsetY(x, y);
+                final boolean isTarget = TileCoords.pack(x, y, waypoints.getPlane(id)) == target;
+
+                if (dx * dx + dy * dy <= edge * edge)
+                {
+                    addTile(dx, dy, cos, sin);
+                }
+                else if (edgeMarkers < MAX_EDGE_MARKERS || isTarget)
+                {
+                    addEdgeMarker(dx, dy, edge);
+                    edgeMarkers++;
+                }
+
+                targetDrawn |= isTarget;
+            }
+
+            graphics.setColor(iconCache.getColor(style));
+            graphics.fill(shapes);
+            pending = kept;
         }
 
-        LocalPoint lp = LocalPoint.fromWorld(client, point);
-        if (lp == null)
+        // The waypoint being led to always gets a marker, however far away it is
+        if (!targetDrawn && state.isSamePlane())
         {
-            return;
+            final int x = TileCoords.x(target);
+            final int y = TileCoords.y(target);
+            final int id = waypoints.find(x, y, TileCoords.plane(target));
+
+            shapes.reset();
+            addEdgeMarker(transform.offsetX(x, y), transform.offsetY(x, y), edge);
+            graphics.setColor(iconCache.getColor(id != -1 ? waypoints.getStyle(id) : WaypointStyle.DEFAULT));
+            graphics.fill(shapes);
         }
+    }
 
-        Point posOnMinimap = Perspective.localToMinimap(client, lp);
-        if (posOnMinimap == null)
+    /**
+     * Adds a square turned with the minimap, like {@link OverlayUtil#renderMinimapRect} draws.
+     */
+    private void addTile(int dx, int dy, double cos, double sin)
+    {
+        final double cx = transform.getCenterX() + dx;
+        final double cy = transform.getCenterY() + dy;
+
+        shapes.moveTo(cx - cos + sin, cy - sin - cos);
+        shapes.lineTo(cx + cos + sin, cy + sin - cos);
+        shapes.lineTo(cx + cos - sin, cy + sin + cos);
+        shapes.lineTo(cx - cos - sin, cy - sin + cos);
+        shapes.closePath();
+    }
+
+    /**
+     * Adds a triangle on the edge of the minimap pointing towards a waypoint outside of it.
+     */
+    private void addEdgeMarker(int dx, int dy, int edge)
+    {
+        final double length = Math.sqrt((double) dx * dx + dy * dy);
+        if (length == 0)
         {
             return;
         }
 
-        OverlayUtil.renderMinimapRect(client, graphics, posOnMinimap, TILE_WIDTH, TILE_HEIGHT, TILE_COLOR);
+        final double nx = dx / length;
+        final double ny = dy / length;
+        final double tipX = transform.getCenterX() + nx * edge;
+        final double tipY = transform.getCenterY() + ny * edge;
+        final double baseX = tipX - nx * MARKER_LENGTH;
+        final double baseY = tipY - ny * MARKER_LENGTH;
+
+        shapes.moveTo(tipX, tipY);
+        shapes.lineTo(baseX - ny * MARKER_WIDTH, baseY + nx * MARKER_WIDTH);
+        shapes.lineTo(baseX + ny * MARKER_WIDTH, baseY - nx * MARKER_WIDTH);
+        shapes.closePath();
     }
 }
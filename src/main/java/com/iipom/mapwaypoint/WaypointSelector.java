@@ -0,0 +1,156 @@
+package com.iipom.mapwaypoint;
+
+import java.util.BitSet;
+
+/**
+ * Picks the waypoint the player is led to. Waypoints the player has come within the arrival distance of are
+ * marked visited and skipped from then on. Unvisited waypoints are kept in one {@link KdTree} per plane so
+ * the nearest one can be found without scanning them all. Not thread-safe, all access is expected on the
+ * client thread.
+ */
+class WaypointSelector
+{
+    private static final int PLANES = 4;
+
+    private final WaypointStore waypoints;
+    private final KdTree[] unvisited = new KdTree[PLANES];
+    private final BitSet visited = new BitSet();
+    private RouteOrder route;
+
+    WaypointSelector(WaypointStore waypoints)
+    {
+        this.waypoints = waypoints;
+        for (int plane = 0; plane < PLANES; plane++)
+        {
+            unvisited[plane] = new KdTree();
+        }
+    }
+
+    void add(int id)
+    {
+        visited.clear(id);
+        unvisited[waypoints.getPlane(id)].insert(id, waypoints.getX(id), waypoints.getY(id));
+    }
+
+    void remove(int id)
+    {
+        visited.clear(id);
+        for (KdTree tree : unvisited)
+        {
+            if (tree.remove(id))
+            {
+                return;
+            }
+        }
+    }
+
+    void clear()
+    {
+        visited.clear();
+        route = null;
+        for (KdTree tree : unvisited)
+        {
+            tree.clear();
+        }
+    }
+
+    /**
+     * Sets the order {@link WaypointTarget#SHORTEST_ROUTE} leads through the waypoints in, or null to lead through
+     * them in the order they were set until there is one.
+     */
+    void setRoute(RouteOrder route)
+    {
+        this.route = route;
+    }
+
+    boolean isVisited(int id)
+    {
+        return visited.get(id);
+    }
+
+    /**
+     * Marks the waypoints the player has arrived at as visited, then picks the one to lead them to next.
+     *
+     * @param player the player's packed tile
+     * @return the id of the waypoint to head to, or -1 if there is none left
+     */
+    int select(WaypointTarget mode, int player, int arrivalDistance)
+    {
+        if (mode == WaypointTarget.LAST_SET)
+        {
+            return waypoints.last();
+        }
+
+        while (true)
+        {
+            final int target = mode == WaypointTarget.NEAREST ? nearest(player) : firstUnvisited(mode);
+            if (target == -1 || !hasArrived(player, target, arrivalDistance))
+            {
+                return target;
+            }
+
+            visited.set(target);
+            unvisited[waypoints.getPlane(target)].remove(target);
+        }
+    }
+
+    private boolean hasArrived(int player, int target, int arrivalDistance)
+    {
+        return waypoints.getPlane(target) == TileCoords.plane(player)
+                && Math.abs(waypoints.getX(target) - TileCoords.x(player)) <= arrivalDistance
+                && Math.abs(waypoints.getY(target) - TileCoords.y(player)) <= arrivalDistance;
+    }
+
+    /**
+     * @return the nearest unvisited waypoint on the player's plane, or on any other plane if there are none
+     */
+    private int nearest(int player)
+    {
+        final int x = TileCoords.x(player);
+        final int y = TileCoords.y(player);
+
+        final int onPlane = unvisited[TileCoords.plane(player)].nearest(x, y);
+        if (onPlane != -1)
+        {
+            return onPlane;
+        }
+
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (KdTree tree : unvisited)
+        {
+            final int id = tree.nearest(x, y);
+            if (id != -1 && tree.nearestDistance() < bestDistance)
+            {
+                best = id;
+                bestDistance = tree.nearestDistance();
+            }
+        }
+        return best;
+    }
+
+    private int firstUnvisited(WaypointTarget mode)
+    {
+        if (mode == WaypointTarget.SHORTEST_ROUTE && route != null)
+        {
+            for (int i = 0; i < route.size(); i++)
+            {
+                final int id = route.getId(i);
+                if (waypoints.contains(id) && !visited.get(id))
+                {
+                    return id;
+                }
+            }
+        }
+
+        for (int i = 0; i < waypoints.size(); i++)
+        {
+            final int id = waypoints.idAt(i);
+            if (!visited.get(id))
+            {
+                return id;
+            }
+        }
+        return -1;
+    }
+}
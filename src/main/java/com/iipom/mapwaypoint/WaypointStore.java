@@ -0,0 +1,363 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.coords.WorldPoint;
+
+import java.util.Arrays;
+
+/**
+ * Holds the active waypoints as parallel primitive arrays, indexed by a stable id.
+ * Ids are bucketed by 64x64 map region so that lookups around a tile only visit nearby waypoints.
+ * Not thread-safe, all access is expected on the client thread.
+ */
+public class WaypointStore
+{
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int REGION_SHIFT = 6;
+    private static final int FREE = -1;
+
+    private int[] xs = new int[INITIAL_CAPACITY];
+    private int[] ys = new int[INITIAL_CAPACITY];
+    private int[] planes = new int[INITIAL_CAPACITY];
+    private int[] styles = new int[INITIAL_CAPACITY];
+
+    // Ids in the order the waypoints were added
+    private int[] order = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Slots freed by remove, reused before the arrays grow
+    private int[] freeIds = new int[INITIAL_CAPACITY];
+    private int freeCount;
+    private int highestId;
+
+    private final RegionIndex regions = new RegionIndex();
+
+    public WaypointStore()
+    {
+        Arrays.fill(planes, FREE);
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @return the id of the waypoint at the given position in insertion order
+     */
+    public int idAt(int index)
+    {
+        return order[index];
+    }
+
+    /**
+     * @return the id of the most recently added waypoint, or -1 if there are none
+     */
+    public int last()
+    {
+        return size == 0 ? -1 : order[size - 1];
+    }
+
+    public boolean contains(int id)
+    {
+        return id >= 0 && id < highestId && planes[id] != FREE;
+    }
+
+    public int getX(int id)
+    {
+        return xs[id];
+    }
+
+    public int getY(int id)
+    {
+        return ys[id];
+    }
+
+    public int getPlane(int id)
+    {
+        return planes[id];
+    }
+
+    /**
+     * @return the waypoint's packed {@link WaypointStyle}
+     */
+    public int getStyle(int id)
+    {
+        return styles[id];
+    }
+
+    public void setStyle(int id, int style)
+    {
+        styles[id] = style;
+    }
+
+    public WorldPoint getWorldPoint(int id)
+    {
+        return new WorldPoint(xs[id], ys[id], planes[id]);
+    }
+
+    public int add(int x, int y, int plane)
+    {
+        return add(x, y, plane, WaypointStyle.DEFAULT);
+    }
+
+    public int add(int x, int y, int plane, int style)
+    {
+        final int id = allocateId();
+        xs[id] = x;
+        ys[id] = y;
+        planes[id] = plane;
+        styles[id] = style;
+
+        if (size == order.length)
+        {
+            order = Arrays.copyOf(order, size * 2);
+        }
+        order[size++] = id;
+
+        regions.add(regionKey(x, y), id);
+        return id;
+    }
+
+    public boolean remove(int id)
+    {
+        if (!contains(id))
+        {
+            return false;
+        }
+
+        regions.remove(regionKey(xs[id], ys[id]), id);
+        planes[id] = FREE;
+
+        for (int i = 0; i < size; i++)
+        {
+            if (order[i] == id)
+            {
+                System.arraycopy(order, i + 1, order, i, size - i - 1);
+                size--;
+                break;
+            }
+        }
+
+        if (freeCount == freeIds.length)
+        {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+        return true;
+    }
+
+    public void clear()
+    {
+        Arrays.fill(planes, FREE);
+        regions.clear();
+        size = 0;
+        freeCount = 0;
+        highestId = 0;
+    }
+
+    /**
+     * @return the id of the waypoint on the given tile, or -1 if there is none
+     */
+    public int find(int x, int y, int plane)
+    {
+        final Bucket bucket = regions.get(regionKey(x, y));
+        if (bucket == null)
+        {
+            return -1;
+        }
+
+        for (int i = 0; i < bucket.count; i++)
+        {
+            final int id = bucket.ids[i];
+            if (xs[id] == x && ys[id] == y && planes[id] == plane)
+            {
+                return id;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Collects the ids of waypoints within {@code radius} tiles (Chebyshev distance) of the given tile.
+     *
+     * @param plane the plane to match, or -1 to match waypoints on any plane
+     * @param out   receives the matching ids, results beyond its length are dropped
+     * @return the number of ids written to {@code out}
+     */
+    public int query(int x, int y, int plane, int radius, int[] out)
+    {
+        final int minRegionX = (x - radius) >> REGION_SHIFT;
+        final int maxRegionX = (x + radius) >> REGION_SHIFT;
+        final int minRegionY = (y - radius) >> REGION_SHIFT;
+        final int maxRegionY = (y + radius) >> REGION_SHIFT;
+
+        int count = 0;
+        for (int regionX = minRegionX; regionX <= maxRegionX; regionX++)
+        {
+            for (int regionY = minRegionY; regionY <= maxRegionY; regionY++)
+            {
+                final Bucket bucket = regions.get(regionX << 8 | regionY);
+                if (bucket == null)
+                {
+                    continue;
+                }
+
+                for (int i = 0; i < bucket.count; i++)
+                {
+                    final int id = bucket.ids[i];
+                    if ((plane == -1 || planes[id] == plane)
+                            && Math.abs(xs[id] - x) <= radius
+                            && Math.abs(ys[id] - y) <= radius)
+                    {
+                        if (count == out.length)
+                        {
+                            return count;
+                        }
+
+                        out[count++] = id;
+                    }
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private int allocateId()
+    {
+        if (freeCount > 0)
+        {
+            return freeIds[--freeCount];
+        }
+
+        if (highestId == xs.length)
+        {
+            final int capacity = highestId * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            planes = Arrays.copyOf(planes, capacity);
+            styles = Arrays.copyOf(styles, capacity);
+            Arrays.fill(planes, highestId, capacity, FREE);
+        }
+
+        return highestId++;
+    }
+
+    private static int regionKey(int x, int y)
+    {
+        return (x >> REGION_SHIFT) << 8 | (y >> REGION_SHIFT);
+    }
+
+    private static class Bucket
+    {
+        private int[] ids = new int[4];
+        private int count;
+    }
+
+    /**
+     * Open-addressing map from region id to the bucket of waypoint ids inside that region.
+     */
+    private static class RegionIndex
+    {
+        private int[] keys = new int[64];
+        private Bucket[] buckets = new Bucket[64];
+        private int used;
+
+        Bucket get(int key)
+        {
+            final int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; buckets[slot] != null; slot = (slot + 1) & mask)
+            {
+                if (keys[slot] == key)
+                {
+                    return buckets[slot];
+                }
+            }
+
+            return null;
+        }
+
+        void add(int key, int id)
+        {
+            Bucket bucket = get(key);
+            if (bucket == null)
+            {
+                bucket = new Bucket();
+                insert(key, bucket);
+            }
+
+            if (bucket.count == bucket.ids.length)
+            {
+                bucket.ids = Arrays.copyOf(bucket.ids, bucket.count * 2);
+            }
+            bucket.ids[bucket.count++] = id;
+        }
+
+        void remove(int key, int id)
+        {
+            final Bucket bucket = get(key);
+            if (bucket == null)
+            {
+                return;
+            }
+
+            for (int i = 0; i < bucket.count; i++)
+            {
+                if (bucket.ids[i] == id)
+                {
+                    bucket.ids[i] = bucket.ids[--bucket.count];
+                    return;
+                }
+            }
+        }
+
+        void clear()
+        {
+            Arrays.fill(buckets, null);
+            used = 0;
+        }
+
+        private void insert(int key, Bucket bucket)
+        {
+            if ((used + 1) * 2 > keys.length)
+            {
+                final int[] oldKeys = keys;
+                final Bucket[] oldBuckets = buckets;
+                keys = new int[oldKeys.length * 2];
+                buckets = new Bucket[oldBuckets.length * 2];
+                used = 0;
+
+                for (int i = 0; i < oldKeys.length; i++)
+                {
+                    if (oldBuckets[i] != null)
+                    {
+                        insert(oldKeys[i], oldBuckets[i]);
+                    }
+                }
+            }
+
+            final int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (buckets[slot] != null)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            keys[slot] = key;
+            buckets[slot] = bucket;
+            used++;
+        }
+
+        private static int mix(int key)
+        {
+            final int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * Packs how a waypoint looks into a single int: 24 bits RGB colour, 5 bits icon size in tenths and 3 bits icon.
+ */
+final class WaypointStyle
+{
+    private static final int SIZE_SHIFT = 24;
+    private static final int ICON_SHIFT = 29;
+    private static final int MAX_TENTHS = 31;
+
+    static final int DEFAULT = pack(WaypointIcon.CROSS, 0x00C9C6, 100);
+
+    private WaypointStyle()
+    {
+    }
+
+    /**
+     * @param sizePercent the icon's size relative to its image, rounded to the nearest ten percent
+     */
+    static int pack(WaypointIcon icon, int rgb, int sizePercent)
+    {
+        final int tenths = Math.max(1, Math.min(MAX_TENTHS, (sizePercent + 5) / 10));
+        return icon.ordinal() << ICON_SHIFT | tenths << SIZE_SHIFT | (rgb & 0xFFFFFF);
+    }
+
+    static WaypointIcon icon(int style)
+    {
+        return WaypointIcon.values()[style >>> ICON_SHIFT];
+    }
+
+    static int rgb(int style)
+    {
+        return style & 0xFFFFFF;
+    }
+
+    static float scale(int style)
+    {
+        return (style >>> SIZE_SHIFT & MAX_TENTHS) / 10f;
+    }
+
+    /**
+     * @return whether the int is a style {@link #pack} could have returned, for styles read back from a file
+     */
+    static boolean isValid(int style)
+    {
+        return style >>> ICON_SHIFT < WaypointIcon.values().length && scale(style) != 0;
+    }
+}
@@ -0,0 +1,385 @@
+package com.iipom.mapwaypoint;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Shares waypoint edits between clients running on the same machine through a shared file.
+ * <p>
+ * The file holds a fixed number of slots, each a ring of events with a single writer: the client that holds
+ * the file lock on the slot's range, which the operating system releases if that client exits. A client
+ * publishes its own edits to its slot and polls every other slot once per tick, remembering how far it has
+ * read each. An event carries the waypoint's packed tile and, for adds and restyles, its packed
+ * {@link WaypointStyle}.
+ * <p>
+ * The file is only accessed through positional reads and writes of the channel, each a system call the
+ * operating system applies in the order it was made, so no memory fences are needed between the clients. An
+ * entry is marked as being written, then filled in, then stamped with its sequence number, and only then is
+ * its ring's cursor moved past it. A reader checks the stamp both in the entry it read and again afterwards,
+ * so an entry the writer reused while it was being read is told apart from a complete one. Opening and
+ * closing perform file IO on the executor; {@link #publish} and {@link #poll} are only called on the client
+ * thread.
+ */
+@Slf4j
+@Singleton
+public class WaypointSync
+{
+    static final int ADD = 1;
+    static final int REMOVE = 2;
+    static final int RESTYLE = 3;
+
+    /**
+     * Receives the edits other clients have made.
+     */
+    interface Listener
+    {
+        void added(int tile, int style);
+
+        void removed(int tile);
+
+        void restyled(int tile, int style);
+    }
+
+    private static final String FILE_NAME = "sync.dat";
+    private static final int MAGIC = 0x4D575359;
+    private static final int VERSION = 3;
+
+    private static final int SLOTS = 8;
+    private static final int CAPACITY = 256;
+    private static final int HEADER_BYTES = 16;
+    private static final int SLOT_HEADER_BYTES = 64;
+    private static final int ENTRY_BYTES = 24;
+    private static final int SLOT_BYTES = SLOT_HEADER_BYTES + CAPACITY * ENTRY_BYTES;
+    private static final long FILE_BYTES = HEADER_BYTES + (long) SLOTS * SLOT_BYTES;
+
+    // Stamp of an entry while it is being written
+    private static final long WRITING = -1;
+
+    private final File directory;
+
+    // Set on the executor once a slot has been claimed, then read on the client thread
+    private volatile FileChannel channel;
+
+    // Written before the channel is published, then only touched on the client thread
+    private int slot;
+    private long writeSequence;
+    private final long[] readSequences = new long[SLOTS];
+    private final ByteBuffer stamp = ByteBuffer.allocateDirect(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer entry = ByteBuffer.allocateDirect(ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    @Inject
+    private WaypointSync()
+    {
+        this(MapWaypointPlugin.WAYPOINT_DIR);
+    }
+
+    WaypointSync(File directory)
+    {
+        this.directory = directory;
+    }
+
+    boolean isOpen()
+    {
+        return channel != null;
+    }
+
+    /**
+     * Opens the shared file and claims a free slot in it. Performs file IO and should not be called on the client thread.
+     */
+    synchronized void open()
+    {
+        if (channel != null)
+        {
+            return;
+        }
+
+        directory.mkdirs();
+        final File file = new File(directory, FILE_NAME);
+
+        FileChannel opened = null;
+        try
+        {
+            opened = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+            try (FileLock ignored = opened.lock(0, HEADER_BYTES, false))
+            {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(opened, header, 0);
+                if (opened.size() < FILE_BYTES || header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+                        || header.getInt(8) != SLOTS || header.getInt(12) != CAPACITY)
+                {
+                    reset(opened);
+                }
+            }
+
+            slot = claimSlot(opened);
+            if (slot == -1)
+            {
+                log.warn("All {} waypoint sync slots are in use", SLOTS);
+                opened.close();
+                return;
+            }
+
+            // Only events published from now on are of interest
+            for (int i = 0; i < SLOTS; i++)
+            {
+                readSequences[i] = readStamp(opened, slotOffset(i));
+            }
+            writeSequence = readSequences[slot];
+
+            channel = opened;
+            log.debug("Syncing waypoints through slot {} of {}", slot, file);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to open waypoint sync file {}", file, e);
+            closeQuietly(opened);
+        }
+    }
+
+    /**
+     * Releases this client's slot. Performs file IO and should not be called on the client thread.
+     */
+    synchronized void close()
+    {
+        final FileChannel closed = channel;
+        channel = null;
+
+        // Closing the channel releases the slot's lock
+        closeQuietly(closed);
+    }
+
+    /**
+     * Publishes an edit of the waypoint on the given packed tile to the other clients.
+     *
+     * @param style the waypoint's packed style, ignored for removals
+     */
+    void publish(int operation, int tile, int style)
+    {
+        final FileChannel current = channel;
+        if (current == null)
+        {
+            return;
+        }
+
+        final int slotOffset = slotOffset(slot);
+        final long sequence = writeSequence;
+        final int entryOffset = entryOffset(slotOffset, sequence);
+
+        try
+        {
+            writeStamp(current, entryOffset, WRITING);
+
+            entry.clear();
+            entry.putInt(8, operation);
+            entry.putInt(12, tile);
+            entry.putInt(16, style);
+            entry.position(8);
+            writeFully(current, entry, entryOffset + 8);
+
+            writeStamp(current, entryOffset, sequence);
+            writeStamp(current, slotOffset, sequence + 1);
+            writeSequence = sequence + 1;
+        }
+        catch (IOException e)
+        {
+            log.debug("Unable to publish waypoint edit", e);
+        }
+    }
+
+    /**
+     * Hands the edits other clients have made since the last poll to the listener, in the order each client
+     * made them.
+     *
+     * @return the number of events read
+     */
+    int poll(Listener listener)
+    {
+        final FileChannel current = channel;
+        if (current == null)
+        {
+            return 0;
+        }
+
+        int count = 0;
+        try
+        {
+            for (int i = 0; i < SLOTS; i++)
+            {
+                if (i != slot)
+                {
+                    count += pollSlot(current, i, listener);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            log.debug("Unable to poll waypoint edits", e);
+        }
+        return count;
+    }
+
+    private int pollSlot(FileChannel current, int index, Listener listener) throws IOException
+    {
+        final int slotOffset = slotOffset(index);
+        final long written = readStamp(current, slotOffset);
+
+        long next = readSequences[index];
+        if (next > written)
+        {
+            // The file has been reset since the last poll
+            next = written;
+        }
+        else if (written - next > CAPACITY)
+        {
+            log.debug("Missed {} waypoint events from sync slot {}", written - next - CAPACITY, index);
+            next = written - CAPACITY;
+        }
+
+        int count = 0;
+        for (; next < written; next++)
+        {
+            final int entryOffset = entryOffset(slotOffset, next);
+            entry.clear();
+            readFully(current, entry, entryOffset);
+
+            // Reused by the writer before or while being read, what was read may be torn
+            if (entry.getLong(0) != next || readStamp(current, entryOffset) != next)
+            {
+                break;
+            }
+
+            final int tile = entry.getInt(12);
+            final int style = entry.getInt(16);
+            switch (entry.getInt(8))
+            {
+                case ADD:
+                    listener.added(tile, style);
+                    break;
+                case REMOVE:
+                    listener.removed(tile);
+                    break;
+                case RESTYLE:
+                    listener.restyled(tile, style);
+                    break;
+                default:
+                    break;
+            }
+            count++;
+        }
+
+        readSequences[index] = next;
+        return count;
+    }
+
+    private long readStamp(FileChannel current, long position) throws IOException
+    {
+        stamp.clear();
+        readFully(current, stamp, position);
+        return stamp.getLong(0);
+    }
+
+    private void writeStamp(FileChannel current, long position, long value) throws IOException
+    {
+        stamp.clear();
+        stamp.putLong(0, value);
+        writeFully(current, stamp, position);
+    }
+
+    private static void readFully(FileChannel current, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            final int read = current.read(buffer, position + buffer.position());
+            if (read == -1)
+            {
+                // Past the end of a file being reset, reads as zeroes
+                while (buffer.hasRemaining())
+                {
+                    buffer.put((byte) 0);
+                }
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel current, ByteBuffer buffer, long position) throws IOException
+    {
+        final int start = buffer.position();
+        while (buffer.hasRemaining())
+        {
+            current.write(buffer, position + buffer.position() - start);
+        }
+    }
+
+    private static int claimSlot(FileChannel opened) throws IOException
+    {
+        for (int i = 0; i < SLOTS; i++)
+        {
+            try
+            {
+                if (opened.tryLock(slotOffset(i), SLOT_BYTES, false) != null)
+                {
+                    return i;
+                }
+            }
+            catch (OverlappingFileLockException e)
+            {
+                // Held by another plugin instance in this process
+            }
+        }
+
+        return -1;
+    }
+
+    private static void reset(FileChannel opened) throws IOException
+    {
+        final ByteBuffer zeroes = ByteBuffer.allocate(SLOT_BYTES);
+        for (int i = 0; i < SLOTS; i++)
+        {
+            zeroes.clear();
+            writeFully(opened, zeroes, slotOffset(i));
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(SLOTS).putInt(CAPACITY);
+        header.flip();
+        writeFully(opened, header, 0);
+    }
+
+    private static void closeQuietly(FileChannel closed)
+    {
+        if (closed == null)
+        {
+            return;
+        }
+
+        try
+        {
+            closed.close();
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to close waypoint sync file", e);
+        }
+    }
+
+    private static int slotOffset(int index)
+    {
+        return HEADER_BYTES + index * SLOT_BYTES;
+    }
+
+    private static int entryOffset(int slotOffset, long sequence)
+    {
+        return slotOffset + SLOT_HEADER_BYTES + (int) (sequence % CAPACITY) * ENTRY_BYTES;
+    }
+}
@@ -0,0 +1,22 @@
+package com.iipom.mapwaypoint;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum WaypointTarget
+{
+    LAST_SET("Last set"),
+    NEAREST("Nearest unvisited"),
+    IN_ORDER("In order"),
+    SHORTEST_ROUTE("Shortest route");
+
+    private final String name;
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+}
@@ -1,81 +1,146 @@
 package com.iipom.mapwaypoint;
 
 import net.runelite.api.Client;
-import net.runelite.api.Perspective;
-import net.runelite.api.Player;
-import net.runelite.api.Scene;
-import net.runelite.api.coords.LocalPoint;
-import net.runelite.api.coords.WorldPoint;
 import net.runelite.client.ui.overlay.*;
 
 import javax.inject.Inject;
 import java.awt.*;
 
-public class WaypointTileOverlay extends Overlay
+public class WaypointTileOverlay extends Overlay implements OverlayLifecycle.NavigationOverlay
 {
 
     private static final int DEFAULT_DRAW_DISTANCE = 25;
-    private static final Color TILE_COLOR = new Color(0, 201, 198);
+    private static final int MAX_DRAWN_TILES = 256;
+    private static final Color ROUTE_COLOR = new Color(0, 201, 198);
 
     private final Client client;
     private final MapWaypointPlugin plugin;
-    private final MapWaypointConfig config;
+    private final NavigationTracker navigationTracker;
+    private final TilePolygonCache tilePolygonCache;
+    private final Pathfinder pathfinder;
+    private final RouteRenderer routeRenderer;
+    private final WaypointIconCache iconCache;
+    private final PluginMetrics metrics;
+    private final int[] visible = new int[MAX_DRAWN_TILES];
+
+    // The trail as of its last change, drawn with a renderer of its own so the route keeps its cached outline
+    private final RouteRenderer trailRenderer;
+    private final int[] trailTiles = new int[BreadcrumbTrail.CAPACITY];
+    private int trailOffset = trailTiles.length;
+    private int trailVersion = -1;
 
     @Inject
-    private WaypointTileOverlay(Client client, MapWaypointPlugin plugin, MapWaypointConfig config)
+    private WaypointTileOverlay(Client client, MapWaypointPlugin plugin, NavigationTracker navigationTracker, TilePolygonCache tilePolygonCache,
+                                Pathfinder pathfinder, RouteRenderer routeRenderer, RouteRenderer trailRenderer, WaypointIconCache iconCache,
+                                PluginMetrics metrics)
     {
         this.client = client;
         this.plugin = plugin;
-        this.config = config;
+        this.navigationTracker = navigationTracker;
+        this.tilePolygonCache = tilePolygonCache;
+        this.pathfinder = pathfinder;
+        this.routeRenderer = routeRenderer;
+        this.iconCache = iconCache;
+        this.metrics = metrics;
+        this.trailRenderer = trailRenderer;
         setPosition(OverlayPosition.DYNAMIC);
         setPriority(OverlayPriority.LOW);
         setLayer(OverlayLayer.ABOVE_SCENE);
     }
 
+    @Override
+    public boolean isNeeded(NavigationState state)
+    {
+        return state.hasTarget() && (state.isDrawTile() || state.isDrawTrail() || (state.isDrawRoute() && state.isSamePlane()));
+    }
+
     @Override
     public Dimension render(Graphics2D graphics)
     {
-        if (plugin.getWaypoint() != null && config.drawTile())
+        final long start = metrics.start(PluginMetrics.Probe.TILE_OVERLAY);
+        try
+        {
+            return renderTiles(graphics);
+        }
+        finally
+        {
+            metrics.stop(PluginMetrics.Probe.TILE_OVERLAY, start);
+        }
+    }
+
+    private Dimension renderTiles(Graphics2D graphics)
+    {
+        final NavigationState state = navigationTracker.getState();
+        if (state.isDrawTrail() && state.hasTarget())
         {
-            final WorldPoint waypoint = plugin.getWaypoint().getWorldPoint();
+            drawTrail(graphics);
+        }
 
-            if (client.getPlane() == waypoint.getPlane())
+        if (state.isDrawRoute() && state.isSamePlane())
+        {
+            final PathResult route = pathfinder.getResult(state.getHeading());
+            if (route != null)
             {
-                drawTile(graphics, waypoint);
+                routeRenderer.render(graphics, route, ROUTE_COLOR);
             }
         }
 
+        if (state.isDrawTile() && state.hasTarget())
+        {
+            drawTiles(graphics, state.getPlayer());
+        }
+
         return null;
     }
 
-    private void drawTile(Graphics2D graphics, WorldPoint waypoint)
+    /**
+     * Drops the cached route and trail outlines, e.g. when the scene has been loaded again.
+     */
+    void invalidate()
+    {
+        routeRenderer.invalidate();
+        trailRenderer.invalidate();
+    }
+
+    private void drawTrail(Graphics2D graphics)
     {
-        final Player player = client.getLocalPlayer();
-        if (player == null)
+        final BreadcrumbTrail trail = plugin.getTrail();
+        if (trail.getVersion() != trailVersion)
         {
-            return;
+            trailVersion = trail.getVersion();
+            trailOffset = trail.copyTo(trailTiles);
+            trailRenderer.invalidate();
         }
 
-        final int drawDistance = client.getScene().getDrawDistance() != 0 ? client.getScene().getDrawDistance() : DEFAULT_DRAW_DISTANCE;
-
-        final WorldPoint playerLocation = player.getWorldLocation();
-        if (waypoint.distanceTo(playerLocation) >= drawDistance)
+        if (trailOffset < trailTiles.length - 1)
         {
-            return;
+            trailRenderer.render(graphics, trailTiles, trailOffset, BreadcrumbOverlay.TRAIL_COLOR);
         }
+    }
+
+    private void drawTiles(Graphics2D graphics, int player)
+    {
+        final int drawDistance = client.getScene().getDrawDistance() != 0 ? client.getScene().getDrawDistance() : DEFAULT_DRAW_DISTANCE;
 
-        final LocalPoint lp = LocalPoint.fromWorld(client, waypoint);
-        if (lp == null)
+        final WaypointStore waypoints = plugin.getWaypoints();
+        final int count = waypoints.query(TileCoords.x(player), TileCoords.y(player), TileCoords.plane(player), drawDistance - 1, visible);
+
+        tilePolygonCache.beginFrame();
+        for (int i = 0; i < count; i++)
         {
-            return;
+            final int id = visible[i];
+            drawTile(graphics, waypoints.getX(id), waypoints.getY(id), iconCache.getColor(waypoints.getStyle(id)));
         }
+    }
 
-        final Polygon poly = Perspective.getCanvasTilePoly(client, lp);
+    private void drawTile(Graphics2D graphics, int x, int y, Color color)
+    {
+        final Polygon poly = tilePolygonCache.getTilePoly(x, y);
         if (poly == null)
         {
             return;
         }
 
-        OverlayUtil.renderPolygon(graphics, poly, TILE_COLOR);
+        OverlayUtil.renderPolygon(graphics, poly, color);
     }
 }
@@ -0,0 +1,166 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+import net.runelite.api.Point;
+import net.runelite.api.RenderOverview;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.awt.Rectangle;
+
+/**
+ * The world map view's bounds and its tile to canvas mapping, read from the client at most once per frame.
+ * The mapping is the one the client's world map overlay draws map points with, so positions computed here
+ * line up with their icons. Must only be used on the client thread, apart from {@link #wasShownAt}.
+ */
+@Singleton
+public class WorldMapGeometry
+{
+    private final Client client;
+
+    private boolean valid;
+    private boolean open;
+    private final Rectangle bounds = new Rectangle();
+    private float zoom;
+    private int centerX;
+    private int centerY;
+    private int widthInTiles;
+    private int heightInTiles;
+    private double pixelOffset;
+    private int middleX;
+    private int middleY;
+
+    // Copy of the bounds as of the last validation for other threads, null while the map is closed
+    private volatile Rectangle shownBounds;
+
+    @Inject
+    private WorldMapGeometry(Client client)
+    {
+        this.client = client;
+    }
+
+    /**
+     * Drops the cached geometry, called when a new frame starts or the world map is loaded.
+     */
+    void invalidate()
+    {
+        valid = false;
+    }
+
+    boolean isOpen()
+    {
+        validate();
+        return open;
+    }
+
+    boolean contains(Point canvas)
+    {
+        validate();
+        return open && canvas != null && bounds.contains(canvas.getX(), canvas.getY());
+    }
+
+    /**
+     * @return whether the canvas position was on the world map view when it was last read, safe on any thread
+     */
+    boolean wasShownAt(int canvasX, int canvasY)
+    {
+        final Rectangle shown = shownBounds;
+        return shown != null && shown.contains(canvasX, canvasY);
+    }
+
+    /**
+     * @return the view's bounds on the canvas, shared and not to be modified
+     */
+    Rectangle getBounds()
+    {
+        validate();
+        return bounds;
+    }
+
+    float getZoom()
+    {
+        validate();
+        return zoom;
+    }
+
+    int toCanvasX(int x)
+    {
+        validate();
+        final int xTileOffset = x + widthInTiles / 2 - centerX;
+        return (int) ((int) (xTileOffset * zoom) + pixelOffset) + bounds.x;
+    }
+
+    int toCanvasY(int y)
+    {
+        validate();
+        final int yTileOffset = y + 1 - (centerY - heightInTiles / 2);
+        return bounds.height - (int) ((int) (yTileOffset * zoom) - pixelOffset) + bounds.y;
+    }
+
+    /**
+     * @return the canvas x coordinate of the tile's left edge
+     */
+    int toCanvasLeft(int x)
+    {
+        return toCanvasX(x) - (int) pixelOffset;
+    }
+
+    /**
+     * @return the canvas y coordinate of the tile's top edge
+     */
+    int toCanvasTop(int y)
+    {
+        return toCanvasY(y) - (int) pixelOffset;
+    }
+
+    /**
+     * @return the x coordinate of the tile under a canvas position
+     */
+    int toWorldX(int canvasX)
+    {
+        validate();
+        return centerX + (int) ((canvasX - middleX) / zoom);
+    }
+
+    int toWorldY(int canvasY)
+    {
+        validate();
+        return centerY + (int) (-(canvasY - middleY) / zoom);
+    }
+
+    private void validate()
+    {
+        if (valid)
+        {
+            return;
+        }
+
+        valid = true;
+
+        final Widget view = client.getWidget(WidgetInfo.WORLD_MAP_VIEW);
+        final RenderOverview renderOverview = client.getRenderOverview();
+        open = view != null && renderOverview != null && renderOverview.getWorldMapZoom() > 0;
+        if (!open)
+        {
+            shownBounds = null;
+            return;
+        }
+
+        bounds.setBounds(view.getBounds());
+        if (!bounds.equals(shownBounds))
+        {
+            shownBounds = new Rectangle(bounds);
+        }
+        zoom = renderOverview.getWorldMapZoom();
+        centerX = renderOverview.getWorldMapPosition().getX();
+        centerY = renderOverview.getWorldMapPosition().getY();
+        widthInTiles = (int) Math.ceil(bounds.getWidth() / zoom);
+        heightInTiles = (int) Math.ceil(bounds.getHeight() / zoom);
+        pixelOffset = zoom - Math.ceil(zoom / 2);
+
+        middleX = toCanvasX(centerX);
+        middleY = toCanvasY(centerY);
+    }
+}
@@ -0,0 +1,72 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BreadcrumbTrailTest
+{
+    @Test
+    public void countsTicksStandingStillOnOneTile()
+    {
+        final BreadcrumbTrail trail = new BreadcrumbTrail();
+        assertTrue(trail.record(tile(3200, 3200)));
+        assertFalse(trail.record(tile(3200, 3200)));
+        assertFalse(trail.record(tile(3200, 3200)));
+        assertTrue(trail.record(tile(3201, 3200)));
+
+        assertEquals(2, trail.size());
+        assertEquals(3, trail.getTicks(0));
+        assertEquals(1, trail.getTicks(1));
+        assertEquals(tile(3201, 3200), trail.getTile(1));
+    }
+
+    @Test
+    public void overwritesTheOldestTilesOnceFull()
+    {
+        final BreadcrumbTrail trail = new BreadcrumbTrail();
+        final int walked = BreadcrumbTrail.CAPACITY + 10;
+        for (int i = 0; i < walked; i++)
+        {
+            trail.record(tile(2000 + i, 3200));
+        }
+
+        assertEquals(BreadcrumbTrail.CAPACITY, trail.size());
+        assertEquals(tile(2010, 3200), trail.getTile(0));
+        assertEquals(tile(2000 + walked - 1, 3200), trail.getTile(trail.size() - 1));
+
+        final int[] copy = new int[BreadcrumbTrail.CAPACITY + 2];
+        assertEquals(2, trail.copyTo(copy));
+        for (int i = 0; i < trail.size(); i++)
+        {
+            assertEquals(trail.getTile(i), copy[i + 2]);
+        }
+    }
+
+    @Test
+    public void startsOverAfterATeleportOrPlaneChange()
+    {
+        final BreadcrumbTrail trail = new BreadcrumbTrail();
+        trail.record(tile(3200, 3200));
+        trail.record(tile(3202, 3201));
+        trail.record(tile(2964, 3378));
+        assertEquals(1, trail.size());
+
+        trail.record(TileCoords.pack(2964, 3378, 1));
+        trail.record(TileCoords.pack(2965, 3378, 1));
+
+        final int[] copy = new int[BreadcrumbTrail.CAPACITY];
+        final int offset = trail.copyTo(copy);
+        assertEquals(BreadcrumbTrail.CAPACITY - 2, offset);
+        assertArrayEquals(new int[]{TileCoords.pack(2964, 3378, 1), TileCoords.pack(2965, 3378, 1)},
+                new int[]{copy[offset], copy[offset + 1]});
+    }
+
+    private static int tile(int x, int y)
+    {
+        return TileCoords.pack(x, y, 0);
+    }
+}
@@ -0,0 +1,36 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CollisionMapCacheTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final FakeClient fakeClient = new FakeClient();
+
+    @Test
+    public void invalidatesReadsThatOverlapASlotChangingRegion()
+    {
+        fakeClient.setPlayerLocation(3222, 3218, 0);
+        final CollisionMapCache cache = new CollisionMapCache(fakeClient.getClient(), folder.getRoot());
+        cache.load();
+
+        int stamp = cache.readStamp();
+        cache.capture();
+        assertFalse(cache.validate(stamp));
+        assertTrue(cache.canMoveNorth(3222, 3218, 0));
+
+        // Capturing the same regions again only rewrites their tiles in place
+        stamp = cache.readStamp();
+        fakeClient.blockTile(3222, 3219, 0);
+        cache.capture();
+        assertTrue(cache.validate(stamp));
+        assertFalse(cache.canMoveNorth(3222, 3218, 0));
+    }
+}
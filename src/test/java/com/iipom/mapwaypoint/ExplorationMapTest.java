@@ -0,0 +1,97 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ExplorationMapTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ManualExecutor executor = new ManualExecutor();
+
+    @Test
+    public void keepsWalkedTilesAcrossRestarts()
+    {
+        ExplorationMap exploration = open();
+        exploration.update(3200, 3200);
+        exploration.update(3201, 3200);
+        exploration.update(3264, 3200);
+        exploration.save();
+        executor.runPending();
+
+        exploration = open();
+        exploration.update(3200, 3201);
+        assertEquals(2, exploration.getRegionCount());
+
+        final TileBitmap region = exploration.getRegion(50, 50);
+        assertEquals(3, region.getCardinality());
+        assertTrue(region.contains(0, 0));
+        assertTrue(region.contains(1, 0));
+        assertTrue(region.contains(0, 1));
+        assertTrue(exploration.getRegion(51, 50).contains(0, 0));
+    }
+
+    @Test
+    public void keepsTilesAnotherClientSaved()
+    {
+        final ExplorationMap first = open();
+        final ExplorationMap second = open();
+        first.update(3200, 3200);
+        second.update(3300, 3300);
+        first.save();
+        second.save();
+        executor.runPending();
+
+        final ExplorationMap exploration = open();
+        exploration.update(3200, 3200);
+        assertEquals(2, exploration.getRegionCount());
+        assertTrue(exploration.getRegion(51, 51).contains(36, 36));
+
+        // Only the tiles and the lock file, no temporary file left behind
+        assertEquals(2, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void doesNotSaveBeforeTheFileIsRead()
+    {
+        final ExplorationMap exploration = new ExplorationMap(executor, folder.getRoot());
+        assertTrue(exploration.record(3200, 3200));
+        assertFalse(exploration.record(3200, 3200));
+        exploration.save();
+        executor.runPending();
+
+        assertFalse(new File(folder.getRoot(), "exploration.dat").exists());
+    }
+
+    @Test
+    public void startsOverFromAnUnreadableFile() throws IOException
+    {
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "exploration.dat")))
+        {
+            out.write(new byte[]{1, 2, 3});
+        }
+
+        final ExplorationMap exploration = open();
+        exploration.update(3200, 3200);
+        assertEquals(1, exploration.getRegionCount());
+        assertNull(exploration.getRegion(0, 0));
+    }
+
+    private ExplorationMap open()
+    {
+        final ExplorationMap exploration = new ExplorationMap(executor, folder.getRoot());
+        exploration.load();
+        return exploration;
+    }
+}
@@ -0,0 +1,331 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+import net.runelite.api.CollisionData;
+import net.runelite.api.CollisionDataFlag;
+import net.runelite.api.GameState;
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Player;
+import net.runelite.api.Point;
+import net.runelite.api.RenderOverview;
+import net.runelite.api.Scene;
+import net.runelite.api.Tile;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.widgets.Widget;
+import net.runelite.api.widgets.WidgetInfo;
+import net.runelite.api.worldmap.WorldMapData;
+
+import java.awt.Rectangle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Client} backed by plain fields, so the plugin can be driven without the game running.
+ * Only the parts of the API the plugin touches are modelled, every other method returns zero, false or null.
+ */
+public class FakeClient
+{
+    GameState gameState = GameState.LOGGED_IN;
+    int plane;
+    int baseX;
+    int baseY;
+    int mapAngle;
+    int tickCount;
+    boolean resized = true;
+    boolean menuOpen;
+    boolean instanced;
+
+    WorldPoint playerLocation;
+    WorldPoint selectedTile;
+    Point mouseCanvasPosition = new Point(-1, -1);
+    MenuEntry[] menuEntries = new MenuEntry[0];
+    boolean sceneLoaded = true;
+    int drawDistance = 25;
+
+    // Looking straight down from above the player keeps every tile in the scene in front of the camera
+    int cameraX;
+    int cameraY;
+    int cameraZ = -3000;
+    int cameraPitch = 512;
+    int cameraYaw;
+    int scale = 512;
+    Rectangle viewport = new Rectangle(4, 4, 512, 334);
+
+    final int[][][] tileHeights = new int[4][105][105];
+    final byte[][][] tileSettings = new byte[4][104][104];
+
+    // Every tile of the scene is open unless blocked
+    final int[][][] collisionFlags = new int[4][104][104];
+
+    // Null while the world map is closed
+    Rectangle worldMapBounds;
+    Point worldMapPosition = new Point(0, 0);
+    WorldPoint worldMapPositionTarget;
+    float worldMapZoom = 4.0f;
+
+    Rectangle minimapBounds = new Rectangle(570, 9, 146, 151);
+
+    int soundEffects;
+
+    private final Client client = proxy(Client.class, this::invokeClient);
+    private final Player player = proxy(Player.class, this::invokePlayer);
+    private final Scene scene = proxy(Scene.class, (method, args) -> method.getName().equals("getDrawDistance") ? drawDistance : null);
+    private final RenderOverview renderOverview = proxy(RenderOverview.class, this::invokeRenderOverview);
+    private final WorldMapData worldMapData = proxy(WorldMapData.class, (method, args) -> method.getName().equals("surfaceContainsPosition") ? true : null);
+    private final Tile tile = proxy(Tile.class, (method, args) -> method.getName().equals("getWorldLocation") ? selectedTile : null);
+    private final CollisionData[] collisionMaps = {
+            collisionData(0), collisionData(1), collisionData(2), collisionData(3)
+    };
+    private final Widget worldMapWidget = widget(() -> worldMapBounds);
+    private final Widget minimapWidget = widget(() -> minimapBounds);
+
+    public Client getClient()
+    {
+        return client;
+    }
+
+    /**
+     * Places the player on a tile, loading the scene around it and centering the camera on it.
+     */
+    public void setPlayerLocation(int x, int y, int plane)
+    {
+        this.playerLocation = new WorldPoint(x, y, plane);
+        this.plane = plane;
+        this.baseX = ((x >> 3) - 6) << 3;
+        this.baseY = ((y >> 3) - 6) << 3;
+        this.cameraX = ((x - baseX) << 7) + 64;
+        this.cameraY = ((y - baseY) << 7) + 64;
+    }
+
+    /**
+     * Marks a tile in the loaded scene as impassable from every side.
+     */
+    public void blockTile(int x, int y, int plane)
+    {
+        collisionFlags[plane][x - baseX][y - baseY] |= CollisionDataFlag.BLOCK_MOVEMENT_FULL;
+    }
+
+    /**
+     * Opens the world map centered on the given tile, or closes it when {@code bounds} is null.
+     */
+    public void setWorldMap(Rectangle bounds, int x, int y, float zoom)
+    {
+        this.worldMapBounds = bounds;
+        this.worldMapPosition = new Point(x, y);
+        this.worldMapZoom = zoom;
+    }
+
+    private Object invokeClient(Method method, Object[] args)
+    {
+        switch (method.getName())
+        {
+            case "getGameState":
+                return gameState;
+            case "getPlane":
+                return plane;
+            case "getBaseX":
+                return baseX;
+            case "getBaseY":
+                return baseY;
+            case "getMapAngle":
+                return mapAngle;
+            case "getTickCount":
+                return tickCount;
+            case "isResized":
+                return resized;
+            case "isMenuOpen":
+                return menuOpen;
+            case "isInInstancedRegion":
+                return instanced;
+            case "getLocalPlayer":
+                return playerLocation == null ? null : player;
+            case "getSelectedSceneTile":
+                return selectedTile == null ? null : tile;
+            case "getMouseCanvasPosition":
+                return mouseCanvasPosition;
+            case "getMenuEntries":
+                return menuEntries;
+            case "setMenuEntries":
+                menuEntries = (MenuEntry[]) args[0];
+                return null;
+            case "getCollisionMaps":
+                return sceneLoaded ? collisionMaps : null;
+            case "getScene":
+                return scene;
+            case "getRenderOverview":
+                return renderOverview;
+            case "getWidget":
+                return getWidget(args[0]);
+            case "playSoundEffect":
+                soundEffects++;
+                return null;
+            case "getCameraX":
+                return cameraX;
+            case "getCameraY":
+                return cameraY;
+            case "getCameraZ":
+                return cameraZ;
+            case "getCameraPitch":
+                return cameraPitch;
+            case "getCameraYaw":
+                return cameraYaw;
+            case "getScale":
+                return scale;
+            case "getViewportXOffset":
+                return viewport.x;
+            case "getViewportYOffset":
+                return viewport.y;
+            case "getViewportWidth":
+                return viewport.width;
+            case "getViewportHeight":
+                return viewport.height;
+            case "getTileHeights":
+                return tileHeights;
+            case "getTileSettings":
+                return tileSettings;
+            default:
+                return null;
+        }
+    }
+
+    private Widget getWidget(Object info)
+    {
+        if (info == WidgetInfo.WORLD_MAP_VIEW)
+        {
+            return worldMapBounds == null ? null : worldMapWidget;
+        }
+
+        if (info == WidgetInfo.RESIZABLE_MINIMAP_DRAW_AREA || info == WidgetInfo.RESIZABLE_MINIMAP_STONES_DRAW_AREA
+                || info == WidgetInfo.FIXED_VIEWPORT_MINIMAP_DRAW_AREA)
+        {
+            return minimapWidget;
+        }
+
+        return null;
+    }
+
+    private Object invokePlayer(Method method, Object[] args)
+    {
+        switch (method.getName())
+        {
+            case "getWorldLocation":
+                return playerLocation;
+            case "getLocalLocation":
+                return new LocalPoint(((playerLocation.getX() - baseX) << 7) + 64, ((playerLocation.getY() - baseY) << 7) + 64);
+            case "getName":
+                return "Player";
+            default:
+                return null;
+        }
+    }
+
+    private Object invokeRenderOverview(Method method, Object[] args)
+    {
+        switch (method.getName())
+        {
+            case "getWorldMapZoom":
+                return worldMapZoom;
+            case "getWorldMapPosition":
+                return worldMapPosition;
+            case "getWorldMapData":
+                return worldMapData;
+            case "setWorldMapPositionTarget":
+                worldMapPositionTarget = (WorldPoint) args[0];
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private CollisionData collisionData(int plane)
+    {
+        return proxy(CollisionData.class, (method, args) -> method.getName().equals("getFlags") ? collisionFlags[plane] : null);
+    }
+
+    private Widget widget(Supplier<Rectangle> bounds)
+    {
+        return proxy(Widget.class, (method, args) ->
+        {
+            final Rectangle rect = bounds.get();
+            switch (method.getName())
+            {
+                case "getBounds":
+                    return rect;
+                case "getCanvasLocation":
+                    return new Point(rect.x, rect.y);
+                case "getWidth":
+                    return rect.width;
+                case "getHeight":
+                    return rect.height;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler)
+    {
+        final InvocationHandler invocationHandler = (proxy, method, args) ->
+        {
+            switch (method.getName())
+            {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Fake" + type.getSimpleName();
+            }
+
+            final Object result = handler.invoke(method, args);
+            return result != null ? result : defaultValue(method.getReturnType());
+        };
+
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler));
+    }
+
+    private static Object defaultValue(Class<?> type)
+    {
+        if (type == boolean.class)
+        {
+            return false;
+        }
+        if (type == float.class)
+        {
+            return 0.0f;
+        }
+        if (type == double.class)
+        {
+            return 0.0;
+        }
+        if (type == long.class)
+        {
+            return 0L;
+        }
+        if (type == int.class)
+        {
+            return 0;
+        }
+        if (type == short.class)
+        {
+            return (short) 0;
+        }
+        if (type == byte.class)
+        {
+            return (byte) 0;
+        }
+        if (type == char.class)
+        {
+            return (char) 0;
+        }
+        return null;
+    }
+
+    private interface Handler
+    {
+        Object invoke(Method method, Object[] args);
+    }
+}
@@ -0,0 +1,74 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Point;
+import net.runelite.client.ui.overlay.worldmap.WorldMapPoint;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Stands in for the client's world map overlay, which positions the map points and sets the clickboxes the
+ * plugin hit-tests against. Uses the same tile to canvas mapping as the world map overlay.
+ */
+public class FakeWorldMap
+{
+    private final FakeClient client;
+
+    public FakeWorldMap(FakeClient client)
+    {
+        this.client = client;
+    }
+
+    /**
+     * @return the canvas position of a tile on the open world map, or null if the map is closed
+     */
+    public Point toCanvas(int x, int y)
+    {
+        final Rectangle bounds = client.worldMapBounds;
+        if (bounds == null)
+        {
+            return null;
+        }
+
+        final float zoom = client.worldMapZoom;
+        final int widthInTiles = (int) Math.ceil(bounds.getWidth() / zoom);
+        final int heightInTiles = (int) Math.ceil(bounds.getHeight() / zoom);
+
+        final int yTileMax = client.worldMapPosition.getY() - heightInTiles / 2;
+        final int yTileOffset = (yTileMax - y - 1) * -1;
+        final int xTileOffset = x + widthInTiles / 2 - client.worldMapPosition.getX();
+
+        int xGraphDiff = (int) (xTileOffset * zoom);
+        int yGraphDiff = (int) (yTileOffset * zoom);
+
+        yGraphDiff -= zoom - Math.ceil(zoom / 2);
+        xGraphDiff += zoom - Math.ceil(zoom / 2);
+
+        yGraphDiff = bounds.height - yGraphDiff;
+        yGraphDiff += (int) bounds.getY();
+        xGraphDiff += (int) bounds.getX();
+
+        return new Point(xGraphDiff, yGraphDiff);
+    }
+
+    /**
+     * Positions the given points on the map, or clears their clickboxes while it is closed.
+     */
+    public void layout(Iterable<WorldMapPoint> points)
+    {
+        for (WorldMapPoint point : points)
+        {
+            final Point center = toCanvas(point.getWorldPoint().getX(), point.getWorldPoint().getY());
+            final BufferedImage image = point.getImage();
+            if (center == null || image == null)
+            {
+                point.setClickbox(null);
+                continue;
+            }
+
+            final int drawX = center.getX() - image.getWidth() / 2;
+            final int drawY = center.getY() - image.getHeight() / 2;
+            point.setClickbox(new Rectangle(drawX, drawY, image.getWidth(), image.getHeight()));
+        }
+    }
+}
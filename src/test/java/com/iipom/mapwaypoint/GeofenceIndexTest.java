@@ -0,0 +1,143 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceIndexTest
+{
+    private final GeofenceIndex index = new GeofenceIndex();
+    private final List<Integer> entered = new ArrayList<>();
+    private final List<Integer> left = new ArrayList<>();
+
+    @Test
+    public void polygonsIncludeTheirEdges()
+    {
+        final Geofence fence = square(3200, 3215, 3210, 3220);
+
+        assertTrue(fence.contains(3200, 3215));
+        assertTrue(fence.contains(3210, 3220));
+        assertTrue(fence.contains(3205, 3218));
+        assertFalse(fence.contains(3211, 3218));
+        assertFalse(fence.contains(3205, 3214));
+    }
+
+    @Test
+    public void bitmapsMatchThePolygons()
+    {
+        final Random random = new Random(19);
+        final List<Geofence> fences = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+        {
+            // Polygons of up to 8 corners around a point, spanning a few regions
+            final int corners = 3 + random.nextInt(6);
+            final int[] xs = new int[corners];
+            final int[] ys = new int[corners];
+            final int cx = 3100 + random.nextInt(200);
+            final int cy = 3100 + random.nextInt(200);
+            for (int c = 0; c < corners; c++)
+            {
+                final double angle = 2 * Math.PI * c / corners;
+                final double radius = 5 + random.nextInt(80);
+                xs[c] = cx + (int) Math.round(Math.cos(angle) * radius);
+                ys[c] = cy + (int) Math.round(Math.sin(angle) * radius);
+            }
+
+            final Geofence fence = Geofence.polygon(xs, ys);
+            fences.add(fence);
+            index.add(fence);
+        }
+
+        for (int x = 3000; x < 3400; x += 3)
+        {
+            for (int y = 3000; y < 3400; y += 3)
+            {
+                final int found = index.find(x, y);
+                boolean expected = false;
+                for (Geofence fence : fences)
+                {
+                    expected |= fence.contains(x, y);
+                }
+
+                assertEquals("tile " + x + ", " + y, expected, found != -1);
+                if (found != -1)
+                {
+                    assertTrue(index.get(found).contains(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void reportsEnteringAndLeaving()
+    {
+        final int outer = index.add(square(3200, 3200, 3263, 3263));
+        final int inner = index.add(square(3230, 3230, 3240, 3240));
+
+        check(3190, 3230);
+        assertEquals(0, entered.size());
+
+        check(3200, 3230);
+        assertEquals(1, entered.size());
+        assertEquals(outer, (int) entered.get(0));
+
+        check(3235, 3235);
+        assertEquals(2, entered.size());
+        assertEquals(inner, (int) entered.get(1));
+        assertEquals(0, left.size());
+
+        // Across the region border, out of both at once
+        check(3264, 3235);
+        assertEquals(2, left.size());
+        assertTrue(left.contains(outer) && left.contains(inner));
+    }
+
+    @Test
+    public void removedFencesAreLeftSilently()
+    {
+        final int id = index.add(square(3200, 3200, 3210, 3210));
+        check(3205, 3205);
+        assertEquals(1, entered.size());
+
+        index.remove(id);
+        check(3205, 3205);
+        assertEquals(0, left.size());
+        assertEquals(-1, index.find(3205, 3205));
+
+        // The freed id is reused by the next fence, which is entered anew
+        assertEquals(id, index.add(square(3200, 3200, 3210, 3210)));
+        check(3205, 3205);
+        assertEquals(2, entered.size());
+    }
+
+    @Test
+    public void encodesAndDecodesCorners()
+    {
+        final Geofence fence = Geofence.polygon(new int[]{3200, 3210, 3205}, new int[]{3200, 3200, 3212});
+        final Geofence decoded = Geofence.decode(fence.encode());
+
+        assertEquals("3200,3200 3210,3200 3205,3212", fence.encode());
+        assertEquals(fence.getCornerCount(), decoded.getCornerCount());
+        for (int i = 0; i < fence.getCornerCount(); i++)
+        {
+            assertEquals(fence.getX(i), decoded.getX(i));
+            assertEquals(fence.getY(i), decoded.getY(i));
+        }
+    }
+
+    private static Geofence square(int minX, int minY, int maxX, int maxY)
+    {
+        return Geofence.polygon(new int[]{minX, maxX, maxX, minX}, new int[]{minY, minY, maxY, maxY});
+    }
+
+    private void check(int x, int y)
+    {
+        index.check(x, y, entered::add, left::add);
+    }
+}
@@ -0,0 +1,66 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceStoreTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ManualExecutor executor = new ManualExecutor();
+
+    @Test
+    public void readsBackSavedFences()
+    {
+        final Geofence triangle = Geofence.polygon(new int[]{3200, 3210, 3205}, new int[]{3200, 3200, 3212});
+        final Geofence square = Geofence.polygon(new int[]{3300, 3310, 3310, 3300}, new int[]{3300, 3300, 3310, 3310});
+        new GeofenceStore(executor, folder.getRoot()).save(Arrays.asList(triangle, square));
+        executor.runPending();
+
+        final List<Geofence> loaded = load();
+        assertEquals(2, loaded.size());
+        assertEquals(triangle.encode(), loaded.get(0).encode());
+        assertEquals(square.encode(), loaded.get(1).encode());
+    }
+
+    @Test
+    public void startsWithNoFencesWithoutAFile()
+    {
+        final GeofenceStore store = new GeofenceStore(executor, folder.getRoot());
+        assertNull(store.takeLoaded());
+        store.load();
+        assertTrue(store.takeLoaded().isEmpty());
+        assertNull(store.takeLoaded());
+    }
+
+    @Test
+    public void skipsUnreadableFences() throws IOException
+    {
+        Files.write(new File(folder.getRoot(), "geofences.txt").toPath(),
+                "3200,3200 3210,3200 3205,3212\nnot a fence\n\n3300,3300 3310\n".getBytes(StandardCharsets.UTF_8));
+
+        final List<Geofence> loaded = load();
+        assertEquals(1, loaded.size());
+        assertEquals("3200,3200 3210,3200 3205,3212", loaded.get(0).encode());
+    }
+
+    private List<Geofence> load()
+    {
+        final GeofenceStore store = new GeofenceStore(executor, folder.getRoot());
+        store.load();
+        return store.takeLoaded();
+    }
+}
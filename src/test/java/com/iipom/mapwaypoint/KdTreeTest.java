@@ -0,0 +1,73 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class KdTreeTest
+{
+    @Test
+    public void findsTheSameDistanceAsAScan()
+    {
+        final Random random = new Random(7);
+        final KdTree tree = new KdTree();
+        final int[] xs = new int[2000];
+        final int[] ys = new int[2000];
+        final boolean[] present = new boolean[2000];
+
+        for (int step = 0; step < 6000; step++)
+        {
+            final int id = random.nextInt(xs.length);
+            if (present[id] && random.nextInt(3) == 0)
+            {
+                tree.remove(id);
+                present[id] = false;
+            }
+            else
+            {
+                // Clustered coordinates so that many points share a split value
+                xs[id] = 3200 + random.nextInt(64) / 4 * 4;
+                ys[id] = 3200 + random.nextInt(64);
+                tree.insert(id, xs[id], ys[id]);
+                present[id] = true;
+            }
+
+            final int x = 3180 + random.nextInt(100);
+            final int y = 3180 + random.nextInt(100);
+            final int found = tree.nearest(x, y);
+
+            int expected = Integer.MAX_VALUE;
+            for (int i = 0; i < xs.length; i++)
+            {
+                if (present[i])
+                {
+                    expected = Math.min(expected, Math.max(Math.abs(xs[i] - x), Math.abs(ys[i] - y)));
+                }
+            }
+
+            if (expected == Integer.MAX_VALUE)
+            {
+                assertEquals(-1, found);
+            }
+            else
+            {
+                assertEquals(expected, Math.max(Math.abs(xs[found] - x), Math.abs(ys[found] - y)));
+            }
+        }
+    }
+
+    @Test
+    public void emptiesOutCompletely()
+    {
+        final KdTree tree = new KdTree();
+        tree.insert(3, 10, 10);
+        tree.insert(5, 20, 20);
+        tree.remove(3);
+        tree.remove(5);
+
+        assertEquals(0, tree.size());
+        assertEquals(-1, tree.nearest(10, 10));
+    }
+}
@@ -0,0 +1,203 @@
+package com.iipom.mapwaypoint;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues submitted tasks until {@link #runPending()} is called, so background work happens at a known point
+ * on the calling thread. Delayed and periodic tasks wait on a manual clock, moved on with {@link #advance},
+ * and are queued like any other task once they come due. Scheduled tasks are dropped on shutdown.
+ */
+public class ManualExecutor extends AbstractExecutorService implements ScheduledExecutorService
+{
+    private final Queue<Runnable> pending = new ArrayDeque<>();
+    private final PriorityQueue<ScheduledTask<?>> scheduled = new PriorityQueue<>();
+    private long nanos;
+    private long sequence;
+    private boolean shutdown;
+
+    /**
+     * Runs queued tasks, including any they submit, until the queue is empty.
+     *
+     * @return the number of tasks run
+     */
+    public int runPending()
+    {
+        int count = 0;
+        Runnable task;
+        while ((task = pending.poll()) != null)
+        {
+            task.run();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Moves the clock on, queueing every scheduled task that comes due for the next {@link #runPending()}.
+     * A periodic task is due again only once it has run.
+     *
+     * @return the number of tasks queued
+     */
+    public int advance(long time, TimeUnit unit)
+    {
+        nanos += unit.toNanos(time);
+
+        int count = 0;
+        ScheduledTask<?> task;
+        while ((task = scheduled.peek()) != null && task.time <= nanos)
+        {
+            scheduled.poll();
+            if (!task.isDone())
+            {
+                pending.add(task);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void execute(Runnable command)
+    {
+        checkRunning();
+        pending.add(command);
+    }
+
+    @Override
+    public void shutdown()
+    {
+        shutdown = true;
+        scheduled.clear();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow()
+    {
+        shutdown();
+        final List<Runnable> dropped = new ArrayList<>(pending);
+        pending.clear();
+        return dropped;
+    }
+
+    @Override
+    public boolean isShutdown()
+    {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated()
+    {
+        return shutdown && pending.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+    {
+        return isTerminated();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit)
+    {
+        return schedule(Executors.callable(command), delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit)
+    {
+        return schedule(new ScheduledTask<>(callable, unit.toNanos(delay), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit)
+    {
+        return schedule(new ScheduledTask<>(Executors.callable(command), unit.toNanos(initialDelay), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit)
+    {
+        return schedule(new ScheduledTask<>(Executors.callable(command), unit.toNanos(initialDelay), -unit.toNanos(delay)));
+    }
+
+    private <V> ScheduledFuture<V> schedule(ScheduledTask<V> task)
+    {
+        checkRunning();
+        scheduled.add(task);
+        return task;
+    }
+
+    private void checkRunning()
+    {
+        if (shutdown)
+        {
+            throw new IllegalStateException("Executor has been shut down");
+        }
+    }
+
+    /**
+     * A task due at a time on the manual clock. A positive period repeats it at a fixed rate, a negative one
+     * with a fixed delay after each run, and zero runs it once.
+     */
+    private final class ScheduledTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V>
+    {
+        private final long period;
+        private final long order = sequence++;
+        private long time;
+
+        ScheduledTask(Callable<V> callable, long delay, long period)
+        {
+            super(callable);
+            this.period = period;
+            this.time = nanos + delay;
+        }
+
+        @Override
+        public void run()
+        {
+            if (period == 0)
+            {
+                super.run();
+            }
+            else if (runAndReset() && !shutdown)
+            {
+                time = period > 0 ? time + period : nanos - period;
+                scheduled.add(this);
+            }
+        }
+
+        @Override
+        public boolean isPeriodic()
+        {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(time - nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            final ScheduledTask<?> task = (ScheduledTask<?>) other;
+            final int byTime = Long.compare(time, task.time);
+            return byTime != 0 ? byTime : Long.compare(order, task.order);
+        }
+    }
+}
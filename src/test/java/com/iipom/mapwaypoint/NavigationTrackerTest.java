@@ -0,0 +1,67 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NavigationTrackerTest
+{
+    private static final int PLAYER = TileCoords.pack(PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y, 0);
+
+    private PluginFixture fixture;
+    private NavigationTracker tracker;
+
+    @Before
+    public void setUp()
+    {
+        fixture = new PluginFixture();
+        tracker = fixture.navigationTracker;
+    }
+
+    @After
+    public void tearDown()
+    {
+        fixture.shutDown();
+    }
+
+    @Test
+    public void headsStraightForTheWaypoint()
+    {
+        tracker.update(PLAYER, TileCoords.pack(PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y + 12, 0), null);
+
+        final NavigationState state = tracker.getState();
+        assertTrue(state.isSamePlane());
+        assertEquals(12, state.getDistance());
+        assertEquals(Math.PI / 2, state.getBearing(), 1e-9);
+    }
+
+    @Test
+    public void hasNoDistanceToAnotherPlane()
+    {
+        tracker.update(PLAYER, TileCoords.pack(PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y, 1), null);
+
+        final NavigationState state = tracker.getState();
+        assertTrue(state.hasTarget());
+        assertFalse(state.isSamePlane());
+        assertEquals(-1, state.getDistance());
+    }
+
+    @Test
+    public void stateIsOnlyReplacedOnUpdates()
+    {
+        tracker.update(PLAYER, TileCoords.pack(PluginFixture.PLAYER_X + 3, PluginFixture.PLAYER_Y, 0), null);
+        final NavigationState state = tracker.getState();
+
+        fixture.fakeClient.setPlayerLocation(PluginFixture.PLAYER_X + 1, PluginFixture.PLAYER_Y, 0);
+        assertSame(state, tracker.getState());
+
+        tracker.updateConfig();
+        assertEquals(state.getTarget(), tracker.getState().getTarget());
+        assertEquals(state.getDistance(), tracker.getState().getDistance());
+    }
+}
@@ -0,0 +1,82 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.GameTick;
+import net.runelite.client.ui.overlay.Overlay;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OverlayLifecycleTest
+{
+    private static final int PLAYER = TileCoords.pack(PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y, 0);
+
+    private final PluginFixture fixture = new PluginFixture();
+    private final List<Overlay> registered = new ArrayList<>();
+    private final OverlayLifecycle lifecycle = new OverlayLifecycle(registered::add, registered::remove);
+
+    @After
+    public void tearDown()
+    {
+        fixture.shutDown();
+    }
+
+    @Test
+    public void registersOverlaysOnlyWhileTheyHaveSomethingToDraw()
+    {
+        lifecycle.manage(fixture.arrowOverlay);
+        lifecycle.manage(fixture.tileOverlay);
+        lifecycle.manage(fixture.minimapOverlay);
+
+        lifecycle.update(NavigationState.NONE);
+        assertTrue(registered.isEmpty());
+
+        // Only the route is drawn on the ground, and only on the waypoint's plane
+        lifecycle.update(state(TileCoords.pack(PluginFixture.PLAYER_X + 5, PluginFixture.PLAYER_Y, 0)));
+        assertEquals(Arrays.asList(fixture.arrowOverlay, fixture.tileOverlay), registered);
+
+        lifecycle.update(state(TileCoords.pack(PluginFixture.PLAYER_X + 5, PluginFixture.PLAYER_Y, 1)));
+        assertEquals(Collections.singletonList(fixture.arrowOverlay), registered);
+
+        lifecycle.update(NavigationState.NONE);
+        assertTrue(registered.isEmpty());
+    }
+
+    @Test
+    public void registersEachOverlayOnce()
+    {
+        lifecycle.setShown(fixture.arrowOverlay, true);
+        lifecycle.setShown(fixture.arrowOverlay, true);
+        assertEquals(1, registered.size());
+
+        lifecycle.clear();
+        assertTrue(registered.isEmpty());
+        assertFalse(lifecycle.isShown(fixture.arrowOverlay));
+    }
+
+    @Test
+    public void showsTheWaypointOverlaysOnceAWaypointIsSet()
+    {
+        fixture.plugin.onGameTick(new GameTick());
+        assertFalse(fixture.overlayLifecycle.isShown(fixture.arrowOverlay));
+
+        fixture.plugin.addWaypoint(new WorldPoint(PluginFixture.PLAYER_X + 5, PluginFixture.PLAYER_Y, 0));
+        fixture.plugin.onGameTick(new GameTick());
+        assertTrue(fixture.overlayLifecycle.isShown(fixture.arrowOverlay));
+        assertTrue(fixture.overlayLifecycle.isShown(fixture.tileOverlay));
+        assertTrue(fixture.overlayLifecycle.isShown(fixture.minimapOverlay));
+    }
+
+    private static NavigationState state(int target)
+    {
+        return new NavigationState(PLAYER, target, target, 5, 0, null, false, false, true, false);
+    }
+}
@@ -0,0 +1,41 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PathSearchTest
+{
+    private static final CollisionMap OPEN = new CollisionMap()
+    {
+        @Override
+        public boolean canMoveNorth(int x, int y, int plane)
+        {
+            return true;
+        }
+
+        @Override
+        public boolean canMoveEast(int x, int y, int plane)
+        {
+            return true;
+        }
+    };
+
+    private static final int START = TileCoords.pack(3200, 3200, 0);
+    private static final int GOAL = TileCoords.pack(3400, 3300, 0);
+
+    @Test
+    public void stopsOnceCancelled()
+    {
+        final PathSearch search = new PathSearch();
+        final int[] path = search.findPath(OPEN, 0, START, GOAL, 3100, 3100, 400, 300, 200_000, () -> false);
+        assertEquals(201, path.length);
+
+        final AtomicInteger checks = new AtomicInteger();
+        assertNull(search.findPath(OPEN, 0, START, GOAL, 3100, 3100, 400, 300, 200_000, () -> checks.incrementAndGet() > 1));
+        assertEquals(2, checks.get());
+    }
+}
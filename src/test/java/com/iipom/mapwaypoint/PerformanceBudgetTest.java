@@ -0,0 +1,110 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Fails when a recorded session starts allocating more per step or gets noticeably slower. Medians are compared
+ * rather than maxima so that a stray GC pause or JIT compilation does not fail the run. Allocations and step
+ * counts are the same on every machine and are checked by the {@code test} task; wall-clock budgets depend on
+ * the machine and what else it is running, so they are only checked on demand with {@code gradle performanceTest}.
+ */
+public class PerformanceBudgetTest
+{
+    private static final String REPLAY = "lumbridge.replay";
+    private static final int WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 10;
+
+    private static final long FRAME_NANOS = 2_000_000;
+    private static final long FRAME_BYTES = 64 * 1024;
+    private static final long TICK_NANOS = 500_000;
+    private static final long TICK_BYTES = 8 * 1024;
+    private static final long MENU_NANOS = 200_000;
+    private static final long MENU_BYTES = 4 * 1024;
+    private static final long BACKGROUND_NANOS = 20_000_000;
+
+    @Test
+    public void replayStaysWithinAllocationBudget() throws Exception
+    {
+        final Replay.Stats stats = measure();
+
+        assertSteps(stats, "frame");
+        assertSteps(stats, "tick");
+        assertSteps(stats, "menu");
+
+        assumeTrue("per-thread allocation counting is unavailable", Replay.isAllocationMeasured());
+        assertBytes(stats, "frame", FRAME_BYTES);
+        assertBytes(stats, "tick", TICK_BYTES);
+        assertBytes(stats, "menu", MENU_BYTES);
+    }
+
+    @Test
+    @Category(PerformanceTest.class)
+    public void replayStaysWithinTimeBudget() throws Exception
+    {
+        final Replay.Stats stats = measure();
+
+        assertNanos(stats, "frame", FRAME_NANOS);
+        assertNanos(stats, "tick", TICK_NANOS);
+        assertNanos(stats, "menu", MENU_NANOS);
+        assertNanos(stats, "background", BACKGROUND_NANOS);
+    }
+
+    private static Replay.Stats measure() throws Exception
+    {
+        final Replay replay = Replay.load(REPLAY);
+        final BufferedImage canvas = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = canvas.createGraphics();
+
+        for (int i = 0; i < WARMUP_RUNS; i++)
+        {
+            play(replay, graphics, new Replay.Stats());
+        }
+
+        final Replay.Stats stats = new Replay.Stats();
+        for (int i = 0; i < MEASURED_RUNS; i++)
+        {
+            play(replay, graphics, stats);
+        }
+        graphics.dispose();
+        return stats;
+    }
+
+    private static void play(Replay replay, Graphics2D graphics, Replay.Stats stats)
+    {
+        final PluginFixture fixture = new PluginFixture();
+        try
+        {
+            replay.play(fixture, graphics, stats);
+        }
+        finally
+        {
+            fixture.shutDown();
+        }
+    }
+
+    private static void assertSteps(Replay.Stats stats, String kind)
+    {
+        assertTrue(String.format("no %s steps were replayed%n%s", kind, stats), stats.count(kind) > 0);
+    }
+
+    private static void assertNanos(Replay.Stats stats, String kind, long budget)
+    {
+        final long median = stats.medianNanos(kind);
+        assertTrue(String.format("median %s took %d us, budget is %d us%n%s", kind, median / 1000, budget / 1000, stats),
+                median <= budget);
+    }
+
+    private static void assertBytes(Replay.Stats stats, String kind, long budget)
+    {
+        final long median = stats.medianBytes(kind);
+        assertTrue(String.format("median %s allocated %d bytes, budget is %d bytes%n%s", kind, median, budget, stats),
+                median <= budget);
+    }
+}
@@ -0,0 +1,8 @@
+package com.iipom.mapwaypoint;
+
+/**
+ * Category of tests, or test methods, that measure wall-clock time. They only run with the {@code performanceTest} task.
+ */
+public interface PerformanceTest
+{
+}
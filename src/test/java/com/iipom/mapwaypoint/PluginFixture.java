@@ -0,0 +1,251 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Client;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.BeforeRender;
+import net.runelite.api.events.GameTick;
+import net.runelite.client.ui.overlay.worldmap.WorldMapPoint;
+import net.runelite.client.ui.overlay.worldmap.WorldMapPointManager;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Wires the plugin and its overlays to a {@link FakeClient} by hand, standing in for the client's injector.
+ * The player starts in Lumbridge with the world map open and centered on them. Background work is queued on
+ * a {@link ManualExecutor} and only runs when asked to, and its results reach the plugin on the next tick.
+ * Files are kept in a temporary directory of the fixture's own, deleted by {@link #shutDown()}.
+ */
+public class PluginFixture
+{
+    public static final int PLAYER_X = 3222;
+    public static final int PLAYER_Y = 3218;
+    public static final Rectangle WORLD_MAP_BOUNDS = new Rectangle(10, 30, 720, 440);
+
+    final FakeClient fakeClient = new FakeClient();
+    final MapWaypointConfig config = new MapWaypointConfig()
+    {
+    };
+    final ManualExecutor executor = new ManualExecutor();
+    final File directory = createDirectory();
+    final FakeWorldMap worldMap = new FakeWorldMap(fakeClient);
+
+    final MapWaypointPlugin plugin = new MapWaypointPlugin();
+    final WorldMapPointManager worldMapPointManager;
+    final WorldMapGeometry worldMapGeometry;
+    final WaypointClusterer waypointClusterer;
+    final TilePolygonCache tilePolygonCache;
+    final CollisionMapCache collisionMapCache;
+    final Pathfinder pathfinder;
+    final NavigationTracker navigationTracker;
+    final TransportGraph transportGraph = new TransportGraph();
+    final WaypointIconCache iconCache = new WaypointIconCache();
+    final OverlayLifecycle overlayLifecycle = new OverlayLifecycle(overlay -> { }, overlay -> { });
+    final WaypointJournal waypointJournal = new WaypointJournal(executor, directory);
+    final WaypointSync waypointSync = new WaypointSync(directory);
+    final PluginMetrics metrics = new PluginMetrics(executor, directory);
+    final RouteOptimizer routeOptimizer = new RouteOptimizer(RouteOptimizer::createPool);
+    final TaskScheduler taskScheduler = new TaskScheduler(executor, metrics);
+    final GeofenceStore geofenceStore = new GeofenceStore(executor, directory);
+    final ExplorationMap explorationMap = new ExplorationMap(executor, directory);
+    final WaypointArrowOverlay arrowOverlay;
+    final WaypointTileOverlay tileOverlay;
+    final WaypointMinimapOverlay minimapOverlay;
+
+    public PluginFixture()
+    {
+        final Client client = fakeClient.getClient();
+        fakeClient.setPlayerLocation(PLAYER_X, PLAYER_Y, 0);
+        fakeClient.setWorldMap(WORLD_MAP_BOUNDS, PLAYER_X, PLAYER_Y, 4.0f);
+
+        worldMapPointManager = construct(WorldMapPointManager.class);
+        worldMapGeometry = construct(WorldMapGeometry.class, client);
+        waypointClusterer = construct(WaypointClusterer.class, worldMapPointManager, worldMapGeometry);
+        tilePolygonCache = construct(TilePolygonCache.class, client);
+        collisionMapCache = new CollisionMapCache(client, directory);
+        pathfinder = construct(Pathfinder.class, client, collisionMapCache, taskScheduler);
+        navigationTracker = construct(NavigationTracker.class, config, pathfinder);
+        arrowOverlay = construct(WaypointArrowOverlay.class, client, navigationTracker, metrics);
+        tileOverlay = construct(WaypointTileOverlay.class, client, plugin, navigationTracker, tilePolygonCache, pathfinder,
+                construct(RouteRenderer.class, client), construct(RouteRenderer.class, client), iconCache, metrics);
+        minimapOverlay = construct(WaypointMinimapOverlay.class, client, plugin, navigationTracker, iconCache, metrics);
+        arrowOverlay.buildArrowAtlas(arrowSprite());
+        overlayLifecycle.manage(arrowOverlay);
+        overlayLifecycle.manage(tileOverlay);
+        overlayLifecycle.manage(minimapOverlay);
+
+        inject(plugin, "client", client);
+        inject(plugin, "config", config);
+        inject(plugin, "worldMapGeometry", worldMapGeometry);
+        inject(plugin, "iconCache", iconCache);
+        inject(plugin, "overlayLifecycle", overlayLifecycle);
+        inject(plugin, "waypointClusterer", waypointClusterer);
+        inject(plugin, "tilePolygonCache", tilePolygonCache);
+        inject(plugin, "waypointArrowOverlay", arrowOverlay);
+        inject(plugin, "waypointTileOverlay", tileOverlay);
+        inject(plugin, "waypointMinimapOverlay", minimapOverlay);
+        inject(plugin, "pathfinder", pathfinder);
+        inject(plugin, "navigationTracker", navigationTracker);
+        inject(plugin, "collisionMapCache", collisionMapCache);
+        inject(plugin, "transportGraph", transportGraph);
+        inject(plugin, "waypointJournal", waypointJournal);
+        inject(plugin, "waypointSync", waypointSync);
+        inject(plugin, "metrics", metrics);
+        inject(plugin, "routeOptimizer", routeOptimizer);
+        inject(plugin, "taskScheduler", taskScheduler);
+        inject(plugin, "geofenceStore", geofenceStore);
+        inject(plugin, "explorationMap", explorationMap);
+        inject(plugin, "executor", executor);
+
+        transportGraph.load();
+    }
+
+    /**
+     * Draws one frame: the three overlays, then the registered world map points as the client would after them.
+     */
+    public void renderFrame(Graphics2D graphics)
+    {
+        plugin.onBeforeRender(new BeforeRender());
+        arrowOverlay.render(graphics);
+        tileOverlay.render(graphics);
+        minimapOverlay.render(graphics);
+        worldMap.layout(registeredPoints());
+    }
+
+    /**
+     * Scatters waypoints on the player's plane within {@code spread} tiles of the player, then runs a game tick
+     * so the overlays pick them up. The same seed always produces the same waypoints.
+     */
+    public void addWaypoints(int count, int spread, long seed)
+    {
+        final Random random = new Random(seed);
+        for (int i = 0; i < count; i++)
+        {
+            final int x = PLAYER_X + random.nextInt(spread * 2 + 1) - spread;
+            final int y = PLAYER_Y + random.nextInt(spread * 2 + 1) - spread;
+            plugin.addWaypoint(new WorldPoint(x, y, 0));
+        }
+
+        plugin.onGameTick(new GameTick());
+    }
+
+    /**
+     * @return the points registered with the world map, which the manager only exposes to its own package
+     */
+    @SuppressWarnings("unchecked")
+    List<WorldMapPoint> registeredPoints()
+    {
+        try
+        {
+            final Field field = WorldMapPointManager.class.getDeclaredField("worldMapPoints");
+            field.setAccessible(true);
+            return (List<WorldMapPoint>) field.get(worldMapPointManager);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Unable to read the world map points", e);
+        }
+    }
+
+    public void shutDown()
+    {
+        metrics.setEnabled(false);
+        executor.shutdownNow();
+        routeOptimizer.close();
+        waypointJournal.close();
+        waypointSync.close();
+
+        try (Stream<Path> paths = Files.walk(directory.toPath()))
+        {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static File createDirectory()
+    {
+        try
+        {
+            return Files.createTempDirectory("mapwaypoint").toFile();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BufferedImage arrowSprite()
+    {
+        final BufferedImage sprite = new BufferedImage(17, 17, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < sprite.getHeight(); y++)
+        {
+            for (int x = Math.abs(8 - y) / 2; x < sprite.getWidth() - Math.abs(8 - y) / 2; x++)
+            {
+                sprite.setRGB(x, y, 0xFFFFFF00);
+            }
+        }
+        return sprite;
+    }
+
+    /**
+     * Calls the only constructor of a class, regardless of its visibility, with arguments matched by type.
+     * Parameters without a matching argument receive null.
+     */
+    static <T> T construct(Class<T> type, Object... args)
+    {
+        final Constructor<?> constructor = type.getDeclaredConstructors()[0];
+        final Class<?>[] parameters = constructor.getParameterTypes();
+        final Object[] values = new Object[parameters.length];
+
+        for (int i = 0; i < parameters.length; i++)
+        {
+            for (Object arg : args)
+            {
+                if (parameters[i].isInstance(arg))
+                {
+                    values[i] = arg;
+                    break;
+                }
+            }
+        }
+
+        try
+        {
+            constructor.setAccessible(true);
+            return type.cast(constructor.newInstance(values));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Unable to construct " + type.getName(), e);
+        }
+    }
+
+    static void inject(Object target, String fieldName, Object value)
+    {
+        try
+        {
+            final Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException("Unable to inject " + fieldName, e);
+        }
+    }
+}
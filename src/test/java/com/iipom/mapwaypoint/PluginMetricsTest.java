@@ -0,0 +1,119 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PluginMetricsTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ManualExecutor executor;
+    private PluginMetrics metrics;
+
+    @Before
+    public void setUp()
+    {
+        executor = new ManualExecutor();
+        metrics = new PluginMetrics(executor, folder.getRoot());
+    }
+
+    @After
+    public void tearDown()
+    {
+        metrics.setEnabled(false);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void recordsNothingWhileDisabled()
+    {
+        final long start = metrics.start(PluginMetrics.Probe.TILE_OVERLAY);
+        metrics.stop(PluginMetrics.Probe.TILE_OVERLAY, start);
+
+        assertEquals(0, start);
+        assertEquals(0, metrics.getHistogram(PluginMetrics.Probe.TILE_OVERLAY).getCount());
+    }
+
+    @Test
+    public void countsCallsAndAllocations()
+    {
+        metrics.setEnabled(true);
+        for (int i = 0; i < 10; i++)
+        {
+            final long start = metrics.start(PluginMetrics.Probe.MENU_OPENED);
+            allocate();
+            metrics.stop(PluginMetrics.Probe.MENU_OPENED, start);
+        }
+
+        assertEquals(10, metrics.getHistogram(PluginMetrics.Probe.MENU_OPENED).getCount());
+        assertEquals(0, metrics.getHistogram(PluginMetrics.Probe.MOUSE_CLICKED).getCount());
+
+        final long bytes = metrics.getBytesPerCall(PluginMetrics.Probe.MENU_OPENED);
+        assertTrue(bytes == -1 || bytes >= 4096);
+    }
+
+    @Test
+    public void doesNotCountTheCounterItself()
+    {
+        metrics.setEnabled(true);
+        for (int i = 0; i < 10; i++)
+        {
+            final long start = metrics.start(PluginMetrics.Probe.MOUSE_CLICKED);
+            metrics.stop(PluginMetrics.Probe.MOUSE_CLICKED, start);
+        }
+
+        final long bytes = metrics.getBytesPerCall(PluginMetrics.Probe.MOUSE_CLICKED);
+        assertTrue(bytes == -1 || bytes < 16);
+    }
+
+    @Test
+    public void dumpsOneLinePerProbe() throws IOException
+    {
+        metrics.setEnabled(true);
+        final long start = metrics.start(PluginMetrics.Probe.ARROW_OVERLAY);
+        metrics.stop(PluginMetrics.Probe.ARROW_OVERLAY, start);
+        metrics.dump();
+
+        final List<String> lines = Files.readAllLines(new File(folder.getRoot(), "metrics.jsonl").toPath(), StandardCharsets.UTF_8);
+        assertEquals(PluginMetrics.Probe.values().length, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"time\":"));
+        assertTrue(lines.get(0).contains("\"probe\":\"arrowOverlay\",\"count\":1,"));
+        assertEquals(0, metrics.getHistogram(PluginMetrics.Probe.ARROW_OVERLAY).getCount());
+    }
+
+    @Test
+    public void dumpsOnceAMinuteWhileEnabled() throws IOException
+    {
+        metrics.setEnabled(true);
+        assertEquals(0, executor.advance(59, TimeUnit.SECONDS));
+        assertEquals(1, executor.advance(1, TimeUnit.SECONDS));
+        executor.runPending();
+        assertEquals(1, executor.advance(60, TimeUnit.SECONDS));
+        executor.runPending();
+
+        final File file = new File(folder.getRoot(), "metrics.jsonl");
+        assertEquals(2 * PluginMetrics.Probe.values().length, Files.readAllLines(file.toPath(), StandardCharsets.UTF_8).size());
+
+        metrics.setEnabled(false);
+        assertEquals(0, executor.advance(60, TimeUnit.SECONDS));
+    }
+
+    private static int[] allocate()
+    {
+        return new int[1024];
+    }
+}
@@ -0,0 +1,146 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.events.BeforeRender;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PolylineSimplifierTest
+{
+    private static final double TOLERANCE = 1;
+
+    private final PolylineSimplifier simplifier = new PolylineSimplifier();
+
+    @Test
+    public void keepsTheEndsOfAStraightLine()
+    {
+        simplifier.reset(TOLERANCE);
+        for (int x = 0; x <= 1000; x++)
+        {
+            simplifier.add(3000 + x, 3200 + x / 3);
+        }
+        simplifier.finish();
+
+        assertEquals(2, simplifier.size());
+        assertPoint(3000, 3200, 0);
+        assertPoint(4000, 3533, 1);
+    }
+
+    @Test
+    public void keepsCornersAndDoublingBack()
+    {
+        simplifier.reset(TOLERANCE);
+        for (int i = 0; i <= 50; i++)
+        {
+            simplifier.add(i, 0);
+        }
+        for (int i = 1; i <= 50; i++)
+        {
+            simplifier.add(50, i);
+        }
+        for (int i = 49; i >= 0; i--)
+        {
+            simplifier.add(50, i);
+        }
+        simplifier.finish();
+
+        // The corners may be cut by up to the tolerance, but the way back up is not lost
+        assertEquals(4, simplifier.size());
+        assertPoint(0, 0, 0);
+        assertNear(50, 0, 1);
+        assertNear(50, 50, 2);
+        assertPoint(50, 0, 3);
+    }
+
+    @Test
+    public void ignoresRepeatedSamples()
+    {
+        simplifier.reset(TOLERANCE);
+        simplifier.add(10, 10);
+        simplifier.add(10, 10);
+        assertEquals(1, simplifier.size());
+
+        simplifier.add(11, 10);
+        simplifier.add(11, 10);
+        assertEquals(2, simplifier.size());
+    }
+
+    @Test
+    public void staysWithinToleranceOfEverySample()
+    {
+        final int[] xs = new int[5000];
+        final int[] ys = new int[xs.length];
+
+        // A circle of whole tiles, sampled a few times per tile like a slow mouse
+        simplifier.reset(TOLERANCE);
+        for (int i = 0; i < xs.length; i++)
+        {
+            final double angle = 2 * Math.PI * i / xs.length;
+            xs[i] = (int) Math.round(3200 + 300 * Math.cos(angle));
+            ys[i] = (int) Math.round(3200 + 300 * Math.sin(angle));
+            simplifier.add(xs[i], ys[i]);
+        }
+        simplifier.finish();
+
+        assertTrue("kept " + simplifier.size() + " points", simplifier.size() < 100);
+        for (int i = 0; i < xs.length; i++)
+        {
+            assertTrue("sample " + i + " is too far from the line", distanceToLine(xs[i], ys[i]) <= TOLERANCE);
+        }
+    }
+
+    @Test
+    public void longDragOnTheWorldMapSetsAFewWaypoints()
+    {
+        final PluginFixture fixture = new PluginFixture();
+        try
+        {
+            fixture.plugin.onBeforeRender(new BeforeRender());
+            final int y = PluginFixture.WORLD_MAP_BOUNDS.y + 200;
+
+            fixture.plugin.beginRoute(100, y);
+            for (int x = 101; x <= 600; x++)
+            {
+                fixture.plugin.extendRoute(x, y + (x < 350 ? 0 : (x - 350) / 2));
+            }
+            fixture.plugin.finishRoute(600, y + 125);
+
+            // Two straight strokes, with the corner between them possibly cut in two
+            final int count = fixture.plugin.getWaypoints().size();
+            assertTrue("set " + count + " waypoints", count >= 3 && count <= 4);
+            assertTrue(fixture.plugin.getRouteSketch().isEmpty());
+        }
+        finally
+        {
+            fixture.shutDown();
+        }
+    }
+
+    private void assertPoint(int x, int y, int index)
+    {
+        assertEquals("x of point " + index, x, simplifier.getX(index));
+        assertEquals("y of point " + index, y, simplifier.getY(index));
+    }
+
+    private void assertNear(int x, int y, int index)
+    {
+        assertTrue("point " + index + " is too far from " + x + ", " + y,
+                Math.hypot(simplifier.getX(index) - x, simplifier.getY(index) - y) <= TOLERANCE * 2);
+    }
+
+    private double distanceToLine(int x, int y)
+    {
+        double nearest = Double.MAX_VALUE;
+        for (int i = 1; i < simplifier.size(); i++)
+        {
+            final double ax = simplifier.getX(i - 1);
+            final double ay = simplifier.getY(i - 1);
+            final double dx = simplifier.getX(i) - ax;
+            final double dy = simplifier.getY(i) - ay;
+            final double t = Math.max(0, Math.min(1, ((x - ax) * dx + (y - ay) * dy) / (dx * dx + dy * dy)));
+            nearest = Math.min(nearest, Math.hypot(x - ax - t * dx, y - ay - t * dy));
+        }
+        return nearest;
+    }
+}
@@ -0,0 +1,398 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.MenuAction;
+import net.runelite.api.MenuEntry;
+import net.runelite.api.Point;
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.GameTick;
+import net.runelite.api.events.MenuOpened;
+import net.runelite.api.events.MenuOptionClicked;
+
+import java.awt.Graphics2D;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded session played back through {@link PluginFixture}. Each line of a replay file is one step:
+ * <pre>
+ * player &lt;x&gt; &lt;y&gt; &lt;plane&gt;     move the player
+ * camera &lt;angle&gt;              turn the camera and minimap
+ * map &lt;x&gt; &lt;y&gt; &lt;zoom&gt;        open the world map centered on a tile
+ * map close                   close the world map
+ * mouse &lt;x&gt; &lt;y&gt;              move the mouse to a canvas position
+ * hover &lt;x&gt; &lt;y&gt;              move the mouse over a tile on the world map
+ * select-tile &lt;x&gt; &lt;y&gt; &lt;plane&gt; hover a tile in the scene, or "none"
+ * waypoints &lt;count&gt; &lt;spread&gt; &lt;seed&gt; scatter waypoints around the player
+ * menu                        build a right-click menu (Cancel, then Walk here)
+ * open                        open the menu that was built, letting the plugin add its entries
+ * select &lt;option&gt;             click a waypoint entry of the open menu
+ * doubleclick                 double-click at the mouse position
+ * tick                        advance one game tick, then run the queued background work
+ * frame [count]               render frames
+ * expect waypoints &lt;count&gt;
+ * expect last &lt;x&gt; &lt;y&gt; &lt;plane&gt;
+ * expect menu &lt;option&gt;
+ * </pre>
+ * Blank lines and lines starting with {@code #} are ignored. Every step is timed and its allocations counted,
+ * background work separately from the tick that queued it.
+ */
+public class Replay
+{
+    private static final String WAYPOINT = "<col=ffff>Waypoint</col>";
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private final String name;
+    private final List<String[]> steps;
+
+    private Replay(String name, List<String[]> steps)
+    {
+        this.name = name;
+        this.steps = steps;
+    }
+
+    public static Replay load(String resource) throws IOException
+    {
+        final List<String[]> steps = new ArrayList<>();
+        try (InputStream in = Replay.class.getResourceAsStream(resource))
+        {
+            if (in == null)
+            {
+                throw new IOException("Missing replay " + resource);
+            }
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                {
+                    steps.add(line.split("\\s+", 2));
+                }
+            }
+        }
+
+        return new Replay(resource, steps);
+    }
+
+    /**
+     * @return true if allocations can be counted per thread on this JVM
+     */
+    public static boolean isAllocationMeasured()
+    {
+        return THREADS != null;
+    }
+
+    public Stats play(PluginFixture fixture, Graphics2D graphics)
+    {
+        final Stats stats = new Stats();
+        play(fixture, graphics, stats);
+        return stats;
+    }
+
+    public void play(PluginFixture fixture, Graphics2D graphics, Stats stats)
+    {
+        for (int i = 0; i < steps.size(); i++)
+        {
+            final String command = steps.get(i)[0];
+            final String[] args = steps.get(i).length > 1 ? steps.get(i)[1].split("\\s+") : new String[0];
+
+            try
+            {
+                switch (command)
+                {
+                    case "frame":
+                        final int frames = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+                        for (int frame = 0; frame < frames; frame++)
+                        {
+                            final long start = start();
+                            final long bytes = allocated();
+                            fixture.renderFrame(graphics);
+                            stats.record("frame", start, bytes);
+                        }
+                        break;
+                    case "tick":
+                    {
+                        long start = start();
+                        long bytes = allocated();
+                        fixture.fakeClient.tickCount++;
+                        fixture.plugin.onGameTick(new GameTick());
+                        stats.record("tick", start, bytes);
+
+                        start = start();
+                        bytes = allocated();
+                        if (fixture.executor.runPending() > 0)
+                        {
+                            stats.record("background", start, bytes);
+                        }
+                        break;
+                    }
+                    case "open":
+                    {
+                        final long start = start();
+                        final long bytes = allocated();
+                        fixture.fakeClient.menuOpen = true;
+                        fixture.plugin.onMenuOpened(new MenuOpened());
+                        stats.record("menu", start, bytes);
+                        break;
+                    }
+                    case "select":
+                    {
+                        final long start = start();
+                        final long bytes = allocated();
+                        select(fixture, args[0]);
+                        stats.record("click", start, bytes);
+                        break;
+                    }
+                    case "doubleclick":
+                    {
+                        final long start = start();
+                        final long bytes = allocated();
+                        fixture.plugin.mouseClicked();
+                        stats.record("click", start, bytes);
+                        break;
+                    }
+                    default:
+                        apply(fixture, command, args);
+                }
+            }
+            catch (RuntimeException | AssertionError e)
+            {
+                throw new AssertionError(name + " step " + (i + 1) + " (" + String.join(" ", steps.get(i)) + "): " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private static void apply(PluginFixture fixture, String command, String[] args)
+    {
+        final FakeClient client = fixture.fakeClient;
+        switch (command)
+        {
+            case "player":
+                client.setPlayerLocation(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                break;
+            case "camera":
+                client.mapAngle = Integer.parseInt(args[0]) & 2047;
+                client.cameraYaw = client.mapAngle;
+                break;
+            case "map":
+                if (args[0].equals("close"))
+                {
+                    client.setWorldMap(null, 0, 0, client.worldMapZoom);
+                }
+                else
+                {
+                    client.setWorldMap(PluginFixture.WORLD_MAP_BOUNDS, Integer.parseInt(args[0]), Integer.parseInt(args[1]), Float.parseFloat(args[2]));
+                }
+                // The client would render a frame before the mouse can reach the map
+                fixture.worldMapGeometry.invalidate();
+                break;
+            case "mouse":
+                client.mouseCanvasPosition = new Point(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+                break;
+            case "hover":
+                final Point canvas = fixture.worldMap.toCanvas(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+                if (canvas == null)
+                {
+                    throw new AssertionError("the world map is closed");
+                }
+                client.mouseCanvasPosition = canvas;
+                break;
+            case "select-tile":
+                client.selectedTile = args[0].equals("none") ? null
+                        : new WorldPoint(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+                break;
+            case "waypoints":
+                fixture.addWaypoints(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]));
+                break;
+            case "menu":
+                client.menuOpen = false;
+                client.menuEntries = new MenuEntry[]{entry("Cancel", "", MenuAction.CANCEL), entry("Walk here", "", MenuAction.WALK)};
+                break;
+            case "expect":
+                expect(fixture, args);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown command " + command);
+        }
+    }
+
+    private static void select(PluginFixture fixture, String option)
+    {
+        final MenuEntry entry = findEntry(fixture.fakeClient.menuEntries, option);
+        if (entry == null)
+        {
+            throw new AssertionError("no " + option + " entry in the menu");
+        }
+
+        final MenuOptionClicked event = new MenuOptionClicked();
+        event.setMenuOption(entry.getOption());
+        event.setMenuTarget(entry.getTarget());
+        event.setMenuAction(MenuAction.of(entry.getType()));
+        event.setId(entry.getIdentifier());
+        fixture.plugin.onMenuOptionClicked(event);
+        fixture.fakeClient.menuOpen = false;
+    }
+
+    private static void expect(PluginFixture fixture, String[] args)
+    {
+        final WaypointStore waypoints = fixture.plugin.getWaypoints();
+        switch (args[0])
+        {
+            case "waypoints":
+                check("waypoint count", Integer.parseInt(args[1]), waypoints.size());
+                break;
+            case "last":
+                final int last = waypoints.last();
+                if (last == -1)
+                {
+                    throw new AssertionError("expected a waypoint, there are none");
+                }
+                check("last waypoint", args[1] + " " + args[2] + " " + args[3],
+                        waypoints.getX(last) + " " + waypoints.getY(last) + " " + waypoints.getPlane(last));
+                break;
+            case "menu":
+                if (findEntry(fixture.fakeClient.menuEntries, args[1]) == null)
+                {
+                    throw new AssertionError("no " + args[1] + " entry in the menu");
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown expectation " + args[0]);
+        }
+    }
+
+    private static void check(String what, Object expected, Object actual)
+    {
+        if (!expected.equals(actual))
+        {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    private static MenuEntry findEntry(MenuEntry[] entries, String option)
+    {
+        for (MenuEntry entry : entries)
+        {
+            if (option.equals(entry.getOption()) && WAYPOINT.equals(entry.getTarget()))
+            {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static MenuEntry entry(String option, String target, MenuAction action)
+    {
+        final MenuEntry entry = new MenuEntry();
+        entry.setOption(option);
+        entry.setTarget(target);
+        entry.setType(action.getId());
+        return entry;
+    }
+
+    private static long start()
+    {
+        return System.nanoTime();
+    }
+
+    private static long allocated()
+    {
+        return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean()
+    {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported())
+        {
+            final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            return threads;
+        }
+        return null;
+    }
+
+    /**
+     * Time and allocation samples per kind of step.
+     */
+    public static class Stats
+    {
+        private final Map<String, Samples> samples = new LinkedHashMap<>();
+
+        void record(String kind, long startNanos, long startBytes)
+        {
+            final long nanos = System.nanoTime() - startNanos;
+            final long bytes = allocated() - startBytes;
+            samples.computeIfAbsent(kind, k -> new Samples()).add(nanos, bytes);
+        }
+
+        public int count(String kind)
+        {
+            final Samples s = samples.get(kind);
+            return s == null ? 0 : s.count;
+        }
+
+        public long medianNanos(String kind)
+        {
+            return median(samples.get(kind).nanos, samples.get(kind).count);
+        }
+
+        public long medianBytes(String kind)
+        {
+            return median(samples.get(kind).bytes, samples.get(kind).count);
+        }
+
+        public long maxBytes(String kind)
+        {
+            final Samples s = samples.get(kind);
+            return Arrays.stream(s.bytes, 0, s.count).max().orElse(0);
+        }
+
+        @Override
+        public String toString()
+        {
+            final StringBuilder builder = new StringBuilder();
+            for (String kind : samples.keySet())
+            {
+                builder.append(String.format("%-10s n=%-5d median %8.1f us %8d B, max %8d B%n",
+                        kind, count(kind), medianNanos(kind) / 1000.0, medianBytes(kind), maxBytes(kind)));
+            }
+            return builder.toString();
+        }
+
+        private static long median(long[] values, int count)
+        {
+            final long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return sorted[count / 2];
+        }
+    }
+
+    private static class Samples
+    {
+        private long[] nanos = new long[64];
+        private long[] bytes = new long[64];
+        private int count;
+
+        void add(long nanos, long bytes)
+        {
+            if (count == this.nanos.length)
+            {
+                this.nanos = Arrays.copyOf(this.nanos, count * 2);
+                this.bytes = Arrays.copyOf(this.bytes, count * 2);
+            }
+            this.nanos[count] = nanos;
+            this.bytes[count++] = bytes;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.GameTick;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReplayTest
+{
+    private PluginFixture fixture;
+    private Graphics2D graphics;
+
+    @Before
+    public void setUp()
+    {
+        fixture = new PluginFixture();
+        graphics = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    @After
+    public void tearDown()
+    {
+        graphics.dispose();
+        fixture.shutDown();
+    }
+
+    @Test
+    public void lumbridgeReplay() throws Exception
+    {
+        final Replay.Stats stats = Replay.load("lumbridge.replay").play(fixture, graphics);
+
+        assertTrue(stats.count("frame") > 100);
+        assertTrue(stats.count("tick") > 50);
+        assertEquals(new WorldPoint(3240, 3270, 0), fixture.fakeClient.worldMapPositionTarget);
+    }
+
+    @Test
+    public void pathIsSearchedInTheBackground()
+    {
+        fixture.plugin.addWaypoint(new WorldPoint(PluginFixture.PLAYER_X + 10, PluginFixture.PLAYER_Y, 0));
+        final int target = TileCoords.pack(PluginFixture.PLAYER_X + 10, PluginFixture.PLAYER_Y, 0);
+
+        fixture.plugin.onGameTick(new GameTick());
+        assertEquals(null, fixture.pathfinder.getResult(target));
+
+        assertEquals(1, fixture.executor.runPending());
+        assertEquals(null, fixture.pathfinder.getResult(target));
+
+        // The route is handed over on the next tick
+        fixture.plugin.onGameTick(new GameTick());
+        final PathResult result = fixture.pathfinder.getResult(target);
+        assertNotNull(result);
+        assertEquals(10, result.getDistance());
+    }
+
+    @Test
+    public void pathAvoidsBlockedTiles()
+    {
+        for (int y = PluginFixture.PLAYER_Y - 5; y <= PluginFixture.PLAYER_Y + 5; y++)
+        {
+            fixture.fakeClient.blockTile(PluginFixture.PLAYER_X + 5, y, 0);
+        }
+
+        fixture.plugin.addWaypoint(new WorldPoint(PluginFixture.PLAYER_X + 10, PluginFixture.PLAYER_Y, 0));
+        fixture.plugin.onGameTick(new GameTick());
+        fixture.executor.runPending();
+        fixture.plugin.onGameTick(new GameTick());
+
+        final PathResult result = fixture.pathfinder.getResult(TileCoords.pack(PluginFixture.PLAYER_X + 10, PluginFixture.PLAYER_Y, 0));
+        assertNotNull(result);
+        assertTrue(result.isComplete());
+        assertTrue(result.getDistance() > 10);
+    }
+
+    @Test
+    public void searchesAgainAfterASearchCouldNotBeQueued()
+    {
+        final AtomicBoolean reject = new AtomicBoolean(true);
+        final Executor workers = command ->
+        {
+            if (reject.getAndSet(false))
+            {
+                throw new RejectedExecutionException();
+            }
+            fixture.executor.execute(command);
+        };
+        final Pathfinder pathfinder = PluginFixture.construct(Pathfinder.class, fixture.fakeClient.getClient(),
+                fixture.collisionMapCache, new TaskScheduler(workers, fixture.metrics));
+        final int player = TileCoords.pack(PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y, 0);
+        final int target = TileCoords.pack(PluginFixture.PLAYER_X + 10, PluginFixture.PLAYER_Y, 0);
+
+        pathfinder.update(player, target);
+        assertEquals(0, fixture.executor.runPending());
+
+        pathfinder.update(player, target);
+        assertEquals(1, fixture.executor.runPending());
+    }
+}
@@ -0,0 +1,159 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RouteOptimizerTest
+{
+    private static final int PLAYER = TileCoords.pack(3000, 3200, 0);
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final RouteOptimizer optimizer = new RouteOptimizer(() -> pool);
+    private final WaypointStore waypoints = new WaypointStore();
+
+    @After
+    public void tearDown()
+    {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void ordersWaypointsAlongALine()
+    {
+        final List<Integer> offsets = new ArrayList<>();
+        for (int i = 1; i <= 60; i++)
+        {
+            offsets.add(i * 5);
+        }
+        Collections.shuffle(offsets, new Random(20));
+        for (int offset : offsets)
+        {
+            waypoints.add(3000 + offset, 3200, 0);
+        }
+
+        final RouteOrder order = optimize();
+        assertEquals(300, order.getLength());
+        for (int i = 0; i < order.size(); i++)
+        {
+            assertEquals(3000 + (i + 1) * 5, waypoints.getX(order.getId(i)));
+        }
+    }
+
+    @Test
+    public void improvesOnGoingToTheNearestWaypoint()
+    {
+        final Random random = new Random(20);
+        for (int i = 0; i < 300; i++)
+        {
+            waypoints.add(3000 + random.nextInt(400), 3000 + random.nextInt(400), random.nextInt(10) == 0 ? 1 : 0);
+        }
+
+        final RouteOrder order = optimize();
+        assertEquals(waypoints.size(), order.size());
+
+        final boolean[] seen = new boolean[waypoints.size()];
+        for (int i = 0; i < order.size(); i++)
+        {
+            assertTrue("visited twice", !seen[order.getId(i)]);
+            seen[order.getId(i)] = true;
+        }
+
+        final long nearestNeighbour = nearestNeighbourLength();
+        assertTrue(order.getLength() + " is not shorter than " + nearestNeighbour, order.getLength() < nearestNeighbour);
+    }
+
+    @Test
+    public void newSearchesReplaceRunningOnes()
+    {
+        final Random random = new Random(20);
+        for (int i = 0; i < 500; i++)
+        {
+            waypoints.add(3000 + random.nextInt(400), 3000 + random.nextInt(400), 0);
+        }
+        optimizer.optimize(PLAYER, waypoints);
+
+        final WaypointStore fewer = new WaypointStore();
+        fewer.add(3001, 3200, 0);
+        fewer.add(3002, 3200, 0);
+        optimizer.optimize(PLAYER, fewer);
+        pool.awaitQuiescence(5, TimeUnit.SECONDS);
+
+        assertEquals(2, optimizer.getResult().size());
+
+        optimizer.cancel();
+        assertNull(optimizer.getResult());
+    }
+
+    @Test
+    public void closingShutsItsOwnPoolDown()
+    {
+        final List<ForkJoinPool> pools = new ArrayList<>();
+        final RouteOptimizer owned = new RouteOptimizer(() ->
+        {
+            pools.add(new ForkJoinPool(1));
+            return pools.get(pools.size() - 1);
+        });
+        waypoints.add(3001, 3200, 0);
+
+        owned.optimize(PLAYER, waypoints);
+        owned.optimize(PLAYER, waypoints);
+        owned.close();
+        assertEquals(1, pools.size());
+        assertTrue(pools.get(0).isShutdown());
+        assertNull(owned.getResult());
+
+        owned.optimize(PLAYER, waypoints);
+        owned.close();
+        assertEquals(2, pools.size());
+        assertTrue(pools.get(1).isShutdown());
+    }
+
+    private RouteOrder optimize()
+    {
+        optimizer.optimize(PLAYER, waypoints);
+        pool.awaitQuiescence(5, TimeUnit.SECONDS);
+        return optimizer.getResult();
+    }
+
+    private long nearestNeighbourLength()
+    {
+        final boolean[] added = new boolean[waypoints.size()];
+        int x = TileCoords.x(PLAYER);
+        int y = TileCoords.y(PLAYER);
+        int plane = 0;
+        long length = 0;
+        for (int step = 0; step < added.length; step++)
+        {
+            int nearest = -1;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int id = 0; id < added.length; id++)
+            {
+                final int distance = Math.max(Math.abs(waypoints.getX(id) - x), Math.abs(waypoints.getY(id) - y))
+                        + Math.abs(waypoints.getPlane(id) - plane) * 64;
+                if (!added[id] && distance < nearestDistance)
+                {
+                    nearest = id;
+                    nearestDistance = distance;
+                }
+            }
+
+            added[nearest] = true;
+            length += nearestDistance;
+            x = waypoints.getX(nearest);
+            y = waypoints.getY(nearest);
+            plane = waypoints.getPlane(nearest);
+        }
+        return length;
+    }
+}
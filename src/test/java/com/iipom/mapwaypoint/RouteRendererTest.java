@@ -0,0 +1,98 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RouteRendererTest
+{
+    private static final int X = PluginFixture.PLAYER_X;
+    private static final int Y = PluginFixture.PLAYER_Y;
+
+    private FakeClient client;
+    private RouteRenderer renderer;
+    private Graphics2D graphics;
+
+    @Before
+    public void setUp()
+    {
+        client = new FakeClient();
+        client.setPlayerLocation(X, Y, 0);
+        renderer = PluginFixture.construct(RouteRenderer.class, client.getClient());
+        graphics = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    @After
+    public void tearDown()
+    {
+        graphics.dispose();
+    }
+
+    @Test
+    public void reusesTheOutlineWhileTheCameraIsStill()
+    {
+        final PathResult route = straightRoute(200);
+        renderer.render(graphics, route, Color.CYAN);
+        final Shape first = renderer.getOutline();
+
+        renderer.render(graphics, route, Color.CYAN);
+        assertSame(first, renderer.getOutline());
+    }
+
+    @Test
+    public void buildsAgainWhenTheCameraMoves()
+    {
+        final PathResult route = straightRoute(200);
+        renderer.render(graphics, route, Color.CYAN);
+        final Shape first = renderer.getOutline();
+
+        client.cameraYaw = (client.cameraYaw + 64) & 2047;
+        renderer.render(graphics, route, Color.CYAN);
+        assertNotSame(first, renderer.getOutline());
+    }
+
+    @Test
+    public void buildsAgainWhenThePlayerMovesAlong()
+    {
+        final PathResult route = straightRoute(200);
+        renderer.render(graphics, route, Color.CYAN);
+        final Rectangle first = renderer.getOutline().getBounds();
+
+        renderer.render(graphics, route.advance(5), Color.CYAN);
+        assertTrue(renderer.getOutline().getBounds().getMinX() > first.getMinX());
+    }
+
+    @Test
+    public void skipsTilesOutsideTheView()
+    {
+        renderer.render(graphics, straightRoute(200), Color.CYAN);
+
+        final Rectangle bounds = renderer.getOutline().getBounds();
+        assertFalse(bounds.isEmpty());
+        assertTrue(bounds.getMaxX() < client.getClient().getViewportXOffset() + client.getClient().getViewportWidth() + 64);
+    }
+
+    /**
+     * @return a route heading east from the player for the given number of tiles, well past the edge of the scene
+     */
+    private static PathResult straightRoute(int length)
+    {
+        final int[] tiles = new int[length];
+        for (int i = 0; i < length; i++)
+        {
+            tiles[i] = TileCoords.pack(X + i, Y, 0);
+        }
+        return new PathResult(tiles, 0, tiles[length - 1]);
+    }
+}
@@ -0,0 +1,113 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TaskSchedulerTest
+{
+    private final ManualExecutor workers = new ManualExecutor();
+    private final PluginMetrics metrics = new PluginMetrics(workers, new File("."));
+    private final TaskScheduler scheduler = new TaskScheduler(workers, metrics);
+    private final List<Integer> results = new ArrayList<>();
+
+    @After
+    public void tearDown()
+    {
+        metrics.setEnabled(false);
+    }
+
+    @Test
+    public void handsResultsOverOnDrain()
+    {
+        scheduler.submit("a", cancelled -> 1, results::add);
+        assertEquals(1, scheduler.getQueueDepth());
+
+        workers.runPending();
+        assertEquals(0, scheduler.getQueueDepth());
+        assertTrue(results.isEmpty());
+
+        assertEquals(1, scheduler.drain());
+        assertEquals(1, (int) results.get(0));
+    }
+
+    @Test
+    public void newerTasksSupersedePendingOnes()
+    {
+        final AtomicBoolean ran = new AtomicBoolean();
+        scheduler.submit("a", cancelled ->
+        {
+            ran.set(true);
+            return 1;
+        }, results::add);
+        scheduler.submit("a", cancelled -> 2, results::add);
+        scheduler.submit("b", cancelled -> 3, results::add);
+
+        workers.runPending();
+        scheduler.drain();
+
+        assertFalse(ran.get());
+        assertEquals(2, results.size());
+        assertTrue(results.contains(2) && results.contains(3));
+    }
+
+    @Test
+    public void runningTasksAreToldTheyWereSuperseded()
+    {
+        final AtomicBoolean sawCancel = new AtomicBoolean();
+        scheduler.submit("a", cancelled ->
+        {
+            // Superseded while running
+            scheduler.submit("a", next -> 2, results::add);
+            sawCancel.set(cancelled.getAsBoolean());
+            return 1;
+        }, results::add);
+
+        workers.runPending();
+        scheduler.drain();
+
+        assertTrue(sawCancel.get());
+        assertEquals(1, results.size());
+        assertEquals(2, (int) results.get(0));
+    }
+
+    @Test
+    public void cancelAllDropsEverything()
+    {
+        final AtomicBoolean ran = new AtomicBoolean();
+        scheduler.submit("a", cancelled -> 1, results::add);
+        workers.runPending();
+        scheduler.submit("b", cancelled ->
+        {
+            ran.set(true);
+            return 2;
+        }, results::add);
+
+        scheduler.cancelAll();
+        workers.runPending();
+
+        assertEquals(0, scheduler.drain());
+        assertFalse(ran.get());
+        assertTrue(results.isEmpty());
+    }
+
+    @Test
+    public void timesTasksWhenMetricsAreEnabled()
+    {
+        metrics.setEnabled(true);
+        scheduler.submit("a", cancelled -> 1, null);
+        workers.runPending();
+
+        assertEquals(1, metrics.getHistogram(PluginMetrics.Probe.TASK_WAIT).getCount());
+        assertEquals(1, metrics.getHistogram(PluginMetrics.Probe.TASK_RUN).getCount());
+        assertEquals(-1, metrics.getBytesPerCall(PluginMetrics.Probe.TASK_RUN));
+    }
+}
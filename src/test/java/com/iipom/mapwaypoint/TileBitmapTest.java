@@ -0,0 +1,118 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TileBitmapTest
+{
+    @Test
+    public void switchesToRowsOnceTheArrayWouldBeLarger()
+    {
+        final TileBitmap bitmap = new TileBitmap();
+        for (int i = 0; i < 256; i++)
+        {
+            assertTrue(bitmap.add(i % 64, i / 64 * 3));
+        }
+        assertTrue(bitmap.isArray());
+        assertFalse(bitmap.add(5, 0));
+
+        assertTrue(bitmap.add(63, 63));
+        assertFalse(bitmap.isArray());
+        assertEquals(257, bitmap.getCardinality());
+        for (int i = 0; i < 256; i++)
+        {
+            assertTrue(bitmap.contains(i % 64, i / 64 * 3));
+        }
+        assertTrue(bitmap.contains(63, 63));
+        assertFalse(bitmap.contains(0, 1));
+    }
+
+    @Test
+    public void reportsRowsInEitherForm()
+    {
+        final TileBitmap bitmap = new TileBitmap();
+        bitmap.add(0, 0);
+        bitmap.add(63, 0);
+        bitmap.add(7, 12);
+
+        final long[] rows = new long[TileBitmap.SIZE];
+        rows[5] = -1;
+        bitmap.getRows(rows);
+
+        final long[] expected = new long[TileBitmap.SIZE];
+        expected[0] = 1L | 1L << 63;
+        expected[12] = 1L << 7;
+        assertArrayEquals(expected, rows);
+    }
+
+    @Test
+    public void mergesAnotherBitmap()
+    {
+        final TileBitmap walked = new TileBitmap();
+        walked.add(1, 1);
+        final TileBitmap loaded = new TileBitmap();
+        for (int x = 0; x < 64; x++)
+        {
+            for (int y = 0; y < 5; y++)
+            {
+                loaded.add(x, y);
+            }
+        }
+
+        final int version = walked.getVersion();
+        walked.addAll(loaded);
+        assertEquals(320, walked.getCardinality());
+        assertTrue(walked.getVersion() != version);
+    }
+
+    @Test
+    public void readsWhatItWrites() throws IOException
+    {
+        for (int count : new int[]{0, 3, 256, 1000})
+        {
+            final TileBitmap bitmap = new TileBitmap();
+            for (int i = 0; i < count; i++)
+            {
+                bitmap.add(i * 7 % 64, i * 7 / 64 % 64);
+            }
+
+            final TileBitmap read = TileBitmap.read(new DataInputStream(new ByteArrayInputStream(write(bitmap))));
+            assertEquals(bitmap.getCardinality(), read.getCardinality());
+            assertEquals(bitmap.isArray(), read.isArray());
+
+            final long[] expected = new long[TileBitmap.SIZE];
+            final long[] actual = new long[TileBitmap.SIZE];
+            bitmap.getRows(expected);
+            read.getRows(actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTilesOutOfOrder() throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(2);
+        out.writeShort(9);
+        out.writeShort(4);
+        TileBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    private static byte[] write(TileBitmap bitmap) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Polygon;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TilePolygonCacheTest
+{
+    private static final int X = PluginFixture.PLAYER_X;
+    private static final int Y = PluginFixture.PLAYER_Y;
+
+    private FakeClient client;
+    private TilePolygonCache cache;
+
+    @Before
+    public void setUp()
+    {
+        client = new FakeClient();
+        client.setPlayerLocation(X, Y, 0);
+        cache = PluginFixture.construct(TilePolygonCache.class, client.getClient());
+    }
+
+    @Test
+    public void reusesPolygonsWhileTheCameraIsStill()
+    {
+        cache.beginFrame();
+        final Polygon first = cache.getTilePoly(X + 3, Y - 2);
+        assertNotNull(first);
+
+        cache.beginFrame();
+        assertSame(first, cache.getTilePoly(X + 3, Y - 2));
+    }
+
+    @Test
+    public void projectsAgainWhenTheCameraMoves()
+    {
+        cache.beginFrame();
+        final Polygon first = cache.getTilePoly(X + 3, Y - 2);
+
+        client.cameraYaw = (client.cameraYaw + 64) & 2047;
+        cache.beginFrame();
+        assertNotSame(first, cache.getTilePoly(X + 3, Y - 2));
+    }
+
+    @Test
+    public void projectsAgainWhenTheSceneMoves()
+    {
+        cache.beginFrame();
+        final Polygon first = cache.getTilePoly(X, Y);
+
+        client.setPlayerLocation(X + 32, Y, 0);
+        cache.beginFrame();
+        assertNotSame(first, cache.getTilePoly(X, Y));
+    }
+
+    @Test
+    public void tilesOutsideTheSceneHaveNoPolygon()
+    {
+        cache.beginFrame();
+        assertNull(cache.getTilePoly(X + 200, Y));
+        assertNull(cache.getTilePoly(X + 200, Y));
+    }
+
+    @Test
+    public void keepsTheCurrentTilesWhenFull()
+    {
+        cache.beginFrame();
+        final Polygon kept = cache.getTilePoly(X, Y);
+
+        // Many frames of tiles that are only drawn once, with the kept tile drawn in every one of them
+        for (int frame = 0; frame < 64; frame++)
+        {
+            cache.beginFrame();
+            assertSame(kept, cache.getTilePoly(X, Y));
+            for (int i = 0; i < 40; i++)
+            {
+                cache.getTilePoly(X - 40 + i, Y - 40 + frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimingHistogramTest
+{
+    @Test
+    public void bucketsCoverEveryValueWithinAnEighth()
+    {
+        for (long value = 0; value < 1_000_000; value += 7)
+        {
+            final int bucket = TimingHistogram.bucketOf(value);
+            final long highest = TimingHistogram.highestValueOf(bucket);
+            assertTrue(value <= highest);
+            assertTrue(highest - value <= value / 8);
+            assertTrue(bucket == 0 || TimingHistogram.highestValueOf(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void percentilesComeFromTheRecordedValues()
+    {
+        final TimingHistogram histogram = new TimingHistogram();
+        for (int i = 1; i <= 100; i++)
+        {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertWithinAnEighth(50_000, histogram.getValueAtPercentile(50));
+        assertWithinAnEighth(99_000, histogram.getValueAtPercentile(99));
+        assertEquals(100_000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void resetForgetsEverything()
+    {
+        final TimingHistogram histogram = new TimingHistogram();
+        histogram.record(12_345);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    private static void assertWithinAnEighth(long expected, long actual)
+    {
+        assertTrue(actual + " is not near " + expected, actual >= expected && actual - expected <= expected / 8);
+    }
+}
@@ -0,0 +1,216 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransportGraphTest
+{
+    private static final int START = TileCoords.pack(2500, 3900, 0);
+    private static final int VARROCK = TileCoords.pack(3213, 3424, 0);
+    private static final int MAX_LEVEL = 99;
+
+    // Matching TransportGraph's, the distance walked to and between transports
+    private static final int WALK_RADIUS = 192;
+
+    @Test
+    public void offersOnlyTeleportsTheMagicLevelAllows()
+    {
+        final TransportGraph graph = new TransportGraph();
+        graph.load();
+
+        assertNull(graph.route(START, VARROCK, TransportGraph.NO_TELEPORTS, MAX_LEVEL));
+        // Home Teleport needs no level, and Varrock can be walked to from Lumbridge by way of Draynor Manor
+        assertEquals("Lumbridge Home Teleport", graph.route(START, VARROCK, 24, MAX_LEVEL).getTransport().getName());
+
+        final TransportRoute route = graph.route(START, VARROCK, 25, MAX_LEVEL);
+        assertEquals("Varrock Teleport", route.getTransport().getName());
+        assertEquals(TileCoords.NONE, route.getNextHop());
+    }
+
+    @Test
+    public void routesIntoTheCellarByTheTrapdoor()
+    {
+        final TransportGraph graph = new TransportGraph();
+        graph.load();
+
+        final TransportRoute route = graph.route(TileCoords.pack(3215, 3218, 0), TileCoords.pack(3215, 9620, 0), TransportGraph.NO_TELEPORTS, MAX_LEVEL);
+        assertEquals(TransportKind.LADDER, route.getTransport().getKind());
+        assertEquals(TileCoords.pack(3209, 3216, 0), route.getNextHop());
+    }
+
+    @Test
+    public void takesOnlyShortcutsTheAgilityLevelAllows()
+    {
+        // The shortcut cuts the walk to the stairs, which can still be walked to without it
+        final List<Transport> transports = Arrays.asList(
+                transport(TransportKind.SHORTCUT, TileCoords.pack(3200, 3200, 0), TileCoords.pack(3200, 3220, 0), 5, 30),
+                transport(TransportKind.STAIRS, TileCoords.pack(3205, 3221, 0), TileCoords.pack(3205, 3221, 1), 2, 0));
+        final TransportGraph graph = new TransportGraph(transports);
+        final int start = TileCoords.pack(3200, 3195, 0);
+        final int goal = TileCoords.pack(3205, 3221, 1);
+
+        final TransportRoute route = graph.route(start, goal, TransportGraph.NO_TELEPORTS, 30);
+        assertEquals(TransportKind.SHORTCUT, route.getTransport().getKind());
+        assertEquals(TransportKind.STAIRS, graph.route(start, goal, TransportGraph.NO_TELEPORTS, 29).getTransport().getKind());
+    }
+
+    @Test
+    public void matchesDijkstraAcrossPlanes()
+    {
+        final Random random = new Random(5);
+        final List<Transport> transports = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+        {
+            final int source = randomTile(random);
+            int destination = randomTile(random);
+            while (TileCoords.plane(destination) == TileCoords.plane(source))
+            {
+                destination = randomTile(random);
+            }
+            transports.add(transport(TransportKind.LADDER, source, destination, 1 + random.nextInt(10), 0));
+        }
+        for (int i = 0; i < 4; i++)
+        {
+            transports.add(transport(TransportKind.TELEPORT, TileCoords.NONE, randomTile(random), 5 + random.nextInt(30), random.nextInt(60)));
+        }
+
+        final TransportGraph graph = new TransportGraph(transports);
+        int routed = 0;
+        for (int i = 0; i < 300; i++)
+        {
+            final int start = randomTile(random);
+            int goal = randomTile(random);
+            while (TileCoords.plane(goal) == TileCoords.plane(start))
+            {
+                goal = randomTile(random);
+            }
+            final int magicLevel = random.nextBoolean() ? TransportGraph.NO_TELEPORTS : random.nextInt(60);
+
+            final int expected = dijkstra(transports, start, goal, magicLevel);
+            final TransportRoute route = graph.route(start, goal, magicLevel, MAX_LEVEL);
+            if (expected == Integer.MAX_VALUE)
+            {
+                assertNull(route);
+                continue;
+            }
+
+            assertNotNull(route);
+            final Transport first = route.getTransport();
+            final int total = first.isTeleport() ? route.getRemaining() : route.getRemaining() + TileCoords.distance(start, first.getSource());
+            assertEquals(expected, total);
+            routed++;
+        }
+
+        // Most pairs are connected, or the comparison says little
+        assertTrue(routed > 200);
+    }
+
+    /**
+     * The cost of the cheapest route the way TransportGraph builds its graph, searched without contracting it.
+     */
+    private static int dijkstra(List<Transport> transports, int start, int goal, int magicLevel)
+    {
+        final Map<Integer, Integer> nodeIds = new HashMap<>();
+        for (Transport transport : transports)
+        {
+            if (!transport.isTeleport())
+            {
+                nodeIds.putIfAbsent(transport.getSource(), nodeIds.size());
+            }
+            nodeIds.putIfAbsent(transport.getDestination(), nodeIds.size());
+        }
+
+        final int[] tiles = new int[nodeIds.size()];
+        nodeIds.forEach((tile, node) -> tiles[node] = tile);
+
+        final int[] cost = new int[tiles.length];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        for (int node = 0; node < tiles.length; node++)
+        {
+            final int walk = walk(start, tiles[node]);
+            if (walk <= WALK_RADIUS)
+            {
+                cost[node] = walk;
+            }
+        }
+        for (Transport transport : transports)
+        {
+            if (transport.isTeleport() && transport.getLevel() <= magicLevel)
+            {
+                final int node = nodeIds.get(transport.getDestination());
+                cost[node] = Math.min(cost[node], transport.getCost());
+            }
+        }
+
+        final boolean[] done = new boolean[tiles.length];
+        int best = Integer.MAX_VALUE;
+        while (true)
+        {
+            int current = -1;
+            for (int node = 0; node < tiles.length; node++)
+            {
+                if (!done[node] && cost[node] != Integer.MAX_VALUE && (current == -1 || cost[node] < cost[current]))
+                {
+                    current = node;
+                }
+            }
+            if (current == -1)
+            {
+                return best;
+            }
+            done[current] = true;
+
+            final int toGoal = walk(tiles[current], goal);
+            if (toGoal <= WALK_RADIUS)
+            {
+                best = Math.min(best, cost[current] + toGoal);
+            }
+
+            for (int node = 0; node < tiles.length; node++)
+            {
+                final int walk = walk(tiles[current], tiles[node]);
+                if (node != current && walk <= WALK_RADIUS)
+                {
+                    cost[node] = Math.min(cost[node], cost[current] + walk);
+                }
+            }
+            for (Transport transport : transports)
+            {
+                if (!transport.isTeleport() && transport.getSource() == tiles[current])
+                {
+                    final int node = nodeIds.get(transport.getDestination());
+                    cost[node] = Math.min(cost[node], cost[current] + transport.getCost());
+                }
+            }
+        }
+    }
+
+    private static int walk(int from, int to)
+    {
+        return TileCoords.plane(from) == TileCoords.plane(to) ? TileCoords.distance(from, to) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return a tile within an area small enough that any two tiles on a plane are in walking range
+     */
+    private static int randomTile(Random random)
+    {
+        return TileCoords.pack(3200 + random.nextInt(120), 3200 + random.nextInt(120), random.nextInt(4));
+    }
+
+    private static Transport transport(TransportKind kind, int source, int destination, int cost, int level)
+    {
+        return new Transport(kind, source, destination, cost, level, kind.name());
+    }
+}
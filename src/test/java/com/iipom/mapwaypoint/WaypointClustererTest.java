@@ -0,0 +1,91 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.client.ui.overlay.worldmap.WorldMapPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class WaypointClustererTest
+{
+    private PluginFixture fixture;
+    private Graphics2D graphics;
+
+    @Before
+    public void setUp()
+    {
+        fixture = new PluginFixture();
+        graphics = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    @After
+    public void tearDown()
+    {
+        graphics.dispose();
+        fixture.shutDown();
+    }
+
+    @Test
+    public void registersEachWaypointWhenFewAreInView()
+    {
+        fixture.addWaypoints(200, 40, 1);
+        fixture.renderFrame(graphics);
+
+        final List<WorldMapPoint> registered = fixture.registeredPoints();
+        assertEquals(200, registered.size());
+        assertTrue(fixture.plugin.getMapPoints().values().containsAll(registered));
+    }
+
+    @Test
+    public void clustersWhenZoomedOut()
+    {
+        fixture.addWaypoints(5000, 300, 2);
+        openMap(1.0f);
+
+        final List<WorldMapPoint> registered = fixture.registeredPoints();
+        assertTrue(registered.size() < 500);
+        assertFalse(fixture.plugin.getMapPoints().values().containsAll(registered));
+    }
+
+    @Test
+    public void expandsWhenZoomedIn()
+    {
+        fixture.addWaypoints(5000, 300, 3);
+        openMap(1.0f);
+        openMap(8.0f);
+
+        final List<WorldMapPoint> registered = fixture.registeredPoints();
+        assertTrue(fixture.plugin.getMapPoints().values().containsAll(registered));
+        assertTrue(registered.size() > 0);
+        assertTrue(registered.size() < 5000);
+    }
+
+    @Test
+    public void removedWaypointsLoseTheirClickbox()
+    {
+        fixture.addWaypoints(20, 10, 4);
+        fixture.renderFrame(graphics);
+
+        final int id = fixture.plugin.getWaypoints().last();
+        final WorldMapPoint point = fixture.plugin.getMapPoints().get(id);
+        assertTrue(point.getClickbox() != null);
+
+        fixture.waypointClusterer.remove(id);
+        assertFalse(fixture.registeredPoints().contains(point));
+        assertNull(point.getClickbox());
+    }
+
+    private void openMap(float zoom)
+    {
+        fixture.fakeClient.setWorldMap(PluginFixture.WORLD_MAP_BOUNDS, PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y, zoom);
+        fixture.renderFrame(graphics);
+    }
+}
@@ -0,0 +1,81 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WaypointIconCacheTest
+{
+    private final WaypointIconCache cache = new WaypointIconCache();
+
+    @Test
+    public void tintsWhiteToTheColourAndKeepsBlack()
+    {
+        final BufferedImage icon = cache.getIcon(WaypointStyle.pack(WaypointIcon.DIAMOND, 0xFF8000, 100));
+        assertEquals(25, icon.getWidth());
+
+        // The middle of the diamond is white, its outline nearly black
+        assertEquals(0xFFFF8000, icon.getRGB(12, 12));
+        assertEquals(0xFF140A00, icon.getRGB(2, 12));
+        assertEquals(0, icon.getRGB(0, 0));
+    }
+
+    @Test
+    public void usesTheImageAsItIsForTheDefaultStyle() throws IOException
+    {
+        final BufferedImage original = ImageIO.read(WaypointIconCache.class.getResource(WaypointIcon.CROSS.getResource()));
+        final BufferedImage icon = cache.getIcon(WaypointStyle.DEFAULT);
+        assertEquals(original.getWidth(), icon.getWidth());
+        assertEquals(original.getHeight(), icon.getHeight());
+        for (int y = 0; y < icon.getHeight(); y++)
+        {
+            for (int x = 0; x < icon.getWidth(); x++)
+            {
+                assertEquals(original.getRGB(x, y), icon.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void scalesToTheNearestTenPercent()
+    {
+        assertEquals(74, cache.getIcon(WaypointStyle.pack(WaypointIcon.CROSS, 0xFFFFFF, 200)).getWidth());
+        assertEquals(18, cache.getIcon(WaypointStyle.pack(WaypointIcon.DIAMOND, 0xFFFFFF, 74)).getWidth());
+    }
+
+    @Test
+    public void keepsOnlyTheStylesUsedLast()
+    {
+        final int first = WaypointStyle.pack(WaypointIcon.CIRCLE, 0, 100);
+        final BufferedImage icon = cache.getIcon(first);
+        assertSame(icon, cache.getIcon(first));
+
+        for (int rgb = 1; rgb <= 100; rgb++)
+        {
+            cache.getColor(WaypointStyle.pack(WaypointIcon.CIRCLE, rgb, 100));
+        }
+        assertEquals(64, cache.size());
+        assertEquals(new Color(100), cache.getColor(WaypointStyle.pack(WaypointIcon.CIRCLE, 100, 100)));
+        assertNotSame(icon, cache.getIcon(first));
+    }
+
+    @Test
+    public void unpacksStyles()
+    {
+        final int style = WaypointStyle.pack(WaypointIcon.CIRCLE, 0x123456, 150);
+        assertTrue(WaypointStyle.isValid(style));
+        assertFalse(WaypointStyle.isValid(0x123456));
+        assertEquals(WaypointIcon.CIRCLE, WaypointStyle.icon(style));
+        assertEquals(0x123456, WaypointStyle.rgb(style));
+        assertEquals(1.5f, WaypointStyle.scale(style), 0);
+    }
+}
@@ -0,0 +1,253 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WaypointJournalTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final ManualExecutor executor = new ManualExecutor();
+
+    @Test
+    public void restoresWaypointsInTheOrderTheyWereSet()
+    {
+        final WaypointJournal journal = open();
+        assertArrayEquals(new int[0], journal.takeLoaded().tiles);
+
+        journal.add(0, tile(1), WaypointStyle.DEFAULT);
+        journal.add(1, tile(2), WaypointStyle.DEFAULT);
+        journal.add(2, tile(3), WaypointStyle.DEFAULT);
+        journal.remove(1);
+        journal.move(2, tile(4));
+        close(journal);
+
+        assertArrayEquals(new int[]{tile(1), tile(4)}, open().takeLoaded().tiles);
+    }
+
+    @Test
+    public void editsRestoredWaypointsByTheirNewIds()
+    {
+        WaypointJournal journal = open();
+        journal.takeLoaded();
+        journal.add(0, tile(1), WaypointStyle.DEFAULT);
+        journal.add(1, tile(2), WaypointStyle.DEFAULT);
+        close(journal);
+
+        journal = open();
+        assertArrayEquals(new int[]{tile(1), tile(2)}, journal.takeLoaded().tiles);
+        journal.bind(5, 0);
+        journal.bind(6, 1);
+        journal.remove(5);
+        close(journal);
+
+        assertArrayEquals(new int[]{tile(2)}, open().takeLoaded().tiles);
+    }
+
+    @Test
+    public void compactsLongJournalsIntoASnapshot()
+    {
+        final WaypointJournal journal = open();
+        journal.takeLoaded();
+        for (int i = 0; i < 3000; i++)
+        {
+            journal.add(i, tile(i), WaypointStyle.DEFAULT);
+            if (i % 3 != 0)
+            {
+                journal.remove(i);
+            }
+        }
+        executor.runPending();
+
+        assertTrue(new File(folder.getRoot(), "waypoints.snapshot").exists());
+        assertTrue(new File(folder.getRoot(), "waypoints.journal").length() < 64);
+
+        // Ids still resolve to the renumbered keys
+        journal.remove(0);
+        close(journal);
+
+        final int[] loaded = open().takeLoaded().tiles;
+        assertEquals(999, loaded.length);
+        assertEquals(tile(3), loaded[0]);
+        assertEquals(tile(2997), loaded[998]);
+    }
+
+    @Test
+    public void dropsARecordCutShortByACrash() throws IOException
+    {
+        WaypointJournal journal = open();
+        journal.takeLoaded();
+        journal.add(0, tile(1), WaypointStyle.DEFAULT);
+        journal.add(1, tile(2), WaypointStyle.DEFAULT);
+        close(journal);
+
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "waypoints.journal"), true))
+        {
+            out.write(new byte[]{1, 0, 0});
+        }
+
+        journal = open();
+        assertArrayEquals(new int[]{tile(1), tile(2)}, journal.takeLoaded().tiles);
+        journal.bind(0, 0);
+        journal.bind(1, 1);
+        journal.add(2, tile(3), WaypointStyle.DEFAULT);
+        close(journal);
+
+        assertArrayEquals(new int[]{tile(1), tile(2), tile(3)}, open().takeLoaded().tiles);
+    }
+
+    @Test
+    public void keepsEachWaypointsStyle()
+    {
+        final int circle = WaypointStyle.pack(WaypointIcon.CIRCLE, 0xFF0000, 150);
+        final int diamond = WaypointStyle.pack(WaypointIcon.DIAMOND, 0x00FF00, 80);
+
+        WaypointJournal journal = open();
+        journal.takeLoaded();
+        journal.add(0, tile(1), circle);
+        journal.add(1, tile(2), WaypointStyle.DEFAULT);
+        journal.restyle(1, diamond);
+        close(journal);
+
+        journal = open();
+        assertArrayEquals(new int[]{circle, diamond}, journal.takeLoaded().styles);
+        journal.bind(0, 0);
+        journal.bind(1, 1);
+        journal.restyle(0, WaypointStyle.DEFAULT);
+        close(journal);
+
+        assertArrayEquals(new int[]{WaypointStyle.DEFAULT, diamond}, open().takeLoaded().styles);
+    }
+
+    @Test
+    public void readsFilesWrittenBeforeStylesWereSaved() throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(folder.getRoot(), "waypoints.snapshot"))))
+        {
+            out.writeInt(0x4D57534E);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeInt(tile(1));
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(folder.getRoot(), "waypoints.journal"))))
+        {
+            out.writeInt(0x4D574A4E);
+            out.writeInt(1);
+            out.writeInt(1);
+            out.writeByte(1);
+            out.writeInt(1);
+            out.writeInt(tile(2));
+        }
+
+        final WaypointJournal journal = open();
+        final WaypointJournal.Loaded loaded = journal.takeLoaded();
+        assertArrayEquals(new int[]{tile(1), tile(2)}, loaded.tiles);
+        assertArrayEquals(new int[]{WaypointStyle.DEFAULT, WaypointStyle.DEFAULT}, loaded.styles);
+        close(journal);
+
+        assertArrayEquals(new int[]{tile(1), tile(2)}, open().takeLoaded().tiles);
+    }
+
+    @Test
+    public void onlyTheFirstClientWritesToTheJournal()
+    {
+        final WaypointJournal owner = open();
+        owner.takeLoaded();
+        owner.add(0, tile(1), WaypointStyle.DEFAULT);
+        executor.runPending();
+
+        final WaypointJournal other = open();
+        assertArrayEquals(new int[]{tile(1)}, other.takeLoaded().tiles);
+        other.bind(0, 0);
+        other.add(1, tile(2), WaypointStyle.DEFAULT);
+        close(other);
+        close(owner);
+
+        assertArrayEquals(new int[]{tile(1)}, open().takeLoaded().tiles);
+    }
+
+    @Test
+    public void anotherClientTakesOverOnceTheOwnerCloses()
+    {
+        final WaypointJournal owner = open();
+        owner.takeLoaded();
+        owner.add(0, tile(1), WaypointStyle.DEFAULT);
+        executor.runPending();
+
+        final WaypointJournal other = open();
+        assertArrayEquals(new int[]{tile(1)}, other.takeLoaded().tiles);
+        other.bind(0, 0);
+        other.add(1, tile(2), WaypointStyle.DEFAULT);
+        executor.runPending();
+        close(owner);
+
+        other.add(2, tile(3), WaypointStyle.DEFAULT);
+        other.remove(0);
+        close(other);
+
+        assertArrayEquals(new int[]{tile(2), tile(3)}, open().takeLoaded().tiles);
+    }
+
+    @Test
+    public void keepsThePreviousOwnersLaterEditsOnTakingOver()
+    {
+        final int circle = WaypointStyle.pack(WaypointIcon.CIRCLE, 0xFF0000, 100);
+
+        final WaypointJournal owner = open();
+        owner.takeLoaded();
+        owner.add(0, tile(1), WaypointStyle.DEFAULT);
+        owner.add(1, tile(2), WaypointStyle.DEFAULT);
+        executor.runPending();
+
+        final WaypointJournal other = open();
+        assertArrayEquals(new int[]{tile(1), tile(2)}, other.takeLoaded().tiles);
+        other.bind(0, 0);
+        other.bind(1, 1);
+        other.add(2, tile(4), WaypointStyle.DEFAULT);
+        executor.runPending();
+
+        // Made by the owner after the other client loaded the files
+        owner.add(2, tile(3), WaypointStyle.DEFAULT);
+        owner.remove(0);
+        owner.restyle(1, circle);
+        close(owner);
+
+        other.add(3, tile(5), WaypointStyle.DEFAULT);
+        close(other);
+
+        final WaypointJournal.Loaded loaded = open().takeLoaded();
+        assertArrayEquals(new int[]{tile(2), tile(4), tile(5), tile(3)}, loaded.tiles);
+        assertArrayEquals(new int[]{circle, WaypointStyle.DEFAULT, WaypointStyle.DEFAULT, WaypointStyle.DEFAULT}, loaded.styles);
+    }
+
+    private WaypointJournal open()
+    {
+        final WaypointJournal journal = new WaypointJournal(executor, folder.getRoot());
+        journal.load();
+        return journal;
+    }
+
+    private void close(WaypointJournal journal)
+    {
+        executor.runPending();
+        journal.close();
+    }
+
+    private static int tile(int index)
+    {
+        return TileCoords.pack(3200 + index % 64, 3200 + index / 64, 0);
+    }
+}
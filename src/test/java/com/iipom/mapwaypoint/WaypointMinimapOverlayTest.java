@@ -0,0 +1,95 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.coords.WorldPoint;
+import net.runelite.api.events.GameTick;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertEquals;
+
+public class WaypointMinimapOverlayTest
+{
+    private static final int TILE_RGB = 0xFF00C9C6;
+
+    private PluginFixture fixture;
+    private BufferedImage canvas;
+    private Graphics2D graphics;
+    private int centerX;
+    private int centerY;
+
+    @Before
+    public void setUp()
+    {
+        fixture = new PluginFixture();
+        canvas = new BufferedImage(765, 503, BufferedImage.TYPE_INT_ARGB);
+        graphics = canvas.createGraphics();
+
+        final Rectangle minimap = fixture.fakeClient.minimapBounds;
+        centerX = minimap.x + minimap.width / 2;
+        centerY = minimap.y + minimap.height / 2;
+    }
+
+    @After
+    public void tearDown()
+    {
+        graphics.dispose();
+        fixture.shutDown();
+    }
+
+    @Test
+    public void drawsNearbyWaypointsOnTheirTile()
+    {
+        // Four minimap pixels per tile
+        addWaypoint(PluginFixture.PLAYER_X + 5, PluginFixture.PLAYER_Y);
+        addWaypoint(PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y + 5);
+        fixture.minimapOverlay.render(graphics);
+
+        assertEquals(TILE_RGB, canvas.getRGB(centerX + 20, centerY));
+        assertEquals(TILE_RGB, canvas.getRGB(centerX, centerY - 20));
+    }
+
+    @Test
+    public void timesRendersWhileMetricsAreEnabled()
+    {
+        fixture.metrics.setEnabled(true);
+        addWaypoint(PluginFixture.PLAYER_X + 5, PluginFixture.PLAYER_Y);
+        fixture.minimapOverlay.render(graphics);
+
+        assertEquals(1, fixture.metrics.getHistogram(PluginMetrics.Probe.MINIMAP_OVERLAY).getCount());
+        assertEquals(TILE_RGB, canvas.getRGB(centerX + 20, centerY));
+    }
+
+    @Test
+    public void clampsFarWaypointsToTheEdge()
+    {
+        addWaypoint(PluginFixture.PLAYER_X + 200, PluginFixture.PLAYER_Y);
+        fixture.minimapOverlay.render(graphics);
+
+        final int edge = Math.min(fixture.fakeClient.minimapBounds.width, fixture.fakeClient.minimapBounds.height) / 2 - 4;
+        assertEquals(TILE_RGB, canvas.getRGB(centerX + edge - 4, centerY));
+        assertEquals(0, canvas.getRGB(centerX + edge + 4, centerY));
+    }
+
+    @Test
+    public void drawsEachWaypointInItsColour()
+    {
+        final int red = fixture.plugin.addWaypoint(new WorldPoint(PluginFixture.PLAYER_X - 5, PluginFixture.PLAYER_Y, 0));
+        fixture.plugin.getWaypoints().setStyle(red, WaypointStyle.pack(WaypointIcon.CROSS, 0xFF0000, 100));
+        addWaypoint(PluginFixture.PLAYER_X + 5, PluginFixture.PLAYER_Y);
+        fixture.minimapOverlay.render(graphics);
+
+        assertEquals(0xFFFF0000, canvas.getRGB(centerX - 20, centerY));
+        assertEquals(TILE_RGB, canvas.getRGB(centerX + 20, centerY));
+    }
+
+    private void addWaypoint(int x, int y)
+    {
+        fixture.plugin.addWaypoint(new WorldPoint(x, y, 0));
+        fixture.plugin.onGameTick(new GameTick());
+    }
+}
@@ -0,0 +1,82 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WaypointSelectorTest
+{
+    private final WaypointStore waypoints = new WaypointStore();
+    private final WaypointSelector selector = new WaypointSelector(waypoints);
+
+    private int far;
+    private int near;
+    private int upstairs;
+
+    @Before
+    public void setUp()
+    {
+        far = add(3260, 3220, 0);
+        near = add(3230, 3220, 0);
+        upstairs = add(3222, 3219, 1);
+    }
+
+    @Test
+    public void lastSetIgnoresDistance()
+    {
+        assertEquals(upstairs, selector.select(WaypointTarget.LAST_SET, TileCoords.pack(3222, 3218, 0), 2));
+    }
+
+    @Test
+    public void nearestStaysOnThePlayersPlane()
+    {
+        assertEquals(near, selector.select(WaypointTarget.NEAREST, TileCoords.pack(3222, 3218, 0), 2));
+    }
+
+    @Test
+    public void arrivingMovesOnToTheNextWaypoint()
+    {
+        assertEquals(far, selector.select(WaypointTarget.NEAREST, TileCoords.pack(3229, 3221, 0), 2));
+        assertTrue(selector.isVisited(near));
+
+        // Visited waypoints are not picked again when walking back past them
+        assertEquals(far, selector.select(WaypointTarget.NEAREST, TileCoords.pack(3222, 3218, 0), 2));
+        assertEquals(upstairs, selector.select(WaypointTarget.NEAREST, TileCoords.pack(3260, 3220, 0), 2));
+    }
+
+    @Test
+    public void inOrderFollowsInsertion()
+    {
+        assertEquals(far, selector.select(WaypointTarget.IN_ORDER, TileCoords.pack(3230, 3220, 0), 0));
+        assertEquals(near, selector.select(WaypointTarget.IN_ORDER, TileCoords.pack(3260, 3220, 0), 0));
+    }
+
+    @Test
+    public void shortestRouteFollowsTheRouteOnceThereIsOne()
+    {
+        // Until the route has been ordered, waypoints are taken in the order they were set
+        assertEquals(far, selector.select(WaypointTarget.SHORTEST_ROUTE, TileCoords.pack(3222, 3218, 0), 0));
+
+        selector.setRoute(new RouteOrder(new int[]{near, far, upstairs}, 100, 1));
+        assertEquals(near, selector.select(WaypointTarget.SHORTEST_ROUTE, TileCoords.pack(3222, 3218, 0), 0));
+        assertEquals(far, selector.select(WaypointTarget.SHORTEST_ROUTE, TileCoords.pack(3230, 3220, 0), 0));
+    }
+
+    @Test
+    public void removedWaypointsAreNotPicked()
+    {
+        waypoints.remove(near);
+        selector.remove(near);
+
+        assertEquals(far, selector.select(WaypointTarget.NEAREST, TileCoords.pack(3222, 3218, 0), 2));
+    }
+
+    private int add(int x, int y, int plane)
+    {
+        final int id = waypoints.add(x, y, plane);
+        selector.add(id);
+        return id;
+    }
+}
@@ -0,0 +1,169 @@
+package com.iipom.mapwaypoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WaypointSyncTest
+{
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Integer> added = new ArrayList<>();
+    private final List<Integer> removed = new ArrayList<>();
+    private final List<Integer> styles = new ArrayList<>();
+    private final WaypointSync.Listener listener = new WaypointSync.Listener()
+    {
+        @Override
+        public void added(int tile, int style)
+        {
+            added.add(tile);
+            styles.add(style);
+        }
+
+        @Override
+        public void removed(int tile)
+        {
+            removed.add(tile);
+        }
+
+        @Override
+        public void restyled(int tile, int style)
+        {
+            styles.add(style);
+        }
+    };
+    private WaypointSync first;
+    private WaypointSync second;
+
+    @Before
+    public void setUp()
+    {
+        first = open();
+        second = open();
+    }
+
+    @After
+    public void tearDown()
+    {
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void deliversEditsToOtherClientsOnly()
+    {
+        first.publish(WaypointSync.ADD, 11, WaypointStyle.DEFAULT);
+        first.publish(WaypointSync.REMOVE, 12, WaypointStyle.DEFAULT);
+        second.publish(WaypointSync.ADD, 21, WaypointStyle.DEFAULT);
+
+        assertEquals(2, second.poll(listener));
+        assertEquals(listOf(11), added);
+        assertEquals(listOf(12), removed);
+
+        added.clear();
+        assertEquals(1, first.poll(listener));
+        assertEquals(listOf(21), added);
+    }
+
+    @Test
+    public void deliversEachEditOnce()
+    {
+        first.publish(WaypointSync.ADD, 11, WaypointStyle.DEFAULT);
+        first.publish(WaypointSync.REMOVE, 11, WaypointStyle.DEFAULT);
+
+        assertEquals(2, second.poll(listener));
+        assertEquals(0, second.poll(listener));
+        assertEquals(listOf(11), added);
+        assertEquals(listOf(11), removed);
+    }
+
+    @Test
+    public void skipsEventsOverwrittenBeforeTheyWereRead()
+    {
+        for (int i = 0; i < 1000; i++)
+        {
+            first.publish(WaypointSync.ADD, i, WaypointStyle.DEFAULT);
+        }
+
+        assertEquals(256, second.poll(listener));
+        assertEquals(Integer.valueOf(744), added.get(0));
+        assertEquals(Integer.valueOf(999), added.get(255));
+    }
+
+    @Test
+    public void carriesTheStylesOfAddedAndRestyledWaypoints()
+    {
+        final int style = WaypointStyle.pack(WaypointIcon.DIAMOND, 0xFF0000, 150);
+        first.publish(WaypointSync.ADD, 11, style);
+        first.publish(WaypointSync.RESTYLE, 11, WaypointStyle.DEFAULT);
+
+        assertEquals(2, second.poll(listener));
+        assertEquals(listOf(11), added);
+        assertEquals(listOf(style, WaypointStyle.DEFAULT), styles);
+    }
+
+    @Test
+    public void waitsForAnEntryStillBeingWritten() throws IOException
+    {
+        first.publish(WaypointSync.ADD, 11, WaypointStyle.DEFAULT);
+
+        // Mark the first client's first entry as being written, as a writer stopped halfway would leave it
+        try (RandomAccessFile file = new RandomAccessFile(new File(folder.getRoot(), "sync.dat"), "rw"))
+        {
+            file.seek(16 + 64);
+            file.writeLong(-1);
+        }
+
+        assertEquals(0, second.poll(listener));
+        assertTrue(added.isEmpty());
+    }
+
+    @Test
+    public void aNewClientOnlySeesLaterEvents()
+    {
+        first.publish(WaypointSync.ADD, 11, WaypointStyle.DEFAULT);
+
+        final WaypointSync third = open();
+        try
+        {
+            assertTrue(third.isOpen());
+            first.publish(WaypointSync.ADD, 12, WaypointStyle.DEFAULT);
+
+            assertEquals(1, third.poll(listener));
+            assertEquals(listOf(12), added);
+        }
+        finally
+        {
+            third.close();
+        }
+    }
+
+    private WaypointSync open()
+    {
+        final WaypointSync sync = new WaypointSync(folder.getRoot());
+        sync.open();
+        return sync;
+    }
+
+    private static List<Integer> listOf(Integer... values)
+    {
+        final List<Integer> list = new ArrayList<>();
+        for (Integer value : values)
+        {
+            list.add(value);
+        }
+        return list;
+    }
+}
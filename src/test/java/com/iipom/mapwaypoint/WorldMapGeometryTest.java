@@ -0,0 +1,92 @@
+package com.iipom.mapwaypoint;
+
+import net.runelite.api.Point;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorldMapGeometryTest
+{
+    private static final float[] ZOOMS = {1.0f, 1.5f, 2.0f, 3.0f, 4.0f, 6.0f, 8.0f};
+
+    private FakeClient client;
+    private FakeWorldMap worldMap;
+    private WorldMapGeometry geometry;
+
+    @Before
+    public void setUp()
+    {
+        client = new FakeClient();
+        worldMap = new FakeWorldMap(client);
+        geometry = PluginFixture.construct(WorldMapGeometry.class, client.getClient());
+    }
+
+    @Test
+    public void matchesWorldMapOverlay()
+    {
+        for (float zoom : ZOOMS)
+        {
+            openMap(zoom);
+
+            for (int x = 3150; x <= 3300; x += 7)
+            {
+                for (int y = 3150; y <= 3300; y += 11)
+                {
+                    final Point expected = worldMap.toCanvas(x, y);
+                    assertEquals("x at zoom " + zoom, expected.getX(), geometry.toCanvasX(x));
+                    assertEquals("y at zoom " + zoom, expected.getY(), geometry.toCanvasY(y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundTripsTiles()
+    {
+        for (float zoom : new float[]{1.0f, 2.0f, 4.0f, 8.0f})
+        {
+            openMap(zoom);
+
+            for (int x = 3180; x <= 3260; x++)
+            {
+                assertEquals(x, geometry.toWorldX(geometry.toCanvasX(x)));
+                assertEquals(x, geometry.toWorldY(geometry.toCanvasY(x)));
+            }
+        }
+    }
+
+    @Test
+    public void keepsGeometryUntilInvalidated()
+    {
+        openMap(4.0f);
+        final int before = geometry.toCanvasX(3230);
+
+        client.setWorldMap(PluginFixture.WORLD_MAP_BOUNDS, PluginFixture.PLAYER_X + 10, PluginFixture.PLAYER_Y, 4.0f);
+        assertEquals(before, geometry.toCanvasX(3230));
+
+        geometry.invalidate();
+        assertEquals(before - 40, geometry.toCanvasX(3230));
+    }
+
+    @Test
+    public void closedMapContainsNothing()
+    {
+        openMap(4.0f);
+        final Point middle = new Point((int) PluginFixture.WORLD_MAP_BOUNDS.getCenterX(), (int) PluginFixture.WORLD_MAP_BOUNDS.getCenterY());
+        assertTrue(geometry.contains(middle));
+
+        client.setWorldMap(null, 0, 0, 4.0f);
+        geometry.invalidate();
+        assertFalse(geometry.isOpen());
+        assertFalse(geometry.contains(middle));
+    }
+
+    private void openMap(float zoom)
+    {
+        client.setWorldMap(PluginFixture.WORLD_MAP_BOUNDS, PluginFixture.PLAYER_X, PluginFixture.PLAYER_Y, zoom);
+        geometry.invalidate();
+    }
+}